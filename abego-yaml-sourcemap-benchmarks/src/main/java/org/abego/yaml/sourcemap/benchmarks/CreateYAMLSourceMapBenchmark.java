@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.benchmarks;
+
+import org.abego.yaml.sourcemap.YAMLSourceMap;
+import org.abego.yaml.sourcemap.YAMLSourceMapAPI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for creating a {@link YAMLSourceMap}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CreateYAMLSourceMapBenchmark {
+
+    @Benchmark
+    public YAMLSourceMap createYAMLSourceMap_String(DocumentState document) {
+        return YAMLSourceMapAPI.createYAMLSourceMap(document.yamlText);
+    }
+
+    @Benchmark
+    public YAMLSourceMap createYAMLSourceMap_Reader(DocumentState document) {
+        return YAMLSourceMapAPI.createYAMLSourceMap(
+                new StringReader(document.yamlText));
+    }
+
+    /**
+     * Creates the source map from recorded parser events, i.e. measures the
+     * creation of the fragments without the time spent in SnakeYAML's
+     * scanner and parser.
+     */
+    @Benchmark
+    public YAMLSourceMap createYAMLSourceMap_replayedParserEvents(
+            ParserEventsState events) {
+        return YAMLSourceMapAPI.yamlSourceMapBuilder().buildFromParserEvents(
+                new ByteArrayInputStream(events.parserEvents));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.benchmarks;
+
+import org.abego.yaml.sourcemap.testdata.YAMLDocumentGenerator;
+import org.abego.yaml.sourcemap.testdata.YAMLDocumentGenerator.Shape;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A generated YAML document, shared by all threads of a benchmark run.
+ *
+ * <p>The document is created by the {@link YAMLDocumentGenerator}, always
+ * with the same seed, so all runs use the same document.</p>
+ *
+ * <p>Data derived from the document is provided by separate states (see
+ * {@link SourceMapState} and {@link ParserEventsState}), so a benchmark only
+ * pays for the setup (time and heap) of the data it actually uses.</p>
+ */
+@State(Scope.Benchmark)
+public class DocumentState {
+    private static final long SEED = 42;
+
+    @Param({"FLAT", "DEEP", "WIDE_SEQUENCE", "ANCHOR_HEAVY"})
+    public Shape shape = Shape.FLAT;
+
+    /**
+     * The (approximate) size of the document, in characters.
+     */
+    @Param({"1024", "102400", "10485760", "104857600"})
+    public int size;
+
+    public String yamlText = "";
+
+    @Setup
+    public void setUp() {
+        yamlText = YAMLDocumentGenerator.builder()
+                .shape(shape)
+                .size(size)
+                .seed(SEED)
+                .build()
+                .generate();
+    }
+}
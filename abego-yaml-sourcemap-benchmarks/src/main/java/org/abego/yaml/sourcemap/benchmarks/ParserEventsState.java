@@ -0,0 +1,56 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.abego.yaml.sourcemap.benchmarks;
+
+import org.abego.yaml.sourcemap.YAMLSourceMapAPI;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+
+/**
+ * The SnakeYAML parser events of the document of the {@link DocumentState},
+ * shared by all threads of a benchmark run.
+ */
+@State(Scope.Benchmark)
+public class ParserEventsState {
+
+    /**
+     * The SnakeYAML parser events of the document, as recorded by
+     * {@link YAMLSourceMapAPI#writeParserEvents(java.io.Reader, java.io.OutputStream)}.
+     */
+    public byte[] parserEvents = new byte[0];
+
+    @Setup
+    public void setUp(DocumentState document) {
+        ByteArrayOutputStream events = new ByteArrayOutputStream();
+        YAMLSourceMapAPI.writeParserEvents(
+                new StringReader(document.yamlText), events);
+        parserEvents = events.toByteArray();
+    }
+}
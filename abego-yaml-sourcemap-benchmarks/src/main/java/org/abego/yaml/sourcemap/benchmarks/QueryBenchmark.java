@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.benchmarks;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.YAMLRange;
+import org.abego.yaml.sourcemap.YAMLSourceMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the queries of a {@link YAMLSourceMap}.
+ *
+ * <p>Every invocation uses the next one of a fixed set of randomly chosen
+ * (but valid) arguments, so results do not depend on a single "lucky"
+ * argument.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueryBenchmark {
+
+    /**
+     * The arguments for the queries, taken from the source map of the
+     * {@link SourceMapState}.
+     */
+    @State(Scope.Thread)
+    public static class Arguments {
+        static final int COUNT = 1024;
+        private static final long SEED = 42;
+
+        private final int[] offsets = new int[COUNT];
+        private final int[] lines = new int[COUNT];
+        private final int[] columns = new int[COUNT];
+        private final String[] jsonPointers = new String[COUNT];
+        private int next;
+
+        @Setup
+        public void setUp(SourceMapState state) {
+            Random random = new Random(SEED);
+            List<Fragment> fragments = state.sourceMap.allFragments();
+            for (int i = 0; i < COUNT; i++) {
+                offsets[i] = random.nextInt(state.sourceMap.documentLength());
+                Fragment f = fragments.get(random.nextInt(fragments.size()));
+                lines[i] = f.getStartLine();
+                columns[i] = f.getStartColumn();
+                jsonPointers[i] = f.getJSONPointer();
+            }
+        }
+
+        int nextIndex() {
+            next = (next + 1) % COUNT;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public Fragment fragmentAtOffset(SourceMapState state, Arguments arguments) {
+        return state.sourceMap.fragmentAtOffset(
+                arguments.offsets[arguments.nextIndex()]);
+    }
+
+    @Benchmark
+    public Fragment fragmentAtLocation(SourceMapState state, Arguments arguments) {
+        int i = arguments.nextIndex();
+        return state.sourceMap.fragmentAtLocation(
+                arguments.lines[i], arguments.columns[i]);
+    }
+
+    /**
+     * Resolves all offsets of the arguments in one call, reporting the
+     * time per offset (to compare with {@link #fragmentAtOffset}).
+     */
+    @Benchmark
+    @OperationsPerInvocation(Arguments.COUNT)
+    public Fragment[] fragmentsAtOffsets(SourceMapState state, Arguments arguments) {
+        return state.sourceMap.fragmentsAtOffsets(arguments.offsets);
+    }
+
+    /**
+     * Resolves all locations of the arguments in one call, reporting the
+     * time per location (to compare with {@link #fragmentAtLocation}).
+     */
+    @Benchmark
+    @OperationsPerInvocation(Arguments.COUNT)
+    public Fragment[] fragmentsAtLocations(SourceMapState state, Arguments arguments) {
+        return state.sourceMap.fragmentsAtLocations(
+                arguments.lines, arguments.columns);
+    }
+
+    @Benchmark
+    public YAMLRange sourceRangeOfJsonPointer(SourceMapState state, Arguments arguments) {
+        return state.sourceMap.sourceRangeOfJsonPointer(
+                arguments.jsonPointers[arguments.nextIndex()]);
+    }
+
+    @Benchmark
+    public List<Fragment> allFragmentsOfChildrenOfJsonPointer(
+            SourceMapState state, Arguments arguments) {
+        return state.sourceMap.allFragmentsOfChildrenOfJsonPointer(
+                arguments.jsonPointers[arguments.nextIndex()]);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+/**
+ * <strong>Benchmarks</strong>
+ *
+ * <p><a href="https://openjdk.java.net/projects/code-tools/jmh/">JMH</a>
+ * benchmarks for creating and querying
+ * {@link org.abego.yaml.sourcemap.YAMLSourceMap}s.</p>
+ *
+ * <p>The benchmarks run over generated documents of different sizes
+ * (parameter {@code size}, in characters, from 1 KB to 100 MB) and
+ * shapes (parameter {@code shape}, see {@link
+ * org.abego.yaml.sourcemap.testdata.YAMLDocumentGenerator.Shape}).</p>
+ *
+ * <p>To run the benchmarks build the module and start the benchmarks jar:</p>
+ * <pre>
+ *    mvn package
+ *    java -jar abego-yaml-sourcemap-benchmarks/target/benchmarks.jar
+ * </pre>
+ * <p>
+ * Use the usual JMH options to select benchmarks or parameters, e.g.
+ * <pre>
+ *    java -jar abego-yaml-sourcemap-benchmarks/target/benchmarks.jar Query -p size=1024,102400 -p shape=FLAT
+ * </pre>
+ */
+@NonNullByDefault
+package org.abego.yaml.sourcemap.benchmarks;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -2,7 +2,11 @@ package org.abego.yaml.sourcemap;
 
 import org.eclipse.jdt.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Predicate;
 
 /**
@@ -279,6 +283,152 @@ public interface FragmentsAPI {
         }
     }
 
+    /**
+     * A cursor to iterate over the {@link Fragment}s of a YAML document
+     * without creating any objects per fragment.
+     *
+     * <p>Initially the cursor is positioned before the first fragment.
+     * Use {@link #next()} and {@link #previous()} to move forward or
+     * backward, and {@link #seek(int)} to move to the fragment at an
+     * offset. The methods accessing the current fragment's properties
+     * (like {@link #startOffset()}) must only be called when the cursor is
+     * positioned on a fragment, i.e. the last move returned
+     * {@code true}.</p>
+     *
+     * <p>A cursor is not thread-safe.</p>
+     *
+     * <p>Typical use:</p>
+     * <pre>
+     *    FragmentCursor cursor = srcMap.fragmentCursor();
+     *    while (cursor.next()) {
+     *        ... cursor.startOffset() ... cursor.kind() ...
+     *    }
+     * </pre>
+     */
+    interface FragmentCursor {
+
+        /**
+         * Moves the cursor to the next fragment and returns {@code true};
+         * returns {@code false} when there is no next fragment.
+         *
+         * <p>After returning {@code false} the cursor is positioned after
+         * the last fragment.</p>
+         *
+         * @return {@code true} when the cursor moved to the next fragment,
+         * {@code false} otherwise
+         */
+        boolean next();
+
+        /**
+         * Moves the cursor to the previous fragment and returns
+         * {@code true}; returns {@code false} when there is no previous
+         * fragment.
+         *
+         * <p>After returning {@code false} the cursor is positioned before
+         * the first fragment.</p>
+         *
+         * @return {@code true} when the cursor moved to the previous
+         * fragment, {@code false} otherwise
+         */
+        boolean previous();
+
+        /**
+         * Moves the cursor to the fragment at the given {@code offset}
+         * (see {@link FragmentsAPI#fragmentAtOffset(int)}) and returns
+         * {@code true}; returns {@code false} when the document is empty.
+         *
+         * @param offset an offset for the start of the YAML document
+         * @return {@code true} when the cursor moved to a fragment,
+         * {@code false} otherwise
+         */
+        boolean seek(int offset);
+
+        /**
+         * Returns the offset of the current fragment's start.
+         *
+         * @return the offset of the current fragment's start
+         * @see Fragment#getStartOffset()
+         */
+        int startOffset();
+
+        /**
+         * Returns the line of the current fragment's start.
+         *
+         * @return the line of the current fragment's start
+         * @see Fragment#getStartLine()
+         */
+        int startLine();
+
+        /**
+         * Returns the column of the current fragment's start.
+         *
+         * @return the column of the current fragment's start
+         * @see Fragment#getStartColumn()
+         */
+        int startColumn();
+
+        /**
+         * Returns the offset of the current fragment's end.
+         *
+         * @return the offset of the current fragment's end
+         * @see Fragment#getEndOffset()
+         */
+        int endOffset();
+
+        /**
+         * Returns the line of the current fragment's end.
+         *
+         * @return the line of the current fragment's end
+         * @see Fragment#getEndLine()
+         */
+        int endLine();
+
+        /**
+         * Returns the column of the current fragment's end.
+         *
+         * @return the column of the current fragment's end
+         * @see Fragment#getEndColumn()
+         */
+        int endColumn();
+
+        /**
+         * Returns the kind of the current fragment.
+         *
+         * @return the kind of the current fragment
+         * @see Fragment#getKind()
+         */
+        Fragment.Kind kind();
+
+        /**
+         * Returns a number identifying the JSON pointer of the current
+         * fragment.
+         *
+         * <p>Within a source map two fragments have the same JSON pointer
+         * iff they have the same pointer id. Pointer ids are ordered like
+         * the JSON pointers (as strings), i.e. comparing the ids compares
+         * the JSON pointers.</p>
+         *
+         * @return a number identifying the JSON pointer of the current
+         * fragment
+         */
+        int pointerId();
+
+        /**
+         * Returns the JSON pointer of the current fragment.
+         *
+         * @return the JSON pointer of the current fragment
+         * @see Fragment#getJSONPointer()
+         */
+        String jsonPointer();
+
+        /**
+         * Returns the current fragment.
+         *
+         * @return the current fragment
+         */
+        Fragment fragment();
+    }
+
     /**
      * Returns the length of the YAML document.
      *
@@ -289,10 +439,31 @@ public interface FragmentsAPI {
     /**
      * Returns all {@link Fragment}s of the YAML document.
      *
+     * <p>When the fragments are stored outside the Java heap (see
+     * {@link YAMLSourceMapBuilder#spillFragments(java.io.File)} and
+     * {@link YAMLSourceMapBuilder#offHeap(boolean)}) the result is a
+     * read-only view, loading the fragments on access. Such a view must
+     * not be used after the source map was closed. Use
+     * {@link #fragmentCursor()} to iterate over all fragments.</p>
+     *
      * @return all {@link Fragment}s of the YAML document
      */
     List<Fragment> allFragments();
 
+    /**
+     * Returns a new {@link FragmentCursor} to iterate over the
+     * {@link Fragment}s of the YAML document, positioned before the first
+     * fragment.
+     *
+     * <p>The default implementation iterates over {@link #allFragments()}.</p>
+     *
+     * @return a new {@link FragmentCursor} over the {@link Fragment}s of
+     * the YAML document
+     */
+    default FragmentCursor fragmentCursor() {
+        return new ListFragmentCursor(allFragments());
+    }
+
     /**
      * Returns all {@link Fragment}s matching the {@code test}.
      *
@@ -302,6 +473,27 @@ public interface FragmentsAPI {
      */
     List<Fragment> allFragmentsMatching(Predicate<Fragment> test);
 
+    /**
+     * Returns all {@link Fragment}s of any of the given {@code kinds}, in
+     * document order.
+     *
+     * <p>The result is the same as calling
+     * {@link #allFragmentsMatching(Predicate)} with a test checking the
+     * fragment's kind, but the cost depends on the number of fragments in
+     * the result, not on the size of the document.</p>
+     *
+     * <p>The default implementation calls
+     * {@link #allFragmentsMatching(Predicate)}.</p>
+     *
+     * @param kinds the kinds of the fragments to return
+     * @return all {@link Fragment}s of any of the given {@code kinds}
+     */
+    default List<Fragment> fragmentsOfKind(Fragment.Kind... kinds) {
+        Set<Fragment.Kind> kindSet = EnumSet.noneOf(Fragment.Kind.class);
+        Collections.addAll(kindSet, kinds);
+        return allFragmentsMatching(f -> kindSet.contains(f.getKind()));
+    }
+
     /**
      * Returns the first {@link Fragment} that matching the {@code test};
      * or {@code null} when no fragment matches the test.
@@ -334,6 +526,136 @@ public interface FragmentsAPI {
      */
     Fragment fragmentAtLocation(int line, int column);
 
+    /**
+     * Returns the {@link Fragment}s for the given offsets, i.e. item
+     * {@code i} of the result is the fragment for {@code offsets[i]}.
+     *
+     * <p>The result is the same as calling {@link #fragmentAtOffset(int)}
+     * for every offset, but typically faster for many offsets.</p>
+     *
+     * <p>The default implementation calls {@link #fragmentAtOffset(int)}
+     * for every offset.</p>
+     *
+     * @param offsets offsets for the start of the YAML document, in any order
+     * @return the {@link Fragment}s for the given offsets
+     */
+    default Fragment[] fragmentsAtOffsets(int[] offsets) {
+        Fragment[] result = new Fragment[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            result[i] = fragmentAtOffset(offsets[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@link Fragment}s for the given locations, i.e. item
+     * {@code i} of the result is the fragment for the location
+     * {@code lines[i]}:{@code columns[i]}.
+     *
+     * <p>The result is the same as calling
+     * {@link #fragmentAtLocation(int, int)} for every location, but
+     * typically faster for many locations.</p>
+     *
+     * <p>The default implementation calls
+     * {@link #fragmentAtLocation(int, int)} for every location.</p>
+     *
+     * @param lines   the line numbers of the locations, with 1 for the
+     *                first line
+     * @param columns the column numbers of the locations, with 1 for the
+     *                first column
+     * @return the {@link Fragment}s for the given locations
+     * @throws YAMLSourceMapException when a location is invalid or
+     *                                {@code lines} and {@code columns} have
+     *                                different lengths
+     */
+    default Fragment[] fragmentsAtLocations(int[] lines, int[] columns) {
+        if (lines.length != columns.length) {
+            throw new YAMLSourceMapException(String.format(
+                    "lines and columns must have the same length. Got %d and %d",
+                    lines.length, columns.length));
+        }
+        Fragment[] result = new Fragment[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            result[i] = fragmentAtLocation(lines[i], columns[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@link Fragment}s overlapping the range of characters
+     * starting at {@code startOffset} and ending before {@code endOffset},
+     * ordered by their offsets.
+     *
+     * <p>A fragment overlaps the range when it contains at least one
+     * character of the range. Empty fragments are included when they
+     * start within the range.</p>
+     *
+     * <p>The cost of this method depends on the number of fragments in the
+     * result, not on the size of the document. This makes it a good fit
+     * e.g. for editors that only need the fragments of the visible text.
+     * (The default implementation calls
+     * {@link #allFragmentsMatching(Predicate)}, i.e. its cost depends on
+     * the size of the document.)</p>
+     *
+     * @param startOffset the offset of the first character of the range
+     * @param endOffset   the offset after the last character of the range
+     * @return the {@link Fragment}s overlapping the range
+     * @throws YAMLSourceMapException when {@code endOffset} is less than
+     *                                {@code startOffset}
+     */
+    default List<Fragment> fragmentsInRange(int startOffset, int endOffset) {
+        if (endOffset < startOffset) {
+            throw new YAMLSourceMapException(String.format(
+                    "endOffset must be >= startOffset. Got startOffset=%d, endOffset=%d",
+                    startOffset, endOffset));
+        }
+        if (startOffset == endOffset) {
+            return new ArrayList<>();
+        }
+        return allFragmentsMatching(f ->
+                (f.getStartOffset() >= startOffset || f.getEndOffset() > startOffset)
+                        && f.getStartOffset() < endOffset);
+    }
+
+    /**
+     * Returns the {@link Fragment}s overlapping the lines {@code firstLine}
+     * to {@code lastLine} (inclusive), ordered by their offsets.
+     *
+     * <p>A fragment overlaps the lines when it contains at least one
+     * character of these lines (including the line breaks). Empty fragments
+     * are included when they start within these lines.</p>
+     *
+     * <p>The cost of this method depends on the number of fragments in the
+     * result, not on the size of the document. (The default implementation
+     * calls {@link #allFragmentsMatching(Predicate)}, i.e. its cost depends
+     * on the size of the document.)</p>
+     *
+     * @param firstLine the number of the first line, with 1 for the first
+     *                  line of the document
+     * @param lastLine  the number of the last line, with 1 for the first
+     *                  line of the document
+     * @return the {@link Fragment}s overlapping the lines
+     * @throws YAMLSourceMapException when {@code firstLine} is less than 1
+     *                                or {@code lastLine} is less than
+     *                                {@code firstLine}
+     */
+    default List<Fragment> fragmentsInLines(int firstLine, int lastLine) {
+        if (firstLine < 1) {
+            throw new YAMLSourceMapException("firstLine must be >= 1");
+        }
+        if (lastLine < firstLine) {
+            throw new YAMLSourceMapException(String.format(
+                    "lastLine must be >= firstLine. Got firstLine=%d, lastLine=%d",
+                    firstLine, lastLine));
+        }
+        // A fragment ending at the start of firstLine does not overlap it
+        return allFragmentsMatching(f ->
+                (f.getStartLine() >= firstLine
+                        || f.getEndLine() > firstLine
+                        || (f.getEndLine() == firstLine && f.getEndColumn() > 1))
+                        && f.getStartLine() <= lastLine);
+    }
+
     /**
      * Returns all {@link Fragment}s related to the entity
      * referenced by the {@code jsonPointer}.
@@ -349,6 +671,11 @@ public interface FragmentsAPI {
      * Returns all {@link Fragment}s of children of the entity referenced
      * by the {@code jsonPointer}.
      *
+     * <p>The children (and their children etc.) are the entities with a
+     * JSON pointer starting with {@code jsonPointer + "/"}. A sibling
+     * whose key starts with the same text (e.g. {@code /ab} for
+     * {@code /a}) is no child.</p>
+     *
      * @param jsonPointer A valid JSON Pointer, referring to an entity
      *                    defined in this source map's YAML document.
      * @return all {@link Fragment}s of children of the entity referenced
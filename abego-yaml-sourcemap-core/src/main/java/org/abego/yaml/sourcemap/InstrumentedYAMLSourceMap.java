@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap;
+
+/**
+ * A {@link YAMLSourceMap} recording metrics about the queries performed on
+ * it.
+ *
+ * <p>For every {@link Operation} the source map records the number of calls,
+ * the number of fragments scanned and a histogram of the latencies. Calls
+ * throwing an exception are recorded, too. Use
+ * {@link #metricsSnapshot()} to get the metrics recorded so far.</p>
+ *
+ * <p>Create an InstrumentedYAMLSourceMap with
+ * {@link YAMLSourceMapAPI#instrumentedYAMLSourceMap(YAMLSourceMap)}.</p>
+ *
+ * <p>The metrics can be recorded and read concurrently.</p>
+ */
+public interface InstrumentedYAMLSourceMap extends YAMLSourceMap {
+
+    /**
+     * The operations of a {@link YAMLSourceMap} with metrics, one for every
+     * query method.
+     */
+    enum Operation {
+        DOCUMENT_LENGTH,
+        ALL_FRAGMENTS,
+        FRAGMENT_CURSOR,
+        ALL_FRAGMENTS_MATCHING,
+        FRAGMENTS_OF_KIND,
+        FIND_FIRST_FRAGMENT_MATCHING,
+        FRAGMENT_AT_OFFSET,
+        FRAGMENT_AT_LOCATION,
+        FRAGMENTS_AT_OFFSETS,
+        FRAGMENTS_AT_LOCATIONS,
+        FRAGMENTS_IN_RANGE,
+        FRAGMENTS_IN_LINES,
+        ALL_FRAGMENTS_OF_JSON_POINTER,
+        ALL_FRAGMENTS_OF_CHILDREN_OF_JSON_POINTER,
+        VALUE_FRAGMENT_OF_JSON_POINTER,
+        JSON_POINTER_AT_OFFSET,
+        JSON_POINTER_AT_LOCATION,
+        JSON_POINTERS_AT_OFFSETS,
+        JSON_POINTERS_AT_LOCATIONS,
+        SOURCE_RANGE_OF_JSON_POINTER,
+        SOURCE_RANGE_OF_VALUE_OF_JSON_POINTER,
+        SOURCE_RANGES_OF_VALUES_OF_JSON_POINTERS,
+        ROOT_NODE,
+        NODE_OF_JSON_POINTER,
+        DEFINITION_RANGE_OF_ALIAS,
+        ALIASES_OF_ANCHOR,
+        RESOLVED_NODE_OF_JSON_POINTER,
+        SCALAR_VALUE_OF_JSON_POINTER,
+        SCALAR_VALUE_AT_OFFSET,
+        SUBTREE_HASH
+    }
+
+    /**
+     * The metrics of an {@link Operation}.
+     */
+    interface OperationMetrics {
+        /**
+         * Returns the number of calls of the operation.
+         *
+         * @return the number of calls of the operation
+         */
+        long getCallCount();
+
+        /**
+         * Returns the number of fragments scanned by the calls of the
+         * operation.
+         *
+         * <p>This is the number of fragments the source map looked at to
+         * answer the calls, e.g. the fragments probed by a search or the
+         * fragments of a JSON pointer, as reported by the source maps
+         * created by {@link YAMLSourceMapAPI}. Queries answered without
+         * fragments (e.g. from the node tree or the anchors) scan none.
+         * For operations with a {@code test} predicate this is the number
+         * of fragments tested, for any source map.</p>
+         *
+         * @return the number of fragments scanned by the calls of the
+         * operation
+         */
+        long getFragmentCount();
+
+        /**
+         * Returns the total time spent in the calls of the operation, in
+         * nanoseconds.
+         *
+         * @return the total time spent in the calls of the operation, in
+         * nanoseconds
+         */
+        long getTotalNanos();
+
+        /**
+         * Returns the maximal time spent in a call of the operation, in
+         * nanoseconds.
+         *
+         * @return the maximal time spent in a call of the operation, in
+         * nanoseconds
+         */
+        long getMaxNanos();
+
+        /**
+         * Returns the time (in nanoseconds) at or below which the given
+         * {@code percentile} of all calls of the operation completed, e.g.
+         * {@code 99.0} for the 99th percentile.
+         *
+         * <p>The value is accurate to about 3%.</p>
+         *
+         * @param percentile a value between 0.0 and 100.0
+         * @return the time (in nanoseconds) at or below which the given
+         * {@code percentile} of all calls of the operation completed, or 0
+         * when the operation was never called
+         */
+        long getNanosAtPercentile(double percentile);
+    }
+
+    /**
+     * The metrics of all {@link Operation}s at a given point in time.
+     */
+    interface MetricsSnapshot {
+        /**
+         * Returns the metrics of the {@code operation}.
+         *
+         * @param operation the {@link Operation} to return the metrics for
+         * @return the metrics of the {@code operation}
+         */
+        OperationMetrics getOperationMetrics(Operation operation);
+    }
+
+    /**
+     * Returns the metrics recorded since this source map was created or
+     * {@link #resetMetrics()} was last called.
+     *
+     * @return the metrics recorded since this source map was created or
+     * {@link #resetMetrics()} was last called
+     */
+    MetricsSnapshot metricsSnapshot();
+
+    /**
+     * Discards all metrics recorded so far.
+     */
+    void resetMetrics();
+}
@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A change of the data at a JSON pointer between two versions of a YAML
+ * document, as returned by
+ * {@link YAMLSourceMapAPI#diff(YAMLSourceMap, YAMLSourceMap)}.
+ */
+public interface JSONPointerChange {
+
+    /**
+     * The kind of a change.
+     */
+    enum Kind {
+        /**
+         * The JSON pointer only exists in the new version.
+         */
+        ADDED,
+
+        /**
+         * The JSON pointer only exists in the old version.
+         */
+        REMOVED,
+
+        /**
+         * The JSON pointer exists in both versions, with different data.
+         */
+        CHANGED
+    }
+
+    /**
+     * Returns the kind of this change.
+     *
+     * @return the kind of this change
+     */
+    Kind getKind();
+
+    /**
+     * Returns the JSON pointer of the changed data.
+     *
+     * @return the JSON pointer of the changed data
+     */
+    String getJSONPointer();
+
+    /**
+     * Returns the range of the JSON pointer's node in the old version of
+     * the YAML document (see {@link NodesAPI.Node#getRange()}); or
+     * {@code null} for an {@link Kind#ADDED} change.
+     *
+     * @return the range of the JSON pointer's node in the old version of
+     * the YAML document; or {@code null} for an {@link Kind#ADDED} change
+     */
+    @Nullable
+    YAMLRange getRangeBefore();
+
+    /**
+     * Returns the range of the JSON pointer's node in the new version of
+     * the YAML document (see {@link NodesAPI.Node#getRange()}); or
+     * {@code null} for a {@link Kind#REMOVED} change.
+     *
+     * @return the range of the JSON pointer's node in the new version of
+     * the YAML document; or {@code null} for a {@link Kind#REMOVED} change
+     */
+    @Nullable
+    YAMLRange getRangeAfter();
+}
@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.FragmentsAPI.FragmentCursor;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link FragmentCursor} iterating over a list of fragments, used by the
+ * default implementation of {@link FragmentsAPI#fragmentCursor()}.
+ *
+ * <p>The pointer ids are the positions of the JSON pointers in the sorted
+ * array of all distinct JSON pointers, created on first use.</p>
+ */
+final class ListFragmentCursor implements FragmentCursor {
+    private final List<Fragment> fragments;
+    /**
+     * The distinct JSON pointers of the fragments, sorted, or {@code null}
+     * when not yet created.
+     */
+    @Nullable
+    private String[] sortedJsonPointers;
+    private int index = -1;
+
+    ListFragmentCursor(List<Fragment> fragments) {
+        this.fragments = fragments;
+    }
+
+    private Fragment current() {
+        if (index < 0 || index >= fragments.size()) {
+            throw new YAMLSourceMapException(
+                    "Cursor is not positioned on a fragment");
+        }
+        return fragments.get(index);
+    }
+
+    @Override
+    public boolean next() {
+        int n = fragments.size();
+        if (index < n) {
+            index++;
+        }
+        return index < n;
+    }
+
+    @Override
+    public boolean previous() {
+        if (index >= 0) {
+            index--;
+        }
+        return index >= 0;
+    }
+
+    @Override
+    public boolean seek(int offset) {
+        int n = fragments.size();
+        if (n == 0) {
+            index = -1;
+            return false;
+        }
+        // the last fragment starting at or before the offset (adjusted to
+        // the document's text) contains the offset
+        int adjustedOffset = Math.min(Math.max(0, offset),
+                fragments.get(n - 1).getEndOffset() - 1);
+        int low = 0;
+        int high = n - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (fragments.get(mid).getStartOffset() <= adjustedOffset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        index = low;
+        return true;
+    }
+
+    @Override
+    public int startOffset() {
+        return current().getStartOffset();
+    }
+
+    @Override
+    public int startLine() {
+        return current().getStartLine();
+    }
+
+    @Override
+    public int startColumn() {
+        return current().getStartColumn();
+    }
+
+    @Override
+    public int endOffset() {
+        return current().getEndOffset();
+    }
+
+    @Override
+    public int endLine() {
+        return current().getEndLine();
+    }
+
+    @Override
+    public int endColumn() {
+        return current().getEndColumn();
+    }
+
+    @Override
+    public Fragment.Kind kind() {
+        return current().getKind();
+    }
+
+    @Override
+    public int pointerId() {
+        String jsonPointer = current().getJSONPointer();
+        @Nullable
+        String[] pointers = sortedJsonPointers;
+        if (pointers == null) {
+            pointers = fragments.stream()
+                    .map(Fragment::getJSONPointer)
+                    .distinct()
+                    .sorted()
+                    .toArray(String[]::new);
+            sortedJsonPointers = pointers;
+        }
+        return Arrays.binarySearch(pointers, jsonPointer);
+    }
+
+    @Override
+    public String jsonPointer() {
+        return current().getJSONPointer();
+    }
+
+    @Override
+    public Fragment fragment() {
+        return current();
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * The NodesAPI provides the tree of the nodes (scalars, sequences, maps and
+ * aliases) of a YAML document, with their ranges in the YAML text.
+ *
+ * <p>Other than the fragments of the {@link FragmentsAPI}, that partition
+ * the text, the nodes reflect the structure of the document's data: every
+ * node knows its parent, its children and its siblings. This makes it easy
+ * to e.g. build an outline of a document or to implement a "go to parent"
+ * or "go to next sibling" feature, without scanning the document.</p>
+ *
+ * <p>The tree only contains the <em>values</em> of a document. Map keys
+ * are no nodes of their own, but available as the {@link Node#getKey()}
+ * of their value's node.</p>
+ */
+public interface NodesAPI {
+
+    /**
+     * A node in the tree of a YAML document's data.
+     */
+    interface Node {
+
+        /**
+         * The kind of a node.
+         */
+        enum Kind {
+            /**
+             * A scalar value, like an int, string, boolean etc.
+             */
+            SCALAR,
+
+            /**
+             * A sequence (/list).
+             */
+            SEQUENCE,
+
+            /**
+             * A map (/Hash Table).
+             */
+            MAP,
+
+            /**
+             * An alias/reference to an anchored node.
+             */
+            ALIAS
+        }
+
+        /**
+         * Returns the kind of this node.
+         *
+         * @return the kind of this node
+         */
+        Kind getKind();
+
+        /**
+         * Returns the key of this node in its parent, i.e. the key of the
+         * map entry or the index of the sequence item, as text; returns
+         * {@code ""} for the root node.
+         *
+         * @return the key of this node in its parent
+         */
+        String getKey();
+
+        /**
+         * Returns the JSON pointer of this node.
+         *
+         * @return the JSON pointer of this node
+         */
+        String getJSONPointer();
+
+        /**
+         * Returns the parent of this node; or {@code null} for the root node.
+         *
+         * @return the parent of this node; or {@code null} for the root node
+         */
+        @Nullable
+        Node getParent();
+
+        /**
+         * Returns the first child of this node; or {@code null} when the node
+         * has no children.
+         *
+         * @return the first child of this node; or {@code null} when the node
+         * has no children
+         */
+        @Nullable
+        Node getFirstChild();
+
+        /**
+         * Returns the next sibling of this node; or {@code null} when this
+         * is the last child of its parent, or the root node.
+         *
+         * @return the next sibling of this node; or {@code null} when this is
+         * the last child of its parent, or the root node
+         */
+        @Nullable
+        Node getNextSibling();
+
+        /**
+         * Returns the children of this node, in document order.
+         *
+         * @return the children of this node, in document order
+         */
+        default List<Node> getChildren() {
+            List<Node> result = new ArrayList<>();
+            for (@Nullable Node child = getFirstChild();
+                 child != null;
+                 child = child.getNextSibling()) {
+                result.add(child);
+            }
+            return result;
+        }
+
+        /**
+         * Returns the range of this node in the YAML text, including the
+         * key of a map entry.
+         *
+         * @return the range of this node in the YAML text, including the
+         * key of a map entry
+         */
+        YAMLRange getRange();
+
+        /**
+         * Returns the range of this node's value in the YAML text.
+         *
+         * <p>Other than {@link #getRange()} this does not include the key of
+         * a map entry. For a flow sequence or map the range includes the
+         * brackets, for a node with an anchor it includes the anchor.</p>
+         *
+         * @return the range of this node's value in the YAML text
+         */
+        YAMLRange getValueRange();
+
+        /**
+         * Returns a hash of the data of this node and its descendants.
+         *
+         * <p>The hash is calculated from the kinds and keys of the nodes,
+         * the tags and values of scalars and the hashes of the nodes
+         * aliases refer to, bottom-up like a Merkle tree. The tag of a
+         * scalar without an explicit tag is resolved from its value and
+         * style, as when loading the document. It does not depend on the
+         * formatting of the YAML text (e.g. indentation, comments) or the
+         * position of the node in the document.</p>
+         *
+         * <p>So a quoted scalar has the same hash as the plain scalar with
+         * the same value when both are strings (e.g. {@code "foo"} and
+         * {@code foo}), but not when the plain scalar is e.g. a number or a
+         * boolean ({@code "1"} and {@code 1}).</p>
+         *
+         * <p>So when a subtree's hash did not change between two versions
+         * of a document its data did not change either (with a very high
+         * probability) and results calculated for the subtree can be
+         * reused.</p>
+         *
+         * @return a hash of the data of this node and its descendants
+         */
+        long getSubtreeHash();
+    }
+
+    /**
+     * Returns the root node of the YAML document; or {@code null} when the
+     * document has no content.
+     *
+     * @return the root node of the YAML document; or {@code null} when the
+     * document has no content
+     * @throws YAMLSourceMapException when no node tree is available, i.e.
+     *                                the source map was not created from a
+     *                                YAML text (but e.g. read from a TSV
+     *                                text). The default implementation
+     *                                always throws this exception.
+     */
+    @Nullable
+    default Node rootNode() {
+        throw new YAMLSourceMapException("No node tree available");
+    }
+
+    /**
+     * Returns the first node (in document order) with the given
+     * {@code jsonPointer}; or {@code null} when no such node exists.
+     *
+     * <p>Only the nodes on the path to the result (and their siblings) are
+     * visited. The default implementation starts at {@link #rootNode()}.</p>
+     *
+     * @param jsonPointer a JSON pointer
+     * @return the first node with the given {@code jsonPointer}; or
+     * {@code null} when no such node exists
+     * @throws YAMLSourceMapException when no node tree is available (see
+     *                                {@link #rootNode()})
+     */
+    @Nullable
+    default Node nodeOfJsonPointer(String jsonPointer) {
+        @Nullable
+        Node node = rootNode();
+        while (node != null && !node.getJSONPointer().equals(jsonPointer)) {
+            // continue with the first child on the path to the jsonPointer
+            @Nullable
+            Node child = node.getFirstChild();
+            while (child != null) {
+                String childPointer = child.getJSONPointer();
+                if (jsonPointer.startsWith(childPointer)
+                        && (jsonPointer.length() == childPointer.length()
+                        || jsonPointer.charAt(childPointer.length()) == '/')) {
+                    break;
+                }
+                child = child.getNextSibling();
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the node the data at the given {@code jsonPointer} comes
+     * from, following aliases and merge keys ({@code <<}); or {@code null}
+     * when the document's data contains no such pointer.
+     *
+     * <p>Other than {@link #nodeOfJsonPointer(String)} this also finds the
+     * nodes of data that is only reachable through an alias or a merge key.
+     * E.g. for</p>
+     * <pre>
+     * base: &amp;base {port: 80}
+     * service:
+     *   &lt;&lt;: *base
+     * </pre>
+     * <p>{@code resolvedNodeOfJsonPointer("/service/port")} returns the node
+     * of {@code port: 80} in {@code base}. As in YAML, the entries of a map
+     * take precedence over merged entries, and earlier merged maps over
+     * later ones.</p>
+     *
+     * <p>The number of alias and merge key expansions of a single call is
+     * limited (see {@link YAMLSourceMapBuilder#maxAliasExpansions(int)}).</p>
+     *
+     * @param jsonPointer a JSON pointer into the document's data
+     * @return the node the data at the given {@code jsonPointer} comes
+     * from; or {@code null} when the data contains no such pointer
+     * @throws YAMLSourceMapException when no node tree is available (see
+     *                                {@link #rootNode()}) or when the
+     *                                resolution exceeds the limit of alias
+     *                                expansions. The default
+     *                                implementation always throws this
+     *                                exception, as aliases cannot be
+     *                                resolved through the {@link Node}s.
+     */
+    @Nullable
+    default Node resolvedNodeOfJsonPointer(String jsonPointer) {
+        throw new YAMLSourceMapException("No alias resolution available");
+    }
+
+    /**
+     * Returns the {@link Node#getSubtreeHash() subtree hash} of the first
+     * node (in document order) with the given {@code jsonPointer}; or an
+     * empty OptionalLong when no such node exists.
+     *
+     * <p>The hashes are calculated while parsing the document, so this is
+     * as fast as {@link #nodeOfJsonPointer(String)}.</p>
+     *
+     * @param jsonPointer a JSON pointer
+     * @return the subtree hash of the node with the given
+     * {@code jsonPointer}; or an empty OptionalLong when no such node
+     * exists
+     * @throws YAMLSourceMapException when no node tree is available (see
+     *                                {@link #rootNode()})
+     */
+    default OptionalLong subtreeHash(String jsonPointer) {
+        @Nullable
+        Node node = nodeOfJsonPointer(jsonPointer);
+        return node != null
+                ? OptionalLong.of(node.getSubtreeHash()) : OptionalLong.empty();
+    }
+}
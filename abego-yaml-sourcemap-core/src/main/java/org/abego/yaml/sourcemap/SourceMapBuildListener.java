@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap;
+
+/**
+ * Gets informed about the creation of a {@link YAMLSourceMap}, e.g. to
+ * collect metrics.
+ *
+ * <p>Install a listener with
+ * {@link YAMLSourceMapBuilder#buildListener(SourceMapBuildListener)}.
+ * When no listener is installed no statistics are collected.</p>
+ */
+@FunctionalInterface
+public interface SourceMapBuildListener {
+
+    /**
+     * Statistics about the creation of a {@link YAMLSourceMap}.
+     */
+    interface BuildStatistics {
+        /**
+         * Returns the time spent to produce the YAML parser events, in
+         * nanoseconds.
+         *
+         * <p>This includes the time to read the YAML document.</p>
+         *
+         * @return the time spent to produce the YAML parser events, in
+         * nanoseconds
+         */
+        long getEventProductionNanos();
+
+        /**
+         * Returns the time spent to construct the fragments from the YAML
+         * parser events, in nanoseconds.
+         *
+         * @return the time spent to construct the fragments from the YAML
+         * parser events, in nanoseconds
+         */
+        long getFragmentConstructionNanos();
+
+        /**
+         * Returns the number of YAML parser events processed.
+         *
+         * @return the number of YAML parser events processed
+         */
+        int getEventCount();
+
+        /**
+         * Returns the number of fragments created.
+         *
+         * @return the number of fragments created
+         */
+        int getFragmentsCreatedCount();
+
+        /**
+         * Returns the number of times a fragment was merged into the
+         * previous fragment (because both had the same kind and JSON
+         * pointer), rather than being created.
+         *
+         * @return the number of times a fragment was merged into the previous
+         * fragment
+         */
+        int getFragmentsMergedCount();
+
+        /**
+         * Returns the number of times the JSON pointer of an existing
+         * fragment was changed.
+         *
+         * <p>The JSON pointer of the fragments of a map entry is only known
+         * after the entry's key is parsed, so the fragments created before
+         * get their JSON pointer re-assigned.</p>
+         *
+         * @return the number of times the JSON pointer of an existing
+         * fragment was changed
+         */
+        int getJsonPointerReassignmentCount();
+
+        /**
+         * Returns the maximal nesting depth of the YAML document, i.e. the
+         * maximal number of steps of a JSON pointer.
+         *
+         * @return the maximal nesting depth of the YAML document
+         */
+        int getMaxDepth();
+
+        /**
+         * Returns the length of the YAML document.
+         *
+         * <p>As with fragment offsets the length is measured in Unicode code
+         * points.</p>
+         *
+         * @return the length of the YAML document
+         */
+        int getInputLength();
+    }
+
+    /**
+     * Called when a {@link YAMLSourceMap} was successfully created.
+     *
+     * @param statistics statistics about the creation of the source map
+     */
+    void sourceMapBuilt(BuildStatistics statistics);
+}
@@ -0,0 +1,52 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The data of a YAML document together with the document's
+ * {@link YAMLSourceMap}, as returned by {@link YAMLSourceMapAPI#load(java.io.Reader)}.
+ */
+public interface YAMLLoadResult {
+
+    /**
+     * Returns the data of the YAML document, i.e. a {@link java.util.Map},
+     * {@link java.util.List} or scalar (like a String, Integer, Boolean
+     * etc.), as constructed by SnakeYAML for the standard YAML tags;
+     * or {@code null} when the document has no content or its value is
+     * {@code null}.
+     *
+     * @return the data of the YAML document
+     */
+    @Nullable
+    Object getData();
+
+    /**
+     * Returns the {@link YAMLSourceMap} of the YAML document.
+     *
+     * @return the {@link YAMLSourceMap} of the YAML document
+     */
+    YAMLSourceMap getSourceMap();
+}
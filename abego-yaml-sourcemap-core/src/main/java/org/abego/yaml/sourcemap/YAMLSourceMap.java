@@ -24,13 +24,29 @@
 
 package org.abego.yaml.sourcemap;
 
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * A Source Map for YAML and JSON Documents.
  * <p>
  * See the package JavaDoc for more details.
+ * <p>
+ * The source maps created by {@link YAMLSourceMapAPI} are immutable and
+ * thread-safe, i.e. they can be shared between threads and queried
+ * concurrently without any locking. (This does not apply to the
+ * {@link FragmentCursor}s created by a source map.)
+ * <p>
+ * Most source maps only use memory on the Java heap and need not be
+ * closed. A source map storing its data outside the heap (see
+ * {@link YAMLSourceMapBuilder#offHeap(boolean)} and
+ * {@link YAMLSourceMapBuilder#spillFragments(java.io.File)}) should be
+ * closed once it is no longer used, to release that storage immediately,
+ * and not only when it is garbage collected.
  */
-public interface YAMLSourceMap extends FragmentsAPI {
+public interface YAMLSourceMap extends FragmentsAPI, NodesAPI, AutoCloseable {
 
     /**
      * Returns the JSON Pointer for the given offset.
@@ -52,6 +68,58 @@ public interface YAMLSourceMap extends FragmentsAPI {
      */
     String jsonPointerAtLocation(int line, int column);
 
+    /**
+     * Returns the JSON Pointers for the given offsets, i.e. item {@code i} of
+     * the result is the JSON Pointer for {@code offsets[i]}.
+     *
+     * <p>The result is the same as calling {@link #jsonPointerAtOffset(int)}
+     * for every offset, but typically faster for many offsets.</p>
+     *
+     * <p>The default implementation calls
+     * {@link #fragmentsAtOffsets(int[])}.</p>
+     *
+     * @param offsets offsets for the start of the YAML document, in any order
+     * @return the JSON Pointers for the given offsets
+     */
+    default String[] jsonPointersAtOffsets(int[] offsets) {
+        Fragment[] fragments = fragmentsAtOffsets(offsets);
+        String[] result = new String[fragments.length];
+        for (int i = 0; i < fragments.length; i++) {
+            result[i] = fragments[i].getJSONPointer();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the JSON Pointers for the given locations, i.e. item {@code i}
+     * of the result is the JSON Pointer for the location
+     * {@code lines[i]}:{@code columns[i]}.
+     *
+     * <p>The result is the same as calling
+     * {@link #jsonPointerAtLocation(int, int)} for every location, but
+     * typically faster for many locations.</p>
+     *
+     * <p>The default implementation calls
+     * {@link #fragmentsAtLocations(int[], int[])}.</p>
+     *
+     * @param lines   the line numbers of the locations, with 1 for the
+     *                first line
+     * @param columns the column numbers of the locations, with 1 for the
+     *                first column
+     * @return the JSON Pointers for the given locations
+     * @throws YAMLSourceMapException when a location is invalid or
+     *                                {@code lines} and {@code columns} have
+     *                                different lengths
+     */
+    default String[] jsonPointersAtLocations(int[] lines, int[] columns) {
+        Fragment[] fragments = fragmentsAtLocations(lines, columns);
+        String[] result = new String[fragments.length];
+        for (int i = 0; i < fragments.length; i++) {
+            result[i] = fragments[i].getJSONPointer();
+        }
+        return result;
+    }
+
     /**
      * Returns the range in the YAML/JSON document's text that is
      * related to the data value identified by the {@code jsonPointer}.
@@ -91,4 +159,140 @@ public interface YAMLSourceMap extends FragmentsAPI {
      */
     YAMLRange sourceRangeOfValueOfJsonPointer(String jsonPointer);
 
+    /**
+     * Returns the ranges in the YAML/JSON document's text that are the
+     * sources for the data values identified by the {@code jsonPointers},
+     * i.e. item {@code i} of the result is the range for the {@code i}-th
+     * JSON pointer of {@code jsonPointers}.
+     *
+     * <p>The result is the same as calling
+     * {@link #sourceRangeOfValueOfJsonPointer(String)} for every JSON pointer.
+     * However, all ranges are calculated in one pass over the fragments, so
+     * this is faster for many JSON pointers. For a few JSON pointers use
+     * {@link #sourceRangeOfValueOfJsonPointer(String)}.</p>
+     *
+     * <p>The default implementation calls
+     * {@link #sourceRangeOfValueOfJsonPointer(String)} for every JSON
+     * pointer.</p>
+     *
+     * @param jsonPointers JSON Pointers for data values created by this
+     *                     source map's YAML/JSON document
+     * @return the ranges in the YAML/JSON document's text that are the
+     * sources for the data values identified by the {@code jsonPointers}
+     */
+    default YAMLRange[] sourceRangesOfValuesOfJsonPointers(
+            Collection<String> jsonPointers) {
+        YAMLRange[] result = new YAMLRange[jsonPointers.size()];
+        int i = 0;
+        for (String jsonPointer : jsonPointers) {
+            result[i++] = sourceRangeOfValueOfJsonPointer(jsonPointer);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the range in the YAML document's text that defines the node
+     * the alias at the given {@code offset} refers to, i.e. the node with
+     * the alias' anchor; returns an empty range when there is no alias at
+     * the {@code offset} or its anchor is not defined.
+     *
+     * <p>The range includes the anchor (e.g. "&amp;base").</p>
+     *
+     * @param offset an offset for the start of the YAML document
+     * @return the range in the YAML document's text that defines the node
+     * the alias at the given {@code offset} refers to
+     * @throws YAMLSourceMapException when no anchors are available, i.e.
+     *                                the source map was not created from a
+     *                                YAML text (but e.g. read from a TSV
+     *                                text). The default implementation
+     *                                always throws this exception.
+     */
+    default YAMLRange definitionRangeOfAlias(int offset) {
+        throw new YAMLSourceMapException("No anchors available");
+    }
+
+    /**
+     * Returns the ranges of the aliases in the YAML document's text that
+     * use the anchor with the given {@code anchorName}, in document order.
+     *
+     * <p>The ranges cover the alias text (e.g. "*base").</p>
+     *
+     * @param anchorName the name of an anchor, without the "&amp;"
+     * @return the ranges of the aliases in the YAML document's text that
+     * use the anchor with the given {@code anchorName}
+     * @throws YAMLSourceMapException when no anchors are available (see
+     *                                {@link #definitionRangeOfAlias(int)}).
+     *                                The default implementation always
+     *                                throws this exception.
+     */
+    default List<YAMLRange> aliasesOfAnchor(String anchorName) {
+        throw new YAMLSourceMapException("No anchors available");
+    }
+
+    /**
+     * Returns the value of the scalar with the given {@code jsonPointer},
+     * or {@code null} when no scalar with that JSON pointer exists (e.g.
+     * because the pointer refers to a sequence, a map or an alias).
+     *
+     * <p>The value is the scalar's text after removing quotes, resolving
+     * escape sequences and folding lines, but without any type conversion,
+     * e.g. the scalar {@code "a\tb"} has the value "a&lt;TAB&gt;b" and the
+     * scalar {@code 007} the value "007".</p>
+     *
+     * <p>When multiple nodes have the same JSON pointer (e.g. with
+     * duplicate keys), the first one (in document order) is used.</p>
+     *
+     * @param jsonPointer a JSON pointer
+     * @return the value of the scalar with the given {@code jsonPointer},
+     * or {@code null} when no scalar with that JSON pointer exists
+     * @throws YAMLSourceMapException when the scalar values were not
+     *                                retained (see
+     *                                {@link YAMLSourceMapBuilder#retainScalarValues(boolean)}).
+     *                                The default implementation always
+     *                                throws this exception.
+     */
+    @Nullable
+    default String scalarValueOfJsonPointer(String jsonPointer) {
+        throw new YAMLSourceMapException("No scalar values available");
+    }
+
+    /**
+     * Returns the value of the scalar whose text contains the given
+     * {@code offset}, or {@code null} when no scalar value is at the
+     * {@code offset} (e.g. because a map key or a comment is at that
+     * offset).
+     *
+     * <p>For the value see {@link #scalarValueOfJsonPointer(String)}.</p>
+     *
+     * @param offset an offset for the start of the YAML document
+     * @return the value of the scalar whose text contains the given
+     * {@code offset}, or {@code null} when no scalar value is at the
+     * {@code offset}
+     * @throws YAMLSourceMapException when the scalar values were not
+     *                                retained (see
+     *                                {@link YAMLSourceMapBuilder#retainScalarValues(boolean)}).
+     *                                The default implementation always
+     *                                throws this exception.
+     */
+    @Nullable
+    default String scalarValueAtOffset(int offset) {
+        throw new YAMLSourceMapException("No scalar values available");
+    }
+
+    /**
+     * Releases the storage this source map holds outside the Java heap, if
+     * any.
+     *
+     * <p>After a source map holding such storage is closed, its queries
+     * throw a {@link YAMLSourceMapException}. Queries of other threads
+     * running while the source map is closed either complete or throw a
+     * {@link YAMLSourceMapException}; off-heap buffers are freed once the
+     * last of them is finished. Closing a source map again has no
+     * effect.</p>
+     *
+     * <p>The default implementation does nothing.</p>
+     */
+    @Override
+    default void close() {
+    }
 }
@@ -25,13 +25,22 @@
 package org.abego.yaml.sourcemap;
 
 import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.internal.InstrumentedYAMLSourceMapDefault;
+import org.abego.yaml.sourcemap.internal.NDJSONWriter;
+import org.abego.yaml.sourcemap.internal.ParserEventRecording;
+import org.abego.yaml.sourcemap.internal.SourceMapDiff;
+import org.abego.yaml.sourcemap.internal.TSVReader;
+import org.abego.yaml.sourcemap.internal.TSVWriter;
+import org.abego.yaml.sourcemap.internal.YAMLLoadResultDefault;
+import org.abego.yaml.sourcemap.internal.YAMLSourceMapBuilderDefault;
 import org.abego.yaml.sourcemap.internal.YAMLSourceMapDefault;
 
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
 /**
  * The entry class to the abego YAML SourceMap API.
@@ -41,9 +50,6 @@ import java.util.regex.Pattern;
  */
 public final class YAMLSourceMapAPI {
 
-    private static final Pattern PATTERN_FOR_TSV_ESCAPE = Pattern
-            .compile("([^\\n\\r\\t\\\\]+)|(\\n)|(\\r)|(\\t)|(\\\\)");
-
     YAMLSourceMapAPI() {
         throw new YAMLSourceMapException("Must not instantiate");
     }
@@ -73,6 +79,86 @@ public final class YAMLSourceMapAPI {
         return YAMLSourceMapDefault.of(yamlText);
     }
 
+    /**
+     * Loads the YAML document read from the {@code reader}, returning both
+     * the document's data and its {@link YAMLSourceMap}.
+     *
+     * <p>The result is the same as loading the data with SnakeYAML (using
+     * the standard YAML tags, i.e. without constructing arbitrary Java
+     * objects) and creating the source map with
+     * {@link #createYAMLSourceMap(Reader)}, but the YAML text is parsed only
+     * once.</p>
+     *
+     * <p>The data is constructed in a separate thread, from the parser
+     * events passed on while the source map is created. So the memory
+     * needed is about the one of creating the source map plus the one of
+     * loading the data with SnakeYAML.</p>
+     *
+     * @param reader the Reader to read the YAML document from
+     * @return the data and the {@link YAMLSourceMap} of the YAML document
+     * read from the reader
+     */
+    public static YAMLLoadResult load(Reader reader) {
+        return YAMLLoadResultDefault.load(reader);
+    }
+
+    /**
+     * Loads the YAML document defined by the {@code yamlText}, returning
+     * both the document's data and its {@link YAMLSourceMap}
+     * (see {@link #load(Reader)}).
+     *
+     * @param yamlText the text of the YAML document
+     * @return the data and the {@link YAMLSourceMap} of the YAML document in
+     * yamlText
+     */
+    public static YAMLLoadResult load(String yamlText) {
+        return load(new StringReader(yamlText));
+    }
+
+    /**
+     * Returns a new {@link YAMLSourceMapBuilder}, to create
+     * {@link YAMLSourceMap}s with options.
+     *
+     * <p>E.g. to get statistics about the creation of a source map:</p>
+     * <pre>
+     *    YAMLSourceMap srcMap = YAMLSourceMapAPI.yamlSourceMapBuilder()
+     *            .buildListener(statistics -&gt; ...)
+     *            .build(yamlText);
+     * </pre>
+     *
+     * @return a new {@link YAMLSourceMapBuilder}
+     */
+    public static YAMLSourceMapBuilder yamlSourceMapBuilder() {
+        return YAMLSourceMapBuilderDefault.createYAMLSourceMapBuilderDefault();
+    }
+
+    /**
+     * Returns an {@link InstrumentedYAMLSourceMap} for the
+     * {@code yamlSourceMap}, i.e. a source map answering all queries like
+     * {@code yamlSourceMap} and recording metrics about these queries.
+     *
+     * <p>E.g. to find the queries with the highest latencies:</p>
+     * <pre>
+     *    InstrumentedYAMLSourceMap srcMap =
+     *            YAMLSourceMapAPI.instrumentedYAMLSourceMap(
+     *                    YAMLSourceMapAPI.createYAMLSourceMap(yamlText));
+     *    ...
+     *    long p99 = srcMap.metricsSnapshot()
+     *            .getOperationMetrics(Operation.FRAGMENT_AT_OFFSET)
+     *            .getNanosAtPercentile(99);
+     * </pre>
+     *
+     * @param yamlSourceMap the {@link YAMLSourceMap} to record the metrics
+     *                      for
+     * @return an {@link InstrumentedYAMLSourceMap} for the
+     * {@code yamlSourceMap}
+     */
+    public static InstrumentedYAMLSourceMap instrumentedYAMLSourceMap(
+            YAMLSourceMap yamlSourceMap) {
+        return InstrumentedYAMLSourceMapDefault
+                .createInstrumentedYAMLSourceMapDefault(yamlSourceMap);
+    }
+
     /**
      * Writes the fragments of the {@code yamlSourceMap} to the {@code output},
      * as tab separated values (TSV).
@@ -83,7 +169,7 @@ public final class YAMLSourceMapAPI {
      * @param output        the Writer to write the output to
      */
     public static void writeTSV(YAMLSourceMap yamlSourceMap, Writer output) {
-        writeTSV(yamlSourceMap.allFragments(), output);
+        TSVWriter.writeTSV(yamlSourceMap.fragmentCursor(), output);
     }
 
     /**
@@ -92,59 +178,179 @@ public final class YAMLSourceMapAPI {
      *
      * <p>The output also includes a header line.</p>
      *
+     * <p>The {@code output} is closed when all fragments are written.</p>
+     *
      * @param fragments the {@link Fragment}s to write to the output
      * @param output    the Writer to write the output to
      */
     public static void writeTSV(Iterable<Fragment> fragments, Writer output) {
-        try (PrintWriter writer = new PrintWriter(output)) {
-            writer.println("" +
-                    "startOffset\tstartLine\tstartColumn\t" +
-                    "endOffset\tendLine\tendColumn\t" +
-                    "kind\tjsonPointer");
-            for (Fragment f : fragments) {
-                writer.print(f.getStartOffset());
-                writer.print('\t');
-                writer.print(f.getStartLine());
-                writer.print('\t');
-                writer.print(f.getStartColumn());
-                writer.print('\t');
-                writer.print(f.getEndOffset());
-                writer.print('\t');
-                writer.print(f.getEndLine());
-                writer.print('\t');
-                writer.print(f.getEndColumn());
-                writer.print('\t');
-                writer.print(f.getKind());
-                writer.print('\t');
-                writer.print(escapeForTSV(f.getJSONPointer()));
-                writer.println();
-            }
-        }
-    }
-
-    /**
-     * Returns the text with all necessary characters escaped so the result can
-     * be used as a value in a tab-separated value (TSV) text.
-     *
-     * @param text the text to escape
-     * @return the escaped text if the text must be escaped; text otherwise.
-     */
-    private static String escapeForTSV(String text) {
-        StringBuilder result = new StringBuilder();
-        Matcher m = PATTERN_FOR_TSV_ESCAPE.matcher(text);
-        while (m.find()) {
-            if (m.group(1) != null) {
-                result.append(m.group(1));
-            } else if (m.group(2) != null) {
-                result.append("\\n");
-            } else if (m.group(3) != null) {
-                result.append("\\r");
-            } else if (m.group(4) != null) {
-                result.append("\\t");
-            } else {
-                result.append("\\\\");
-            }
-        }
-        return result.toString();
+        TSVWriter.writeTSV(fragments, output);
+    }
+
+    /**
+     * Writes the fragments of the {@code yamlSourceMap} to the {@code output},
+     * as newline delimited JSON (NDJSON), i.e. one JSON object per line.
+     *
+     * <p>For details see {@link #writeNDJSON(Iterable, Writer)}.</p>
+     *
+     * @param yamlSourceMap the {@link YAMLSourceMap} to write to the output
+     * @param output        the Writer to write the output to
+     */
+    public static void writeNDJSON(YAMLSourceMap yamlSourceMap, Writer output) {
+        NDJSONWriter.writeFragments(yamlSourceMap.fragmentCursor(), output);
+    }
+
+    /**
+     * Writes the {@code fragments} to the {@code output}, as newline
+     * delimited JSON (NDJSON), i.e. one JSON object per line.
+     *
+     * <p>The JSON object of a fragment has the members {@code startOffset},
+     * {@code startLine}, {@code startColumn}, {@code endOffset},
+     * {@code endLine}, {@code endColumn}, {@code kind} and
+     * {@code jsonPointer}, e.g.:</p>
+     * <pre>
+     * {"startOffset":0,"startLine":1,"startColumn":1,"endOffset":2,"endLine":1,"endColumn":3,"kind":"SEQUENCE","jsonPointer":"/0"}
+     * </pre>
+     *
+     * <p>The {@code output} is closed when all fragments are written.</p>
+     *
+     * @param fragments the {@link Fragment}s to write to the output
+     * @param output    the Writer to write the output to
+     */
+    public static void writeNDJSON(Iterable<Fragment> fragments, Writer output) {
+        NDJSONWriter.writeFragments(fragments, output);
+    }
+
+    /**
+     * Writes the {@code fragments} to the {@code output} as UTF-8 encoded
+     * newline delimited JSON (NDJSON), GZIP compressed when {@code gzip} is
+     * true.
+     *
+     * <p>For details see {@link #writeNDJSON(Iterable, Writer)}.</p>
+     *
+     * @param fragments the {@link Fragment}s to write to the output
+     * @param output    the OutputStream to write the output to
+     * @param gzip      when true the output is GZIP compressed
+     */
+    public static void writeNDJSON(
+            Iterable<Fragment> fragments, OutputStream output, boolean gzip) {
+        writeNDJSON(fragments, NDJSONWriter.newUTF8Writer(output, gzip));
+    }
+
+    /**
+     * Writes the ranges of all JSON pointers of the {@code yamlSourceMap} to
+     * the {@code output}, as newline delimited JSON (NDJSON), i.e. one JSON
+     * object per JSON pointer and line.
+     *
+     * <p>The JSON object of a JSON pointer has the members
+     * {@code jsonPointer}, {@code range} and {@code valueRange}, with the
+     * ranges as returned by
+     * {@link YAMLSourceMap#sourceRangeOfJsonPointer(String)} and
+     * {@link YAMLSourceMap#sourceRangeOfValueOfJsonPointer(String)}, e.g.:</p>
+     * <pre>
+     * {"jsonPointer":"/a","range":{"startOffset":0,"endOffset":4},"valueRange":{"startOffset":3,"endOffset":4}}
+     * </pre>
+     *
+     * <p>The objects of a JSON pointer's children are written before the
+     * object of the JSON pointer itself.</p>
+     *
+     * <p>Every JSON pointer is written once, also when its fragments are
+     * not contiguous (e.g. for duplicate map keys).</p>
+     *
+     * <p>The ranges are calculated in two passes over the fragments, with
+     * memory proportional to the nesting depth of the YAML document and the
+     * number of entries of the maps and sequences enclosing the current
+     * fragment. For duplicate map keys additionally the ranges of all JSON
+     * pointers within the subtrees of these keys are kept until their map
+     * is complete, i.e. memory also grows with the size of the duplicated
+     * subtrees.</p>
+     *
+     * <p>The {@code output} is closed when all JSON pointers are written.</p>
+     *
+     * @param yamlSourceMap the {@link YAMLSourceMap} to write to the output
+     * @param output        the Writer to write the output to
+     */
+    public static void writePointerRanges(YAMLSourceMap yamlSourceMap, Writer output) {
+        NDJSONWriter.writePointerRanges(yamlSourceMap, output);
+    }
+
+    /**
+     * Writes the ranges of all JSON pointers of the {@code yamlSourceMap} to
+     * the {@code output} as UTF-8 encoded newline delimited JSON (NDJSON),
+     * GZIP compressed when {@code gzip} is true.
+     *
+     * <p>For details see {@link #writePointerRanges(YAMLSourceMap, Writer)}.</p>
+     *
+     * @param yamlSourceMap the {@link YAMLSourceMap} to write to the output
+     * @param output        the OutputStream to write the output to
+     * @param gzip          when true the output is GZIP compressed
+     */
+    public static void writePointerRanges(
+            YAMLSourceMap yamlSourceMap, OutputStream output, boolean gzip) {
+        writePointerRanges(yamlSourceMap,
+                NDJSONWriter.newUTF8Writer(output, gzip));
+    }
+
+    /**
+     * Returns the JSON pointers whose data was added, removed or changed
+     * between the {@code before} and the {@code after} version of a YAML
+     * document, with their ranges in both versions.
+     *
+     * <p>Subtrees with equal data (see {@link NodesAPI.Node#getSubtreeHash()})
+     * are skipped, so the time needed is proportional to the size of the
+     * change, not to the size of the documents. Map entries are matched by
+     * their keys, sequence items by their index. Only the innermost changed
+     * nodes are reported, not their ancestors, e.g. when the value of
+     * {@code /a/b} changed, {@code /a} is not reported.</p>
+     *
+     * @param before the source map of the old version of the document
+     * @param after  the source map of the new version of the document
+     * @return the changes between the {@code before} and the {@code after}
+     * version of a YAML document
+     * @throws YAMLSourceMapException when a source map has no node tree
+     *                                (see {@link NodesAPI#rootNode()})
+     */
+    public static List<JSONPointerChange> diff(
+            YAMLSourceMap before, YAMLSourceMap after) {
+        return SourceMapDiff.diff(before, after);
+    }
+
+    /**
+     * Writes the events the SnakeYAML parser produces for the YAML document
+     * read from the {@code yamlReader} to the {@code output}, in a compact
+     * binary format.
+     *
+     * <p>Use {@link YAMLSourceMapBuilder#buildFromParserEvents(InputStream)}
+     * to create the document's source map from the recorded events, e.g. to
+     * benchmark the creation of source maps separately from YAML parsing,
+     * or to reproduce a slow creation offline.</p>
+     *
+     * <p>The {@code output} is closed when all events are written.</p>
+     *
+     * @param yamlReader the Reader to read the YAML document from
+     * @param output     the OutputStream to write the recorded events to
+     */
+    public static void writeParserEvents(Reader yamlReader, OutputStream output) {
+        ParserEventRecording.writeParserEvents(yamlReader, output);
+    }
+
+    /**
+     * Returns a {@link YAMLSourceMap} with the fragments read from the
+     * {@code reader}, as tab separated values (TSV).
+     *
+     * <p>The TSV text must be in the format written by
+     * {@link #writeTSV(YAMLSourceMap, Writer)}, i.e. the source map returned
+     * is equivalent to the one written.</p>
+     *
+     * <p>The {@code reader} is not closed.</p>
+     *
+     * @param reader the Reader to read the TSV text from
+     * @return a {@link YAMLSourceMap} with the fragments read from the
+     * {@code reader}
+     * @throws YAMLSourceMapException when the text is not a valid TSV text
+     *                                of a source map's fragments
+     */
+    public static YAMLSourceMap readTSV(Reader reader) {
+        return YAMLSourceMapDefault.ofFragments(TSVReader.readFragments(reader));
     }
 }
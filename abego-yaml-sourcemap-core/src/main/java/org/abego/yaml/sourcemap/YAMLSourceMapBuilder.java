@@ -0,0 +1,188 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+
+/**
+ * Creates {@link YAMLSourceMap}s, with options.
+ *
+ * <p>Get a builder with {@link YAMLSourceMapAPI#yamlSourceMapBuilder()}.
+ * A builder may be used to create multiple source maps.</p>
+ */
+public interface YAMLSourceMapBuilder {
+
+    /**
+     * Sets the {@link SourceMapBuildListener} to inform about the creation
+     * of a source map.
+     *
+     * @param listener the {@link SourceMapBuildListener} to inform about
+     *                 the creation of a source map
+     * @return this builder
+     */
+    YAMLSourceMapBuilder buildListener(SourceMapBuildListener listener);
+
+    /**
+     * Sets the maximal number of alias and merge key expansions when
+     * resolving a single JSON pointer with
+     * {@link NodesAPI#resolvedNodeOfJsonPointer(String)} (default: 1000).
+     *
+     * <p>The limit protects against documents with many nested aliases
+     * ("alias bombs") or recursive merges.</p>
+     *
+     * @param maxAliasExpansions the maximal number of alias and merge key
+     *                           expansions, &gt;= 0
+     * @return this builder
+     * @throws YAMLSourceMapException when maxAliasExpansions is negative
+     */
+    YAMLSourceMapBuilder maxAliasExpansions(int maxAliasExpansions);
+
+    /**
+     * Sets if the values of the document's scalars are kept in the source
+     * map, to be queried with {@link YAMLSourceMap#scalarValueOfJsonPointer(String)}
+     * and {@link YAMLSourceMap#scalarValueAtOffset(int)} (default:
+     * {@code false}).
+     *
+     * <p>The values are stored compactly, sharing the storage of equal
+     * values, but still increase the memory used by the source map.</p>
+     *
+     * @param retainScalarValues {@code true} to keep the scalar values in
+     *                           the source map
+     * @return this builder
+     */
+    YAMLSourceMapBuilder retainScalarValues(boolean retainScalarValues);
+
+    /**
+     * Sets the source map to store its fragments in a temporary file in
+     * the {@code directory}, rather than in memory (default: in memory).
+     *
+     * <p>Use this for very large documents (e.g. gigabyte-sized data
+     * dumps) whose fragments do not fit into memory. The fragments are
+     * written to the file in segments while the document is parsed. For
+     * every segment only a small summary is kept in memory, to find the
+     * segments relevant for a query. The segments are read from the file
+     * when needed, with only the most recently used ones kept in memory.
+     * So the memory used by the source map grows only slowly with the size
+     * of the document.</p>
+     *
+     * <p>Queries answered from a single segment, like
+     * {@link YAMLSourceMap#fragmentAtOffset(int)}, are still fast. Queries
+     * scanning all fragments, like
+     * {@link YAMLSourceMap#allFragmentsMatching(java.util.function.Predicate)},
+     * read the whole file.</p>
+     *
+     * <p>A source map built this way has no node tree, i.e. the methods of
+     * the {@link NodesAPI} and the methods depending on the node tree throw
+     * a {@link YAMLSourceMapException}. Also
+     * {@link FragmentsAPI.FragmentCursor#pointerId()} creates an index of
+     * all JSON pointers in memory. Spilling fragments cannot be combined
+     * with {@link #retainScalarValues(boolean)}.</p>
+     *
+     * <p>Where the operating system allows it, the temporary file is
+     * deleted as soon as it is written and opened for reading, so its
+     * storage is released when the source map is closed (see
+     * {@link YAMLSourceMap#close()}) or garbage collected. Otherwise it is
+     * deleted when the virtual machine terminates.</p>
+     *
+     * @param directory the directory to create the temporary file in
+     * @return this builder
+     * @throws YAMLSourceMapException when {@code directory} is not an
+     *                                existing directory
+     */
+    YAMLSourceMapBuilder spillFragments(File directory);
+
+    /**
+     * Sets if the source map stores its fragments in direct (off-heap)
+     * buffers, rather than as objects on the Java heap (default:
+     * {@code false}).
+     *
+     * <p>The fragments are stored in columns (ends, kinds and JSON pointer
+     * ids), with every JSON pointer only stored once. This reduces the
+     * memory of the fragments, and the garbage collector no longer has to
+     * scan millions of fragment objects. This is useful e.g. for services
+     * keeping many source maps in memory. The fragments returned by the
+     * queries are created when needed.</p>
+     *
+     * <p>The source map answers all queries exactly like a source map with
+     * fragments on the heap. Close the source map when it is no longer
+     * used, to free its buffers immediately (see
+     * {@link YAMLSourceMap#close()}). This bounds the memory outside the
+     * heap, which the garbage collector does not take into account. The
+     * buffers of a source map not closed are freed once they are garbage
+     * collected.</p>
+     *
+     * <p>Storing fragments off-heap cannot be combined with
+     * {@link #spillFragments(File)}.</p>
+     *
+     * @param offHeap {@code true} to store the fragments in off-heap
+     *                buffers
+     * @return this builder
+     */
+    YAMLSourceMapBuilder offHeap(boolean offHeap);
+
+    /**
+     * Creates a {@link YAMLSourceMap} of the YAML document read from the
+     * {@code reader}.
+     *
+     * @param reader the Reader to read the YAML document to create a
+     *               {@link YAMLSourceMap} for
+     * @return the {@link YAMLSourceMap} for the YAML document read from the
+     * reader
+     */
+    YAMLSourceMap build(Reader reader);
+
+    /**
+     * Creates a {@link YAMLSourceMap} of the YAML document defined by the
+     * {@code yamlText}.
+     *
+     * @param yamlText the text of the YAML document to create a
+     *                 {@link YAMLSourceMap} for
+     * @return the {@link YAMLSourceMap} for the YAML document in yamlText
+     */
+    YAMLSourceMap build(String yamlText);
+
+    /**
+     * Creates a {@link YAMLSourceMap} from the SnakeYAML parser events
+     * recorded in {@code recordedEvents}, as written by
+     * {@link YAMLSourceMapAPI#writeParserEvents(Reader, OutputStream)}.
+     *
+     * <p>The source map is the same as the one built from the YAML text
+     * the events were recorded for. As the YAML text is not parsed again,
+     * this is useful to measure the creation of the source map without the
+     * time spent in the YAML parser, or to reproduce the creation of a
+     * source map without the original YAML text.</p>
+     *
+     * <p>The {@code recordedEvents} stream is not closed.</p>
+     *
+     * @param recordedEvents the InputStream to read the recorded events from
+     * @return the {@link YAMLSourceMap} for the recorded events
+     * @throws YAMLSourceMapException when the input is not a valid
+     *                                recording of parser events
+     */
+    YAMLSourceMap buildFromParserEvents(InputStream recordedEvents);
+}
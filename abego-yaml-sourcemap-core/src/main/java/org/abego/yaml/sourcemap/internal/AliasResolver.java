@@ -0,0 +1,175 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.NodesAPI.Node.Kind;
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves JSON pointers of a document's <em>data</em> to the nodes in the
+ * {@link NodeTree}, following aliases and merge keys ({@code <<}).
+ *
+ * <p>Data created through an alias or a merge key has no node of its own,
+ * e.g. with {@code service: *base} the pointer {@code /service/port} refers
+ * to the {@code port} entry of the node anchored as {@code base}.</p>
+ *
+ * <p>Every alias dereferenced and every merged map searched counts as an
+ * "expansion". The expansions of a single resolution are limited to
+ * {@code maxExpansions}, so documents with many nested aliases
+ * ("alias bombs") or recursive merges cannot make a resolution take
+ * excessive time. Resolved prefixes of pointers are memoized.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+final class AliasResolver {
+    private static final String MERGE_KEY = "<<";
+    /**
+     * The maximal number of memoized pointers, to bound the memory used by
+     * the memo.
+     */
+    private static final int MAX_MEMO_SIZE = 10_000;
+
+    private final NodeTree tree;
+    private final AnchorTable anchorTable;
+    private final int maxExpansions;
+    private final Map<String, Integer> memo = new ConcurrentHashMap<>();
+
+    AliasResolver(NodeTree tree, AnchorTable anchorTable, int maxExpansions) {
+        this.tree = tree;
+        this.anchorTable = anchorTable;
+        this.maxExpansions = maxExpansions;
+    }
+
+    /**
+     * Returns the node the data at {@code jsonPointer} comes from, or -1
+     * when the data contains no such pointer.
+     *
+     * @throws YAMLSourceMapException when the resolution needs more than
+     *                                {@code maxExpansions} expansions
+     */
+    int nodeOfJsonPointer(String jsonPointer) {
+        if (tree.size() == 0 || !(jsonPointer.isEmpty() || jsonPointer.startsWith("/"))) {
+            return -1;
+        }
+        // start with the longest memoized prefix
+        int node = 0;
+        int i = jsonPointer.length();
+        while (i > 0) {
+            Integer n = memo.get(jsonPointer.substring(0, i));
+            if (n != null) {
+                node = n;
+                break;
+            }
+            i = jsonPointer.lastIndexOf('/', i - 1);
+        }
+        if (i < 0) {
+            i = 0;
+        }
+
+        int[] expansions = {0};
+        while (node >= 0 && i < jsonPointer.length()) {
+            int end = jsonPointer.indexOf('/', i + 1);
+            if (end < 0) {
+                end = jsonPointer.length();
+            }
+            String key = NodeTree.unescapeJsonPointerStep(
+                    jsonPointer.substring(i + 1, end));
+            node = childWithKey(dereference(node, expansions, jsonPointer),
+                    key, expansions, jsonPointer);
+            i = end;
+            if (memo.size() < MAX_MEMO_SIZE) {
+                memo.put(jsonPointer.substring(0, i), node);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the anchored node the alias {@code node} refers to, or the
+     * {@code node} itself when it is no alias; returns -1 when the anchor
+     * is undefined or is not a node of the tree (e.g. an anchored key).
+     */
+    private int dereference(int node, int[] expansions, String jsonPointer) {
+        if (node < 0 || tree.kind(node) != Kind.ALIAS) {
+            return node;
+        }
+        countExpansion(expansions, jsonPointer);
+        int alias = anchorTable.aliasAtOffset(tree.valueStart(node));
+        int anchor = alias >= 0 ? anchorTable.anchorOfAlias(alias) : -1;
+        return anchor >= 0 ? anchorTable.anchorNode(anchor) : -1;
+    }
+
+    /**
+     * Returns the child of {@code node} with the given {@code key}, or -1.
+     *
+     * <p>For a map without such an entry the maps merged into the map are
+     * searched, in the order of the merge key's sequence.</p>
+     */
+    private int childWithKey(int node, String key, int[] expansions, String jsonPointer) {
+        if (node < 0) {
+            return -1;
+        }
+        int result = tree.childWithKey(node, key);
+        if (result >= 0 || tree.kind(node) != Kind.MAP) {
+            return result;
+        }
+        int merge = tree.childWithKey(node, MERGE_KEY);
+        if (merge < 0) {
+            return -1;
+        }
+        merge = dereference(merge, expansions, jsonPointer);
+        if (merge < 0) {
+            return -1;
+        }
+        if (tree.kind(merge) == Kind.MAP) {
+            countExpansion(expansions, jsonPointer);
+            return childWithKey(merge, key, expansions, jsonPointer);
+        }
+        if (tree.kind(merge) == Kind.SEQUENCE) {
+            for (int m = tree.firstChild(merge); m >= 0; m = tree.nextSibling(m)) {
+                int map = dereference(m, expansions, jsonPointer);
+                if (map >= 0 && tree.kind(map) == Kind.MAP) {
+                    countExpansion(expansions, jsonPointer);
+                    result = childWithKey(map, key, expansions, jsonPointer);
+                    if (result >= 0) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void countExpansion(int[] expansions, String jsonPointer) {
+        if (++expansions[0] > maxExpansions) {
+            throw new YAMLSourceMapException(String.format(
+                    "Too many alias expansions when resolving JSON pointer '%s' (limit: %d)",
+                    jsonPointer, maxExpansions));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.Integer.max;
+
+/**
+ * The anchors and aliases of a YAML document, with every alias resolved to
+ * the anchor it refers to.
+ *
+ * <p>Anchors and aliases are identified by their index, in document order.
+ * An anchor's range covers the anchored node (including the anchor), an
+ * alias' range covers the alias text (e.g. "*base").</p>
+ *
+ * <p>Instances are immutable. Use a {@link Builder} to create one.</p>
+ */
+final class AnchorTable {
+    private static final int[] NO_INDEXES = new int[0];
+
+    private final String[] anchorName;
+    private final int[] anchorStart;
+    private final int[] anchorEnd;
+    private final int[] anchorNode;
+    private final int[] aliasStart;
+    private final int[] aliasEnd;
+    private final int[] aliasAnchor;
+    private final Map<String, int[]> aliasesOfAnchorName;
+
+    private AnchorTable(Builder builder) {
+        int anchorCount = builder.anchorCount;
+        this.anchorName = Arrays.copyOf(builder.anchorName, anchorCount);
+        this.anchorStart = Arrays.copyOf(builder.anchorStart, anchorCount);
+        this.anchorEnd = Arrays.copyOf(builder.anchorEnd, anchorCount);
+        this.anchorNode = Arrays.copyOf(builder.anchorNode, anchorCount);
+        int aliasCount = builder.aliasCount;
+        this.aliasStart = Arrays.copyOf(builder.aliasStart, aliasCount);
+        this.aliasEnd = Arrays.copyOf(builder.aliasEnd, aliasCount);
+        this.aliasAnchor = Arrays.copyOf(builder.aliasAnchor, aliasCount);
+
+        // group the aliases by the name of their anchor
+        Map<String, int[]> counts = new HashMap<>();
+        for (int i = 0; i < aliasCount; i++) {
+            counts.computeIfAbsent(builder.aliasName[i], k -> new int[1])[0]++;
+        }
+        Map<String, int[]> aliases = new HashMap<>();
+        counts.forEach((k, v) -> aliases.put(k, new int[v[0]]));
+        for (int i = aliasCount - 1; i >= 0; i--) {
+            String name = builder.aliasName[i];
+            aliases.get(name)[--counts.get(name)[0]] = i;
+        }
+        this.aliasesOfAnchorName = aliases;
+    }
+
+    String anchorName(int anchor) {
+        return anchorName[anchor];
+    }
+
+    int anchorStart(int anchor) {
+        return anchorStart[anchor];
+    }
+
+    int anchorEnd(int anchor) {
+        return anchorEnd[anchor];
+    }
+
+    /**
+     * Returns the index of the anchored node in the {@link NodeTree}, or -1
+     * when the anchored node is not part of the tree (e.g. a map key).
+     */
+    int anchorNode(int anchor) {
+        return anchorNode[anchor];
+    }
+
+    int aliasStart(int alias) {
+        return aliasStart[alias];
+    }
+
+    int aliasEnd(int alias) {
+        return aliasEnd[alias];
+    }
+
+    /**
+     * Returns the anchor the {@code alias} refers to, or -1 when the anchor
+     * is not defined.
+     */
+    int anchorOfAlias(int alias) {
+        return aliasAnchor[alias];
+    }
+
+    /**
+     * Returns the alias containing the {@code offset}, or -1 when no alias
+     * contains the offset.
+     */
+    int aliasAtOffset(int offset) {
+        int i = Arrays.binarySearch(aliasStart, offset);
+        int alias = i >= 0 ? i : -i - 2;
+        return alias >= 0 && offset < aliasEnd[alias] ? alias : -1;
+    }
+
+    /**
+     * Returns the aliases using the anchor {@code name}, in ascending order.
+     *
+     * <p>The caller must not modify the returned array.</p>
+     */
+    int[] aliasesOfAnchorName(String name) {
+        return aliasesOfAnchorName.getOrDefault(name, NO_INDEXES);
+    }
+
+    /**
+     * Builds an {@link AnchorTable}, adding the anchors and aliases in
+     * document order.
+     *
+     * <p>An alias refers to the last anchor with its name defined before
+     * the alias, as YAML allows to redefine an anchor.</p>
+     */
+    static final class Builder {
+        private static final int INITIAL_CAPACITY = 8;
+
+        private int anchorCount;
+        private String[] anchorName = new String[INITIAL_CAPACITY];
+        private int[] anchorStart = new int[INITIAL_CAPACITY];
+        private int[] anchorEnd = new int[INITIAL_CAPACITY];
+        private int[] anchorNode = new int[INITIAL_CAPACITY];
+        private int aliasCount;
+        private String[] aliasName = new String[INITIAL_CAPACITY];
+        private int[] aliasStart = new int[INITIAL_CAPACITY];
+        private int[] aliasEnd = new int[INITIAL_CAPACITY];
+        private int[] aliasAnchor = new int[INITIAL_CAPACITY];
+        /**
+         * The last anchor defined with a given name.
+         */
+        private final Map<String, Integer> currentAnchorOfName = new HashMap<>();
+
+        /**
+         * Begins the definition of an anchor and returns its index.
+         *
+         * <p>The anchor is defined as soon as it begins, so aliases within
+         * the anchored node (recursive structures) refer to it, too.</p>
+         */
+        int beginAnchor(String name, int start, int node) {
+            if (anchorCount == anchorName.length) {
+                int capacity = anchorCount * 2;
+                anchorName = Arrays.copyOf(anchorName, capacity);
+                anchorStart = Arrays.copyOf(anchorStart, capacity);
+                anchorEnd = Arrays.copyOf(anchorEnd, capacity);
+                anchorNode = Arrays.copyOf(anchorNode, capacity);
+            }
+            int anchor = anchorCount++;
+            anchorName[anchor] = name;
+            anchorStart[anchor] = start;
+            anchorEnd[anchor] = start;
+            anchorNode[anchor] = node;
+            currentAnchorOfName.put(name, anchor);
+            return anchor;
+        }
+
+        void endAnchor(int anchor, int end) {
+            anchorEnd[anchor] = max(end, anchorStart[anchor]);
+        }
+
+        /**
+         * Adds an alias and returns the index of the anchor it refers to,
+         * or -1 when the anchor is not defined.
+         */
+        int addAlias(String name, int start, int end) {
+            if (aliasCount == aliasName.length) {
+                int capacity = aliasCount * 2;
+                aliasName = Arrays.copyOf(aliasName, capacity);
+                aliasStart = Arrays.copyOf(aliasStart, capacity);
+                aliasEnd = Arrays.copyOf(aliasEnd, capacity);
+                aliasAnchor = Arrays.copyOf(aliasAnchor, capacity);
+            }
+            int alias = aliasCount++;
+            aliasName[alias] = name;
+            aliasStart[alias] = start;
+            aliasEnd[alias] = end;
+            aliasAnchor[alias] = currentAnchorOfName.getOrDefault(name, -1);
+            return aliasAnchor[alias];
+        }
+
+        /**
+         * Returns the node with the {@code anchor}, or -1 when the anchor is
+         * not on a node of the node tree.
+         */
+        int anchorNode(int anchor) {
+            return anchorNode[anchor];
+        }
+
+        AnchorTable build() {
+            return new AnchorTable(this);
+        }
+    }
+}
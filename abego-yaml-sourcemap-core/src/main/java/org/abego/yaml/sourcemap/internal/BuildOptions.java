@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.SourceMapBuildListener;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.File;
+
+/**
+ * The options used when creating a {@link YAMLSourceMapDefault}, as set
+ * with a {@link org.abego.yaml.sourcemap.YAMLSourceMapBuilder}.
+ *
+ * <p>Instances are immutable.</p>
+ */
+final class BuildOptions {
+    /**
+     * The default of the maximal number of alias and merge key expansions
+     * when resolving a JSON pointer.
+     */
+    static final int DEFAULT_MAX_ALIAS_EXPANSIONS = 1000;
+
+    /**
+     * The options used when no options are given explicitly.
+     */
+    static final BuildOptions DEFAULT =
+            new BuildOptions(null, DEFAULT_MAX_ALIAS_EXPANSIONS, false, null, false);
+
+    @Nullable
+    private final SourceMapBuildListener buildListener;
+    private final int maxAliasExpansions;
+    private final boolean retainScalarValues;
+    @Nullable
+    private final File spillDirectory;
+    private final boolean offHeap;
+
+    BuildOptions(@Nullable SourceMapBuildListener buildListener,
+                 int maxAliasExpansions,
+                 boolean retainScalarValues,
+                 @Nullable File spillDirectory,
+                 boolean offHeap) {
+        this.buildListener = buildListener;
+        this.maxAliasExpansions = maxAliasExpansions;
+        this.retainScalarValues = retainScalarValues;
+        this.spillDirectory = spillDirectory;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Returns the {@link SourceMapBuildListener} to inform about the
+     * creation of a source map, or {@code null}.
+     */
+    @Nullable
+    SourceMapBuildListener buildListener() {
+        return buildListener;
+    }
+
+    /**
+     * Returns the maximal number of alias and merge key expansions when
+     * resolving a JSON pointer.
+     */
+    int maxAliasExpansions() {
+        return maxAliasExpansions;
+    }
+
+    /**
+     * Returns {@code true} when the values of the document's scalars are
+     * kept in the source map.
+     */
+    boolean retainScalarValues() {
+        return retainScalarValues;
+    }
+
+    /**
+     * Returns the directory to store the fragments in, or {@code null} when
+     * the fragments are kept in memory.
+     */
+    @Nullable
+    File spillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Returns {@code true} when the fragments are stored off-heap.
+     */
+    boolean offHeap() {
+        return offHeap;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.SourceMapBuildListener.BuildStatistics;
+
+/**
+ * Collects the {@link BuildStatistics} while a source map is created.
+ */
+final class BuildStatisticsCollector implements BuildStatistics {
+    private long eventProductionNanos;
+    private long fragmentConstructionNanos;
+    private int eventCount;
+    private int fragmentsCreatedCount;
+    private int fragmentsMergedCount;
+    private int jsonPointerReassignmentCount;
+    private int maxDepth;
+    private int inputLength;
+
+    @Override
+    public long getEventProductionNanos() {
+        return eventProductionNanos;
+    }
+
+    @Override
+    public long getFragmentConstructionNanos() {
+        return fragmentConstructionNanos;
+    }
+
+    @Override
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    @Override
+    public int getFragmentsCreatedCount() {
+        return fragmentsCreatedCount;
+    }
+
+    @Override
+    public int getFragmentsMergedCount() {
+        return fragmentsMergedCount;
+    }
+
+    @Override
+    public int getJsonPointerReassignmentCount() {
+        return jsonPointerReassignmentCount;
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public int getInputLength() {
+        return inputLength;
+    }
+
+    void addEventProductionNanos(long nanos) {
+        eventProductionNanos += nanos;
+    }
+
+    /**
+     * Sets the time spent to construct the fragments, given the
+     * {@code totalNanos} spent to create the source map.
+     */
+    void setTotalNanos(long totalNanos) {
+        fragmentConstructionNanos = totalNanos - eventProductionNanos;
+    }
+
+    void incrementEventCount() {
+        eventCount++;
+    }
+
+    void incrementFragmentsCreatedCount() {
+        fragmentsCreatedCount++;
+    }
+
+    void incrementFragmentsMergedCount() {
+        fragmentsMergedCount++;
+    }
+
+    void addJsonPointerReassignments(int count) {
+        jsonPointerReassignmentCount += count;
+    }
+
+    void updateMaxDepth(int depth) {
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    void setInputLength(int inputLength) {
+        this.inputLength = inputLength;
+    }
+
+    @Override
+    public String toString() {
+        return "BuildStatistics{" +
+                "eventProductionNanos=" + eventProductionNanos +
+                ", fragmentConstructionNanos=" + fragmentConstructionNanos +
+                ", eventCount=" + eventCount +
+                ", fragmentsCreatedCount=" + fragmentsCreatedCount +
+                ", fragmentsMergedCount=" + fragmentsMergedCount +
+                ", jsonPointerReassignmentCount=" + jsonPointerReassignmentCount +
+                ", maxDepth=" + maxDepth +
+                ", inputLength=" + inputLength +
+                '}';
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes text to a {@link Writer}, collecting the characters in a reusable
+ * char buffer first.
+ *
+ * <p>Other than a {@link java.io.BufferedWriter} or a
+ * {@link java.io.PrintWriter} this class is not synchronized and writes
+ * {@code int} values without creating intermediate {@link String}s. This
+ * makes it a good fit for writers producing large outputs, like the TSV
+ * export of big source maps.</p>
+ *
+ * <p>Call {@link #flush()} when done to write the remaining characters of the
+ * buffer to the output.</p>
+ */
+final class CharBufferWriter {
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * Enough room to hold any {@code int} value, including the sign.
+     */
+    private static final int MAX_INT_LENGTH = 11;
+
+    private final Writer output;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int count;
+
+    CharBufferWriter(Writer output) {
+        this.output = output;
+    }
+
+    void append(char c) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = c;
+    }
+
+    /**
+     * Appends the two characters {@code c1} and {@code c2}, e.g. for an
+     * escape sequence.
+     */
+    void append(char c1, char c2) throws IOException {
+        if (count + 2 > buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = c1;
+        buffer[count++] = c2;
+    }
+
+    void append(String text) throws IOException {
+        append(text, 0, text.length());
+    }
+
+    /**
+     * Appends the characters of {@code text} from {@code start} (inclusive)
+     * to {@code end} (exclusive).
+     */
+    void append(String text, int start, int end) throws IOException {
+        int length = end - start;
+        if (length > buffer.length) {
+            // too large for the buffer, write directly
+            flushBuffer();
+            output.write(text, start, length);
+            return;
+        }
+        if (count + length > buffer.length) {
+            flushBuffer();
+        }
+        text.getChars(start, end, buffer, count);
+        count += length;
+    }
+
+    /**
+     * Appends the decimal representation of {@code value}.
+     */
+    void append(int value) throws IOException {
+        if (count + MAX_INT_LENGTH > buffer.length) {
+            flushBuffer();
+        }
+        if (value == Integer.MIN_VALUE) {
+            append(String.valueOf(value));
+            return;
+        }
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        // compute the number of digits, then fill the digits from the end
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int i = count + digits;
+        count = i;
+        do {
+            buffer[--i] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+    }
+
+    /**
+     * Writes all characters of the buffer to the output and flushes the
+     * output.
+     */
+    void flush() throws IOException {
+        flushBuffer();
+        output.flush();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            output.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
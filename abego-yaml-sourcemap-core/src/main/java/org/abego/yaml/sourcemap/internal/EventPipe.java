@@ -0,0 +1,121 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+import org.eclipse.jdt.annotation.Nullable;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.parser.Parser;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Parser} producing the events another thread puts into the pipe,
+ * e.g. via a {@link TeeParser}.
+ *
+ * <p>The pipe holds at most {@code capacity} events: {@link #put(Event)}
+ * waits while the pipe is full. When the consumer is done (or failed) it
+ * {@link #close()}s the pipe, and further events are dropped.</p>
+ *
+ * <p>The pipe ends with the {@link Event.ID#StreamEnd} event.</p>
+ */
+final class EventPipe implements Parser {
+    private static final long CHECK_CLOSED_INTERVAL_MILLIS = 10;
+
+    private final BlockingQueue<Event> queue;
+    private volatile boolean closed;
+    /**
+     * The event taken from the {@link #queue} but not yet consumed, or
+     * {@code null}.
+     */
+    @Nullable
+    private Event next;
+    private boolean streamEnded;
+
+    EventPipe(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Puts the {@code event} into the pipe, waiting while the pipe is full.
+     *
+     * <p>Does nothing when the pipe is closed.</p>
+     */
+    void put(Event event) {
+        try {
+            while (!closed && !queue.offer(
+                    event, CHECK_CLOSED_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                // wait for the consumer
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new YAMLSourceMapException(e);
+        }
+    }
+
+    /**
+     * Closes the pipe, i.e. drops all events put into the pipe, now or later.
+     */
+    void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    @Override
+    public boolean checkEvent(Event.ID choice) {
+        @Nullable
+        Event event = peekEvent();
+        return event != null && event.is(choice);
+    }
+
+    @Override
+    @Nullable
+    public Event peekEvent() {
+        if (next == null && !streamEnded) {
+            try {
+                Event event = queue.take();
+                streamEnded = event.is(Event.ID.StreamEnd);
+                next = event;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new YAMLSourceMapException(e);
+            }
+        }
+        return next;
+    }
+
+    @Override
+    public Event getEvent() {
+        @Nullable
+        Event event = peekEvent();
+        if (event == null) {
+            throw new NoSuchElementException("No more events");
+        }
+        next = null;
+        return event;
+    }
+}
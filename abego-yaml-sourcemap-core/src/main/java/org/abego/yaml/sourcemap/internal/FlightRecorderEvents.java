@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Emits the JDK Flight Recorder (JFR) events of the source map, when JFR is
+ * available and the events are enabled in a recording.
+ *
+ * <p>This class does not refer to JFR types, so it also works on Java
+ * runtimes without JFR and compiles without JFR (e.g. with
+ * {@code --release 8}). The JFR types are only used by
+ * {@link JFREventSupport}, {@link SourceMapCreationEvent} and
+ * {@link SourceMapQueryEvent}. {@link JFREventSupport} is loaded
+ * reflectively, only when JFR is available.</p>
+ *
+ * <p>Use the methods in pairs, e.g.:</p>
+ * <pre>
+ *     &#64;Nullable
+ *     Object event = FlightRecorderEvents.beginQuery();
+ *     ...
+ *     FlightRecorderEvents.endQuery(event, ...);
+ * </pre>
+ */
+final class FlightRecorderEvents {
+    private static final String EVENT_SUPPORT_CLASS_NAME =
+            "org.abego.yaml.sourcemap.internal.JFREventSupport";
+    @Nullable
+    private static final EventSupport EVENT_SUPPORT = createEventSupport();
+
+    FlightRecorderEvents() {
+        throw new IllegalStateException("Must not instantiate");
+    }
+
+    /**
+     * Begins and ends the JFR events.
+     *
+     * <p>The {@code begin...} methods return {@code null} when the event is
+     * not enabled. The {@code end...} methods are only called with events
+     * returned by a {@code begin...} method.</p>
+     */
+    interface EventSupport {
+        @Nullable
+        Object beginCreation();
+
+        void endCreation(Object event, int inputLength, int fragmentCount);
+
+        @Nullable
+        Object beginQuery();
+
+        void endQuery(Object event,
+                      String operation, String jsonPointer, int fragmentsScanned);
+    }
+
+    /**
+     * Returns the {@link EventSupport} using JFR, or {@code null} when JFR
+     * is not available (at runtime or when compiling the library).
+     */
+    @Nullable
+    private static EventSupport createEventSupport() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (EventSupport) Class.forName(EVENT_SUPPORT_CLASS_NAME)
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    static boolean isAvailable() {
+        return EVENT_SUPPORT != null;
+    }
+
+    /**
+     * Returns a started creation event, or {@code null} when the event is
+     * not enabled.
+     */
+    @Nullable
+    static Object beginCreation() {
+        return EVENT_SUPPORT != null ? EVENT_SUPPORT.beginCreation() : null;
+    }
+
+    /**
+     * Ends the creation {@code event} (if not {@code null}) and commits it,
+     * when it passes the recording's settings.
+     */
+    static void endCreation(
+            @Nullable Object event, int inputLength, int fragmentCount) {
+        if (event != null && EVENT_SUPPORT != null) {
+            EVENT_SUPPORT.endCreation(event, inputLength, fragmentCount);
+        }
+    }
+
+    /**
+     * Returns a started query event, or {@code null} when the event is not
+     * enabled.
+     */
+    @Nullable
+    static Object beginQuery() {
+        return EVENT_SUPPORT != null ? EVENT_SUPPORT.beginQuery() : null;
+    }
+
+    /**
+     * Ends the query {@code event} (if not {@code null}) and commits it,
+     * when it passes the recording's settings (e.g. the threshold).
+     */
+    static void endQuery(@Nullable Object event,
+                         String operation, String jsonPointer,
+                         int fragmentsScanned) {
+        if (event != null && EVENT_SUPPORT != null) {
+            EVENT_SUPPORT.endQuery(
+                    event, operation, jsonPointer, fragmentsScanned);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+import org.abego.yaml.sourcemap.FragmentsAPI.FragmentCursor;
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The default implementation of {@link FragmentCursor}, iterating over the
+ * fragments of a {@link YAMLSourceMapDefault}.
+ */
+final class FragmentCursorDefault implements FragmentCursor {
+    private final List<? extends Fragment> fragments;
+    /**
+     * The {@link #fragments} when they are a {@link FragmentStore}, to read
+     * the fragments' columns without creating fragments; {@code null}
+     * otherwise.
+     */
+    @Nullable
+    private final FragmentStore fragmentStore;
+    /**
+     * Returns the index of the fragment at a given offset.
+     */
+    private final IntUnaryOperator indexOfFragmentAtOffset;
+    /**
+     * Returns the pointer id of the fragment with a given index.
+     */
+    private final IntUnaryOperator pointerIdOfFragment;
+
+    /**
+     * The index of the current fragment, -1 when the cursor is positioned
+     * before the first fragment, {@code fragments.size()} when it is
+     * positioned after the last fragment.
+     */
+    private int index = -1;
+    /**
+     * The JSON pointer of the fragment at {@link #jsonPointerIndex}, when
+     * read from the {@link #fragmentStore}; {@code null} otherwise.
+     */
+    @Nullable
+    private String jsonPointer;
+    private int jsonPointerIndex = -1;
+
+    private FragmentCursorDefault(List<? extends Fragment> fragments,
+                                  IntUnaryOperator indexOfFragmentAtOffset,
+                                  IntUnaryOperator pointerIdOfFragment) {
+        this.fragments = fragments;
+        this.fragmentStore = fragments instanceof FragmentStore
+                ? (FragmentStore) fragments : null;
+        this.indexOfFragmentAtOffset = indexOfFragmentAtOffset;
+        this.pointerIdOfFragment = pointerIdOfFragment;
+    }
+
+    static FragmentCursorDefault createFragmentCursorDefault(
+            YAMLSourceMapDefault sourceMap, List<? extends Fragment> fragments) {
+        return new FragmentCursorDefault(fragments,
+                sourceMap::indexOfFragmentAtOffset,
+                sourceMap::pointerIdOfFragment);
+    }
+
+    /**
+     * Returns the index of the current fragment.
+     */
+    private int currentIndex() {
+        if (index < 0 || index >= fragments.size()) {
+            throw new YAMLSourceMapException(
+                    "Cursor is not positioned on a fragment");
+        }
+        return index;
+    }
+
+    private Fragment current() {
+        return fragments.get(currentIndex());
+    }
+
+    @Override
+    public boolean next() {
+        int n = fragments.size();
+        if (index < n) {
+            index++;
+        }
+        return index < n;
+    }
+
+    @Override
+    public boolean previous() {
+        if (index >= 0) {
+            index--;
+        }
+        return index >= 0;
+    }
+
+    @Override
+    public boolean seek(int offset) {
+        if (fragments.isEmpty()) {
+            index = -1;
+            return false;
+        }
+        index = indexOfFragmentAtOffset.applyAsInt(offset);
+        return true;
+    }
+
+    @Override
+    public int startOffset() {
+        return fragmentStore != null
+                ? fragmentStore.startOffset(currentIndex())
+                : current().getStartOffset();
+    }
+
+    @Override
+    public int startLine() {
+        return fragmentStore != null
+                ? fragmentStore.startLine(currentIndex())
+                : current().getStartLine();
+    }
+
+    @Override
+    public int startColumn() {
+        return fragmentStore != null
+                ? fragmentStore.startColumn(currentIndex())
+                : current().getStartColumn();
+    }
+
+    @Override
+    public int endOffset() {
+        return fragmentStore != null
+                ? fragmentStore.endOffset(currentIndex())
+                : current().getEndOffset();
+    }
+
+    @Override
+    public int endLine() {
+        return fragmentStore != null
+                ? fragmentStore.endLine(currentIndex())
+                : current().getEndLine();
+    }
+
+    @Override
+    public int endColumn() {
+        return fragmentStore != null
+                ? fragmentStore.endColumn(currentIndex())
+                : current().getEndColumn();
+    }
+
+    @Override
+    public Kind kind() {
+        return fragmentStore != null
+                ? fragmentStore.kind(currentIndex())
+                : current().getKind();
+    }
+
+    @Override
+    public int pointerId() {
+        return pointerIdOfFragment.applyAsInt(currentIndex());
+    }
+
+    @Override
+    public String jsonPointer() {
+        if (fragmentStore == null) {
+            return current().getJSONPointer();
+        }
+        // decode the JSON pointer only once per position
+        int i = currentIndex();
+        @Nullable
+        String result = jsonPointer;
+        if (result == null || jsonPointerIndex != i) {
+            result = fragmentStore.jsonPointer(i);
+            jsonPointer = result;
+            jsonPointerIndex = i;
+        }
+        return result;
+    }
+
+    @Override
+    public Fragment fragment() {
+        return current();
+    }
+}
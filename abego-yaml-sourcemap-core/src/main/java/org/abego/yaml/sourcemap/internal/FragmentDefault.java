@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+
+/**
+ * An immutable implementation of {@link Fragment}, storing the start and end
+ * of the fragment as plain offsets, lines and columns.
+ *
+ * <p>Other than {@link YAMLFragment} this class does not depend on
+ * SnakeYaml, so it can be used for fragments not created by parsing a YAML
+ * document, e.g. when reading fragments from a TSV text. It is also used
+ * for the fragments of a parsed YAML document, once parsing is
+ * finished.</p>
+ */
+final class FragmentDefault implements Fragment {
+    private final int startOffset;
+    private final int startLine;
+    private final int startColumn;
+    private final int endOffset;
+    private final int endLine;
+    private final int endColumn;
+    private final Kind kind;
+    private final String jsonPointer;
+
+    private FragmentDefault(int startOffset, int startLine, int startColumn,
+                            int endOffset, int endLine, int endColumn,
+                            Kind kind, String jsonPointer) {
+        this.startOffset = startOffset;
+        this.startLine = startLine;
+        this.startColumn = startColumn;
+        this.endOffset = endOffset;
+        this.endLine = endLine;
+        this.endColumn = endColumn;
+        this.kind = kind;
+        this.jsonPointer = jsonPointer;
+    }
+
+    /**
+     * Returns a new {@link FragmentDefault}, with lines and columns given
+     * 1-based, i.e. as returned by the getters of {@link Fragment}.
+     */
+    static FragmentDefault createFragmentDefault(
+            int startOffset, int startLine, int startColumn,
+            int endOffset, int endLine, int endColumn,
+            Kind kind, String jsonPointer) {
+        return new FragmentDefault(startOffset, startLine, startColumn,
+                endOffset, endLine, endColumn, kind, jsonPointer);
+    }
+
+    @Override
+    public int getStartOffset() {
+        return startOffset;
+    }
+
+    @Override
+    public int getStartLine() {
+        return startLine;
+    }
+
+    @Override
+    public int getStartColumn() {
+        return startColumn;
+    }
+
+    @Override
+    public int getEndOffset() {
+        return endOffset;
+    }
+
+    @Override
+    public int getEndLine() {
+        return endLine;
+    }
+
+    @Override
+    public int getEndColumn() {
+        return endColumn;
+    }
+
+    @Override
+    public Kind getKind() {
+        return kind;
+    }
+
+    @Override
+    public String getJSONPointer() {
+        return jsonPointer;
+    }
+
+    @Override
+    public String toString() {
+        return "FragmentDefault{" +
+                "startOffset=" + startOffset +
+                ", startLine=" + startLine +
+                ", startColumn=" + startColumn +
+                ", endOffset=" + endOffset +
+                ", endLine=" + endLine +
+                ", endColumn=" + endColumn +
+                ", kind=" + kind +
+                ", jsonPointer=" + jsonPointer +
+                '}';
+    }
+}
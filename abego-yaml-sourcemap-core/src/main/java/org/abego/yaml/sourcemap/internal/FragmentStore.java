@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+
+import java.util.List;
+
+/**
+ * A list of fragments stored outside of individual heap objects, that
+ * provides the lookups of the fragments by JSON pointer and kind itself.
+ *
+ * <p>A {@link YAMLSourceMapDefault} with such fragments uses these lookups
+ * instead of creating its own indexes.</p>
+ */
+interface FragmentStore extends List<Fragment> {
+
+    /**
+     * Returns the start offset of the fragment at {@code index}, without
+     * creating the fragment.
+     */
+    int startOffset(int index);
+
+    /**
+     * Returns the end offset of the fragment at {@code index}, without
+     * creating the fragment.
+     */
+    int endOffset(int index);
+
+    /**
+     * Returns the start line of the fragment at {@code index}, without
+     * creating the fragment.
+     */
+    int startLine(int index);
+
+    /**
+     * Returns the start column of the fragment at {@code index}, without
+     * creating the fragment.
+     */
+    int startColumn(int index);
+
+    /**
+     * Returns the end line of the fragment at {@code index}, without
+     * creating the fragment.
+     */
+    int endLine(int index);
+
+    /**
+     * Returns the end column of the fragment at {@code index}, without
+     * creating the fragment.
+     */
+    int endColumn(int index);
+
+    /**
+     * Returns the kind of the fragment at {@code index}, without creating
+     * the fragment.
+     */
+    Kind kind(int index);
+
+    /**
+     * Returns the pointer id of the fragment at {@code index} (see
+     * {@link org.abego.yaml.sourcemap.FragmentsAPI.FragmentCursor#pointerId()}),
+     * without creating the fragment.
+     */
+    int pointerId(int index);
+
+    /**
+     * Returns the JSON pointer of the fragment at {@code index}, without
+     * creating the fragment.
+     */
+    String jsonPointer(int index);
+
+    /**
+     * Returns the indexes of the fragments with the given
+     * {@code jsonPointer}, in ascending order.
+     *
+     * <p>The caller must not modify the returned array.</p>
+     */
+    int[] fragmentIndexesOfJsonPointer(String jsonPointer);
+
+    /**
+     * Returns the indexes of the fragments of the children (and their
+     * children etc.) of the {@code jsonPointer}, in ascending order.
+     */
+    int[] fragmentIndexesOfDescendantsOf(String jsonPointer);
+
+    /**
+     * Returns the indexes of the fragments with any of the given
+     * {@code kinds}, in ascending order.
+     */
+    int[] fragmentIndexesOfKinds(Kind... kinds);
+
+    /**
+     * Releases the storage of the fragments. Afterwards accessing the
+     * fragments throws a
+     * {@link org.abego.yaml.sourcemap.YAMLSourceMapException}.
+     *
+     * <p>Releasing the storage again has no effect.</p>
+     */
+    void release();
+}
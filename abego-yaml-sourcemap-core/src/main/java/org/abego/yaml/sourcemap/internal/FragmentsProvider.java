@@ -25,19 +25,30 @@
 package org.abego.yaml.sourcemap.internal;
 
 import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+import org.abego.yaml.sourcemap.NodesAPI.Node;
+import org.abego.yaml.sourcemap.SourceMapBuildListener;
 import org.abego.yaml.sourcemap.YAMLSourceMapException;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.yaml.snakeyaml.error.Mark;
 import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
 import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.NodeEvent;
 import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
 import org.yaml.snakeyaml.parser.Parser;
 import org.yaml.snakeyaml.parser.ParserImpl;
 import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.resolver.Resolver;
 
+import java.io.File;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
 import static org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind.ALIAS_AS_MAP_VALUE;
@@ -45,6 +56,8 @@ import static org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind.ALIAS_AS_SEQUE
 import static org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind.MAP_VALUE;
 import static org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind.SCALAR_VALUE;
 import static org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind.SEQUENCE_ITEM;
+import static java.lang.Integer.max;
+import static java.lang.Integer.min;
 import static org.abego.yaml.sourcemap.internal.Utils.last;
 
 /**
@@ -55,6 +68,12 @@ import static org.abego.yaml.sourcemap.internal.Utils.last;
  */
 final class FragmentsProvider {
 
+    /**
+     * Resolves the tags of scalars without an explicit tag, for the hashes
+     * of the node tree.
+     */
+    private static final Resolver RESOLVER = new Resolver();
+
     /**
      * The list of the fragments of this source map.
      */
@@ -72,6 +91,13 @@ final class FragmentsProvider {
      * Use to build the JSON Pointers for the fragments.
      */
     private final JSONPointerBuilder jsonPointerBuilder = new JSONPointerBuilder();
+    /**
+     * Maps every JSON pointer created so far to itself, so fragments with
+     * the same JSON pointer share the String; or {@code null} when the
+     * fragments are spilled (and the map would grow with the document).
+     */
+    @Nullable
+    private final Map<String, String> jsonPointers;
     /**
      * A stack of fragment kinds.
      */
@@ -81,17 +107,80 @@ final class FragmentsProvider {
      * sequence item to create when composeNode is called.
      */
     private final Stack<Integer> sequenceIndexStack = new Stack<>();
+    /**
+     * Builds the tree of the document's nodes, or {@code null} when no node
+     * tree is built (as the fragments are spilled).
+     */
+    private final NodeTree.@Nullable Builder nodeTreeBuilder;
+    /**
+     * Writes the fragments to a file, or {@code null} when the fragments
+     * are kept in memory.
+     */
+    private final SpilledFragments.@Nullable Writer spillWriter;
+    /**
+     * {@code true} when the fragments are stored off-heap once parsing is
+     * finished.
+     */
+    private final boolean offHeap;
+    /**
+     * The number of fragments already passed to the {@link #spillWriter},
+     * and removed from {@link #fragments}.
+     */
+    private int spilledCount;
+    /**
+     * Builds the table of the document's anchors and aliases.
+     */
+    private final AnchorTable.Builder anchorTableBuilder = new AnchorTable.Builder();
+    /**
+     * Builds the values of the document's scalar nodes, or {@code null}
+     * when the values are not retained.
+     */
+    private final ScalarValues.@Nullable Builder scalarValuesBuilder;
+    /**
+     * Greater than 0 while parsing a map key, as the nodes of map keys are
+     * not part of the node tree.
+     */
+    private int mapKeyDepth;
+    /**
+     * The end offset of the last consumed event that covers some text.
+     */
+    private int lastContentEnd;
+    /**
+     * Collects the build statistics, or {@code null} when no statistics are
+     * requested.
+     */
+    @Nullable
+    private final BuildStatisticsCollector statistics;
 
     /**
-     * Creates a FragmentsProvider of the YAML document read
-     * from the {@code yamlTextReader}.
+     * Creates a FragmentsProvider of the YAML document whose events are
+     * produced by the {@code yamlParser}.
      */
-    private FragmentsProvider(Reader yamlTextReader) {
+    private FragmentsProvider(Parser yamlParser,
+                              @Nullable BuildStatisticsCollector statistics,
+                              BuildOptions options) {
+        this.statistics = statistics;
+        @Nullable
+        File spillDirectory = options.spillDirectory();
+        this.spillWriter = spillDirectory != null
+                ? new SpilledFragments.Writer(spillDirectory) : null;
+        this.nodeTreeBuilder =
+                spillDirectory == null ? new NodeTree.Builder() : null;
+        this.offHeap = options.offHeap();
+        this.jsonPointers = spillDirectory == null ? new HashMap<>() : null;
+        this.scalarValuesBuilder = options.retainScalarValues()
+                ? new ScalarValues.Builder() : null;
         fragments = new ArrayList<>();
-        parser = new ParserImpl(new StreamReader(yamlTextReader));
+        parser = statistics != null
+                ? new TimingParser(yamlParser, statistics) : yamlParser;
         streamStartMark = eventStartMark();
 
-        parseStream();
+        try {
+            parseStream();
+        } catch (RuntimeException | Error e) {
+            discardSpilledFragments();
+            throw e;
+        }
     }
 
     /**
@@ -99,7 +188,137 @@ final class FragmentsProvider {
      * fragments.
      */
     public static List<Fragment> readFragments(Reader reader) {
-        return ((new FragmentsProvider(reader)).fragments);
+        return parse(reader, null).frozenFragments();
+    }
+
+    /**
+     * Reads the YAML document from {@code reader} and returns the document's
+     * fragments, informing the {@code buildListener} (if not {@code null})
+     * about the statistics of the process.
+     */
+    public static List<Fragment> readFragments(
+            Reader reader, @Nullable SourceMapBuildListener buildListener) {
+        return parse(reader, buildListener).frozenFragments();
+    }
+
+    /**
+     * Reads the YAML document from {@code reader} and returns the
+     * FragmentsProvider holding the document's fragments and node tree,
+     * informing the {@code buildListener} (if not {@code null}) about the
+     * statistics of the process.
+     */
+    static FragmentsProvider parse(
+            Reader reader, @Nullable SourceMapBuildListener buildListener) {
+        return parse(new ParserImpl(new StreamReader(reader)),
+                new BuildOptions(buildListener,
+                        BuildOptions.DEFAULT_MAX_ALIAS_EXPANSIONS, false, null, false));
+    }
+
+    /**
+     * Reads the YAML document from the events produced by the
+     * {@code parser} and returns the FragmentsProvider holding the
+     * document's fragments and node tree, using the given {@code options}.
+     *
+     * <p>The build listener of the {@code options} (if any) is informed
+     * about the statistics of the process.</p>
+     *
+     * <p>The events up to the document's end are consumed from the
+     * {@code parser}, the stream end event is not.</p>
+     */
+    static FragmentsProvider parse(Parser parser, BuildOptions options) {
+        @Nullable
+        SourceMapBuildListener buildListener = options.buildListener();
+        if (buildListener == null) {
+            return new FragmentsProvider(parser, null, options);
+        }
+
+        BuildStatisticsCollector statistics = new BuildStatisticsCollector();
+        long start = System.nanoTime();
+        FragmentsProvider result =
+                new FragmentsProvider(parser, statistics, options);
+        statistics.setTotalNanos(System.nanoTime() - start);
+
+        try {
+            buildListener.sourceMapBuilt(statistics);
+        } catch (RuntimeException | Error e) {
+            result.discardSpilledFragments();
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Closes and deletes the file of the spilled fragments (if any), e.g.
+     * when parsing failed.
+     */
+    private void discardSpilledFragments() {
+        if (spillWriter != null) {
+            spillWriter.discard();
+        }
+    }
+
+    /**
+     * Returns the tree of the document's nodes, or {@code null} when no node
+     * tree was built.
+     */
+    @Nullable
+    NodeTree nodeTree() {
+        return nodeTreeBuilder != null ? nodeTreeBuilder.build() : null;
+    }
+
+    /**
+     * Returns the table of the document's anchors and aliases.
+     */
+    AnchorTable anchorTable() {
+        return anchorTableBuilder.build();
+    }
+
+    /**
+     * Returns the values of the document's scalar nodes, or {@code null}
+     * when the values were not retained.
+     */
+    @Nullable
+    ScalarValues scalarValues() {
+        return scalarValuesBuilder != null ? scalarValuesBuilder.build() : null;
+    }
+
+    /**
+     * Returns an unmodifiable list with immutable copies of the fragments.
+     *
+     * <p>While parsing the fragments are {@link YAMLFragment}s that are
+     * still modified (e.g. their end or JSON pointer). The copies are
+     * {@link FragmentDefault}s, with final fields only, so they can be
+     * shared between threads without synchronization.</p>
+     *
+     * <p>When the fragments are spilled the result is the
+     * {@link SpilledFragments} of all fragments, when they are stored
+     * off-heap the {@link OffHeapFragments}.</p>
+     */
+    List<Fragment> frozenFragments() {
+        if (spillWriter != null) {
+            try {
+                for (Fragment f : fragments) {
+                    spillWriter.add(f);
+                }
+                fragments.clear();
+                return spillWriter.finish();
+            } catch (RuntimeException | Error e) {
+                discardSpilledFragments();
+                throw e;
+            }
+        }
+        if (offHeap) {
+            return OffHeapFragments.createOffHeapFragments(fragments);
+        }
+
+        List<Fragment> result = new ArrayList<>(fragments.size());
+        for (Fragment f : fragments) {
+            result.add(FragmentDefault.createFragmentDefault(
+                    f.getStartOffset(), f.getStartLine(), f.getStartColumn(),
+                    f.getEndOffset(), f.getEndLine(), f.getEndColumn(),
+                    f.getKind(), f.getJSONPointer()));
+        }
+        return Collections.unmodifiableList(result);
     }
 
     // ========================================================================
@@ -120,6 +339,10 @@ final class FragmentsProvider {
         if (eventId() == Event.ID.DocumentStart) {
             throw new YAMLSourceMapException("Only one document supported");
         }
+
+        if (statistics != null) {
+            statistics.setInputLength(eventEndMark().getIndex());
+        }
     }
 
     private void parseDocument() {
@@ -128,13 +351,50 @@ final class FragmentsProvider {
         consumeEvent(Event.ID.DocumentStart);
 
         while (eventId() != Event.ID.DocumentEnd) {
-            parseNode();
+            parseValueNode("", eventStartMark().getIndex());
         }
 
         consumeEvent(Event.ID.DocumentEnd);
         addFragment(Kind.DOCUMENT_END);
     }
 
+    /**
+     * Parses the next YAML node as a value with the given {@code key} (the
+     * map key or sequence index) and adds it to the node tree.
+     *
+     * <p>{@code rangeStart} is the start of the node's range, including the
+     * map key.</p>
+     */
+    private void parseValueNode(String key, int rangeStart) {
+        if (mapKeyDepth > 0 || nodeTreeBuilder == null) {
+            parseNode();
+            return;
+        }
+
+        int valueStart = eventStartMark().getIndex();
+        nodeTreeBuilder.beginNode(
+                key, nodeKind(), min(rangeStart, valueStart), valueStart);
+        parseNode();
+        // (empty nodes, like a missing map value, have no content)
+        nodeTreeBuilder.endNode(max(lastContentEnd, valueStart));
+    }
+
+    /**
+     * Returns the kind of the node starting with the next event.
+     */
+    private Node.Kind nodeKind() {
+        switch (eventId()) {
+            case Alias:
+                return Node.Kind.ALIAS;
+            case Scalar:
+                return Node.Kind.SCALAR;
+            case SequenceStart:
+                return Node.Kind.SEQUENCE;
+            default:
+                return Node.Kind.MAP;
+        }
+    }
+
     /**
      * Parses the next YAML node and returns the value of the scalar or alias or
      * an empty String when a sequence or map was parsed.
@@ -145,10 +405,33 @@ final class FragmentsProvider {
         String result = "";
         if (checkEvent(Event.ID.Alias)) {
             addFragment(aliasKind());
-            result = "*" + ((AliasEvent) peekEvent()).getAnchor();
+            String anchor = ((AliasEvent) peekEvent()).getAnchor();
+            int aliasedAnchor = anchorTableBuilder.addAlias(anchor,
+                    eventStartMark().getIndex(), eventEndMark().getIndex());
+            if (mapKeyDepth == 0 && nodeTreeBuilder != null) {
+                nodeTreeBuilder.hashAlias(aliasedAnchor >= 0
+                        ? anchorTableBuilder.anchorNode(aliasedAnchor)
+                        : -1, anchor);
+            }
+            result = "*" + anchor;
             consumeEvent(Event.ID.Alias);
 
         } else {
+            @Nullable
+            String anchorName = ((NodeEvent) peekEvent()).getAnchor();
+            int anchor = -1;
+            if (anchorName != null) {
+                anchor = anchorTableBuilder.beginAnchor(anchorName,
+                        eventStartMark().getIndex(),
+                        mapKeyDepth > 0 || nodeTreeBuilder == null
+                                ? -1 : nodeTreeBuilder.openNode());
+            }
+
+            // the tag of a scalar is hashed by parseScalar, once resolved
+            if (mapKeyDepth == 0 && nodeTreeBuilder != null
+                    && !checkEvent(Event.ID.Scalar)) {
+                nodeTreeBuilder.hashText(eventTag());
+            }
             if (checkEvent(Event.ID.Scalar)) {
                 result = parseScalar();
             } else if (checkEvent(Event.ID.SequenceStart)) {
@@ -156,6 +439,10 @@ final class FragmentsProvider {
             } else {
                 parseMap();
             }
+
+            if (anchor >= 0) {
+                anchorTableBuilder.endAnchor(anchor, lastContentEnd);
+            }
         }
         return result;
     }
@@ -167,8 +454,16 @@ final class FragmentsProvider {
         Kind newFragmentKind = currentFragmentKind() == Kind.DOCUMENT_START
                 ? SCALAR_VALUE : currentFragmentKind();
         addFragment(newFragmentKind);
+        ScalarEvent event = (ScalarEvent) peekEvent();
         @NonNull
-        String value = ((ScalarEvent) peekEvent()).getValue();
+        String value = event.getValue();
+        if (mapKeyDepth == 0 && nodeTreeBuilder != null) {
+            nodeTreeBuilder.hashText(resolvedTag(event));
+            nodeTreeBuilder.hashText(value);
+            if (scalarValuesBuilder != null) {
+                scalarValuesBuilder.add(nodeTreeBuilder.openNode(), value);
+            }
+        }
         consumeEvent(Event.ID.Scalar);
         return value;
     }
@@ -185,8 +480,9 @@ final class FragmentsProvider {
         startSequenceIndexing();
         while (peekEvent().getEventId() != Event.ID.SequenceEnd) {
 
-            pushToJsonPointer(actSequenceIndex());
-            parseNode();
+            String index = actSequenceIndex();
+            pushToJsonPointer(index);
+            parseValueNode(index, eventStartMark().getIndex());
             popFromJsonPointer();
 
             incrementSequenceIndex();
@@ -209,9 +505,12 @@ final class FragmentsProvider {
             // Remember the index of the first fragment of this map entry so we
             // can later set the 'correct' JSON pointer for all fragments of
             // the entry once we know it (i.e. have read the key)
-            int indexOfFirstFragmentOfMap = fragments.size();
+            int indexOfFirstFragmentOfMap = spilledCount + fragments.size();
+            int keyStart = eventStartMark().getIndex();
             pushFragmentKind(Kind.MAP_KEY);
+            mapKeyDepth++;
             String key = parseNode();
+            mapKeyDepth--;
 
             pushToJsonPointer(key);
             // We now know the key and just updated the jsonPointer.
@@ -222,7 +521,7 @@ final class FragmentsProvider {
 
             // parse map entry value
             pushFragmentKind(MAP_VALUE);
-            parseNode();
+            parseValueNode(key, keyStart);
             popFragmentKind(); // the "mapValue" part is done.
 
             popFromJsonPointer(); // this entry's jsonPointer is processed
@@ -267,7 +566,31 @@ final class FragmentsProvider {
                     nextFragmentStartMark(), endMark, kind,
                     jsonPointer);
             fragments.add(fragment);
+            if (statistics != null) {
+                statistics.incrementFragmentsCreatedCount();
+            }
+            spillFragments();
+        }
+    }
+
+    /**
+     * Passes the fragments that will not change anymore to the
+     * {@link #spillWriter} (if any), once enough of them are collected.
+     *
+     * <p>The last fragment may still be extended, the fragments of a map
+     * key still get their JSON pointer, so these are kept.</p>
+     */
+    private void spillFragments() {
+        if (spillWriter == null || mapKeyDepth > 0
+                || fragments.size() <= SpilledFragments.SEGMENT_SIZE) {
+            return;
         }
+        int n = fragments.size() - 1;
+        for (int i = 0; i < n; i++) {
+            spillWriter.add(fragments.get(i));
+        }
+        fragments.subList(0, n).clear();
+        spilledCount += n;
     }
 
     /**
@@ -295,6 +618,9 @@ final class FragmentsProvider {
                 // We can merge, i.e. set the previous fragment's end to our
                 // new end.
                 prev.setEndMark(endMark);
+                if (statistics != null) {
+                    statistics.incrementFragmentsMergedCount();
+                }
                 return true;
             }
         }
@@ -374,7 +700,9 @@ final class FragmentsProvider {
      * Returns the current jsonPointer.
      */
     private String jsonPointer() {
-        return jsonPointerBuilder.toString();
+        String result = jsonPointerBuilder.toString();
+        return jsonPointers != null
+                ? jsonPointers.computeIfAbsent(result, p -> p) : result;
     }
 
     /**
@@ -382,6 +710,9 @@ final class FragmentsProvider {
      */
     private void pushToJsonPointer(String tag) {
         jsonPointerBuilder.push(tag);
+        if (statistics != null) {
+            statistics.updateMaxDepth(jsonPointerBuilder.size());
+        }
     }
 
     /**
@@ -396,8 +727,13 @@ final class FragmentsProvider {
      * to the end of the fragments list to the current jsonPointer.
      */
     private void setFragmentsJsonPointers(int startIndex) {
-        for (int i = startIndex; i < fragments.size(); i++) {
-            ((YAMLFragment) fragments.get(i)).setJSONPointer(jsonPointer());
+        String jsonPointer = jsonPointer();
+        for (int i = startIndex - spilledCount; i < fragments.size(); i++) {
+            ((YAMLFragment) fragments.get(i)).setJSONPointer(jsonPointer);
+        }
+        if (statistics != null) {
+            statistics.addJsonPointerReassignments(
+                    spilledCount + fragments.size() - startIndex);
         }
     }
 
@@ -495,7 +831,13 @@ final class FragmentsProvider {
         }
 
         // consume
-        parser.getEvent();
+        Event event = parser.getEvent();
+        if (event.getEndMark().getIndex() > event.getStartMark().getIndex()) {
+            lastContentEnd = event.getEndMark().getIndex();
+        }
+        if (statistics != null) {
+            statistics.incrementEventCount();
+        }
     }
 
     /**
@@ -505,6 +847,38 @@ final class FragmentsProvider {
         return peekEvent().getEventId();
     }
 
+    /**
+     * Returns the tag of the next event, a scalar or a collection start
+     * event; or {@code null} when the event has no tag.
+     */
+    @Nullable
+    private String eventTag() {
+        Event event = peekEvent();
+        return event instanceof ScalarEvent
+                ? ((ScalarEvent) event).getTag()
+                : ((CollectionStartEvent) event).getTag();
+    }
+
+    /**
+     * Returns the tag of the scalar of the {@code event}, resolved like
+     * SnakeYAML's {@code Composer} does when the scalar has no explicit
+     * tag.
+     *
+     * <p>So a quoted scalar and a plain scalar with the same value get the
+     * same tag when the plain scalar is a string (e.g. {@code "foo"} and
+     * {@code foo}), but not when it is e.g. a number ({@code "1"} and
+     * {@code 1}).</p>
+     */
+    private static String resolvedTag(ScalarEvent event) {
+        @Nullable
+        String tag = event.getTag();
+        if (tag == null || tag.equals("!")) {
+            return RESOLVER.resolve(NodeId.scalar, event.getValue(),
+                    event.getImplicit().canOmitTagInPlainScalar()).getValue();
+        }
+        return tag;
+    }
+
     /**
      * Returns the startMark of the next event.
      */
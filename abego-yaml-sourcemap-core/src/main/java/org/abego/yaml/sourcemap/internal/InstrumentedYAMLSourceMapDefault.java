@@ -0,0 +1,550 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.InstrumentedYAMLSourceMap;
+import org.abego.yaml.sourcemap.InstrumentedYAMLSourceMap.MetricsSnapshot;
+import org.abego.yaml.sourcemap.InstrumentedYAMLSourceMap.Operation;
+import org.abego.yaml.sourcemap.InstrumentedYAMLSourceMap.OperationMetrics;
+import org.abego.yaml.sourcemap.YAMLRange;
+import org.abego.yaml.sourcemap.YAMLSourceMap;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * The default implementation of {@link InstrumentedYAMLSourceMap}, recording
+ * the metrics of the calls to another {@link YAMLSourceMap}.
+ */
+public final class InstrumentedYAMLSourceMapDefault implements InstrumentedYAMLSourceMap {
+    private final YAMLSourceMap sourceMap;
+    private final Map<Operation, OperationRecorder> recorders =
+            new EnumMap<>(Operation.class);
+
+    private InstrumentedYAMLSourceMapDefault(YAMLSourceMap sourceMap) {
+        this.sourceMap = sourceMap;
+        ScannedFragments.enable();
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new OperationRecorder());
+        }
+    }
+
+    public static InstrumentedYAMLSourceMap createInstrumentedYAMLSourceMapDefault(
+            YAMLSourceMap sourceMap) {
+        return new InstrumentedYAMLSourceMapDefault(sourceMap);
+    }
+
+    /**
+     * Records the metrics of one call to an operation.
+     */
+    private static final class OperationRecorder {
+        private final LongAdder callCount = new LongAdder();
+        private final LongAdder fragmentCount = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        void record(long nanos, long fragments) {
+            callCount.increment();
+            fragmentCount.add(fragments);
+            totalNanos.add(nanos);
+            histogram.record(nanos);
+        }
+
+        void reset() {
+            callCount.reset();
+            fragmentCount.reset();
+            totalNanos.reset();
+            histogram.reset();
+        }
+
+        OperationMetrics snapshot() {
+            return new OperationMetricsDefault(callCount.sum(),
+                    fragmentCount.sum(), totalNanos.sum(),
+                    histogram.snapshot());
+        }
+    }
+
+    private static final class OperationMetricsDefault implements OperationMetrics {
+        private final long callCount;
+        private final long fragmentCount;
+        private final long totalNanos;
+        private final LatencyHistogram.Snapshot histogram;
+
+        private OperationMetricsDefault(
+                long callCount, long fragmentCount, long totalNanos,
+                LatencyHistogram.Snapshot histogram) {
+            this.callCount = callCount;
+            this.fragmentCount = fragmentCount;
+            this.totalNanos = totalNanos;
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCallCount() {
+            return callCount;
+        }
+
+        @Override
+        public long getFragmentCount() {
+            return fragmentCount;
+        }
+
+        @Override
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return histogram.getMaxValue();
+        }
+
+        @Override
+        public long getNanosAtPercentile(double percentile) {
+            return histogram.getValueAtPercentile(percentile);
+        }
+
+        @Override
+        public String toString() {
+            return "OperationMetrics{" +
+                    "callCount=" + callCount +
+                    ", fragmentCount=" + fragmentCount +
+                    ", totalNanos=" + totalNanos +
+                    ", p50Nanos=" + getNanosAtPercentile(50) +
+                    ", p99Nanos=" + getNanosAtPercentile(99) +
+                    ", maxNanos=" + getMaxNanos() +
+                    '}';
+        }
+    }
+
+    private static final class MetricsSnapshotDefault implements MetricsSnapshot {
+        private final Map<Operation, OperationMetrics> operationMetrics;
+
+        private MetricsSnapshotDefault(Map<Operation, OperationMetrics> operationMetrics) {
+            this.operationMetrics = operationMetrics;
+        }
+
+        @Override
+        public OperationMetrics getOperationMetrics(Operation operation) {
+            return operationMetrics.get(operation);
+        }
+
+        @Override
+        public String toString() {
+            return "MetricsSnapshot" + operationMetrics;
+        }
+    }
+
+    @Override
+    public MetricsSnapshot metricsSnapshot() {
+        Map<Operation, OperationMetrics> result = new EnumMap<>(Operation.class);
+        recorders.forEach((op, recorder) -> result.put(op, recorder.snapshot()));
+        return new MetricsSnapshotDefault(result);
+    }
+
+    @Override
+    public void resetMetrics() {
+        recorders.values().forEach(OperationRecorder::reset);
+    }
+
+    /**
+     * Records a call of the {@code operation} started at {@code startNanos},
+     * with the fragments scanned since the {@link ScannedFragments} had the
+     * count {@code scannedAtStart}.
+     */
+    private void record(Operation operation, long startNanos, long scannedAtStart) {
+        recorders.get(operation).record(System.nanoTime() - startNanos,
+                ScannedFragments.count() - scannedAtStart);
+    }
+
+    /**
+     * Records a call of the {@code operation} started at {@code startNanos}
+     * that tested {@code testedFragments} fragments with its predicate.
+     */
+    private void recordTested(Operation operation, long startNanos,
+                              long testedFragments) {
+        recorders.get(operation).record(System.nanoTime() - startNanos,
+                testedFragments);
+    }
+
+    // ========================================================================
+    // === YAMLSourceMap ======================================================
+    // ========================================================================
+
+    @Override
+    public int documentLength() {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.documentLength();
+        } finally {
+            record(Operation.DOCUMENT_LENGTH, start, scanned);
+        }
+    }
+
+    @Override
+    public List<Fragment> allFragments() {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.allFragments();
+        } finally {
+            record(Operation.ALL_FRAGMENTS, start, scanned);
+        }
+    }
+
+    @Override
+    public FragmentCursor fragmentCursor() {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.fragmentCursor();
+        } finally {
+            record(Operation.FRAGMENT_CURSOR, start, scanned);
+        }
+    }
+
+    @Override
+    public List<Fragment> allFragmentsMatching(Predicate<Fragment> test) {
+        long start = System.nanoTime();
+        long[] testCount = new long[1];
+        try {
+            return sourceMap.allFragmentsMatching(f -> {
+                testCount[0]++;
+                return test.test(f);
+            });
+        } finally {
+            recordTested(Operation.ALL_FRAGMENTS_MATCHING, start, testCount[0]);
+        }
+    }
+
+    @Override
+    public List<Fragment> fragmentsOfKind(Fragment.Kind... kinds) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.fragmentsOfKind(kinds);
+        } finally {
+            record(Operation.FRAGMENTS_OF_KIND, start, scanned);
+        }
+    }
+
+    @Override
+    @Nullable
+    public Fragment findFirstFragmentMatching(Predicate<Fragment> test) {
+        long start = System.nanoTime();
+        long[] testCount = new long[1];
+        try {
+            return sourceMap.findFirstFragmentMatching(f -> {
+                testCount[0]++;
+                return test.test(f);
+            });
+        } finally {
+            recordTested(Operation.FIND_FIRST_FRAGMENT_MATCHING, start, testCount[0]);
+        }
+    }
+
+    @Override
+    public Fragment fragmentAtOffset(int offset) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.fragmentAtOffset(offset);
+        } finally {
+            record(Operation.FRAGMENT_AT_OFFSET, start, scanned);
+        }
+    }
+
+    @Override
+    public Fragment fragmentAtLocation(int line, int column) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.fragmentAtLocation(line, column);
+        } finally {
+            record(Operation.FRAGMENT_AT_LOCATION, start, scanned);
+        }
+    }
+
+    @Override
+    public Fragment[] fragmentsAtOffsets(int[] offsets) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.fragmentsAtOffsets(offsets);
+        } finally {
+            record(Operation.FRAGMENTS_AT_OFFSETS, start, scanned);
+        }
+    }
+
+    @Override
+    public Fragment[] fragmentsAtLocations(int[] lines, int[] columns) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.fragmentsAtLocations(lines, columns);
+        } finally {
+            record(Operation.FRAGMENTS_AT_LOCATIONS, start, scanned);
+        }
+    }
+
+    @Override
+    public List<Fragment> fragmentsInRange(int startOffset, int endOffset) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.fragmentsInRange(startOffset, endOffset);
+        } finally {
+            record(Operation.FRAGMENTS_IN_RANGE, start, scanned);
+        }
+    }
+
+    @Override
+    public List<Fragment> fragmentsInLines(int firstLine, int lastLine) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.fragmentsInLines(firstLine, lastLine);
+        } finally {
+            record(Operation.FRAGMENTS_IN_LINES, start, scanned);
+        }
+    }
+
+    @Override
+    public List<Fragment> allFragmentsOfJsonPointer(String jsonPointer) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.allFragmentsOfJsonPointer(jsonPointer);
+        } finally {
+            record(Operation.ALL_FRAGMENTS_OF_JSON_POINTER, start, scanned);
+        }
+    }
+
+    @Override
+    public List<Fragment> allFragmentsOfChildrenOfJsonPointer(String jsonPointer) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.allFragmentsOfChildrenOfJsonPointer(jsonPointer);
+        } finally {
+            record(Operation.ALL_FRAGMENTS_OF_CHILDREN_OF_JSON_POINTER, start, scanned);
+        }
+    }
+
+    @Override
+    @Nullable
+    public Fragment valueFragmentOfJsonPointer(String jsonPointer) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.valueFragmentOfJsonPointer(jsonPointer);
+        } finally {
+            record(Operation.VALUE_FRAGMENT_OF_JSON_POINTER, start, scanned);
+        }
+    }
+
+    @Override
+    public String jsonPointerAtOffset(int offset) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.jsonPointerAtOffset(offset);
+        } finally {
+            record(Operation.JSON_POINTER_AT_OFFSET, start, scanned);
+        }
+    }
+
+    @Override
+    public String jsonPointerAtLocation(int line, int column) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.jsonPointerAtLocation(line, column);
+        } finally {
+            record(Operation.JSON_POINTER_AT_LOCATION, start, scanned);
+        }
+    }
+
+    @Override
+    public String[] jsonPointersAtOffsets(int[] offsets) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.jsonPointersAtOffsets(offsets);
+        } finally {
+            record(Operation.JSON_POINTERS_AT_OFFSETS, start, scanned);
+        }
+    }
+
+    @Override
+    public String[] jsonPointersAtLocations(int[] lines, int[] columns) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.jsonPointersAtLocations(lines, columns);
+        } finally {
+            record(Operation.JSON_POINTERS_AT_LOCATIONS, start, scanned);
+        }
+    }
+
+    @Override
+    public YAMLRange sourceRangeOfJsonPointer(String jsonPointer) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.sourceRangeOfJsonPointer(jsonPointer);
+        } finally {
+            record(Operation.SOURCE_RANGE_OF_JSON_POINTER, start, scanned);
+        }
+    }
+
+    @Override
+    public YAMLRange sourceRangeOfValueOfJsonPointer(String jsonPointer) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.sourceRangeOfValueOfJsonPointer(jsonPointer);
+        } finally {
+            record(Operation.SOURCE_RANGE_OF_VALUE_OF_JSON_POINTER, start, scanned);
+        }
+    }
+
+    @Override
+    public YAMLRange[] sourceRangesOfValuesOfJsonPointers(
+            Collection<String> jsonPointers) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.sourceRangesOfValuesOfJsonPointers(jsonPointers);
+        } finally {
+            record(Operation.SOURCE_RANGES_OF_VALUES_OF_JSON_POINTERS, start, scanned);
+        }
+    }
+
+    @Override
+    @Nullable
+    public Node rootNode() {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.rootNode();
+        } finally {
+            record(Operation.ROOT_NODE, start, scanned);
+        }
+    }
+
+    @Override
+    @Nullable
+    public Node nodeOfJsonPointer(String jsonPointer) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.nodeOfJsonPointer(jsonPointer);
+        } finally {
+            record(Operation.NODE_OF_JSON_POINTER, start, scanned);
+        }
+    }
+
+    @Override
+    @Nullable
+    public Node resolvedNodeOfJsonPointer(String jsonPointer) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.resolvedNodeOfJsonPointer(jsonPointer);
+        } finally {
+            record(Operation.RESOLVED_NODE_OF_JSON_POINTER, start, scanned);
+        }
+    }
+
+    @Override
+    public YAMLRange definitionRangeOfAlias(int offset) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.definitionRangeOfAlias(offset);
+        } finally {
+            record(Operation.DEFINITION_RANGE_OF_ALIAS, start, scanned);
+        }
+    }
+
+    @Override
+    public List<YAMLRange> aliasesOfAnchor(String anchorName) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.aliasesOfAnchor(anchorName);
+        } finally {
+            record(Operation.ALIASES_OF_ANCHOR, start, scanned);
+        }
+    }
+
+    @Override
+    @Nullable
+    public String scalarValueOfJsonPointer(String jsonPointer) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.scalarValueOfJsonPointer(jsonPointer);
+        } finally {
+            record(Operation.SCALAR_VALUE_OF_JSON_POINTER, start, scanned);
+        }
+    }
+
+    @Override
+    @Nullable
+    public String scalarValueAtOffset(int offset) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.scalarValueAtOffset(offset);
+        } finally {
+            record(Operation.SCALAR_VALUE_AT_OFFSET, start, scanned);
+        }
+    }
+
+    @Override
+    public OptionalLong subtreeHash(String jsonPointer) {
+        long start = System.nanoTime();
+        long scanned = ScannedFragments.count();
+        try {
+            return sourceMap.subtreeHash(jsonPointer);
+        } finally {
+            record(Operation.SUBTREE_HASH, start, scanned);
+        }
+    }
+
+    @Override
+    public void close() {
+        sourceMap.close();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The {@link FlightRecorderEvents.EventSupport} using the JFR events
+ * {@link SourceMapCreationEvent} and {@link SourceMapQueryEvent}.
+ *
+ * <p>Only instantiated (reflectively) by {@link FlightRecorderEvents}, when
+ * JFR is available. Builds without JFR exclude this class and the event
+ * classes (see the {@code no-jfr} profile of the pom).</p>
+ */
+final class JFREventSupport implements FlightRecorderEvents.EventSupport {
+
+    @Override
+    @Nullable
+    public Object beginCreation() {
+        return SourceMapCreationEvent.beginIfEnabled();
+    }
+
+    @Override
+    public void endCreation(Object event, int inputLength, int fragmentCount) {
+        SourceMapCreationEvent.end(event, inputLength, fragmentCount);
+    }
+
+    @Override
+    @Nullable
+    public Object beginQuery() {
+        return SourceMapQueryEvent.beginIfEnabled();
+    }
+
+    @Override
+    public void endQuery(Object event,
+                         String operation, String jsonPointer, int fragmentsScanned) {
+        SourceMapQueryEvent.end(event, operation, jsonPointer, fragmentsScanned);
+    }
+}
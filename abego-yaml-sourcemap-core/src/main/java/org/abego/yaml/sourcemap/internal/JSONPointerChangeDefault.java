@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.JSONPointerChange;
+import org.abego.yaml.sourcemap.YAMLRange;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The default implementation of {@link JSONPointerChange}.
+ */
+final class JSONPointerChangeDefault implements JSONPointerChange {
+    private final Kind kind;
+    private final String jsonPointer;
+    @Nullable
+    private final YAMLRange rangeBefore;
+    @Nullable
+    private final YAMLRange rangeAfter;
+
+    private JSONPointerChangeDefault(Kind kind,
+                                     String jsonPointer,
+                                     @Nullable YAMLRange rangeBefore,
+                                     @Nullable YAMLRange rangeAfter) {
+        this.kind = kind;
+        this.jsonPointer = jsonPointer;
+        this.rangeBefore = rangeBefore;
+        this.rangeAfter = rangeAfter;
+    }
+
+    static JSONPointerChange createJSONPointerChangeDefault(
+            Kind kind,
+            String jsonPointer,
+            @Nullable YAMLRange rangeBefore,
+            @Nullable YAMLRange rangeAfter) {
+        return new JSONPointerChangeDefault(
+                kind, jsonPointer, rangeBefore, rangeAfter);
+    }
+
+    @Override
+    public Kind getKind() {
+        return kind;
+    }
+
+    @Override
+    public String getJSONPointer() {
+        return jsonPointer;
+    }
+
+    @Override
+    @Nullable
+    public YAMLRange getRangeBefore() {
+        return rangeBefore;
+    }
+
+    @Override
+    @Nullable
+    public YAMLRange getRangeAfter() {
+        return rangeAfter;
+    }
+
+    @Override
+    public String toString() {
+        return "JSONPointerChangeDefault{" +
+                "kind=" + kind +
+                ", jsonPointer='" + jsonPointer + '\'' +
+                ", rangeBefore=" + rangeBefore +
+                ", rangeAfter=" + rangeAfter +
+                '}';
+    }
+}
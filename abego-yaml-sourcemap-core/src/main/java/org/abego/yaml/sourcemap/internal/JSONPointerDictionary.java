@@ -0,0 +1,391 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+import static java.lang.Integer.min;
+
+/**
+ * A compact, sorted set of JSON pointers, identifying every JSON pointer by
+ * an id.
+ *
+ * <p>The ids are the indexes of the JSON pointers in sorted order, so
+ * comparing ids compares the JSON pointers. As all JSON pointers starting
+ * with a prefix are adjacent in sorted order the descendants of a JSON
+ * pointer have an interval of ids (see {@link #firstDescendantId(String)}
+ * and {@link #endOfDescendantIds(String)}).</p>
+ *
+ * <p>The JSON pointers are stored "front-coded" in blocks of
+ * {@link #BLOCK_SIZE} pointers: every pointer but the first of a block
+ * only stores the characters following the prefix it shares with its
+ * predecessor. As the JSON pointers of a document typically share long
+ * prefixes (e.g. {@code /spec/template/spec/containers/0/...}) this needs
+ * a fraction of the memory of individual Strings. A lookup decodes one
+ * block only, after a binary search of the blocks, and compares the
+ * stored characters directly, without creating objects.</p>
+ *
+ * <p>Also the parent relationship of the JSON pointers is stored, by id:
+ * the parent of a JSON pointer is its nearest ancestor in the
+ * dictionary.</p>
+ *
+ * <p>Instances are immutable.</p>
+ */
+final class JSONPointerDictionary {
+    static final int BLOCK_SIZE = 16;
+
+    /**
+     * A buffer to decode JSON pointers into, per thread, shared by all
+     * dictionaries.
+     */
+    private static final ThreadLocal<char[]> CHARS =
+            ThreadLocal.withInitial(() -> new char[64]);
+
+    private final int size;
+    /**
+     * The blocks of front-coded JSON pointers. Every pointer is stored as
+     * the length of the prefix shared with its predecessor in the block,
+     * the length of the remaining characters and these characters, all
+     * as variable length ints.
+     */
+    private final byte[] data;
+    private final int[] blockPosition;
+    private final int[] parentId;
+    private final int maxLength;
+
+    private JSONPointerDictionary(int size, byte[] data, int[] blockPosition,
+                                  int[] parentId, int maxLength) {
+        this.size = size;
+        this.data = data;
+        this.blockPosition = blockPosition;
+        this.parentId = parentId;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns the {@link JSONPointerDictionary} of the given
+     * {@code jsonPointers}, ignoring duplicates.
+     */
+    static JSONPointerDictionary createJSONPointerDictionary(
+            Collection<String> jsonPointers) {
+        String[] sorted = new HashSet<>(jsonPointers).toArray(new String[0]);
+        Arrays.sort(sorted);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int[] blockPosition = new int[(sorted.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        int[] parentId = new int[sorted.length];
+        // The ids of the JSON pointers before the current one that are a
+        // prefix of it, the innermost on top. All JSON pointers with a
+        // prefix are adjacent, so a pointer not being a prefix of the
+        // current one is no prefix of any following one either.
+        int[] prefixIds = new int[16];
+        int prefixCount = 0;
+        int maxLength = 0;
+        String previous = "";
+        for (int id = 0; id < sorted.length; id++) {
+            String pointer = sorted[id];
+            int common = 0;
+            if (id % BLOCK_SIZE == 0) {
+                blockPosition[id / BLOCK_SIZE] = bytes.size();
+            } else {
+                int n = min(previous.length(), pointer.length());
+                while (common < n
+                        && previous.charAt(common) == pointer.charAt(common)) {
+                    common++;
+                }
+            }
+            writeInt(bytes, common);
+            writeInt(bytes, pointer.length() - common);
+            for (int i = common; i < pointer.length(); i++) {
+                writeInt(bytes, pointer.charAt(i));
+            }
+            maxLength = Math.max(maxLength, pointer.length());
+            previous = pointer;
+
+            // the parent is the innermost prefix followed by a '/'
+            while (prefixCount > 0
+                    && !pointer.startsWith(sorted[prefixIds[prefixCount - 1]])) {
+                prefixCount--;
+            }
+            int parent = -1;
+            for (int i = prefixCount - 1; i >= 0 && parent < 0; i--) {
+                if (pointer.charAt(sorted[prefixIds[i]].length()) == '/') {
+                    parent = prefixIds[i];
+                }
+            }
+            parentId[id] = parent;
+            if (prefixCount == prefixIds.length) {
+                prefixIds = Arrays.copyOf(prefixIds, prefixCount * 2);
+            }
+            prefixIds[prefixCount++] = id;
+        }
+
+        return new JSONPointerDictionary(sorted.length, bytes.toByteArray(),
+                blockPosition, parentId, maxLength);
+    }
+
+    private static void writeInt(ByteArrayOutputStream bytes, int value) {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            bytes.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        bytes.write(v);
+    }
+
+    /**
+     * Returns the variable length int stored at {@code position} in
+     * {@link #data}.
+     */
+    private int intAt(int position) {
+        int result = 0;
+        int shift = 0;
+        int p = position;
+        int b;
+        do {
+            b = data[p++];
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    /**
+     * Returns the number of bytes {@code value} takes as a variable length
+     * int.
+     */
+    private static int sizeOfInt(int value) {
+        int result = 1;
+        for (int v = value >>> 7; v != 0; v >>>= 7) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of JSON pointers in the dictionary.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the JSON pointer with the given {@code id}.
+     */
+    String jsonPointer(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException(
+                    String.format("id: %d, size: %d", id, size));
+        }
+        char[] chars = CHARS.get();
+        if (chars.length < maxLength) {
+            chars = new char[maxLength];
+            CHARS.set(chars);
+        }
+        int position = blockPosition[id / BLOCK_SIZE];
+        int length = 0;
+        for (int i = id % BLOCK_SIZE; i >= 0; i--) {
+            int common = intAt(position);
+            position += sizeOfInt(common);
+            int suffixLength = intAt(position);
+            position += sizeOfInt(suffixLength);
+            for (int k = 0; k < suffixLength; k++) {
+                int c = intAt(position);
+                position += sizeOfInt(c);
+                chars[common + k] = (char) c;
+            }
+            length = common + suffixLength;
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Returns the id of the {@code jsonPointer}, or -1 when the dictionary
+     * does not contain the {@code jsonPointer}.
+     */
+    int idOf(String jsonPointer) {
+        int result = search(jsonPointer);
+        return result >= 0 ? result : -1;
+    }
+
+    /**
+     * Returns the id of the first JSON pointer not less than {@code text},
+     * or {@link #size()} when no such JSON pointer exists.
+     */
+    int lowerBound(String text) {
+        int result = search(text);
+        return result >= 0 ? result : -result - 1;
+    }
+
+    /**
+     * Returns the id of the JSON pointer equal to {@code text}, or
+     * {@code (-(insertion point) - 1)}, like
+     * {@link Arrays#binarySearch(Object[], Object)}.
+     */
+    private int search(String text) {
+        if (size == 0) {
+            return -1;
+        }
+
+        // find the last block whose first JSON pointer is <= text
+        int low = 0;
+        int high = blockPosition.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            int position = blockPosition[mid] + 1; // (skip the common length 0)
+            int length = intAt(position);
+            position += sizeOfInt(length);
+            int comparison = compareSuffix(position, 0, length, text);
+            if (comparison <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        // Compare the pointers of the block with the text. "matched" is the
+        // length of the prefix the current pointer shares with the text.
+        int position = blockPosition[low];
+        int id = low * BLOCK_SIZE;
+        int end = min(id + BLOCK_SIZE, size);
+        int matched = 0;
+        while (id < end) {
+            int common = intAt(position);
+            position += sizeOfInt(common);
+            int suffixLength = intAt(position);
+            position += sizeOfInt(suffixLength);
+            int length = common + suffixLength;
+            if (common < matched) {
+                // the pointer differs from its predecessor where the
+                // predecessor still matched the text, and is larger
+                break;
+            }
+            if (common == matched) {
+                int comparison = compareSuffix(position, matched, length, text);
+                if (comparison == 0) {
+                    return id;
+                }
+                if (comparison > 0) {
+                    break;
+                }
+                matched = matchedLength(position, matched, length, text);
+            }
+            // (otherwise the pointer shares the predecessor's mismatch with
+            // the text, so it is less than the text, too)
+            for (int k = 0; k < suffixLength; k++) {
+                position += sizeOfInt(intAt(position));
+            }
+            id++;
+        }
+        return -id - 1;
+    }
+
+    /**
+     * Compares a JSON pointer of {@code length} characters with
+     * {@code text}, like {@link String#compareTo(String)}, when the first
+     * {@code from} characters of the JSON pointer are equal to the ones of
+     * the {@code text} and its other characters are stored at
+     * {@code position}.
+     */
+    private int compareSuffix(int position, int from, int length, String text) {
+        int n = min(length, text.length());
+        int p = position;
+        for (int i = from; i < n; i++) {
+            int c = intAt(p);
+            p += sizeOfInt(c);
+            if (c != text.charAt(i)) {
+                return c - text.charAt(i);
+            }
+        }
+        return length - text.length();
+    }
+
+    /**
+     * Returns the length of the prefix a JSON pointer shares with the
+     * {@code text} (with the arguments as for
+     * {@link #compareSuffix(int, int, int, String)}).
+     */
+    private int matchedLength(int position, int from, int length, String text) {
+        int n = min(length, text.length());
+        int p = position;
+        for (int i = from; i < n; i++) {
+            int c = intAt(p);
+            p += sizeOfInt(c);
+            if (c != text.charAt(i)) {
+                return i;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns the id of the first descendant of the {@code jsonPointer} in
+     * the dictionary, i.e. of the first JSON pointer starting with
+     * {@code jsonPointer + "/"}.
+     *
+     * <p>The descendants have the ids from this id (inclusive) to
+     * {@link #endOfDescendantIds(String)} (exclusive).</p>
+     */
+    int firstDescendantId(String jsonPointer) {
+        return lowerBound(jsonPointer + "/");
+    }
+
+    /**
+     * Returns the id following the ids of the descendants of the
+     * {@code jsonPointer} (see {@link #firstDescendantId(String)}).
+     */
+    int endOfDescendantIds(String jsonPointer) {
+        // '0' follows '/', so "<jsonPointer>0" follows all pointers
+        // starting with "<jsonPointer>/"
+        return lowerBound(jsonPointer + "0");
+    }
+
+    /**
+     * Returns the id of the parent of the JSON pointer with the given
+     * {@code id}, i.e. of its nearest ancestor in the dictionary, or -1
+     * when the dictionary contains no ancestor.
+     */
+    int parentId(int id) {
+        return parentId[id];
+    }
+
+    /**
+     * Returns {@code true} when the JSON pointer with the given {@code id}
+     * is a descendant of the JSON pointer with the given
+     * {@code ancestorId}; returns {@code false} otherwise.
+     */
+    boolean isDescendant(int id, int ancestorId) {
+        // ancestors are sorted before their descendants
+        for (int p = parentId[id]; p >= ancestorId; p = parentId[p]) {
+            if (p == ancestorId) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.abego.yaml.sourcemap.internal.JSONPointerDictionary.createJSONPointerDictionary;
+
+/**
+ * Maps JSON pointers to the indexes of their fragments in a list of
+ * fragments.
+ *
+ * <p>The indexes of a JSON pointer's fragments are in ascending order, i.e.
+ * in document order.</p>
+ *
+ * <p>The JSON pointers are kept in a {@link JSONPointerDictionary}, every
+ * fragment is mapped to the id of its JSON pointer. The fragment indexes
+ * are grouped by pointer id, so the fragments of a JSON pointer, and of
+ * all its descendants (an interval of ids), are adjacent.</p>
+ *
+ * <p>Instances are immutable.</p>
+ */
+final class JSONPointerIndex {
+    private static final int[] NO_INDEXES = new int[0];
+
+    private final JSONPointerDictionary dictionary;
+
+    /**
+     * The indexes of all fragments, ordered by their pointer id and then
+     * by their index.
+     */
+    private final int[] fragmentsByPointerId;
+
+    /**
+     * For every pointer id the position of its first fragment in
+     * {@link #fragmentsByPointerId}, with an additional item holding the
+     * number of fragments.
+     */
+    private final int[] firstOfPointerId;
+
+    /**
+     * The pointer id of every fragment.
+     */
+    private final int[] pointerIdOfFragment;
+
+    private JSONPointerIndex(
+            JSONPointerDictionary dictionary,
+            int[] fragmentsByPointerId,
+            int[] firstOfPointerId,
+            int[] pointerIdOfFragment) {
+        this.dictionary = dictionary;
+        this.fragmentsByPointerId = fragmentsByPointerId;
+        this.firstOfPointerId = firstOfPointerId;
+        this.pointerIdOfFragment = pointerIdOfFragment;
+    }
+
+    static JSONPointerIndex createJSONPointerIndex(
+            List<? extends Fragment> fragments) {
+        // pass 1: count the fragments of every JSON pointer
+        Map<String, int[]> counts = new HashMap<>();
+        for (Fragment f : fragments) {
+            counts.computeIfAbsent(f.getJSONPointer(), k -> new int[1])[0]++;
+        }
+        JSONPointerDictionary dictionary =
+                createJSONPointerDictionary(counts.keySet());
+        int[] firstOfPointerId = new int[dictionary.size() + 1];
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            int id = dictionary.idOf(entry.getKey());
+            firstOfPointerId[id + 1] = entry.getValue()[0];
+            // from now on the item holds the id
+            entry.getValue()[0] = id;
+        }
+        for (int id = 0; id < dictionary.size(); id++) {
+            firstOfPointerId[id + 1] += firstOfPointerId[id];
+        }
+
+        // pass 2: group the fragment indexes by pointer id
+        int n = fragments.size();
+        int[] pointerIds = new int[n];
+        int[] fragmentsByPointerId = new int[n];
+        int[] nextPosition = Arrays.copyOf(firstOfPointerId, dictionary.size());
+        for (int i = 0; i < n; i++) {
+            int id = counts.get(fragments.get(i).getJSONPointer())[0];
+            pointerIds[i] = id;
+            fragmentsByPointerId[nextPosition[id]++] = i;
+        }
+
+        return new JSONPointerIndex(dictionary,
+                fragmentsByPointerId, firstOfPointerId, pointerIds);
+    }
+
+    /**
+     * Returns the pointer id of the fragment at {@code fragmentIndex}.
+     *
+     * <p>Pointer ids are ordered like the JSON pointers they identify.</p>
+     */
+    int pointerIdOfFragment(int fragmentIndex) {
+        return pointerIdOfFragment[fragmentIndex];
+    }
+
+    /**
+     * Returns the indexes of the fragments with the given
+     * {@code jsonPointer}, in ascending order.
+     */
+    int[] fragmentIndexesOfJsonPointer(String jsonPointer) {
+        int id = dictionary.idOf(jsonPointer);
+        return id >= 0 ? fragmentIndexesOfPointerIds(id, id + 1) : NO_INDEXES;
+    }
+
+    /**
+     * Returns the indexes of the fragments of the children (and their
+     * children etc.) of the {@code jsonPointer}, in ascending order.
+     *
+     * <p>The JSON pointers of the children start with {@code jsonPointer},
+     * followed by a "/".</p>
+     */
+    int[] fragmentIndexesOfDescendantsOf(String jsonPointer) {
+        int[] result = fragmentIndexesOfPointerIds(
+                dictionary.firstDescendantId(jsonPointer),
+                dictionary.endOfDescendantIds(jsonPointer));
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the indexes of the fragments with a pointer id in
+     * [{@code startId}, {@code endId}), ordered by pointer id and then by
+     * index.
+     */
+    private int[] fragmentIndexesOfPointerIds(int startId, int endId) {
+        return Arrays.copyOfRange(fragmentsByPointerId,
+                firstOfPointerId[startId], firstOfPointerId[endId]);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Maps the {@link Kind}s to the indexes of their fragments in a list of
+ * fragments.
+ *
+ * <p>The indexes of a kind's fragments are in ascending order, i.e.
+ * in document order.</p>
+ *
+ * <p>Instances are immutable.</p>
+ */
+final class KindIndex {
+    private static final Kind[] KINDS = Kind.values();
+
+    /**
+     * The indexes of the fragments of every kind, with the kind's ordinal
+     * as the index into the array.
+     */
+    private final int[][] fragmentIndexesOfKind;
+
+    private KindIndex(int[][] fragmentIndexesOfKind) {
+        this.fragmentIndexesOfKind = fragmentIndexesOfKind;
+    }
+
+    static KindIndex createKindIndex(List<? extends Fragment> fragments) {
+        // pass 1: count the fragments of every kind
+        int n = fragments.size();
+        Kind[] kinds = new Kind[n];
+        int[] counts = new int[KINDS.length];
+        for (int i = 0; i < n; i++) {
+            kinds[i] = fragments.get(i).getKind();
+            counts[kinds[i].ordinal()]++;
+        }
+
+        // pass 2: fill in the fragment indexes
+        int[][] indexes = new int[KINDS.length][];
+        for (int k = 0; k < KINDS.length; k++) {
+            indexes[k] = new int[counts[k]];
+        }
+        int[] positions = new int[KINDS.length];
+        for (int i = 0; i < n; i++) {
+            int k = kinds[i].ordinal();
+            indexes[k][positions[k]++] = i;
+        }
+
+        return new KindIndex(indexes);
+    }
+
+    /**
+     * Returns the indexes of the fragments with the given {@code kind}, in
+     * ascending order.
+     *
+     * <p>The caller must not modify the returned array.</p>
+     */
+    int[] fragmentIndexesOfKind(Kind kind) {
+        return fragmentIndexesOfKind[kind.ordinal()];
+    }
+
+    /**
+     * Returns the indexes of the fragments with any of the given
+     * {@code kinds}, in ascending order.
+     */
+    int[] fragmentIndexesOfKinds(Kind... kinds) {
+        EnumSet<Kind> kindSet = EnumSet.noneOf(Kind.class);
+        kindSet.addAll(Arrays.asList(kinds));
+
+        int count = 0;
+        for (Kind kind : kindSet) {
+            count += fragmentIndexesOfKind(kind).length;
+        }
+
+        int[] result = new int[count];
+        int pos = 0;
+        for (Kind kind : kindSet) {
+            int[] items = fragmentIndexesOfKind(kind);
+            System.arraycopy(items, 0, result, pos, items.length);
+            pos += items.length;
+        }
+        if (kindSet.size() > 1) {
+            Arrays.sort(result);
+        }
+        return result;
+    }
+}
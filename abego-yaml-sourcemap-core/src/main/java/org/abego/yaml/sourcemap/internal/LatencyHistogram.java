@@ -0,0 +1,154 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.lang.Long.numberOfLeadingZeros;
+
+/**
+ * A histogram of latencies (or other non-negative long values), with buckets
+ * of logarithmically increasing size (as e.g. in HdrHistogram).
+ *
+ * <p>Values below {@link #SUB_BUCKET_COUNT} are counted exactly. Larger
+ * values are counted in buckets whose size is about 1/16 to 1/32 of their
+ * values, i.e. the histogram has a precision of about 3%, for the whole
+ * range of {@code long}.</p>
+ *
+ * <p>Values can be recorded concurrently, without locks.</p>
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT +
+            (64 - SUB_BUCKET_BITS - 1) * SUB_BUCKET_HALF_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Returns the index of the bucket counting the {@code value}.
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) Math.max(0, value);
+        }
+        // shift the value so its highest bit is the highest of the sub bucket
+        int shift = 64 - numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT +
+                (int) (value >>> shift) - SUB_BUCKET_HALF_COUNT;
+    }
+
+    /**
+     * Returns the highest value counted by the bucket with the given
+     * {@code index}.
+     */
+    static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int i = index - SUB_BUCKET_COUNT;
+        int shift = i / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = i % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    void record(long value) {
+        counts.incrementAndGet(bucketIndex(value));
+        maxValue.accumulateAndGet(value, Math::max);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        maxValue.set(0);
+    }
+
+    /**
+     * Returns the counts of all buckets and the maximal value recorded, as
+     * a {@link Snapshot}.
+     */
+    Snapshot snapshot() {
+        long[] countsCopy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            countsCopy[i] = counts.get(i);
+        }
+        return new Snapshot(countsCopy, maxValue.get());
+    }
+
+    /**
+     * The immutable state of a {@link LatencyHistogram} at a point in time.
+     */
+    static final class Snapshot {
+        private final long[] counts;
+        private final long maxValue;
+        private final long totalCount;
+
+        private Snapshot(long[] counts, long maxValue) {
+            this.counts = counts;
+            this.maxValue = maxValue;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.totalCount = total;
+        }
+
+        long getMaxValue() {
+            return maxValue;
+        }
+
+        long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * Returns the value at or below which the given {@code percentile}
+         * of all recorded values are, or 0 when no values were recorded.
+         */
+        long getValueAtPercentile(double percentile) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new YAMLSourceMapException(String.format(
+                        "percentile must be between 0 and 100, got %s",
+                        percentile));
+            }
+            long countAtPercentile = Math.max(1,
+                    (long) Math.ceil(percentile / 100 * totalCount));
+            long count = 0;
+            for (int i = 0; i < counts.length; i++) {
+                count += counts[i];
+                if (count >= countAtPercentile) {
+                    return Math.min(highestValueInBucket(i), maxValue);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+import org.abego.yaml.sourcemap.FragmentsAPI.FragmentCursor;
+import org.abego.yaml.sourcemap.YAMLSourceMap;
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.abego.yaml.sourcemap.internal.PointerRangesCollector.recurringJsonPointers;
+
+/**
+ * Writes {@link Fragment}s and JSON pointer ranges as newline delimited JSON
+ * (NDJSON), i.e. one JSON object per line.
+ *
+ * <p>The writers are streaming: they process the fragments one after the
+ * other and do not collect them. The extra memory needed is independent of
+ * the number of fragments (except for the JSON pointer ranges of documents
+ * with duplicate map keys, see
+ * {@link #writePointerRanges(YAMLSourceMap, Writer)}).</p>
+ */
+public final class NDJSONWriter {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final CharBufferWriter writer;
+
+    private NDJSONWriter(Writer output) {
+        this.writer = new CharBufferWriter(output);
+    }
+
+    /**
+     * Returns a Writer writing UTF-8 encoded text to the {@code output},
+     * GZIP compressed when {@code gzip} is true.
+     *
+     * @param output the OutputStream to write to
+     * @param gzip   when true the text is GZIP compressed
+     * @return a Writer writing UTF-8 encoded text to the {@code output}
+     */
+    public static Writer newUTF8Writer(OutputStream output, boolean gzip) {
+        try {
+            return new OutputStreamWriter(
+                    gzip ? new GZIPOutputStream(output) : output,
+                    StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new YAMLSourceMapException(e);
+        }
+    }
+
+    /**
+     * Writes the {@code fragments} to the {@code output}, one JSON object
+     * per line, and closes the {@code output}.
+     *
+     * <p>The objects have the members {@code startOffset},
+     * {@code startLine}, {@code startColumn}, {@code endOffset},
+     * {@code endLine}, {@code endColumn}, {@code kind} and
+     * {@code jsonPointer}.</p>
+     *
+     * @param fragments the {@link Fragment}s to write to the output
+     * @param output    the Writer to write the output to
+     * @throws YAMLSourceMapException when writing the output failed
+     */
+    public static void writeFragments(Iterable<Fragment> fragments, Writer output) {
+        try (Writer w = output) {
+            NDJSONWriter ndjsonWriter = new NDJSONWriter(w);
+            for (Fragment f : fragments) {
+                ndjsonWriter.writeFragment(f);
+            }
+            ndjsonWriter.writer.flush();
+        } catch (IOException e) {
+            throw new YAMLSourceMapException(e);
+        }
+    }
+
+    /**
+     * Writes the fragments of the {@code cursor}, starting with the fragment
+     * after the cursor's current position, to the {@code output}, one JSON
+     * object per line, and closes the {@code output}.
+     *
+     * <p>Other than {@link #writeFragments(Iterable, Writer)} this does not
+     * need a {@link Fragment} object per fragment.</p>
+     *
+     * @param cursor the {@link FragmentCursor} providing the fragments to
+     *               write to the output
+     * @param output the Writer to write the output to
+     * @throws YAMLSourceMapException when writing the output failed
+     */
+    public static void writeFragments(FragmentCursor cursor, Writer output) {
+        try (Writer w = output) {
+            NDJSONWriter ndjsonWriter = new NDJSONWriter(w);
+            while (cursor.next()) {
+                ndjsonWriter.writeFragment(
+                        cursor.startOffset(), cursor.startLine(),
+                        cursor.startColumn(), cursor.endOffset(),
+                        cursor.endLine(), cursor.endColumn(),
+                        cursor.kind(), cursor.jsonPointer());
+            }
+            ndjsonWriter.writer.flush();
+        } catch (IOException e) {
+            throw new YAMLSourceMapException(e);
+        }
+    }
+
+    /**
+     * Writes one JSON object for every JSON pointer of the
+     * {@code yamlSourceMap} to the {@code output}, one object per line, and
+     * closes the {@code output}.
+     *
+     * <p>The objects have the members {@code jsonPointer}, {@code range} and
+     * {@code valueRange}. Both ranges are objects with the members
+     * {@code startOffset} and {@code endOffset}, as defined by
+     * {@link org.abego.yaml.sourcemap.YAMLSourceMap#sourceRangeOfJsonPointer(String)}
+     * and {@link org.abego.yaml.sourcemap.YAMLSourceMap#sourceRangeOfValueOfJsonPointer(String)}.</p>
+     *
+     * <p>A JSON pointer's object is written when all fragments of the
+     * pointer and its children are processed, i.e. the objects of children
+     * are written before the object of their parent.</p>
+     *
+     * <p>The fragments are read twice through a {@link FragmentCursor}: the
+     * first pass finds the JSON pointers whose fragments are not contiguous
+     * (duplicate map keys), so the second pass can merge their ranges and
+     * write a single object for every JSON pointer.</p>
+     *
+     * @param yamlSourceMap the {@link YAMLSourceMap} to write to the output
+     * @param output        the Writer to write the output to
+     * @throws YAMLSourceMapException when writing the output failed
+     */
+    public static void writePointerRanges(YAMLSourceMap yamlSourceMap, Writer output) {
+        try (Writer w = output) {
+            NDJSONWriter ndjsonWriter = new NDJSONWriter(w);
+            PointerRangesCollector collector = new PointerRangesCollector(
+                    ndjsonWriter::writePointerRange,
+                    recurringJsonPointers(yamlSourceMap.fragmentCursor()));
+            collector.addAll(yamlSourceMap.fragmentCursor());
+            collector.finish();
+            ndjsonWriter.writer.flush();
+        } catch (IOException e) {
+            throw new YAMLSourceMapException(e);
+        }
+    }
+
+    private void writeFragment(Fragment f) throws IOException {
+        writeFragment(f.getStartOffset(), f.getStartLine(), f.getStartColumn(),
+                f.getEndOffset(), f.getEndLine(), f.getEndColumn(),
+                f.getKind(), f.getJSONPointer());
+    }
+
+    private void writeFragment(
+            int startOffset, int startLine, int startColumn,
+            int endOffset, int endLine, int endColumn,
+            Kind kind, String jsonPointer) throws IOException {
+        writer.append("{\"startOffset\":");
+        writer.append(startOffset);
+        writer.append(",\"startLine\":");
+        writer.append(startLine);
+        writer.append(",\"startColumn\":");
+        writer.append(startColumn);
+        writer.append(",\"endOffset\":");
+        writer.append(endOffset);
+        writer.append(",\"endLine\":");
+        writer.append(endLine);
+        writer.append(",\"endColumn\":");
+        writer.append(endColumn);
+        writer.append(",\"kind\":\"");
+        writer.append(kind.name());
+        writer.append("\",\"jsonPointer\":");
+        appendJSONString(jsonPointer);
+        writer.append("}\n");
+    }
+
+    private void writePointerRange(PointerRangesCollector.PointerRange range) {
+        if (!range.hasFragments()) {
+            return;
+        }
+        try {
+            writer.append("{\"jsonPointer\":");
+            appendJSONString(range.getJsonPointer());
+            writer.append(",\"range\":{\"startOffset\":");
+            writer.append(range.getStart());
+            writer.append(",\"endOffset\":");
+            writer.append(range.getEnd());
+            writer.append("},\"valueRange\":{\"startOffset\":");
+            writer.append(range.valueStart());
+            writer.append(",\"endOffset\":");
+            writer.append(range.valueEnd());
+            writer.append("}}\n");
+        } catch (IOException e) {
+            throw new YAMLSourceMapException(e);
+        }
+    }
+
+    /**
+     * Appends the {@code text} as a JSON string, i.e. enclosed in quotes and
+     * with quotes, backslashes and control characters escaped.
+     */
+    private void appendJSONString(String text) throws IOException {
+        writer.append('"');
+        int n = text.length();
+        int unescapedStart = 0;
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            writer.append(text, unescapedStart, i);
+            unescapedStart = i + 1;
+            switch (c) {
+                case '"':
+                    writer.append('\\', '"');
+                    break;
+                case '\\':
+                    writer.append('\\', '\\');
+                    break;
+                case '\n':
+                    writer.append('\\', 'n');
+                    break;
+                case '\r':
+                    writer.append('\\', 'r');
+                    break;
+                case '\t':
+                    writer.append('\\', 't');
+                    break;
+                case '\b':
+                    writer.append('\\', 'b');
+                    break;
+                case '\f':
+                    writer.append('\\', 'f');
+                    break;
+                default:
+                    writer.append('\\', 'u');
+                    writer.append('0', '0');
+                    writer.append(HEX_DIGITS[c >> 4], HEX_DIGITS[c & 0xF]);
+                    break;
+            }
+        }
+        writer.append(text, unescapedStart, n);
+        writer.append('"');
+    }
+}
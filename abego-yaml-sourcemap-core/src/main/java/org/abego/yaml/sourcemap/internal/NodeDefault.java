@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.NodesAPI.Node;
+import org.abego.yaml.sourcemap.YAMLRange;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The default implementation of {@link Node}, referring to a node in a
+ * {@link NodeTree}.
+ *
+ * <p>NodeDefault objects are lightweight and created on demand, e.g. when
+ * navigating the tree. Two NodeDefault objects are equal when they refer to
+ * the same node in the same tree.</p>
+ */
+final class NodeDefault implements Node {
+    private final NodeTree tree;
+    private final int index;
+
+    private NodeDefault(NodeTree tree, int index) {
+        this.tree = tree;
+        this.index = index;
+    }
+
+    /**
+     * Returns the {@link NodeDefault} for the node at {@code index} in the
+     * {@code tree}; or {@code null} when {@code index} is -1.
+     */
+    @Nullable
+    static NodeDefault nodeOrNull(NodeTree tree, int index) {
+        return index >= 0 ? new NodeDefault(tree, index) : null;
+    }
+
+    @Override
+    public Kind getKind() {
+        return tree.kind(index);
+    }
+
+    @Override
+    public String getKey() {
+        return tree.key(index);
+    }
+
+    @Override
+    public String getJSONPointer() {
+        return tree.jsonPointer(index);
+    }
+
+    @Override
+    @Nullable
+    public Node getParent() {
+        return nodeOrNull(tree, tree.parent(index));
+    }
+
+    @Override
+    @Nullable
+    public Node getFirstChild() {
+        return nodeOrNull(tree, tree.firstChild(index));
+    }
+
+    @Override
+    @Nullable
+    public Node getNextSibling() {
+        return nodeOrNull(tree, tree.nextSibling(index));
+    }
+
+    @Override
+    public YAMLRange getRange() {
+        return YAMLRangeDefault.createYAMLRangeDefault(
+                tree.rangeStart(index), tree.valueEnd(index));
+    }
+
+    @Override
+    public YAMLRange getValueRange() {
+        return YAMLRangeDefault.createYAMLRangeDefault(
+                tree.valueStart(index), tree.valueEnd(index));
+    }
+
+    @Override
+    public long getSubtreeHash() {
+        return tree.hash(index);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NodeDefault)) return false;
+        NodeDefault that = (NodeDefault) o;
+        return tree == that.tree && index == that.index;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(tree) + index;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeDefault{" +
+                "kind=" + getKind() +
+                ", jsonPointer=" + getJSONPointer() +
+                ", rangeStart=" + tree.rangeStart(index) +
+                ", valueStart=" + tree.valueStart(index) +
+                ", valueEnd=" + tree.valueEnd(index) +
+                '}';
+    }
+}
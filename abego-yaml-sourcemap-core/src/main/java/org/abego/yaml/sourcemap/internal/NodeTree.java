@@ -0,0 +1,421 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.NodesAPI.Node;
+import org.abego.yaml.sourcemap.NodesAPI.Node.Kind;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Arrays;
+
+import static org.abego.yaml.sourcemap.internal.Utils.escapeForJsonPointerStep;
+
+/**
+ * The tree of the {@link Node}s of a YAML document, stored in int arrays.
+ *
+ * <p>A node is identified by its index into the arrays, with the root node
+ * at index 0. A "link" to another node (parent, first child, next sibling)
+ * is -1 when no such node exists.</p>
+ *
+ * <p>Instances are immutable. Use a {@link Builder} to create one.</p>
+ */
+final class NodeTree {
+    private static final Kind[] KINDS = Kind.values();
+
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] kind;
+    private final String[] key;
+    private final int[] rangeStart;
+    private final int[] valueStart;
+    private final int[] valueEnd;
+    private final long[] hash;
+    /**
+     * The hash table of the children of all nodes, for
+     * {@link #childWithKey(int, String)}, or {@code null} when not yet
+     * created.
+     */
+    @Nullable
+    private volatile int[] childTable;
+
+    private NodeTree(Builder builder) {
+        int n = builder.size;
+        this.parent = Arrays.copyOf(builder.parent, n);
+        this.firstChild = Arrays.copyOf(builder.firstChild, n);
+        this.nextSibling = Arrays.copyOf(builder.nextSibling, n);
+        this.kind = Arrays.copyOf(builder.kind, n);
+        this.key = Arrays.copyOf(builder.key, n);
+        this.rangeStart = Arrays.copyOf(builder.rangeStart, n);
+        this.valueStart = Arrays.copyOf(builder.valueStart, n);
+        this.valueEnd = Arrays.copyOf(builder.valueEnd, n);
+        this.hash = Arrays.copyOf(builder.hash, n);
+    }
+
+    /**
+     * Returns the number of nodes in the tree.
+     */
+    int size() {
+        return parent.length;
+    }
+
+    int parent(int node) {
+        return parent[node];
+    }
+
+    int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    Kind kind(int node) {
+        return KINDS[kind[node]];
+    }
+
+    String key(int node) {
+        return key[node];
+    }
+
+    int rangeStart(int node) {
+        return rangeStart[node];
+    }
+
+    int valueStart(int node) {
+        return valueStart[node];
+    }
+
+    int valueEnd(int node) {
+        return valueEnd[node];
+    }
+
+    /**
+     * Returns the hash of the subtree with the root {@code node}.
+     *
+     * <p>The hash is calculated from the node's kind and key, from the tag
+     * of a collection, the resolved tag (see
+     * {@link org.abego.yaml.sourcemap.NodesAPI.Node#getSubtreeHash()}) and
+     * value of a scalar and from the hashes of the node's
+     * children (in order), i.e. like a Merkle tree. The hash of an alias
+     * includes the hash of the node it refers to (or of the anchor's name
+     * when that node is not available, e.g. for recursive structures).</p>
+     *
+     * <p>So the hash only depends on the data of the subtree, not on its
+     * formatting (e.g. indentation, flow or block style, comments) or its
+     * position in the document. Subtrees with different data have
+     * different hashes, with a very high probability.</p>
+     */
+    long hash(int node) {
+        return hash[node];
+    }
+
+    /**
+     * Returns the JSON pointer of the {@code node}, built from the keys of
+     * the node and its ancestors.
+     */
+    String jsonPointer(int node) {
+        Stack<String> steps = new Stack<>();
+        for (int n = node; parent[n] >= 0; n = parent[n]) {
+            steps.push(key[n]);
+        }
+        StringBuilder result = new StringBuilder();
+        while (!steps.isEmpty()) {
+            result.append('/');
+            result.append(escapeForJsonPointerStep(steps.pop()));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the first child of {@code node} with the given {@code key}, or
+     * -1 when no such child exists.
+     *
+     * <p>The child is looked up in a hash table of all children, so the
+     * cost does not depend on the number of siblings.</p>
+     */
+    int childWithKey(int node, String key) {
+        int[] table = childTable();
+        int mask = table.length - 1;
+        int probes = 0;
+        try {
+            for (int i = hashOfChild(node, key) & mask; ; i = (i + 1) & mask) {
+                probes++;
+                int entry = table[i];
+                if (entry == 0) {
+                    return -1;
+                }
+                int c = entry - 1;
+                if (parent[c] == node && this.key[c].equals(key)) {
+                    return c;
+                }
+            }
+        } finally {
+            ScannedFragments.add(probes);
+        }
+    }
+
+    private int[] childTable() {
+        @Nullable
+        int[] result = childTable;
+        if (result == null) {
+            result = createChildTable();
+            childTable = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a hash table (open addressing, linear probing) of the
+     * children of all nodes, hashed by their parent and key.
+     *
+     * <p>An entry holds the index of the child + 1, or 0 when the slot is
+     * empty. When a node has several children with the same key (duplicate
+     * keys) only the first one is in the table.</p>
+     */
+    private int[] createChildTable() {
+        int n = size();
+        int[] table = new int[Integer.highestOneBit(Math.max(n, 1)) * 4];
+        int mask = table.length - 1;
+        for (int c = 1; c < n; c++) {
+            int i = hashOfChild(parent[c], key[c]) & mask;
+            while (table[i] != 0 && !isSameChild(table[i] - 1, c)) {
+                i = (i + 1) & mask;
+            }
+            if (table[i] == 0) {
+                table[i] = c + 1;
+            }
+        }
+        return table;
+    }
+
+    private boolean isSameChild(int node, int otherNode) {
+        return parent[node] == parent[otherNode]
+                && key[node].equals(key[otherNode]);
+    }
+
+    private static int hashOfChild(int parentNode, String childKey) {
+        int h = childKey.hashCode() * 31 + parentNode;
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the first node (in document order) with the given
+     * {@code jsonPointer}, or -1 when no such node exists.
+     */
+    int nodeOfJsonPointer(String jsonPointer) {
+        if (size() == 0 || !(jsonPointer.isEmpty() || jsonPointer.startsWith("/"))) {
+            return -1;
+        }
+        int node = 0;
+        int i = 0;
+        while (node >= 0 && i < jsonPointer.length()) {
+            int end = jsonPointer.indexOf('/', i + 1);
+            if (end < 0) {
+                end = jsonPointer.length();
+            }
+            node = childWithKey(node,
+                    unescapeJsonPointerStep(jsonPointer.substring(i + 1, end)));
+            i = end;
+        }
+        return node;
+    }
+
+    static String unescapeJsonPointerStep(String step) {
+        if (step.indexOf('~') < 0) {
+            return step;
+        }
+        return step.replace("~1", "/").replace("~0", "~");
+    }
+
+    // ========================================================================
+    // === Hashing ============================================================
+    // ========================================================================
+
+    private static final long HASH_SEED = 0x9E3779B97F4A7C15L;
+
+    private static long combine(long hash, long value) {
+        return (hash ^ value) * 0x100000001B3L + 0x632BE59BD9B4E019L;
+    }
+
+    private static long hashOfText(String text) {
+        long h = HASH_SEED;
+        for (int i = 0; i < text.length(); i++) {
+            h = (h ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        return finish(h + text.length());
+    }
+
+    /**
+     * Returns the {@code hash} with its bits well mixed (the finalizer of
+     * MurmurHash3).
+     */
+    private static long finish(long hash) {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Builds a {@link NodeTree}, adding the nodes in document order.
+     *
+     * <p>Call {@link #beginNode(String, Kind, int, int)} when a node starts
+     * and {@link #endNode(int)} when it ends. Nodes begun while another
+     * node is open become the children of that node.</p>
+     */
+    static final class Builder {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private int size;
+        private int[] parent = new int[INITIAL_CAPACITY];
+        private int[] firstChild = new int[INITIAL_CAPACITY];
+        private int[] lastChild = new int[INITIAL_CAPACITY];
+        private int[] nextSibling = new int[INITIAL_CAPACITY];
+        private int[] kind = new int[INITIAL_CAPACITY];
+        private String[] key = new String[INITIAL_CAPACITY];
+        private int[] rangeStart = new int[INITIAL_CAPACITY];
+        private int[] valueStart = new int[INITIAL_CAPACITY];
+        private int[] valueEnd = new int[INITIAL_CAPACITY];
+        /**
+         * The hash of a node, while the node is open the hash of the data
+         * added so far.
+         */
+        private long[] hash = new long[INITIAL_CAPACITY];
+        private boolean[] ended = new boolean[INITIAL_CAPACITY];
+        /**
+         * The innermost node begun but not yet ended, or -1.
+         */
+        private int openNode = -1;
+
+        /**
+         * Begins a new node, as the last child of the innermost open node,
+         * and returns its index.
+         */
+        int beginNode(String nodeKey, Kind nodeKind, int nodeRangeStart, int nodeValueStart) {
+            if (size == parent.length) {
+                grow();
+            }
+            int node = size++;
+            parent[node] = openNode;
+            firstChild[node] = -1;
+            lastChild[node] = -1;
+            nextSibling[node] = -1;
+            kind[node] = nodeKind.ordinal();
+            key[node] = nodeKey;
+            rangeStart[node] = nodeRangeStart;
+            valueStart[node] = nodeValueStart;
+            valueEnd[node] = nodeValueStart;
+            hash[node] = combine(combine(HASH_SEED, nodeKind.ordinal()),
+                    hashOfText(nodeKey));
+            ended[node] = false;
+            if (openNode >= 0) {
+                if (lastChild[openNode] < 0) {
+                    firstChild[openNode] = node;
+                } else {
+                    nextSibling[lastChild[openNode]] = node;
+                }
+                lastChild[openNode] = node;
+            }
+            openNode = node;
+            return node;
+        }
+
+        /**
+         * Returns the innermost node begun but not yet ended, or -1.
+         */
+        int openNode() {
+            return openNode;
+        }
+
+        /**
+         * Ends the innermost open node, with its value ending at
+         * {@code nodeValueEnd}.
+         */
+        void endNode(int nodeValueEnd) {
+            int node = openNode;
+            valueEnd[node] = nodeValueEnd;
+            hash[node] = finish(hash[node]);
+            ended[node] = true;
+            openNode = parent[node];
+            if (openNode >= 0) {
+                hash[openNode] = combine(hash[openNode], hash[node]);
+            }
+        }
+
+        /**
+         * Adds the {@code text} (e.g. a scalar's tag or value) to the hash of
+         * the innermost open node.
+         */
+        void hashText(@Nullable String text) {
+            hash[openNode] = combine(hash[openNode],
+                    text != null ? hashOfText(text) : 0);
+        }
+
+        /**
+         * Adds the {@code value} to the hash of the innermost open node.
+         */
+        void hashValue(long value) {
+            hash[openNode] = combine(hash[openNode], value);
+        }
+
+        /**
+         * Adds the hash of the node an alias refers to to the hash of the
+         * innermost open node (the alias), or the hash of the
+         * {@code anchorName} when that node is unknown or still open.
+         */
+        void hashAlias(int aliasedNode, String anchorName) {
+            if (aliasedNode >= 0 && ended[aliasedNode]) {
+                hashValue(hash[aliasedNode]);
+            } else {
+                hashText(anchorName);
+            }
+        }
+
+        private void grow() {
+            int capacity = parent.length * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            lastChild = Arrays.copyOf(lastChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            kind = Arrays.copyOf(kind, capacity);
+            key = Arrays.copyOf(key, capacity);
+            rangeStart = Arrays.copyOf(rangeStart, capacity);
+            valueStart = Arrays.copyOf(valueStart, capacity);
+            valueEnd = Arrays.copyOf(valueEnd, capacity);
+            hash = Arrays.copyOf(hash, capacity);
+            ended = Arrays.copyOf(ended, capacity);
+        }
+
+        NodeTree build() {
+            return new NodeTree(this);
+        }
+    }
+}
@@ -0,0 +1,491 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.abego.yaml.sourcemap.internal.FragmentDefault.createFragmentDefault;
+import static org.abego.yaml.sourcemap.internal.JSONPointerDictionary.createJSONPointerDictionary;
+
+/**
+ * An immutable list of fragments stored in columns of direct (off-heap)
+ * {@link ByteBuffer}s.
+ *
+ * <p>Other than a list of {@link FragmentDefault}s this creates no heap
+ * object per fragment, so the garbage collector has nothing to scan for
+ * the fragments. The fragments returned by {@link #get(int)} are created on
+ * the fly.</p>
+ *
+ * <p>As the fragments partition the text only their ends are stored, a
+ * fragment starts where the previous one ends. The JSON pointers are
+ * stored as pointer ids of a {@link JSONPointerDictionary}, holding the
+ * distinct JSON pointers front-coded. An additional column lists the fragments grouped
+ * by pointer id, to find the fragments of a JSON pointer (or of its
+ * descendants, with adjacent pointer ids) without any further index.</p>
+ *
+ * <p>{@link #release()} frees the buffers explicitly, as soon as no read
+ * is active anymore: the reads are counted, and when reads are active
+ * during the release the last one frees the buffers. A read started after
+ * the release throws. Buffers not released are freed by the JVM once they
+ * are garbage collected, as for any direct buffer.</p>
+ *
+ * <p>Instances are thread-safe, including {@link #release()}.</p>
+ */
+final class OffHeapFragments extends AbstractList<Fragment>
+        implements RandomAccess, FragmentStore {
+    private static final int[] NO_INDEXES = new int[0];
+    private static final Kind[] KINDS = Kind.values();
+
+    /**
+     * Frees a direct buffer, or {@code null} when the JVM provides no way
+     * to do so (see {@link #free(ByteBuffer)}).
+     */
+    @Nullable
+    private static final Method INVOKE_CLEANER;
+    @Nullable
+    private static final Object UNSAFE;
+
+    static {
+        @Nullable
+        Method invokeCleaner = null;
+        @Nullable
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (Exception e) {
+            // before Java 9, or not available: the buffers are freed by the
+            // garbage collector
+            invokeCleaner = null;
+            unsafe = null;
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    private final int size;
+    private final int startLine;
+    private final int startColumn;
+
+    /**
+     * All JSON pointers of the fragments.
+     */
+    private final JSONPointerDictionary dictionary;
+
+    private final Columns columns;
+
+    /**
+     * The columns of the fragments, every item an int, except for
+     * {@link #kind}.
+     */
+    private static final class Columns {
+        /**
+         * The bit of {@link #state} set once the columns are released.
+         */
+        private static final int RELEASED = 0x80000000;
+
+        /**
+         * The number of active reads, with the {@link #RELEASED} bit set
+         * once the columns are released.
+         */
+        private final AtomicInteger state = new AtomicInteger();
+        private final ByteBuffer endOffset;
+        private final ByteBuffer endLine;
+        private final ByteBuffer endColumn;
+        private final ByteBuffer kind;
+        private final ByteBuffer pointerId;
+        /**
+         * The indexes of the fragments, ordered by their pointer id and
+         * then by their index.
+         */
+        private final ByteBuffer fragmentsByPointerId;
+        /**
+         * For every pointer id the position of its first fragment in
+         * {@link #fragmentsByPointerId}, with an additional item holding the
+         * number of fragments.
+         */
+        private final ByteBuffer firstOfPointerId;
+
+        private Columns(int fragmentCount, int pointerCount) {
+            endOffset = intColumn(fragmentCount);
+            endLine = intColumn(fragmentCount);
+            endColumn = intColumn(fragmentCount);
+            kind = ByteBuffer.allocateDirect(fragmentCount);
+            pointerId = intColumn(fragmentCount);
+            fragmentsByPointerId = intColumn(fragmentCount);
+            firstOfPointerId = intColumn(pointerCount + 1);
+        }
+
+        private static ByteBuffer intColumn(int size) {
+            if (size > Integer.MAX_VALUE / 4) {
+                throw new YAMLSourceMapException(String.format(
+                        "Too many fragments for off-heap storage. Got %d", size));
+            }
+            return ByteBuffer.allocateDirect(size * 4);
+        }
+
+        /**
+         * Begins a read of the columns, to be ended by {@link #endRead()}.
+         */
+        private void beginRead() {
+            while (true) {
+                int s = state.get();
+                if ((s & RELEASED) != 0) {
+                    throw new YAMLSourceMapException("The source map is closed");
+                }
+                if (state.compareAndSet(s, s + 1)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Ends a read begun by {@link #beginRead()}, freeing the buffers
+         * when this was the last active read of released columns.
+         */
+        private void endRead() {
+            if (state.decrementAndGet() == RELEASED) {
+                free();
+            }
+        }
+
+        /**
+         * Releases the columns, freeing the buffers now when no read is
+         * active, or else when the last active read ends.
+         */
+        private void release() {
+            while (true) {
+                int s = state.get();
+                if ((s & RELEASED) != 0) {
+                    return;
+                }
+                if (state.compareAndSet(s, s | RELEASED)) {
+                    if (s == 0) {
+                        free();
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void free() {
+            OffHeapFragments.free(endOffset);
+            OffHeapFragments.free(endLine);
+            OffHeapFragments.free(endColumn);
+            OffHeapFragments.free(kind);
+            OffHeapFragments.free(pointerId);
+            OffHeapFragments.free(fragmentsByPointerId);
+            OffHeapFragments.free(firstOfPointerId);
+        }
+    }
+
+    /**
+     * Frees the memory of the direct {@code buffer}, when the JVM provides
+     * a way to do so. Otherwise the memory is freed once the buffer is
+     * garbage collected.
+     *
+     * <p>The buffer must not be used afterwards.</p>
+     */
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } catch (Exception e) {
+                // ignore, the buffer is freed when garbage collected
+            }
+        }
+    }
+
+    private OffHeapFragments(int size, int startLine, int startColumn,
+                             JSONPointerDictionary dictionary, Columns columns) {
+        this.size = size;
+        this.startLine = startLine;
+        this.startColumn = startColumn;
+        this.dictionary = dictionary;
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the {@link OffHeapFragments} with the given {@code fragments}.
+     *
+     * <p>The fragments must partition the text, i.e. the first fragment
+     * starts at offset 0 and every other fragment starts where the
+     * previous one ends.</p>
+     */
+    static OffHeapFragments createOffHeapFragments(
+            List<? extends Fragment> fragments) {
+        int n = fragments.size();
+
+        Map<String, int[]> counts = new HashMap<>();
+        for (Fragment f : fragments) {
+            counts.computeIfAbsent(f.getJSONPointer(), k -> new int[1])[0]++;
+        }
+        JSONPointerDictionary dictionary =
+                createJSONPointerDictionary(counts.keySet());
+        int pointerCount = dictionary.size();
+        int[] nextPositionOfPointerId = new int[pointerCount + 1];
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            int id = dictionary.idOf(entry.getKey());
+            nextPositionOfPointerId[id + 1] = entry.getValue()[0];
+            // from now on the item holds the id
+            entry.getValue()[0] = id;
+        }
+        for (int id = 0; id < pointerCount; id++) {
+            nextPositionOfPointerId[id + 1] += nextPositionOfPointerId[id];
+        }
+
+        Columns columns = new Columns(n, pointerCount);
+        for (int id = 0; id <= pointerCount; id++) {
+            columns.firstOfPointerId.putInt(id * 4, nextPositionOfPointerId[id]);
+        }
+        for (int i = 0; i < n; i++) {
+            Fragment f = fragments.get(i);
+            int id = counts.get(f.getJSONPointer())[0];
+            columns.endOffset.putInt(i * 4, f.getEndOffset());
+            columns.endLine.putInt(i * 4, f.getEndLine());
+            columns.endColumn.putInt(i * 4, f.getEndColumn());
+            columns.kind.put(i, (byte) f.getKind().ordinal());
+            columns.pointerId.putInt(i * 4, id);
+            columns.fragmentsByPointerId.putInt(
+                    nextPositionOfPointerId[id]++ * 4, i);
+        }
+
+        return n == 0
+                ? new OffHeapFragments(0, 1, 1, dictionary, columns)
+                : new OffHeapFragments(n, fragments.get(0).getStartLine(),
+                fragments.get(0).getStartColumn(), dictionary, columns);
+    }
+
+    /**
+     * Begins a read of the columns and returns them.
+     *
+     * <p>Every read must be ended by {@link #endRead()} (in a
+     * {@code finally} block), so released buffers are freed.</p>
+     */
+    private Columns beginRead() {
+        columns.beginRead();
+        return columns;
+    }
+
+    private void endRead() {
+        columns.endRead();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Index: %d, Size: %d", index, size));
+        }
+    }
+
+    @Override
+    public Fragment get(int index) {
+        checkIndex(index);
+        Columns c = beginRead();
+        try {
+            int i = index * 4;
+            return index == 0
+                    ? createFragmentDefault(0, startLine, startColumn,
+                    c.endOffset.getInt(i), c.endLine.getInt(i), c.endColumn.getInt(i),
+                    KINDS[c.kind.get(index)], dictionary.jsonPointer(c.pointerId.getInt(i)))
+                    : createFragmentDefault(c.endOffset.getInt(i - 4),
+                    c.endLine.getInt(i - 4), c.endColumn.getInt(i - 4),
+                    c.endOffset.getInt(i), c.endLine.getInt(i), c.endColumn.getInt(i),
+                    KINDS[c.kind.get(index)], dictionary.jsonPointer(c.pointerId.getInt(i)));
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * Returns the int at {@code index} of the int {@code column} of the
+     * {@link #columns}, as one read.
+     */
+    private int intAt(ByteBuffer column, int index) {
+        beginRead();
+        try {
+            return column.getInt(index * 4);
+        } finally {
+            endRead();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int startOffset(int index) {
+        checkIndex(index);
+        return index == 0 ? 0 : intAt(columns.endOffset, index - 1);
+    }
+
+    @Override
+    public int endOffset(int index) {
+        checkIndex(index);
+        return intAt(columns.endOffset, index);
+    }
+
+    @Override
+    public int startLine(int index) {
+        checkIndex(index);
+        return index == 0
+                ? startLine
+                : intAt(columns.endLine, index - 1);
+    }
+
+    @Override
+    public int startColumn(int index) {
+        checkIndex(index);
+        return index == 0
+                ? startColumn
+                : intAt(columns.endColumn, index - 1);
+    }
+
+    @Override
+    public int endLine(int index) {
+        checkIndex(index);
+        return intAt(columns.endLine, index);
+    }
+
+    @Override
+    public int endColumn(int index) {
+        checkIndex(index);
+        return intAt(columns.endColumn, index);
+    }
+
+    @Override
+    public Kind kind(int index) {
+        checkIndex(index);
+        Columns c = beginRead();
+        try {
+            return KINDS[c.kind.get(index)];
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The pointer ids are the ids of the JSON pointers in the
+     * {@link JSONPointerDictionary} of the fragments.</p>
+     */
+    @Override
+    public int pointerId(int index) {
+        checkIndex(index);
+        return intAt(columns.pointerId, index);
+    }
+
+    @Override
+    public String jsonPointer(int index) {
+        return dictionary.jsonPointer(pointerId(index));
+    }
+
+    @Override
+    public int[] fragmentIndexesOfJsonPointer(String jsonPointer) {
+        int id = dictionary.idOf(jsonPointer);
+        return id >= 0 ? fragmentIndexesOfPointerIds(id, id + 1) : NO_INDEXES;
+    }
+
+    @Override
+    public int[] fragmentIndexesOfDescendantsOf(String jsonPointer) {
+        int[] result = fragmentIndexesOfPointerIds(
+                dictionary.firstDescendantId(jsonPointer),
+                dictionary.endOfDescendantIds(jsonPointer));
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the indexes of the fragments with a pointer id in
+     * [{@code startId}, {@code endId}), ordered by pointer id and then by
+     * index.
+     */
+    private int[] fragmentIndexesOfPointerIds(int startId, int endId) {
+        Columns c = beginRead();
+        try {
+            int start = c.firstOfPointerId.getInt(startId * 4);
+            int end = c.firstOfPointerId.getInt(endId * 4);
+            int[] result = new int[end - start];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = c.fragmentsByPointerId.getInt((start + i) * 4);
+            }
+            return result;
+        } finally {
+            endRead();
+        }
+    }
+
+    @Override
+    public int[] fragmentIndexesOfKinds(Kind... kinds) {
+        int kindBits = 0;
+        for (Kind kind : kinds) {
+            kindBits |= 1 << kind.ordinal();
+        }
+        ByteBuffer kindColumn = beginRead().kind;
+        try {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if ((kindBits & (1 << kindColumn.get(i))) != 0) {
+                    count++;
+                }
+            }
+            int[] result = new int[count];
+            int pos = 0;
+            for (int i = 0; i < size; i++) {
+                if ((kindBits & (1 << kindColumn.get(i))) != 0) {
+                    result[pos++] = i;
+                }
+            }
+            return result;
+        } finally {
+            endRead();
+        }
+    }
+
+    @Override
+    public void release() {
+        columns.release();
+    }
+}
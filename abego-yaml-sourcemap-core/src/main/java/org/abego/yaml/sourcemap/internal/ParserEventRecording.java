@@ -0,0 +1,396 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+import org.eclipse.jdt.annotation.Nullable;
+import org.yaml.snakeyaml.DumperOptions.FlowStyle;
+import org.yaml.snakeyaml.DumperOptions.ScalarStyle;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.DocumentEndEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ImplicitTuple;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.events.StreamStartEvent;
+import org.yaml.snakeyaml.parser.Parser;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Records the events of the SnakeYAML parser in a compact binary format and
+ * replays them.
+ *
+ * <p>Replaying recorded events makes it possible to measure the creation of
+ * fragments separately from the tokenization and parsing by SnakeYAML, and
+ * to reproduce the creation of a source map without the original YAML
+ * text.</p>
+ *
+ * <p><b>Format</b></p>
+ * <p>The recording starts with the 4 bytes "YSME" and a version byte (1),
+ * followed by the events. Every event consists of:</p>
+ * <ul>
+ *     <li>the event's code (a byte, see {@link #EVENT_IDS}),</li>
+ *     <li>the start mark (index, line, column) and the end mark (index and
+ *     line relative to the start, column),</li>
+ *     <li>event specific data: the anchor and tag of node events, the
+ *     implicit flags and style of scalars and collections, the value of
+ *     scalars and the "explicit" flag of document start and end
+ *     events.</li>
+ * </ul>
+ * <p>Numbers are written as unsigned variable-length integers (7 bits per
+ * byte). Strings (anchors, tags, values) are written as ids: 0 for
+ * {@code null}, otherwise the 1-based position in the table of strings
+ * written so far. The first occurrence of a string is followed by its UTF-8
+ * encoded text (length and bytes), later occurrences only need the id.</p>
+ *
+ * <p>The YAML version and tag directives of a document are not
+ * recorded.</p>
+ */
+public final class ParserEventRecording {
+    private static final byte[] MAGIC = {'Y', 'S', 'M', 'E'};
+    private static final int VERSION = 1;
+    /**
+     * The event ids, with the event's code as the index.
+     */
+    private static final Event.ID[] EVENT_IDS = {
+            Event.ID.StreamStart, Event.ID.StreamEnd,
+            Event.ID.DocumentStart, Event.ID.DocumentEnd,
+            Event.ID.Alias, Event.ID.Scalar,
+            Event.ID.SequenceStart, Event.ID.SequenceEnd,
+            Event.ID.MappingStart, Event.ID.MappingEnd};
+    private static final ScalarStyle[] SCALAR_STYLES = ScalarStyle.values();
+    private static final FlowStyle[] FLOW_STYLES = FlowStyle.values();
+
+    ParserEventRecording() {
+        throw new YAMLSourceMapException("Must not instantiate");
+    }
+
+    /**
+     * Writes the events the SnakeYAML parser produces for the YAML text
+     * read from {@code yamlReader} to the {@code output} and closes the
+     * {@code output}.
+     *
+     * @param yamlReader the Reader to read the YAML text from
+     * @param output     the OutputStream to write the recording to
+     * @throws YAMLSourceMapException when parsing the YAML text or writing
+     *                                the output failed
+     */
+    public static void writeParserEvents(Reader yamlReader, OutputStream output) {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(output))) {
+            Recorder recorder = new Recorder(out);
+            Parser parser = new ParserImpl(new StreamReader(yamlReader));
+            while (parser.peekEvent() != null) {
+                recorder.writeEvent(parser.getEvent());
+            }
+        } catch (IOException e) {
+            throw new YAMLSourceMapException(e);
+        } catch (YAMLSourceMapException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new YAMLSourceMapException(e);
+        }
+    }
+
+    /**
+     * Returns a {@link Parser} producing the events recorded in the
+     * {@code input}, as written by {@link #writeParserEvents(Reader, OutputStream)}.
+     *
+     * <p>The events are read on demand. The {@code input} is not
+     * closed.</p>
+     *
+     * @throws YAMLSourceMapException when the input is not a recording of
+     *                                parser events
+     */
+    static Parser replayParser(InputStream input) {
+        return new Replay(new DataInputStream(new BufferedInputStream(input)));
+    }
+
+    private static int codeOfEventId(Event.ID id) {
+        for (int i = 0; i < EVENT_IDS.length; i++) {
+            if (EVENT_IDS[i] == id) {
+                return i;
+            }
+        }
+        throw new YAMLSourceMapException("Unsupported event: " + id);
+    }
+
+    private static final class Recorder {
+        private final DataOutputStream out;
+        private final Map<String, Integer> idOfString = new HashMap<>();
+
+        private Recorder(DataOutputStream out) throws IOException {
+            this.out = out;
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        private void writeEvent(Event event) throws IOException {
+            out.writeByte(codeOfEventId(event.getEventId()));
+            Mark start = event.getStartMark();
+            Mark end = event.getEndMark();
+            writeInt(start.getIndex());
+            writeInt(start.getLine());
+            writeInt(start.getColumn());
+            writeInt(end.getIndex() - start.getIndex());
+            writeInt(end.getLine() - start.getLine());
+            writeInt(end.getColumn());
+
+            if (event instanceof NodeEvent) {
+                writeString(((NodeEvent) event).getAnchor());
+            }
+            if (event instanceof ScalarEvent) {
+                ScalarEvent scalar = (ScalarEvent) event;
+                writeString(scalar.getTag());
+                ImplicitTuple implicit = scalar.getImplicit();
+                out.writeByte((implicit.canOmitTagInPlainScalar() ? 1 : 0)
+                        | (implicit.canOmitTagInNonPlainScalar() ? 2 : 0));
+                out.writeByte(scalar.getScalarStyle().ordinal());
+                writeString(scalar.getValue());
+            } else if (event instanceof CollectionStartEvent) {
+                CollectionStartEvent collection = (CollectionStartEvent) event;
+                writeString(collection.getTag());
+                out.writeByte(collection.getImplicit() ? 1 : 0);
+                out.writeByte(collection.getFlowStyle().ordinal());
+            } else if (event instanceof DocumentStartEvent) {
+                out.writeByte(((DocumentStartEvent) event).getExplicit() ? 1 : 0);
+            } else if (event instanceof DocumentEndEvent) {
+                out.writeByte(((DocumentEndEvent) event).getExplicit() ? 1 : 0);
+            }
+        }
+
+        private void writeInt(int value) throws IOException {
+            int v = value;
+            while ((v & ~0x7F) != 0) {
+                out.writeByte((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.writeByte(v);
+        }
+
+        private void writeString(@Nullable String text) throws IOException {
+            if (text == null) {
+                writeInt(0);
+                return;
+            }
+            @Nullable
+            Integer id = idOfString.get(text);
+            if (id != null) {
+                writeInt(id);
+                return;
+            }
+            int newId = idOfString.size() + 1;
+            idOfString.put(text, newId);
+            writeInt(newId);
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static final class Replay implements Parser {
+        private static final int[] NO_BUFFER = new int[0];
+
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        @Nullable
+        private Event nextEvent;
+        private boolean streamEnded;
+
+        private Replay(DataInputStream in) {
+            this.in = in;
+            try {
+                byte[] magic = new byte[MAGIC.length];
+                in.readFully(magic);
+                for (int i = 0; i < MAGIC.length; i++) {
+                    if (magic[i] != MAGIC[i]) {
+                        throw new YAMLSourceMapException(
+                                "Not a recording of parser events");
+                    }
+                }
+                int version = in.readUnsignedByte();
+                if (version != VERSION) {
+                    throw new YAMLSourceMapException(String.format(
+                            "Unsupported version of parser events recording: %d",
+                            version));
+                }
+            } catch (IOException e) {
+                throw new YAMLSourceMapException(
+                        "Not a recording of parser events");
+            }
+        }
+
+        @Override
+        public boolean checkEvent(Event.ID choice) {
+            @Nullable
+            Event event = peekEvent();
+            return event != null && event.is(choice);
+        }
+
+        @Override
+        @Nullable
+        public Event peekEvent() {
+            if (nextEvent == null && !streamEnded) {
+                try {
+                    nextEvent = readEvent();
+                } catch (IOException e) {
+                    throw new YAMLSourceMapException(e);
+                }
+            }
+            return nextEvent;
+        }
+
+        @Override
+        public Event getEvent() {
+            @Nullable
+            Event result = peekEvent();
+            if (result == null) {
+                throw new NoSuchElementException("No more events");
+            }
+            nextEvent = null;
+            return result;
+        }
+
+        private Event readEvent() throws IOException {
+            int code = in.readUnsignedByte();
+            if (code >= EVENT_IDS.length) {
+                throw new YAMLSourceMapException(
+                        "Invalid event code in parser events recording: " + code);
+            }
+            int startIndex = readInt();
+            int startLine = readInt();
+            int startColumn = readInt();
+            Mark start = mark(startIndex, startLine, startColumn);
+            Mark end = mark(startIndex + readInt(), startLine + readInt(), readInt());
+
+            switch (EVENT_IDS[code]) {
+                case StreamStart:
+                    return new StreamStartEvent(start, end);
+                case StreamEnd:
+                    streamEnded = true;
+                    return new StreamEndEvent(start, end);
+                case DocumentStart:
+                    return new DocumentStartEvent(
+                            start, end, in.readBoolean(), null, null);
+                case DocumentEnd:
+                    return new DocumentEndEvent(start, end, in.readBoolean());
+                case Alias:
+                    return new AliasEvent(readString(), start, end);
+                case Scalar: {
+                    @Nullable
+                    String anchor = readString();
+                    @Nullable
+                    String tag = readString();
+                    int implicit = in.readUnsignedByte();
+                    ScalarStyle style = SCALAR_STYLES[in.readUnsignedByte()];
+                    return new ScalarEvent(anchor, tag,
+                            new ImplicitTuple((implicit & 1) != 0, (implicit & 2) != 0),
+                            readString(), start, end, style);
+                }
+                case SequenceStart: {
+                    @Nullable
+                    String anchor = readString();
+                    @Nullable
+                    String tag = readString();
+                    boolean implicit = in.readBoolean();
+                    return new SequenceStartEvent(anchor, tag, implicit,
+                            start, end, FLOW_STYLES[in.readUnsignedByte()]);
+                }
+                case SequenceEnd:
+                    return new SequenceEndEvent(start, end);
+                case MappingStart: {
+                    @Nullable
+                    String anchor = readString();
+                    @Nullable
+                    String tag = readString();
+                    boolean implicit = in.readBoolean();
+                    return new MappingStartEvent(anchor, tag, implicit,
+                            start, end, FLOW_STYLES[in.readUnsignedByte()]);
+                }
+                default:
+                    return new MappingEndEvent(start, end);
+            }
+        }
+
+        private static Mark mark(int index, int line, int column) {
+            return new Mark("<recorded>", index, line, column, NO_BUFFER, 0);
+        }
+
+        private int readInt() throws IOException {
+            int result = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in.readUnsignedByte();
+                result |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return result;
+        }
+
+        @Nullable
+        private String readString() throws IOException {
+            int id = readInt();
+            if (id == 0) {
+                return null;
+            }
+            if (id <= strings.size()) {
+                return strings.get(id - 1);
+            }
+            if (id != strings.size() + 1) {
+                throw new YAMLSourceMapException(
+                        "Invalid string id in parser events recording: " + id);
+            }
+            byte[] bytes = new byte[readInt()];
+            in.readFully(bytes);
+            String result = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+import org.abego.yaml.sourcemap.FragmentsAPI.FragmentCursor;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.Integer.max;
+import static java.lang.Integer.min;
+
+/**
+ * Collects the ranges of the JSON pointers of fragments passed in document
+ * order and hands a pointer's range to a {@link RangeHandler} as soon as it
+ * is complete.
+ *
+ * <p>As the fragments of a JSON pointer and its children are nested
+ * within the fragments of the pointer's parent only the pointers on the
+ * path to the current fragment's pointer must be remembered.</p>
+ *
+ * <p>The fragments of a JSON pointer are not contiguous when a map
+ * contains the same key more than once. The ranges of such "recurring"
+ * JSON pointers (and of their descendants) are only complete when the
+ * map is complete. When the recurring JSON pointers are known in advance
+ * (see {@link #recurringJsonPointers(FragmentCursor)}) their partial ranges
+ * are merged and handed to the handler once, when the map is complete.
+ * Otherwise the partial ranges are handed to the handler one by one.</p>
+ *
+ * <p>So besides the ranges on the path to the current fragment's pointer
+ * only the ranges within the subtrees of recurring JSON pointers are
+ * remembered, until the map containing the recurring pointer is
+ * complete.</p>
+ */
+final class PointerRangesCollector {
+    private final RangeHandler handler;
+    private final Stack<PointerRange> openRanges = new Stack<>();
+    private final Set<String> recurringJsonPointers;
+    /**
+     * When not {@code null} the recurring JSON pointers found are added to
+     * this set.
+     */
+    @Nullable
+    private final Set<String> foundRecurringJsonPointers;
+
+    /**
+     * Handles the completed range of a JSON pointer.
+     */
+    @FunctionalInterface
+    interface RangeHandler {
+        /**
+         * Handles the {@code range}, when all fragments of its JSON pointer
+         * and the pointer's children are processed.
+         *
+         * <p>The range of a JSON pointer is handled more than once when the
+         * pointer's fragments are not contiguous (e.g. for duplicate map
+         * keys) and the pointer was not passed as a recurring JSON pointer
+         * to the collector.</p>
+         */
+        void handle(PointerRange range);
+    }
+
+    private PointerRangesCollector(RangeHandler handler,
+                                   Set<String> recurringJsonPointers,
+                                   @Nullable Set<String> foundRecurringJsonPointers) {
+        this.handler = handler;
+        this.recurringJsonPointers = recurringJsonPointers;
+        this.foundRecurringJsonPointers = foundRecurringJsonPointers;
+        openRanges.push(newPointerRange(null, ""));
+    }
+
+    PointerRangesCollector(RangeHandler handler) {
+        this(handler, Collections.emptySet(), null);
+    }
+
+    /**
+     * Creates a PointerRangesCollector handing the range of every JSON
+     * pointer to the {@code handler} exactly once, also for the
+     * {@code recurringJsonPointers}.
+     */
+    PointerRangesCollector(RangeHandler handler,
+                           Set<String> recurringJsonPointers) {
+        this(handler, recurringJsonPointers, null);
+    }
+
+    /**
+     * Returns the JSON pointers whose fragments are not contiguous (e.g.
+     * for duplicate map keys) among the fragments after the current
+     * position of the {@code cursor}.
+     *
+     * <p>Besides the pointers on the path to the current fragment's pointer
+     * this only remembers the JSON pointers of the completed children of
+     * these pointers.</p>
+     */
+    static Set<String> recurringJsonPointers(FragmentCursor cursor) {
+        Set<String> result = new HashSet<>();
+        PointerRangesCollector collector = new PointerRangesCollector(
+                range -> {
+                }, Collections.emptySet(), result);
+        collector.addAll(cursor);
+        collector.finish();
+        return result;
+    }
+
+    private static boolean isAncestor(String ancestor, String jsonPointer) {
+        return jsonPointer.length() > ancestor.length()
+                && jsonPointer.startsWith(ancestor)
+                && jsonPointer.charAt(ancestor.length()) == '/';
+    }
+
+    void add(Fragment fragment) {
+        add(fragment.getJSONPointer(), fragment.getStartOffset(),
+                fragment.getEndOffset(), fragment.getKind());
+    }
+
+    /**
+     * Adds the fragments after the current position of the {@code cursor}.
+     */
+    void addAll(FragmentCursor cursor) {
+        while (cursor.next()) {
+            add(cursor.jsonPointer(), cursor.startOffset(),
+                    cursor.endOffset(), cursor.kind());
+        }
+    }
+
+    private void add(String jsonPointer, int startOffset, int endOffset, Kind kind) {
+        while (!openRanges.top().jsonPointer.equals(jsonPointer)
+                && !isAncestor(openRanges.top().jsonPointer, jsonPointer)) {
+            closeTopRange();
+        }
+        // also open the ranges of ancestors without own fragments so the
+        // children's ranges propagate properly.
+        int i = openRanges.top().jsonPointer.length();
+        while (i < jsonPointer.length()) {
+            int nextSlash = jsonPointer.indexOf('/', i + 1);
+            i = nextSlash < 0 ? jsonPointer.length() : nextSlash;
+            openRange(jsonPointer.substring(0, i));
+        }
+        openRanges.top().add(startOffset, endOffset, kind);
+    }
+
+    void finish() {
+        while (!openRanges.isEmpty()) {
+            closeTopRange();
+        }
+    }
+
+    private PointerRange newPointerRange(
+            @Nullable PointerRange parent, String jsonPointer) {
+        PointerRange result = new PointerRange(jsonPointer);
+        if (parent != null) {
+            if (parent.pendingOwner != null) {
+                result.pendingOwner = parent.pendingOwner;
+            } else if (recurringJsonPointers.contains(jsonPointer)) {
+                result.pendingOwner = parent;
+            }
+        }
+        if (foundRecurringJsonPointers != null) {
+            result.closedChildren = new HashSet<>();
+        }
+        return result;
+    }
+
+    private void openRange(String jsonPointer) {
+        PointerRange parent = openRanges.top();
+        @Nullable
+        Set<String> closedSiblings = parent.closedChildren;
+        if (closedSiblings != null && foundRecurringJsonPointers != null
+                && closedSiblings.contains(jsonPointer)) {
+            foundRecurringJsonPointers.add(jsonPointer);
+        }
+        openRanges.push(newPointerRange(parent, jsonPointer));
+    }
+
+    private void closeTopRange() {
+        PointerRange range = openRanges.pop();
+        if (!openRanges.isEmpty()) {
+            PointerRange parent = openRanges.top();
+            parent.addChildRange(range);
+            if (parent.closedChildren != null) {
+                parent.closedChildren.add(range.jsonPointer);
+            }
+        }
+        @Nullable
+        PointerRange owner = range.pendingOwner;
+        if (owner != null) {
+            if (owner.pendingDescendants == null) {
+                owner.pendingDescendants = new HashMap<>();
+            }
+            @Nullable
+            PointerRange earlierRange = owner.pendingDescendants.get(range.jsonPointer);
+            if (earlierRange == null) {
+                owner.pendingDescendants.put(range.jsonPointer, range);
+            } else {
+                earlierRange.addLaterRange(range);
+            }
+        } else {
+            handlePendingDescendantsOf(range);
+            handler.handle(range);
+        }
+    }
+
+    /**
+     * Hands the pending ranges of the descendants of the {@code range}
+     * to the handler, as they are complete once the {@code range} is
+     * complete.
+     */
+    private void handlePendingDescendantsOf(PointerRange range) {
+        @Nullable
+        Map<String, PointerRange> pending = range.pendingDescendants;
+        if (pending == null) {
+            return;
+        }
+        List<PointerRange> completed = new ArrayList<>(pending.values());
+        // descendants sort after their ancestors, so in reverse order the
+        // children are handled before their parent
+        completed.sort((a, b) -> b.jsonPointer.compareTo(a.jsonPointer));
+        for (PointerRange r : completed) {
+            handler.handle(r);
+        }
+        range.pendingDescendants = null;
+    }
+
+    /**
+     * The range of a JSON pointer, as far as collected.
+     */
+    static final class PointerRange {
+        private final String jsonPointer;
+        private int start = Integer.MAX_VALUE;
+        private int end = Integer.MIN_VALUE;
+        private int valueFragmentStart = -1;
+        private int valueFragmentEnd = -1;
+        private int childrenStart = Integer.MAX_VALUE;
+        private int childrenEnd = Integer.MIN_VALUE;
+        /**
+         * The JSON pointers of the completed children, when looking for
+         * recurring JSON pointers; {@code null} otherwise.
+         */
+        @Nullable
+        private Set<String> closedChildren;
+        /**
+         * For the range of a recurring JSON pointer or of one of its
+         * descendants: the range of the nearest ancestor that is neither,
+         * holding this range until it is complete; {@code null} otherwise.
+         */
+        @Nullable
+        private PointerRange pendingOwner;
+        /**
+         * The (partial) ranges of the recurring JSON pointers among the
+         * descendants and of their descendants, not yet handed to the
+         * handler, or {@code null} when there are none.
+         */
+        @Nullable
+        private Map<String, PointerRange> pendingDescendants;
+
+        PointerRange(String jsonPointer) {
+            this.jsonPointer = jsonPointer;
+        }
+
+        String getJsonPointer() {
+            return jsonPointer;
+        }
+
+        /**
+         * Returns true when the JSON pointer has fragments (of its own, not
+         * only of its children).
+         */
+        boolean hasFragments() {
+            return start < end;
+        }
+
+        int getStart() {
+            return start;
+        }
+
+        int getEnd() {
+            return end;
+        }
+
+        void add(int startOffset, int endOffset, Kind kind) {
+            start = min(start, startOffset);
+            end = max(end, endOffset);
+            if (valueFragmentStart < 0 && YAMLSourceMapDefault.isValueKind(kind)) {
+                valueFragmentStart = startOffset;
+                valueFragmentEnd = endOffset;
+            }
+        }
+
+        void addChildRange(PointerRange child) {
+            childrenStart = min(childrenStart, min(child.start, child.childrenStart));
+            childrenEnd = max(childrenEnd, max(child.end, child.childrenEnd));
+        }
+
+        /**
+         * Adds the fragments and children of the {@code later} range of the
+         * same JSON pointer to this range.
+         */
+        void addLaterRange(PointerRange later) {
+            start = min(start, later.start);
+            end = max(end, later.end);
+            if (valueFragmentStart < 0) {
+                valueFragmentStart = later.valueFragmentStart;
+                valueFragmentEnd = later.valueFragmentEnd;
+            }
+            childrenStart = min(childrenStart, later.childrenStart);
+            childrenEnd = max(childrenEnd, later.childrenEnd);
+        }
+
+        /**
+         * Returns the start of the value range, as defined by
+         * {@link org.abego.yaml.sourcemap.YAMLSourceMap#sourceRangeOfValueOfJsonPointer(String)}.
+         */
+        int valueStart() {
+            if (valueFragmentStart >= 0) {
+                return valueFragmentStart;
+            }
+            return childrenStart < childrenEnd ? childrenStart : 0;
+        }
+
+        /**
+         * Returns the end of the value range, as defined by
+         * {@link org.abego.yaml.sourcemap.YAMLSourceMap#sourceRangeOfValueOfJsonPointer(String)}.
+         */
+        int valueEnd() {
+            if (valueFragmentStart >= 0) {
+                return valueFragmentEnd;
+            }
+            return childrenStart < childrenEnd ? childrenEnd : 0;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap.internal;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of the scalar nodes of a {@link NodeTree}.
+ *
+ * <p>The values are stored compactly: short values are stored once in a
+ * single char buffer, with all scalars having the same short value
+ * referring to the same part of the buffer. Longer values are stored as
+ * Strings, shared between scalars with the same value, too.</p>
+ *
+ * <p>The entries are ordered by the node, i.e. in document order.</p>
+ *
+ * <p>Instances are immutable. Use a {@link Builder} to create one.</p>
+ */
+final class ScalarValues {
+    /**
+     * The maximal length of a value stored in the char buffer.
+     */
+    private static final int MAX_SHORT_VALUE_LENGTH = 32;
+
+    private final int[] node;
+    /**
+     * For a short value the offset of its text in {@link #chars}, for a
+     * longer value its index in {@link #longValues}.
+     */
+    private final int[] valueOffset;
+    /**
+     * For a short value its length, for a longer value -1.
+     */
+    private final int[] valueLength;
+    private final char[] chars;
+    private final String[] longValues;
+
+    private ScalarValues(Builder builder) {
+        int n = builder.size;
+        this.node = Arrays.copyOf(builder.node, n);
+        this.valueOffset = Arrays.copyOf(builder.valueOffset, n);
+        this.valueLength = Arrays.copyOf(builder.valueLength, n);
+        this.chars = Arrays.copyOf(builder.chars, builder.charsLength);
+        this.longValues = builder.longValues.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the value of the scalar {@code node}, or {@code null} when
+     * no value is stored for the node.
+     */
+    @Nullable
+    String valueOfNode(int node) {
+        int i = Arrays.binarySearch(this.node, node);
+        return i >= 0 ? value(i) : null;
+    }
+
+    /**
+     * Returns the value of the scalar whose value range in the
+     * {@code tree} contains the {@code offset}, or {@code null} when no
+     * such scalar exists.
+     */
+    @Nullable
+    String valueAtOffset(NodeTree tree, int offset) {
+        // find the last scalar starting at or before offset
+        int lo = 0;
+        int hi = node.length - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tree.valueStart(node[mid]) <= offset) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found >= 0 && offset < tree.valueEnd(node[found])
+                ? value(found) : null;
+    }
+
+    private String value(int i) {
+        int length = valueLength[i];
+        return length >= 0
+                ? new String(chars, valueOffset[i], length)
+                : longValues[valueOffset[i]];
+    }
+
+    /**
+     * Builds {@link ScalarValues}, adding the values in document order.
+     */
+    static final class Builder {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private int size;
+        private int[] node = new int[INITIAL_CAPACITY];
+        private int[] valueOffset = new int[INITIAL_CAPACITY];
+        private int[] valueLength = new int[INITIAL_CAPACITY];
+        private char[] chars = new char[INITIAL_CAPACITY * 8];
+        private int charsLength;
+        private final List<String> longValues = new ArrayList<>();
+        /**
+         * Maps a value already stored to its entry in {@link #valueOffset}
+         * and {@link #valueLength}, to share the storage.
+         */
+        private final Map<String, Integer> entryOfValue = new HashMap<>();
+
+        /**
+         * Adds the {@code value} of the scalar {@code scalarNode}.
+         *
+         * <p>{@code scalarNode} must be greater than the nodes added
+         * before.</p>
+         */
+        void add(int scalarNode, String value) {
+            if (size == node.length) {
+                int capacity = size * 2;
+                node = Arrays.copyOf(node, capacity);
+                valueOffset = Arrays.copyOf(valueOffset, capacity);
+                valueLength = Arrays.copyOf(valueLength, capacity);
+            }
+            int i = size++;
+            node[i] = scalarNode;
+
+            Integer entry = entryOfValue.get(value);
+            if (entry != null) {
+                valueOffset[i] = valueOffset[entry];
+                valueLength[i] = valueLength[entry];
+                return;
+            }
+            entryOfValue.put(value, i);
+            int length = value.length();
+            if (length <= MAX_SHORT_VALUE_LENGTH) {
+                if (charsLength + length > chars.length) {
+                    chars = Arrays.copyOf(chars,
+                            Math.max(chars.length * 2, charsLength + length));
+                }
+                value.getChars(0, length, chars, charsLength);
+                valueOffset[i] = charsLength;
+                valueLength[i] = length;
+                charsLength += length;
+            } else {
+                valueOffset[i] = longValues.size();
+                valueLength[i] = -1;
+                longValues.add(value);
+            }
+        }
+
+        ScalarValues build() {
+            return new ScalarValues(this);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+/**
+ * Counts the fragments scanned by the queries of
+ * {@link YAMLSourceMapDefault}s in the current thread, for the metrics of
+ * {@link InstrumentedYAMLSourceMapDefault}.
+ *
+ * <p>Queries of the node tree count the nodes they visit as scanned
+ * fragments.</p>
+ *
+ * <p>The counting is enabled when the first instrumented source map is
+ * created. Until then {@link #add(int)} only reads a field.</p>
+ */
+final class ScannedFragments {
+    private static volatile boolean enabled;
+    private static final ThreadLocal<long[]> COUNT =
+            ThreadLocal.withInitial(() -> new long[1]);
+
+    ScannedFragments() {
+        throw new IllegalStateException("Must not instantiate");
+    }
+
+    static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Adds {@code count} scanned fragments to the count of the current
+     * thread, when counting is enabled.
+     */
+    static void add(int count) {
+        if (enabled) {
+            COUNT.get()[0] += count;
+        }
+    }
+
+    /**
+     * Returns the number of fragments scanned in the current thread since
+     * counting was enabled.
+     */
+    static long count() {
+        return COUNT.get()[0];
+    }
+}
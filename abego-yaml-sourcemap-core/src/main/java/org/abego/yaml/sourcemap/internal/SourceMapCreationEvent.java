@@ -0,0 +1,78 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The JFR event for the creation of a source map.
+ *
+ * <p>Only use this class through {@link FlightRecorderEvents}.</p>
+ */
+@Name("org.abego.yaml.sourcemap.Creation")
+@Label("YAML Source Map Creation")
+@Description("Creation of a YAML source map")
+@Category({"abego", "YAML Source Map"})
+final class SourceMapCreationEvent extends Event {
+    @Label("Input Length")
+    @Description("The length of the YAML document, in code points")
+    int inputLength;
+
+    @Label("Fragment Count")
+    int fragmentCount;
+
+    /**
+     * The type of this event, to check if the event is enabled without
+     * creating an event object.
+     */
+    private static final EventType EVENT_TYPE =
+            EventType.getEventType(SourceMapCreationEvent.class);
+
+    @Nullable
+    static Object beginIfEnabled() {
+        if (!EVENT_TYPE.isEnabled()) {
+            return null;
+        }
+        SourceMapCreationEvent event = new SourceMapCreationEvent();
+        event.begin();
+        return event;
+    }
+
+    static void end(Object event, int inputLength, int fragmentCount) {
+        SourceMapCreationEvent e = (SourceMapCreationEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.inputLength = inputLength;
+            e.fragmentCount = fragmentCount;
+            e.commit();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.JSONPointerChange;
+import org.abego.yaml.sourcemap.JSONPointerChange.Kind;
+import org.abego.yaml.sourcemap.NodesAPI;
+import org.abego.yaml.sourcemap.NodesAPI.Node;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.abego.yaml.sourcemap.internal.JSONPointerChangeDefault.createJSONPointerChangeDefault;
+
+/**
+ * Calculates the structural difference of two versions of a YAML document,
+ * as {@link JSONPointerChange}s.
+ *
+ * <p>The node trees of both versions are walked in parallel, skipping all
+ * subtrees with equal {@link Node#getSubtreeHash() subtree hashes}. So
+ * only the nodes on the paths to the changes and their siblings are
+ * visited, and the cost is proportional to the size of the change, not to
+ * the size of the document.</p>
+ *
+ * <p>The entries of maps are matched by their keys, the items of
+ * sequences by their index.</p>
+ */
+public final class SourceMapDiff {
+    private final List<JSONPointerChange> changes = new ArrayList<>();
+
+    private SourceMapDiff() {
+    }
+
+    /**
+     * Returns the changes of the data between the {@code before} and the
+     * {@code after} version of a YAML document.
+     *
+     * <p>The changes are ordered by their position in the documents, with
+     * the entries added to a map following the other changes of the
+     * map.</p>
+     *
+     * <p>When the data of a map entry or a sequence item changed, only the
+     * innermost changed nodes are reported, not their ancestors. Reordering
+     * the entries of a map is not reported.</p>
+     *
+     * @param before the source map of the old version of the document
+     * @param after  the source map of the new version of the document
+     * @return the changes of the data between the {@code before} and the
+     * {@code after} version
+     * @throws org.abego.yaml.sourcemap.YAMLSourceMapException when a source
+     *                                                         map has no node tree
+     */
+    public static List<JSONPointerChange> diff(NodesAPI before, NodesAPI after) {
+        SourceMapDiff diff = new SourceMapDiff();
+        diff.diffNodes(before.rootNode(), after.rootNode());
+        return diff.changes;
+    }
+
+    private void diffNodes(@Nullable Node before, @Nullable Node after) {
+        if (before == null) {
+            if (after != null) {
+                addChange(Kind.ADDED, null, after);
+            }
+            return;
+        }
+        if (after == null) {
+            addChange(Kind.REMOVED, before, null);
+            return;
+        }
+        if (before.getSubtreeHash() == after.getSubtreeHash()) {
+            return;
+        }
+
+        Node.Kind kind = before.getKind();
+        if (kind != after.getKind()
+                || (kind != Node.Kind.MAP && kind != Node.Kind.SEQUENCE)) {
+            addChange(Kind.CHANGED, before, after);
+        } else if (kind == Node.Kind.MAP) {
+            diffMaps(before, after);
+        } else {
+            diffSequences(before, after);
+        }
+    }
+
+    private void diffMaps(Node before, Node after) {
+        // the entries of after, by key (a queue per key for duplicate keys)
+        Map<String, Deque<Node>> afterEntries = new HashMap<>();
+        for (@Nullable Node a = after.getFirstChild(); a != null; a = a.getNextSibling()) {
+            afterEntries.computeIfAbsent(a.getKey(), k -> new ArrayDeque<>()).add(a);
+        }
+        for (@Nullable Node b = before.getFirstChild(); b != null; b = b.getNextSibling()) {
+            @Nullable
+            Deque<Node> entries = afterEntries.get(b.getKey());
+            diffNodes(b, entries != null ? entries.poll() : null);
+        }
+        for (@Nullable Node a = after.getFirstChild(); a != null; a = a.getNextSibling()) {
+            @Nullable
+            Deque<Node> entries = afterEntries.get(a.getKey());
+            if (entries != null && entries.contains(a)) {
+                entries.remove(a);
+                addChange(Kind.ADDED, null, a);
+            }
+        }
+    }
+
+    private void diffSequences(Node before, Node after) {
+        @Nullable
+        Node b = before.getFirstChild();
+        @Nullable
+        Node a = after.getFirstChild();
+        while (b != null || a != null) {
+            diffNodes(b, a);
+            b = b != null ? b.getNextSibling() : null;
+            a = a != null ? a.getNextSibling() : null;
+        }
+    }
+
+    private void addChange(Kind kind, @Nullable Node before, @Nullable Node after) {
+        Node node = after != null ? after : before;
+        changes.add(createJSONPointerChangeDefault(
+                kind,
+                node != null ? node.getJSONPointer() : "",
+                before != null ? before.getRange() : null,
+                after != null ? after.getRange() : null));
+    }
+}
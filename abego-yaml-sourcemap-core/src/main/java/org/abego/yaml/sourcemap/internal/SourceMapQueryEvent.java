@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The JFR event for a potentially expensive query of a source map.
+ *
+ * <p>By default only queries taking at least 1 ms are recorded.</p>
+ *
+ * <p>Only use this class through {@link FlightRecorderEvents}.</p>
+ */
+@Name("org.abego.yaml.sourcemap.Query")
+@Label("YAML Source Map Query")
+@Description("A potentially expensive query of a YAML source map")
+@Category({"abego", "YAML Source Map"})
+@Threshold("1 ms")
+final class SourceMapQueryEvent extends Event {
+    @Label("Operation")
+    @Nullable
+    String operation;
+
+    @Label("JSON Pointer")
+    @Nullable
+    String jsonPointer;
+
+    @Label("Fragments Scanned")
+    int fragmentsScanned;
+
+    /**
+     * The type of this event, to check if the event is enabled without
+     * creating an event object.
+     */
+    private static final EventType EVENT_TYPE =
+            EventType.getEventType(SourceMapQueryEvent.class);
+
+    @Nullable
+    static Object beginIfEnabled() {
+        if (!EVENT_TYPE.isEnabled()) {
+            return null;
+        }
+        SourceMapQueryEvent event = new SourceMapQueryEvent();
+        event.begin();
+        return event;
+    }
+
+    static void end(Object event,
+                    String operation, String jsonPointer, int fragmentsScanned) {
+        SourceMapQueryEvent e = (SourceMapQueryEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.operation = operation;
+            e.jsonPointer = jsonPointer;
+            e.fragmentsScanned = fragmentsScanned;
+            e.commit();
+        }
+    }
+}
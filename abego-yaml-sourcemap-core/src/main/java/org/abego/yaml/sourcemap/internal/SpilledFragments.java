@@ -0,0 +1,674 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.abego.yaml.sourcemap.internal.FragmentDefault.createFragmentDefault;
+import static org.abego.yaml.sourcemap.internal.JSONPointerDictionary.createJSONPointerDictionary;
+
+/**
+ * An immutable list of fragments stored in a temporary file, in segments
+ * of {@link #SEGMENT_SIZE} fragments, with only a summary of every segment
+ * kept in memory.
+ *
+ * <p>A segment is read from the file when one of its fragments is
+ * accessed. The most recently used segments are cached, so the memory used
+ * by the list does not grow with the number of fragments, except for the
+ * segment summaries.</p>
+ *
+ * <p>A segment's summary holds the start of its first fragment, the kinds of
+ * its fragments and a Bloom filter of its fragments' JSON pointers and of
+ * their ancestors. The summaries let the lookups by location, kind or JSON
+ * pointer skip the segments that cannot contain a match, without reading
+ * them.</p>
+ *
+ * <p>Instances are thread-safe, except for {@link #release()}. Create
+ * instances with a {@link Writer}.</p>
+ */
+final class SpilledFragments extends AbstractList<Fragment>
+        implements RandomAccess, FragmentStore {
+    /**
+     * The number of fragments in a segment (except for the last segment,
+     * that may be shorter).
+     */
+    static final int SEGMENT_SIZE = 4096;
+    private static final int CACHED_SEGMENTS = 16;
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+    private static final int BLOOM_HASH_COUNT = 4;
+    private static final int[] NO_INDEXES = new int[0];
+    private static final Kind[] KINDS = Kind.values();
+
+    private final RandomAccessFile file;
+    /**
+     * The path of the {@link #file}, to delete it on {@link #release()} in
+     * case it could not be deleted while open.
+     */
+    private final File path;
+    private final Segment[] segments;
+    private final int size;
+    private volatile boolean released;
+    /**
+     * All JSON pointers of the fragments, for the pointer ids, or
+     * {@code null} when not yet created.
+     */
+    @Nullable
+    private volatile JSONPointerDictionary pointerDictionary;
+
+    /**
+     * The most recently used segments, by segment number.
+     */
+    private final Map<Integer, Fragment[]> cache =
+            new LinkedHashMap<Integer, Fragment[]>(CACHED_SEGMENTS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<Integer, Fragment[]> eldest) {
+                    return size() > CACHED_SEGMENTS;
+                }
+            };
+
+    private SpilledFragments(RandomAccessFile file, File path,
+                             Segment[] segments, int size) {
+        this.file = file;
+        this.path = path;
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * The summary of a segment.
+     */
+    private static final class Segment {
+        private final long position;
+        private final int length;
+        private final int startOffset;
+        private final int startLine;
+        private final int startColumn;
+        /**
+         * The kinds of the segment's fragments, with bit {@code k} set
+         * for the kind with ordinal {@code k}.
+         */
+        private final int kindBits;
+        private final long[] bloomFilter;
+
+        private Segment(long position, int length,
+                        int startOffset, int startLine, int startColumn,
+                        int kindBits, long[] bloomFilter) {
+            this.position = position;
+            this.length = length;
+            this.startOffset = startOffset;
+            this.startLine = startLine;
+            this.startColumn = startColumn;
+            this.kindBits = kindBits;
+            this.bloomFilter = bloomFilter;
+        }
+
+        /**
+         * Returns {@code false} when the Bloom filter definitely does not
+         * contain a text with the given {@code hash}
+         * ({@link String#hashCode()}); returns {@code true} when it may
+         * contain such a text.
+         */
+        private boolean mayContain(int hash) {
+            int mask = bloomFilter.length * 64 - 1;
+            long x = hash * 0x9E3779B97F4A7C15L;
+            int h1 = (int) x;
+            int h2 = (int) (x >>> 32) | 1;
+            for (int i = 0; i < BLOOM_HASH_COUNT; i++) {
+                int bit = (h1 + i * h2) & mask;
+                if ((bloomFilter[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long[] bloomFilter(int[] hashes, int count) {
+            int bits = Integer.highestOneBit(
+                    Math.max(64, count * BLOOM_BITS_PER_ENTRY - 1) << 1);
+            long[] result = new long[bits / 64];
+            int mask = bits - 1;
+            for (int j = 0; j < count; j++) {
+                long x = hashes[j] * 0x9E3779B97F4A7C15L;
+                int h1 = (int) x;
+                int h2 = (int) (x >>> 32) | 1;
+                for (int i = 0; i < BLOOM_HASH_COUNT; i++) {
+                    int bit = (h1 + i * h2) & mask;
+                    result[bit >>> 6] |= 1L << bit;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Writes fragments to a temporary file and creates the
+     * {@link SpilledFragments} for them.
+     *
+     * <p>The fragments must be added in document order and partition the
+     * text, i.e. every fragment starts where the previous one ends.</p>
+     */
+    static final class Writer {
+        private final File file;
+        private final OutputStream out;
+        private final List<Segment> segments = new ArrayList<>();
+        private long position;
+        private int size;
+
+        // the fragments of the current segment
+        private final Map<String, Integer> pointerIdOfPointer = new HashMap<>();
+        private final List<String> pointers = new ArrayList<>();
+        private final int[] kind = new int[SEGMENT_SIZE];
+        private final int[] pointerId = new int[SEGMENT_SIZE];
+        private final int[] endOffset = new int[SEGMENT_SIZE];
+        private final int[] endLine = new int[SEGMENT_SIZE];
+        private final int[] endColumn = new int[SEGMENT_SIZE];
+        private int count;
+        private int startOffset;
+        private int startLine;
+        private int startColumn;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * Creates a Writer writing to a new temporary file in the
+         * {@code directory}.
+         */
+        Writer(File directory) {
+            try {
+                file = File.createTempFile("yaml-sourcemap-", ".fragments", directory);
+            } catch (IOException e) {
+                throw new YAMLSourceMapException(e);
+            }
+            try {
+                out = new BufferedOutputStream(new FileOutputStream(file));
+            } catch (IOException e) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+                throw new YAMLSourceMapException(e);
+            }
+        }
+
+        /**
+         * Closes and deletes the file, e.g. when the fragments could not be
+         * created completely.
+         *
+         * <p>The Writer must not be used after this call.</p>
+         */
+        void discard() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // ignore, as the file is deleted anyway
+            }
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+
+        void add(Fragment fragment) {
+            if (count == 0) {
+                startOffset = fragment.getStartOffset();
+                startLine = fragment.getStartLine();
+                startColumn = fragment.getStartColumn();
+            }
+            String jsonPointer = fragment.getJSONPointer();
+            @Nullable
+            Integer id = pointerIdOfPointer.get(jsonPointer);
+            if (id == null) {
+                id = pointers.size();
+                pointerIdOfPointer.put(jsonPointer, id);
+                pointers.add(jsonPointer);
+            }
+            kind[count] = fragment.getKind().ordinal();
+            pointerId[count] = id;
+            endOffset[count] = fragment.getEndOffset();
+            endLine[count] = fragment.getEndLine();
+            endColumn[count] = fragment.getEndColumn();
+            count++;
+            size++;
+            if (count == SEGMENT_SIZE) {
+                writeSegment();
+            }
+        }
+
+        /**
+         * Writes the fragments still buffered and returns the
+         * {@link SpilledFragments} of all fragments added.
+         *
+         * <p>The Writer must not be used after this call.</p>
+         */
+        SpilledFragments finish() {
+            try {
+                if (count > 0) {
+                    writeSegment();
+                }
+                out.close();
+                RandomAccessFile input = new RandomAccessFile(file, "r");
+                // On most systems an open file can be deleted, keeping its
+                // content until it is closed. Otherwise it is deleted on
+                // release.
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+                return new SpilledFragments(input, file,
+                        segments.toArray(new Segment[0]), size);
+            } catch (IOException e) {
+                discard();
+                throw new YAMLSourceMapException(e);
+            }
+        }
+
+        private void writeSegment() {
+            bytes.reset();
+
+            // the JSON pointers, each sharing a prefix with its predecessor
+            writeInt(pointers.size());
+            String previous = "";
+            int[] hashes = new int[pointers.size() * 4];
+            int hashCount = 0;
+            for (String pointer : pointers) {
+                int common = commonPrefixLength(previous, pointer);
+                byte[] suffix = pointer.substring(common)
+                        .getBytes(StandardCharsets.UTF_8);
+                writeInt(common);
+                writeInt(suffix.length);
+                bytes.write(suffix, 0, suffix.length);
+                previous = pointer;
+
+                // the pointer and the prefixes of its descendants ("/a/",
+                // "/a/b/" etc.), each identified by its String hash
+                int h = 0;
+                for (int i = 0; i < pointer.length(); i++) {
+                    char c = pointer.charAt(i);
+                    h = 31 * h + c;
+                    if (c == '/') {
+                        hashes = add(hashes, hashCount++, h);
+                    }
+                }
+                hashes = add(hashes, hashCount++, h);
+            }
+            Arrays.sort(hashes, 0, hashCount);
+            int distinctCount = 0;
+            for (int i = 0; i < hashCount; i++) {
+                if (i == 0 || hashes[i] != hashes[i - 1]) {
+                    hashes[distinctCount++] = hashes[i];
+                }
+            }
+
+            // the fragments, starting where the previous fragment ends
+            int kindBits = 0;
+            int prevOffset = startOffset;
+            int prevLine = startLine;
+            for (int i = 0; i < count; i++) {
+                kindBits |= 1 << kind[i];
+                writeInt(kind[i]);
+                writeInt(pointerId[i]);
+                writeInt(endOffset[i] - prevOffset);
+                writeInt(endLine[i] - prevLine);
+                writeInt(endColumn[i]);
+                prevOffset = endOffset[i];
+                prevLine = endLine[i];
+            }
+
+            try {
+                bytes.writeTo(out);
+            } catch (IOException e) {
+                throw new YAMLSourceMapException(e);
+            }
+            segments.add(new Segment(position, bytes.size(),
+                    startOffset, startLine, startColumn, kindBits,
+                    Segment.bloomFilter(hashes, distinctCount)));
+            position += bytes.size();
+
+            pointerIdOfPointer.clear();
+            pointers.clear();
+            count = 0;
+        }
+
+        private static int[] add(int[] items, int index, int item) {
+            int[] result = index < items.length
+                    ? items : Arrays.copyOf(items, items.length * 2 + 1);
+            result[index] = item;
+            return result;
+        }
+
+        private static int commonPrefixLength(String a, String b) {
+            int n = Math.min(a.length(), b.length());
+            int i = 0;
+            while (i < n && a.charAt(i) == b.charAt(i)) {
+                i++;
+            }
+            // don't split a surrogate pair
+            if (i > 0 && Character.isHighSurrogate(a.charAt(i - 1))) {
+                i--;
+            }
+            return i;
+        }
+
+        private void writeInt(int value) {
+            int v = value;
+            while ((v & ~0x7F) != 0) {
+                bytes.write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes.write(v);
+        }
+    }
+
+    @Override
+    public Fragment get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Index: %d, Size: %d", index, size));
+        }
+        return segment(index / SEGMENT_SIZE)[index % SEGMENT_SIZE];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // The fragments of a segment are read at once and cached, so reading
+    // a single column creates no object.
+
+    @Override
+    public int startOffset(int index) {
+        return get(index).getStartOffset();
+    }
+
+    @Override
+    public int endOffset(int index) {
+        return get(index).getEndOffset();
+    }
+
+    @Override
+    public int startLine(int index) {
+        return get(index).getStartLine();
+    }
+
+    @Override
+    public int startColumn(int index) {
+        return get(index).getStartColumn();
+    }
+
+    @Override
+    public int endLine(int index) {
+        return get(index).getEndLine();
+    }
+
+    @Override
+    public int endColumn(int index) {
+        return get(index).getEndColumn();
+    }
+
+    @Override
+    public Kind kind(int index) {
+        return get(index).getKind();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The pointer ids are the ids of the JSON pointers in a
+     * {@link JSONPointerDictionary} of all JSON pointers, created on first
+     * use by reading all segments.</p>
+     */
+    @Override
+    public int pointerId(int index) {
+        return pointerDictionary().idOf(get(index).getJSONPointer());
+    }
+
+    @Override
+    public String jsonPointer(int index) {
+        return get(index).getJSONPointer();
+    }
+
+    private JSONPointerDictionary pointerDictionary() {
+        @Nullable
+        JSONPointerDictionary result = pointerDictionary;
+        if (result == null) {
+            Set<String> jsonPointers = new HashSet<>();
+            for (int s = 0; s < segments.length; s++) {
+                for (Fragment f : segment(s)) {
+                    jsonPointers.add(f.getJSONPointer());
+                }
+            }
+            result = createJSONPointerDictionary(jsonPointers);
+            pointerDictionary = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the fragments of the segment with the number {@code s},
+     * reading them from the file when they are not cached.
+     */
+    private Fragment[] segment(int s) {
+        if (released) {
+            throw new YAMLSourceMapException("The source map is closed");
+        }
+        @Nullable
+        Fragment[] result;
+        synchronized (cache) {
+            result = cache.get(s);
+        }
+        if (result == null) {
+            // (when called concurrently a segment may be read more than
+            // once, what is harmless)
+            result = readSegment(segments[s]);
+            synchronized (cache) {
+                cache.put(s, result);
+            }
+        }
+        return result;
+    }
+
+    private Fragment[] readSegment(Segment segment) {
+        byte[] bytes = new byte[segment.length];
+        try {
+            synchronized (file) {
+                file.seek(segment.position);
+                file.readFully(bytes);
+            }
+        } catch (IOException e) {
+            throw new YAMLSourceMapException(e);
+        }
+        int[] pos = {0};
+
+        String[] pointers = new String[readInt(bytes, pos)];
+        String previous = "";
+        for (int i = 0; i < pointers.length; i++) {
+            int common = readInt(bytes, pos);
+            int length = readInt(bytes, pos);
+            pointers[i] = previous.substring(0, common)
+                    + new String(bytes, pos[0], length, StandardCharsets.UTF_8);
+            pos[0] += length;
+            previous = pointers[i];
+        }
+
+        List<Fragment> result = new ArrayList<>(SEGMENT_SIZE);
+        int startOffset = segment.startOffset;
+        int startLine = segment.startLine;
+        int startColumn = segment.startColumn;
+        while (pos[0] < bytes.length) {
+            Kind kind = KINDS[readInt(bytes, pos)];
+            String jsonPointer = pointers[readInt(bytes, pos)];
+            int endOffset = startOffset + readInt(bytes, pos);
+            int endLine = startLine + readInt(bytes, pos);
+            int endColumn = readInt(bytes, pos);
+            result.add(createFragmentDefault(
+                    startOffset, startLine, startColumn,
+                    endOffset, endLine, endColumn, kind, jsonPointer));
+            startOffset = endOffset;
+            startLine = endLine;
+            startColumn = endColumn;
+        }
+        return result.toArray(new Fragment[0]);
+    }
+
+    private static int readInt(byte[] bytes, int[] pos) {
+        int result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = bytes[pos[0]++];
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    /**
+     * Returns the index of the first fragment of the last segment starting
+     * at or before {@code offset}, or -1 when no such segment exists.
+     */
+    int indexOfLastSegmentStartingAtOrBefore(int offset) {
+        int low = 0;
+        int high = segments.length - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (segments[mid].startOffset <= offset) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result < 0 ? -1 : result * SEGMENT_SIZE;
+    }
+
+    /**
+     * Returns the index of the first fragment of the last segment starting
+     * at or before the location defined by {@code line} and {@code column},
+     * or -1 when no such segment exists.
+     */
+    int indexOfLastSegmentStartingAtOrBefore(int line, int column) {
+        int low = 0;
+        int high = segments.length - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Segment segment = segments[mid];
+            if (segment.startLine < line
+                    || (segment.startLine == line
+                    && segment.startColumn <= column)) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result < 0 ? -1 : result * SEGMENT_SIZE;
+    }
+
+    @Override
+    public int[] fragmentIndexesOfJsonPointer(String jsonPointer) {
+        int hash = jsonPointer.hashCode();
+        return fragmentIndexesMatching(
+                segment -> segment.mayContain(hash),
+                f -> f.getJSONPointer().equals(jsonPointer));
+    }
+
+    @Override
+    public int[] fragmentIndexesOfDescendantsOf(String jsonPointer) {
+        String prefix = jsonPointer + "/";
+        int hash = prefix.hashCode();
+        return fragmentIndexesMatching(
+                segment -> segment.mayContain(hash),
+                f -> f.getJSONPointer().startsWith(prefix));
+    }
+
+    @Override
+    public int[] fragmentIndexesOfKinds(Kind... kinds) {
+        int kindBits = 0;
+        for (Kind kind : kinds) {
+            kindBits |= 1 << kind.ordinal();
+        }
+        int bits = kindBits;
+        return fragmentIndexesMatching(
+                segment -> (segment.kindBits & bits) != 0,
+                f -> (bits & (1 << f.getKind().ordinal())) != 0);
+    }
+
+    @Override
+    public void release() {
+        released = true;
+        synchronized (cache) {
+            cache.clear();
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new YAMLSourceMapException(e);
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            path.delete();
+        }
+    }
+
+    /**
+     * Returns the indexes of the fragments matching the {@code test}, in
+     * ascending order, only reading the segments that {@code mayMatch}.
+     */
+    private int[] fragmentIndexesMatching(
+            Predicate<Segment> mayMatch, Predicate<Fragment> test) {
+        int[] result = NO_INDEXES;
+        int count = 0;
+        for (int s = 0; s < segments.length; s++) {
+            if (mayMatch.test(segments[s])) {
+                Fragment[] fragments = segment(s);
+                for (int i = 0; i < fragments.length; i++) {
+                    if (test.test(fragments[i])) {
+                        result = Writer.add(result, count++, s * SEGMENT_SIZE + i);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
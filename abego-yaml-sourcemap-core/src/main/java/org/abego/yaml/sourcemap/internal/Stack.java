@@ -41,6 +41,10 @@ class Stack<T> {
         return items.isEmpty();
     }
 
+    public int size() {
+        return items.size();
+    }
+
     public void push(T item) {
         items.add(item);
     }
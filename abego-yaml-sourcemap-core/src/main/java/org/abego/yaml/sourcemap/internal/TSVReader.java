@@ -0,0 +1,216 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.abego.yaml.sourcemap.internal.FragmentDefault.createFragmentDefault;
+
+/**
+ * Reads {@link Fragment}s from tab separated values (TSV), as written by
+ * {@link TSVWriter}.
+ */
+public final class TSVReader {
+    private static final int FIELD_COUNT = 8;
+    private static final Kind[] KINDS = Kind.values();
+
+    private final BufferedReader reader;
+    /**
+     * The start indices of the fields in the current line, plus the
+     * "virtual" start of the field following the last field.
+     */
+    private final int[] fieldStarts = new int[FIELD_COUNT + 1];
+    private int lineNumber;
+
+    private TSVReader(Reader input) {
+        this.reader = input instanceof BufferedReader
+                ? (BufferedReader) input : new BufferedReader(input);
+    }
+
+    /**
+     * Reads the TSV text from {@code input} and returns the fragments
+     * defined by the text, in the order given by the text.
+     *
+     * <p>The {@code input} is not closed.</p>
+     *
+     * @param input the Reader to read the TSV text from
+     * @return the fragments defined by the TSV text
+     * @throws YAMLSourceMapException when the text is not a valid TSV text
+     *                                for fragments or reading failed
+     */
+    public static List<Fragment> readFragments(Reader input) {
+        try {
+            return new TSVReader(input).readFragments();
+        } catch (IOException e) {
+            throw new YAMLSourceMapException(e);
+        }
+    }
+
+    /**
+     * Returns the {@code text} with all TSV escape sequences replaced by the
+     * characters they stand for.
+     */
+    static String unescapeFromTSV(String text) {
+        int i = text.indexOf('\\');
+        if (i < 0) {
+            return text;
+        }
+
+        StringBuilder result = new StringBuilder(text.length());
+        result.append(text, 0, i);
+        int n = text.length();
+        for (; i < n; i++) {
+            char c = text.charAt(i);
+            if (c != '\\' || i + 1 == n) {
+                result.append(c);
+                continue;
+            }
+            char next = text.charAt(++i);
+            switch (next) {
+                case 'n':
+                    result.append('\n');
+                    break;
+                case 'r':
+                    result.append('\r');
+                    break;
+                case 't':
+                    result.append('\t');
+                    break;
+                case '\\':
+                    result.append('\\');
+                    break;
+                default:
+                    result.append(c);
+                    result.append(next);
+                    break;
+            }
+        }
+        return result.toString();
+    }
+
+    private List<Fragment> readFragments() throws IOException {
+        @Nullable
+        String line = readLine();
+        if (line == null || !line.equals(TSVWriter.TSV_HEADER)) {
+            throw new YAMLSourceMapException("Invalid TSV header");
+        }
+
+        List<Fragment> result = new ArrayList<>();
+        while ((line = readLine()) != null) {
+            if (!line.isEmpty()) {
+                result.add(parseFragment(line));
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private String readLine() throws IOException {
+        lineNumber++;
+        return reader.readLine();
+    }
+
+    private Fragment parseFragment(String line) {
+        splitFields(line);
+        return createFragmentDefault(
+                parseInt(line, 0),
+                parseInt(line, 1),
+                parseInt(line, 2),
+                parseInt(line, 3),
+                parseInt(line, 4),
+                parseInt(line, 5),
+                parseKind(line, 6),
+                unescapeFromTSV(line.substring(fieldStarts[7])));
+    }
+
+    /**
+     * Fills {@link #fieldStarts} with the start indices of the fields in
+     * {@code line}.
+     */
+    private void splitFields(String line) {
+        fieldStarts[0] = 0;
+        int field = 1;
+        int n = line.length();
+        for (int i = 0; i < n && field < FIELD_COUNT; i++) {
+            if (line.charAt(i) == '\t') {
+                fieldStarts[field++] = i + 1;
+            }
+        }
+        if (field != FIELD_COUNT
+                || line.indexOf('\t', fieldStarts[FIELD_COUNT - 1]) >= 0) {
+            throw invalidLine(String.format(
+                    "expected %d fields", FIELD_COUNT));
+        }
+        fieldStarts[FIELD_COUNT] = n + 1;
+    }
+
+    private int parseInt(String line, int field) {
+        int start = fieldStarts[field];
+        int end = fieldStarts[field + 1] - 1;
+        if (start == end) {
+            throw invalidLine(String.format("field %d is empty", field + 1));
+        }
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            int digit = c - '0';
+            if (digit < 0 || digit > 9
+                    || result > (Integer.MAX_VALUE - digit) / 10) {
+                throw invalidLine(String.format(
+                        "field %d is not a valid number", field + 1));
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private Kind parseKind(String line, int field) {
+        int start = fieldStarts[field];
+        int length = fieldStarts[field + 1] - 1 - start;
+        for (Kind kind : KINDS) {
+            String name = kind.name();
+            if (name.length() == length
+                    && line.regionMatches(start, name, 0, length)) {
+                return kind;
+            }
+        }
+        throw invalidLine(String.format(
+                "field %d is not a valid kind", field + 1));
+    }
+
+    private YAMLSourceMapException invalidLine(String reason) {
+        return new YAMLSourceMapException(String.format(
+                "Invalid TSV in line %d: %s", lineNumber, reason));
+    }
+}
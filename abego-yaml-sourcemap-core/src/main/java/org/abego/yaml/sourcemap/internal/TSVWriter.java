@@ -0,0 +1,201 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+import org.abego.yaml.sourcemap.FragmentsAPI.FragmentCursor;
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes {@link Fragment}s as tab separated values (TSV).
+ *
+ * <p>The output starts with the header line {@link #TSV_HEADER}, followed by
+ * one line per fragment.</p>
+ *
+ * <p>The JSON pointer is escaped, replacing line feed, carriage return, tab
+ * and backslash by {@code \n}, {@code \r}, {@code \t} and {@code \\}.
+ * All other values never need escaping.</p>
+ *
+ * <p>See also {@link TSVReader}.</p>
+ */
+public final class TSVWriter {
+    static final String TSV_HEADER = "" +
+            "startOffset\tstartLine\tstartColumn\t" +
+            "endOffset\tendLine\tendColumn\t" +
+            "kind\tjsonPointer";
+
+    private final CharBufferWriter writer;
+    private final String lineSeparator = System.lineSeparator();
+
+    private TSVWriter(Writer output) {
+        this.writer = new CharBufferWriter(output);
+    }
+
+    /**
+     * Writes the {@code fragments} to the {@code output}, as tab separated
+     * values (TSV), and closes the {@code output}.
+     *
+     * @param fragments the {@link Fragment}s to write to the output
+     * @param output    the Writer to write the output to
+     * @throws YAMLSourceMapException when writing the output failed
+     */
+    public static void writeTSV(Iterable<Fragment> fragments, Writer output) {
+        try (Writer w = output) {
+            TSVWriter tsvWriter = new TSVWriter(w);
+            tsvWriter.writeHeader();
+            for (Fragment f : fragments) {
+                tsvWriter.writeFragment(f);
+            }
+            tsvWriter.writer.flush();
+        } catch (IOException e) {
+            throw new YAMLSourceMapException(e);
+        }
+    }
+
+    /**
+     * Writes the fragments of the {@code cursor}, starting with the fragment
+     * after the cursor's current position, to the {@code output}, as tab
+     * separated values (TSV), and closes the {@code output}.
+     *
+     * <p>Other than {@link #writeTSV(Iterable, Writer)} this does not need a
+     * {@link Fragment} object per fragment.</p>
+     *
+     * @param cursor the {@link FragmentCursor} providing the fragments to
+     *               write to the output
+     * @param output the Writer to write the output to
+     * @throws YAMLSourceMapException when writing the output failed
+     */
+    public static void writeTSV(FragmentCursor cursor, Writer output) {
+        try (Writer w = output) {
+            TSVWriter tsvWriter = new TSVWriter(w);
+            tsvWriter.writeHeader();
+            while (cursor.next()) {
+                tsvWriter.writeFragment(
+                        cursor.startOffset(), cursor.startLine(),
+                        cursor.startColumn(), cursor.endOffset(),
+                        cursor.endLine(), cursor.endColumn(),
+                        cursor.kind(), cursor.jsonPointer());
+            }
+            tsvWriter.writer.flush();
+        } catch (IOException e) {
+            throw new YAMLSourceMapException(e);
+        }
+    }
+
+    /**
+     * Returns the index of the first character in {@code text} that must be
+     * escaped in a TSV value; or -1 when no character must be escaped.
+     */
+    static int indexOfCharToEscapeForTSV(String text) {
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            switch (text.charAt(i)) {
+                case '\n':
+                case '\r':
+                case '\t':
+                case '\\':
+                    return i;
+                default:
+                    break;
+            }
+        }
+        return -1;
+    }
+
+    private void writeHeader() throws IOException {
+        writer.append(TSV_HEADER);
+        writer.append(lineSeparator);
+    }
+
+    private void writeFragment(Fragment f) throws IOException {
+        writeFragment(f.getStartOffset(), f.getStartLine(), f.getStartColumn(),
+                f.getEndOffset(), f.getEndLine(), f.getEndColumn(),
+                f.getKind(), f.getJSONPointer());
+    }
+
+    private void writeFragment(
+            int startOffset, int startLine, int startColumn,
+            int endOffset, int endLine, int endColumn,
+            Kind kind, String jsonPointer) throws IOException {
+        writer.append(startOffset);
+        writer.append('\t');
+        writer.append(startLine);
+        writer.append('\t');
+        writer.append(startColumn);
+        writer.append('\t');
+        writer.append(endOffset);
+        writer.append('\t');
+        writer.append(endLine);
+        writer.append('\t');
+        writer.append(endColumn);
+        writer.append('\t');
+        writer.append(kind.name());
+        writer.append('\t');
+        appendEscapedForTSV(jsonPointer);
+        writer.append(lineSeparator);
+    }
+
+    /**
+     * Appends the {@code text} with all necessary characters escaped so the
+     * result can be used as a value in a tab-separated value (TSV) text.
+     *
+     * <p>The text is scanned once. When nothing needs to be escaped (the
+     * typical case) the text is appended without further processing.</p>
+     */
+    private void appendEscapedForTSV(String text) throws IOException {
+        int i = indexOfCharToEscapeForTSV(text);
+        if (i < 0) {
+            writer.append(text);
+            return;
+        }
+
+        writer.append(text, 0, i);
+        int n = text.length();
+        for (; i < n; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\n':
+                    writer.append('\\', 'n');
+                    break;
+                case '\r':
+                    writer.append('\\', 'r');
+                    break;
+                case '\t':
+                    writer.append('\\', 't');
+                    break;
+                case '\\':
+                    writer.append('\\', '\\');
+                    break;
+                default:
+                    writer.append(c);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap.internal;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.parser.Parser;
+
+/**
+ * A {@link Parser} passing through the events of another parser and
+ * putting every event consumed (via {@link #getEvent()}) into an
+ * {@link EventPipe}.
+ *
+ * <p>So a second consumer, e.g. SnakeYAML's {@code Composer} running in
+ * another thread, can read the same events while they are produced,
+ * without parsing the text again and without keeping all events in
+ * memory.</p>
+ */
+final class TeeParser implements Parser {
+    private final Parser parser;
+    private final EventPipe pipe;
+
+    TeeParser(Parser parser, EventPipe pipe) {
+        this.parser = parser;
+        this.pipe = pipe;
+    }
+
+    /**
+     * Consumes (and puts into the pipe) all remaining events.
+     */
+    void consumeAll() {
+        while (parser.peekEvent() != null) {
+            getEvent();
+        }
+    }
+
+    @Override
+    public boolean checkEvent(Event.ID choice) {
+        return parser.checkEvent(choice);
+    }
+
+    @Override
+    @Nullable
+    public Event peekEvent() {
+        return parser.peekEvent();
+    }
+
+    @Override
+    public Event getEvent() {
+        Event event = parser.getEvent();
+        pipe.put(event);
+        return event;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.parser.Parser;
+
+/**
+ * A {@link Parser} measuring the time spent in the methods of another
+ * parser, i.e. the time spent to produce the events.
+ */
+final class TimingParser implements Parser {
+    private final Parser parser;
+    private final BuildStatisticsCollector statistics;
+
+    TimingParser(Parser parser, BuildStatisticsCollector statistics) {
+        this.parser = parser;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public boolean checkEvent(Event.ID choice) {
+        long start = System.nanoTime();
+        try {
+            return parser.checkEvent(choice);
+        } finally {
+            statistics.addEventProductionNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Event peekEvent() {
+        long start = System.nanoTime();
+        try {
+            return parser.peekEvent();
+        } finally {
+            statistics.addEventProductionNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Event getEvent() {
+        long start = System.nanoTime();
+        try {
+            return parser.getEvent();
+        } finally {
+            statistics.addEventProductionNanos(System.nanoTime() - start);
+        }
+    }
+}
@@ -30,6 +30,10 @@ import org.yaml.snakeyaml.error.Mark;
 /**
  * An implementation of {@link Fragment}, using SnakeYaml's
  * {@link Mark} object to track the start and end of the fragment.
+ *
+ * <p>YAMLFragments are mutable and only used by the
+ * {@link FragmentsProvider} while parsing a YAML document. The fragments
+ * of a source map are immutable {@link FragmentDefault}s.</p>
  */
 final class YAMLFragment implements Fragment {
     private final Kind kind;
@@ -0,0 +1,162 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.YAMLLoadResult;
+import org.abego.yaml.sourcemap.YAMLSourceMap;
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+import org.eclipse.jdt.annotation.Nullable;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.Reader;
+
+/**
+ * The default implementation of {@link YAMLLoadResult}.
+ */
+public final class YAMLLoadResultDefault implements YAMLLoadResult {
+    @Nullable
+    private final Object data;
+    private final YAMLSourceMap sourceMap;
+
+    private YAMLLoadResultDefault(@Nullable Object data, YAMLSourceMap sourceMap) {
+        this.data = data;
+        this.sourceMap = sourceMap;
+    }
+
+    /**
+     * The maximal number of parser events read ahead of the construction of
+     * the data.
+     */
+    private static final int EVENT_PIPE_CAPACITY = 1024;
+
+    /**
+     * Loads the YAML document read from the {@code reader}, returning both
+     * the document's data and its {@link YAMLSourceMap}.
+     *
+     * <p>The text is scanned and parsed only once: while creating the
+     * source map the events of the SnakeYAML parser are passed (through an
+     * {@link EventPipe}) to SnakeYAML's {@link SafeConstructor}, running in
+     * another thread to construct the data. As the pipe holds at most
+     * {@value #EVENT_PIPE_CAPACITY} events the memory needed is about the
+     * one of the source map plus the one of loading the data with SnakeYAML,
+     * not of all events of the document.</p>
+     *
+     * @param reader the Reader to read the YAML document from
+     * @return the data and the {@link YAMLSourceMap} of the YAML document
+     */
+    public static YAMLLoadResult load(Reader reader) {
+        EventPipe pipe = new EventPipe(EVENT_PIPE_CAPACITY);
+        DataLoader loader = new DataLoader(pipe);
+        Thread thread = new Thread(loader, "abego-yaml-sourcemap-load");
+        thread.setDaemon(true);
+        thread.start();
+        boolean parsed = false;
+        YAMLSourceMap sourceMap;
+        try {
+            TeeParser parser =
+                    new TeeParser(new ParserImpl(new StreamReader(reader)), pipe);
+            sourceMap = YAMLSourceMapDefault.of(parser, BuildOptions.DEFAULT);
+            try {
+                parser.consumeAll();
+            } catch (Exception e) {
+                throw new YAMLSourceMapException(e);
+            }
+            parsed = true;
+        } finally {
+            if (!parsed) {
+                // the data loader may wait for events that never come
+                thread.interrupt();
+            }
+        }
+        return new YAMLLoadResultDefault(loader.awaitData(thread), sourceMap);
+    }
+
+    @Override
+    @Nullable
+    public Object getData() {
+        return data;
+    }
+
+    @Override
+    public YAMLSourceMap getSourceMap() {
+        return sourceMap;
+    }
+
+    /**
+     * Constructs the data of a document from the events of an
+     * {@link EventPipe}, to run in its own thread.
+     */
+    private static final class DataLoader implements Runnable {
+        private final EventPipe pipe;
+        @Nullable
+        private Object data;
+        @Nullable
+        private Throwable failure;
+
+        DataLoader(EventPipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public void run() {
+            try {
+                SafeConstructor constructor = new SafeConstructor();
+                constructor.setComposer(new Composer(pipe, new Resolver()));
+                data = constructor.getSingleData(Object.class);
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                pipe.close();
+            }
+        }
+
+        /**
+         * Waits until the {@code thread} running this loader is finished and
+         * returns the data, or throws the failure of the loader.
+         */
+        @Nullable
+        Object awaitData(Thread thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                thread.interrupt();
+                Thread.currentThread().interrupt();
+                throw new YAMLSourceMapException(e);
+            }
+            @Nullable
+            Throwable e = failure;
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            if (e != null) {
+                throw new YAMLSourceMapException((Exception) e);
+            }
+            return data;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.SourceMapBuildListener;
+import org.abego.yaml.sourcemap.YAMLSourceMap;
+import org.abego.yaml.sourcemap.YAMLSourceMapBuilder;
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * The default implementation of {@link YAMLSourceMapBuilder}.
+ */
+public final class YAMLSourceMapBuilderDefault implements YAMLSourceMapBuilder {
+    @Nullable
+    private SourceMapBuildListener buildListener;
+    private int maxAliasExpansions = BuildOptions.DEFAULT_MAX_ALIAS_EXPANSIONS;
+    private boolean retainScalarValues;
+    @Nullable
+    private File spillDirectory;
+    private boolean offHeap;
+
+    private YAMLSourceMapBuilderDefault() {
+    }
+
+    public static YAMLSourceMapBuilder createYAMLSourceMapBuilderDefault() {
+        return new YAMLSourceMapBuilderDefault();
+    }
+
+    @Override
+    public YAMLSourceMapBuilder buildListener(SourceMapBuildListener listener) {
+        this.buildListener = listener;
+        return this;
+    }
+
+    @Override
+    public YAMLSourceMapBuilder maxAliasExpansions(int maxAliasExpansions) {
+        if (maxAliasExpansions < 0) {
+            throw new YAMLSourceMapException(String.format(
+                    "maxAliasExpansions must be >= 0. Got %d", maxAliasExpansions));
+        }
+        this.maxAliasExpansions = maxAliasExpansions;
+        return this;
+    }
+
+    @Override
+    public YAMLSourceMapBuilder retainScalarValues(boolean retainScalarValues) {
+        this.retainScalarValues = retainScalarValues;
+        return this;
+    }
+
+    @Override
+    public YAMLSourceMapBuilder spillFragments(File directory) {
+        if (!directory.isDirectory()) {
+            throw new YAMLSourceMapException(
+                    "Not a directory: " + directory);
+        }
+        this.spillDirectory = directory;
+        return this;
+    }
+
+    @Override
+    public YAMLSourceMapBuilder offHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+        return this;
+    }
+
+    @Override
+    public YAMLSourceMap build(Reader reader) {
+        return YAMLSourceMapDefault.of(reader, buildOptions());
+    }
+
+    @Override
+    public YAMLSourceMap buildFromParserEvents(InputStream recordedEvents) {
+        return YAMLSourceMapDefault.of(
+                ParserEventRecording.replayParser(recordedEvents),
+                buildOptions());
+    }
+
+    @Override
+    public YAMLSourceMap build(String yamlText) {
+        return build(new StringReader(yamlText));
+    }
+
+    private BuildOptions buildOptions() {
+        if (retainScalarValues && spillDirectory != null) {
+            throw new YAMLSourceMapException(
+                    "Scalar values cannot be retained when spilling fragments");
+        }
+        if (offHeap && spillDirectory != null) {
+            throw new YAMLSourceMapException(
+                    "Fragments cannot be both spilled and stored off-heap");
+        }
+        return new BuildOptions(buildListener, maxAliasExpansions,
+                retainScalarValues, spillDirectory, offHeap);
+    }
+}
@@ -24,21 +24,33 @@
 
 package org.abego.yaml.sourcemap.internal;
 
+import org.abego.yaml.sourcemap.SourceMapBuildListener;
 import org.abego.yaml.sourcemap.YAMLRange;
 import org.abego.yaml.sourcemap.YAMLSourceMap;
 import org.abego.yaml.sourcemap.YAMLSourceMapException;
 import org.eclipse.jdt.annotation.Nullable;
+import org.yaml.snakeyaml.parser.Parser;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
 
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
 
 import static java.lang.Integer.max;
 import static java.lang.Integer.min;
-import static org.abego.yaml.sourcemap.internal.Utils.last;
+import static org.abego.yaml.sourcemap.internal.PointerRangesCollector.PointerRange;
 
 /**
  * The default implementation of {@link YAMLSourceMap}.
@@ -47,6 +59,11 @@ import static org.abego.yaml.sourcemap.internal.Utils.last;
  * be used by client code directly.
  * Use {@link org.abego.yaml.sourcemap.YAMLSourceMapAPI} and
  * {@link YAMLSourceMap} instead.</p>
+ *
+ * <p>Instances are immutable, given their fragments are immutable. The
+ * indexes created on demand are immutable, too, and published through
+ * volatile fields, so all queries are thread-safe without any
+ * locking.</p>
  */
 public final class YAMLSourceMapDefault implements YAMLSourceMap {
 
@@ -56,22 +73,101 @@ public final class YAMLSourceMapDefault implements YAMLSourceMap {
     private final List<? extends Fragment> fragments;
 
     /**
-     * Creates a YAMLSourceMapDefault of the YAML document read
-     * from the {@code yamlTextReader}.
+     * The {@link #fragments} when they are stored in a
+     * {@link FragmentStore}, or {@code null} when they are kept in memory.
+     *
+     * <p>The indexes of the fragments are then not created. The lookups of
+     * the store are used instead.</p>
+     */
+    @Nullable
+    private final FragmentStore fragmentStore;
+
+    /**
+     * The {@link #fragments} when they are spilled to a file, or
+     * {@code null} otherwise.
+     */
+    @Nullable
+    private final SpilledFragments spilledFragments;
+
+    /**
+     * The index to find the fragments of a JSON pointer, created on demand
+     * (see {@link #jsonPointerIndex()}).
+     */
+    @Nullable
+    private volatile JSONPointerIndex jsonPointerIndex;
+
+    /**
+     * The index to find the fragments of a kind, created on demand
+     * (see {@link #kindIndex()}).
+     */
+    @Nullable
+    private volatile KindIndex kindIndex;
+
+    /**
+     * The tree of the document's nodes, or {@code null} when the source map
+     * was not created from a YAML text.
+     */
+    @Nullable
+    private final NodeTree nodeTree;
+
+    /**
+     * The anchors and aliases of the document, or {@code null} when the
+     * source map was not created from a YAML text.
+     */
+    @Nullable
+    private final AnchorTable anchorTable;
+
+    /**
+     * The maximal number of alias and merge key expansions when resolving a
+     * JSON pointer.
      */
-    private YAMLSourceMapDefault(Reader yamlTextReader) {
-        fragments = FragmentsProvider.readFragments(yamlTextReader);
+    private final int maxAliasExpansions;
+
+    /**
+     * Resolves JSON pointers through aliases and merge keys, created on
+     * demand (see {@link #aliasResolver()}).
+     */
+    @Nullable
+    private volatile AliasResolver aliasResolver;
+
+    /**
+     * The values of the document's scalar nodes, or {@code null} when the
+     * values were not retained.
+     */
+    @Nullable
+    private final ScalarValues scalarValues;
+
+    /**
+     * Creates a YAMLSourceMapDefault with the given {@code fragments},
+     * {@code nodeTree}, {@code anchorTable}, limit of alias expansions and
+     * {@code scalarValues}.
+     */
+    private YAMLSourceMapDefault(
+            List<? extends Fragment> fragments,
+            @Nullable NodeTree nodeTree,
+            @Nullable AnchorTable anchorTable,
+            int maxAliasExpansions,
+            @Nullable ScalarValues scalarValues) {
+        this.fragments = fragments;
+        this.fragmentStore = fragments instanceof FragmentStore
+                ? (FragmentStore) fragments : null;
+        this.spilledFragments = fragments instanceof SpilledFragments
+                ? (SpilledFragments) fragments : null;
+        this.nodeTree = nodeTree;
+        this.anchorTable = anchorTable;
+        this.maxAliasExpansions = maxAliasExpansions;
+        this.scalarValues = scalarValues;
     }
 
     /**
-     * Returns true when the given fragment is a 'value' fragment;
+     * Returns true when fragments of the given kind are 'value' fragments;
      * returns false otherwise.
      *
      * <p>For detail regarding 'value' fragments see chapter 'Fragments' in
      * the documentation of {@link YAMLSourceMap}.</p>
      */
-    private static boolean isValueFragment(Fragment fragment) {
-        switch (fragment.getKind()) {
+    static boolean isValueKind(Fragment.Kind kind) {
+        switch (kind) {
             case ALIAS_AS_MAP_VALUE:
             case ALIAS_AS_SEQUENCE_ITEM:
             case SCALAR_VALUE:
@@ -93,11 +189,57 @@ public final class YAMLSourceMapDefault implements YAMLSourceMap {
      * reader
      */
     public static YAMLSourceMap of(Reader reader) {
+        return of(reader, BuildOptions.DEFAULT);
+    }
+
+    /**
+     * Creates a {@link YAMLSourceMap} of the YAML document read from the
+     * {@code reader}, informing the {@code buildListener} (if not
+     * {@code null}) about the creation.
+     *
+     * @param reader        the Reader to read the YAML document to create a
+     *                      {@link YAMLSourceMap} for
+     * @param buildListener the {@link SourceMapBuildListener} to inform, or
+     *                      {@code null}
+     * @return the {@link YAMLSourceMap} for the YAML document read from the
+     * reader
+     */
+    public static YAMLSourceMap of(
+            Reader reader, @Nullable SourceMapBuildListener buildListener) {
+        return of(reader, new BuildOptions(buildListener,
+                BuildOptions.DEFAULT_MAX_ALIAS_EXPANSIONS, false, null, false));
+    }
+
+    /**
+     * Creates a {@link YAMLSourceMap} of the YAML document read from the
+     * {@code reader}, using the given {@code options}.
+     */
+    static YAMLSourceMap of(Reader reader, BuildOptions options) {
+        return of(new ParserImpl(new StreamReader(reader)), options);
+    }
+
+    /**
+     * Creates a {@link YAMLSourceMap} of the YAML document whose events are
+     * produced by the {@code parser}, using the given {@code options}.
+     *
+     * <p>The events up to the document's end are consumed from the
+     * {@code parser}, the stream end event is not.</p>
+     */
+    static YAMLSourceMapDefault of(Parser parser, BuildOptions options) {
+        @Nullable
+        Object event = FlightRecorderEvents.beginCreation();
+        YAMLSourceMapDefault result;
         try {
-            return new YAMLSourceMapDefault(reader);
+            FragmentsProvider provider = FragmentsProvider.parse(parser, options);
+            result = new YAMLSourceMapDefault(provider.frozenFragments(),
+                    provider.nodeTree(), provider.anchorTable(),
+                    options.maxAliasExpansions(), provider.scalarValues());
         } catch (Exception e) {
             throw new YAMLSourceMapException(e);
         }
+        FlightRecorderEvents.endCreation(event,
+                result.documentLength(), result.fragments.size());
+        return result;
     }
 
     /**
@@ -112,6 +254,313 @@ public final class YAMLSourceMapDefault implements YAMLSourceMap {
         return of(new StringReader(yamlText));
     }
 
+    /**
+     * Creates a {@link YAMLSourceMap} with the given {@code fragments}.
+     *
+     * <p>The fragments must partition the text of the YAML document, i.e.
+     * the first fragment starts at offset 0 and every other fragment starts
+     * where the previous one ends.</p>
+     *
+     * <p>The fragments should be immutable, as the source map relies on
+     * them not to change, e.g. for thread-safety.</p>
+     *
+     * @param fragments the fragments of the YAML document
+     * @return the {@link YAMLSourceMap} with the given fragments
+     * @throws YAMLSourceMapException when the fragments do not partition
+     *                                the text
+     */
+    public static YAMLSourceMap ofFragments(List<? extends Fragment> fragments) {
+        int expectedStart = 0;
+        for (Fragment f : fragments) {
+            if (f.getStartOffset() != expectedStart
+                    || f.getEndOffset() < f.getStartOffset()) {
+                throw new YAMLSourceMapException(String.format(
+                        "Fragments must be contiguous. Expected fragment starting at %d, got %s",
+                        expectedStart, f));
+            }
+            expectedStart = f.getEndOffset();
+        }
+        return new YAMLSourceMapDefault(
+                Collections.unmodifiableList(new ArrayList<>(fragments)),
+                null, null, BuildOptions.DEFAULT_MAX_ALIAS_EXPANSIONS, null);
+    }
+
+    /**
+     * Returns the {@link JSONPointerIndex} of the fragments, creating it on
+     * first use.
+     *
+     * <p>When called concurrently the index may be created more than once,
+     * what is harmless as the index is immutable.</p>
+     */
+    private JSONPointerIndex jsonPointerIndex() {
+        @Nullable
+        JSONPointerIndex result = jsonPointerIndex;
+        if (result == null) {
+            result = JSONPointerIndex.createJSONPointerIndex(fragments);
+            jsonPointerIndex = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@link KindIndex} of the fragments, creating it on first
+     * use (see {@link #jsonPointerIndex()}).
+     */
+    private KindIndex kindIndex() {
+        @Nullable
+        KindIndex result = kindIndex;
+        if (result == null) {
+            result = KindIndex.createKindIndex(fragments);
+            kindIndex = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the pointer id of the fragment at {@code index} (see
+     * {@link FragmentCursor#pointerId()}).
+     */
+    int pointerIdOfFragment(int index) {
+        return fragmentStore != null
+                ? fragmentStore.pointerId(index)
+                : jsonPointerIndex().pointerIdOfFragment(index);
+    }
+
+    // The searches read the offsets and kinds of fragments from the
+    // fragment store (if any), to not create a fragment for every probe.
+
+    private int startOffsetOfFragment(int index) {
+        return fragmentStore != null
+                ? fragmentStore.startOffset(index)
+                : fragments.get(index).getStartOffset();
+    }
+
+    private int endOffsetOfFragment(int index) {
+        return fragmentStore != null
+                ? fragmentStore.endOffset(index)
+                : fragments.get(index).getEndOffset();
+    }
+
+    private int startLineOfFragment(int index) {
+        return fragmentStore != null
+                ? fragmentStore.startLine(index)
+                : fragments.get(index).getStartLine();
+    }
+
+    private int startColumnOfFragment(int index) {
+        return fragmentStore != null
+                ? fragmentStore.startColumn(index)
+                : fragments.get(index).getStartColumn();
+    }
+
+    private int endLineOfFragment(int index) {
+        return fragmentStore != null
+                ? fragmentStore.endLine(index)
+                : fragments.get(index).getEndLine();
+    }
+
+    private int endColumnOfFragment(int index) {
+        return fragmentStore != null
+                ? fragmentStore.endColumn(index)
+                : fragments.get(index).getEndColumn();
+    }
+
+    private Fragment.Kind kindOfFragment(int index) {
+        return fragmentStore != null
+                ? fragmentStore.kind(index)
+                : fragments.get(index).getKind();
+    }
+
+    private boolean isEmptyFragment(int index) {
+        return startOffsetOfFragment(index) == endOffsetOfFragment(index);
+    }
+
+    /**
+     * Returns the indexes of the fragments with the given
+     * {@code jsonPointer}, in ascending order.
+     *
+     * <p>The caller must not modify the returned array.</p>
+     */
+    private int[] fragmentIndexesOfJsonPointer(String jsonPointer) {
+        return fragmentStore != null
+                ? fragmentStore.fragmentIndexesOfJsonPointer(jsonPointer)
+                : jsonPointerIndex().fragmentIndexesOfJsonPointer(jsonPointer);
+    }
+
+    /**
+     * Returns the indexes of the fragments of the children (and their
+     * children etc.) of the {@code jsonPointer}, in ascending order.
+     */
+    private int[] fragmentIndexesOfDescendantsOf(String jsonPointer) {
+        return fragmentStore != null
+                ? fragmentStore.fragmentIndexesOfDescendantsOf(jsonPointer)
+                : jsonPointerIndex().fragmentIndexesOfDescendantsOf(jsonPointer);
+    }
+
+    /**
+     * Returns the fragments at the given {@code indexes}.
+     */
+    private List<Fragment> fragmentsAtIndexes(int[] indexes) {
+        List<Fragment> result = new ArrayList<>(indexes.length);
+        for (int i : indexes) {
+            result.add(fragments.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position of the first index in {@code indexes} referring to
+     * a 'value' fragment, or -1 when no such index exists.
+     */
+    private int positionOfFirstValueFragment(int[] indexes) {
+        for (int i = 0; i < indexes.length; i++) {
+            if (isValueKind(kindOfFragment(indexes[i]))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the last fragment after {@code fromIndex} for
+     * which {@code startsAtOrBefore} is true, or {@code fromIndex} when
+     * there is no such fragment.
+     *
+     * <p>{@code startsAtOrBefore} must be true for all fragments up to some
+     * index and false for all following fragments, e.g. "the fragment starts
+     * at or before a given offset".</p>
+     *
+     * <p>Searches from {@code fromIndex} with exponentially growing steps
+     * ("galloping") and then with a binary search, so the cost is
+     * logarithmic in the distance to the result. This makes a sequence of
+     * searches with increasing keys, starting each search at the result of
+     * the previous one, a "merge" of the keys and the fragments.</p>
+     *
+     * @param fromIndex -1 or the index of a fragment for which
+     *                  {@code startsAtOrBefore} is true
+     */
+    private int indexOfLastFragment(int fromIndex, IntPredicate startsAtOrBefore) {
+        int n = fragments.size();
+        int low = fromIndex;
+        int step = 1;
+        int tests = 0;
+        while (low + step < n) {
+            tests++;
+            if (!startsAtOrBefore.test(low + step)) {
+                break;
+            }
+            low += step;
+            step <<= 1;
+        }
+        // the result is in [low, min(low + step, n) - 1]
+        int high = min(low + step, n) - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            tests++;
+            if (startsAtOrBefore.test(mid)) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        ScannedFragments.add(tests);
+        return low;
+    }
+
+    /**
+     * Ends the query {@code event} (see {@link FlightRecorderEvents}) and
+     * adds the fragments scanned to the {@link ScannedFragments}.
+     */
+    private static void endQuery(@Nullable Object event,
+                                 String operation, String jsonPointer,
+                                 int fragmentsScanned) {
+        ScannedFragments.add(fragmentsScanned);
+        FlightRecorderEvents.endQuery(
+                event, operation, jsonPointer, fragmentsScanned);
+    }
+
+    /**
+     * Returns the index of the last fragment after {@code fromIndex}
+     * starting at or before {@code offset}, or {@code fromIndex} when no
+     * such fragment exists.
+     */
+    private int indexOfLastFragmentStartingAtOrBefore(int fromIndex, int offset) {
+        // With spilled fragments start the search in the right segment, so
+        // only that segment is read
+        int start = spilledFragments != null
+                ? max(fromIndex, spilledFragments
+                .indexOfLastSegmentStartingAtOrBefore(offset))
+                : fromIndex;
+        return indexOfLastFragment(start,
+                i -> startOffsetOfFragment(i) <= offset);
+    }
+
+    /**
+     * Returns the index of the last fragment after {@code fromIndex}
+     * starting at or before the location defined by {@code line} and
+     * {@code column}, or {@code fromIndex} when no such fragment exists.
+     */
+    private int indexOfLastFragmentStartingAtOrBefore(
+            int fromIndex, int line, int column) {
+        int start = spilledFragments != null
+                ? max(fromIndex, spilledFragments
+                .indexOfLastSegmentStartingAtOrBefore(line, column))
+                : fromIndex;
+        return indexOfLastFragment(start, i -> {
+            int startLine = startLineOfFragment(i);
+            return startLine < line
+                    || (startLine == line && startColumnOfFragment(i) <= column);
+        });
+    }
+
+    /**
+     * Returns the fragment containing the location defined by {@code line}
+     * and {@code column}, given the {@code index} of the last fragment
+     * starting at or before that location.
+     */
+    private Fragment fragmentAtLocation(int index, int line, int column) {
+        // Only non-empty fragments can contain a location. As the fragments
+        // partition the text the location can only be in the last non-empty
+        // fragment starting at or before the location.
+        int i = index;
+        while (i >= 0 && isEmptyFragment(i)) {
+            i--;
+        }
+        if (i >= 0) {
+            Fragment result = fragments.get(i);
+            if (result.containsLocation(line, column)) {
+                return result;
+            }
+        }
+
+        throw new YAMLSourceMapException(
+                String.format("Invalid location. Got line=%d, column=%d",
+                        line, column));
+    }
+
+    private static void checkLocation(int line, int column) {
+        if (line < 1) {
+            throw new YAMLSourceMapException("line must be >= 1");
+        }
+        if (column < 1) {
+            throw new YAMLSourceMapException("column must be >= 1");
+        }
+    }
+
+    /**
+     * Returns the {@code offset} adjusted to be in the range of the
+     * document's text, i.e. for a non-empty document there is always a
+     * fragment containing the adjusted offset, maybe the first/last for
+     * offsets out of bounds.
+     */
+    private int adjustedOffset(int offset) {
+        int length = documentLength();
+        if (length == 0) {
+            throw new YAMLSourceMapException("Document is empty");
+        }
+        return min(max(0, offset), length - 1);
+    }
+
     /**
      * Returns the range covered by the fragments, with the start stored in
      * item 0 and the end in item 1.
@@ -129,9 +578,16 @@ public final class YAMLSourceMapDefault implements YAMLSourceMap {
         return YAMLRangeDefault.createYAMLRangeDefault(start, end);
     }
 
+    @Override
+    public void close() {
+        if (fragmentStore != null) {
+            fragmentStore.release();
+        }
+    }
+
     @Override
     public int documentLength() {
-        return fragments.isEmpty() ? 0 : last(fragments).getEndOffset();
+        return fragments.isEmpty() ? 0 : endOffsetOfFragment(fragments.size() - 1);
     }
 
     @Override
@@ -144,112 +600,460 @@ public final class YAMLSourceMapDefault implements YAMLSourceMap {
         return fragmentAtLocation(line, column).getJSONPointer();
     }
 
+    @Override
+    public String[] jsonPointersAtOffsets(int[] offsets) {
+        return jsonPointersOf(fragmentsAtOffsets(offsets));
+    }
+
+    @Override
+    public String[] jsonPointersAtLocations(int[] lines, int[] columns) {
+        return jsonPointersOf(fragmentsAtLocations(lines, columns));
+    }
+
+    private static String[] jsonPointersOf(Fragment[] fragments) {
+        String[] result = new String[fragments.length];
+        for (int i = 0; i < fragments.length; i++) {
+            result[i] = fragments[i].getJSONPointer();
+        }
+        return result;
+    }
+
     @Override
     public YAMLRange sourceRangeOfValueOfJsonPointer(String jsonPointer) {
+        @Nullable
+        Object event = FlightRecorderEvents.beginQuery();
 
         // First try for "scalar" data values
-        @Nullable
-        Fragment fragment = valueFragmentOfJsonPointer(jsonPointer);
-        if (fragment != null) {
-            return YAMLRangeDefault.createYAMLRangeDefault(
+        int[] indexes = fragmentIndexesOfJsonPointer(jsonPointer);
+        int i = positionOfFirstValueFragment(indexes);
+        YAMLRange result;
+        int fragmentsScanned;
+        if (i >= 0) {
+            Fragment fragment = fragments.get(indexes[i]);
+            result = YAMLRangeDefault.createYAMLRangeDefault(
                     fragment.getStartOffset(), fragment.getEndOffset());
+            fragmentsScanned = i + 1;
+        } else {
+            // For non-scalar data values we return the "inner" text range
+            int[] childIndexes = fragmentIndexesOfDescendantsOf(jsonPointer);
+            result = createRange(fragmentsAtIndexes(childIndexes));
+            fragmentsScanned = indexes.length + childIndexes.length;
         }
 
-        // For non-scalar data values we return the "inner" text range
-        return createRange(allFragmentsOfChildrenOfJsonPointer(jsonPointer));
+        endQuery(event,
+                "sourceRangeOfValueOfJsonPointer", jsonPointer, fragmentsScanned);
+        return result;
+    }
+
+    @Override
+    public YAMLRange[] sourceRangesOfValuesOfJsonPointers(
+            Collection<String> jsonPointers) {
+        @Nullable
+        Object event = FlightRecorderEvents.beginQuery();
+
+        // Collect the ranges of all requested JSON pointers in one pass
+        Set<String> requested = new HashSet<>(jsonPointers);
+        Map<String, PointerRange> ranges = new HashMap<>();
+        PointerRangesCollector collector = new PointerRangesCollector(range -> {
+            String jsonPointer = range.getJsonPointer();
+            if (requested.contains(jsonPointer)) {
+                @Nullable
+                PointerRange earlierRange = ranges.get(jsonPointer);
+                if (earlierRange == null) {
+                    ranges.put(jsonPointer, range);
+                } else {
+                    earlierRange.addLaterRange(range);
+                }
+            }
+        });
+        for (Fragment f : fragments) {
+            collector.add(f);
+        }
+        collector.finish();
+
+        YAMLRange[] result = new YAMLRange[jsonPointers.size()];
+        int i = 0;
+        for (String jsonPointer : jsonPointers) {
+            @Nullable
+            PointerRange range = ranges.get(jsonPointer);
+            result[i++] = range != null
+                    ? YAMLRangeDefault.createYAMLRangeDefault(
+                    range.valueStart(), range.valueEnd())
+                    : YAMLRangeDefault.createYAMLRangeDefault(0, 0);
+        }
+
+        endQuery(event,
+                "sourceRangesOfValuesOfJsonPointers", "", fragments.size());
+        return result;
     }
 
     @Override
     public YAMLRange sourceRangeOfJsonPointer(String jsonPointer) {
-        return createRange(allFragmentsOfJsonPointer(jsonPointer));
+        @Nullable
+        Object event = FlightRecorderEvents.beginQuery();
+
+        int[] indexes = fragmentIndexesOfJsonPointer(jsonPointer);
+        YAMLRange result = createRange(fragmentsAtIndexes(indexes));
+
+        endQuery(event,
+                "sourceRangeOfJsonPointer", jsonPointer, indexes.length);
+        return result;
     }
 
     @Override
     public List<Fragment> allFragments() {
+        // Fragments stored outside the Java heap are not copied to the heap
+        // but returned as a read-only view, loading fragments on access.
+        if (fragmentStore != null) {
+            return Collections.unmodifiableList(fragmentStore);
+        }
+        ScannedFragments.add(fragments.size());
         return new ArrayList<>(fragments);
     }
 
+    @Override
+    public FragmentCursor fragmentCursor() {
+        return FragmentCursorDefault.createFragmentCursorDefault(this, fragments);
+    }
+
     @Override
     public List<Fragment> allFragmentsMatching(Predicate<Fragment> test) {
+        @Nullable
+        Object event = FlightRecorderEvents.beginQuery();
+
         List<Fragment> result = new ArrayList<>();
-        allFragments().forEach(f -> {
+        for (Fragment f : fragments) {
             if (test.test(f)) {
                 result.add(f);
             }
-        });
+        }
+
+        endQuery(event,
+                "allFragmentsMatching", "", fragments.size());
         return result;
     }
 
+    @Override
+    public List<Fragment> fragmentsOfKind(Fragment.Kind... kinds) {
+        int[] indexes = fragmentStore != null
+                ? fragmentStore.fragmentIndexesOfKinds(kinds)
+                : kindIndex().fragmentIndexesOfKinds(kinds);
+        ScannedFragments.add(indexes.length);
+        return fragmentsAtIndexes(indexes);
+    }
+
     @Override
     @Nullable
     public Fragment findFirstFragmentMatching(
             Predicate<Fragment> test) {
+        @Nullable
+        Object event = FlightRecorderEvents.beginQuery();
 
-        for (Fragment f : allFragments()) {
-            if (test.test(f))
-                return f;
+        @Nullable
+        Fragment result = null;
+        int i = 0;
+        int n = fragments.size();
+        while (i < n) {
+            Fragment f = fragments.get(i++);
+            if (test.test(f)) {
+                result = f;
+                break;
+            }
         }
-        return null;
+
+        endQuery(event,
+                "findFirstFragmentMatching", "", i);
+        return result;
+    }
+
+    /**
+     * Returns the index of the fragment {@link #fragmentAtOffset(int)}
+     * returns for the {@code offset}.
+     */
+    int indexOfFragmentAtOffset(int offset) {
+        int adjustedOffset = adjustedOffset(offset);
+
+        // As the fragments partition the text the last fragment starting at
+        // or before the offset contains the offset. (Empty fragments
+        // starting at the offset come before the one containing it.)
+        return indexOfLastFragmentStartingAtOrBefore(-1, adjustedOffset);
     }
 
     @Override
     public Fragment fragmentAtOffset(int offset) {
-        int length = documentLength();
-        if (length == 0) {
-            throw new YAMLSourceMapException("Document is empty");
+        return fragments.get(indexOfFragmentAtOffset(offset));
+    }
+
+    @Override
+    public Fragment fragmentAtLocation(int line, int column) {
+        checkLocation(line, column);
+
+        return fragmentAtLocation(
+                indexOfLastFragmentStartingAtOrBefore(-1, line, column),
+                line, column);
+    }
+
+    @Override
+    public Fragment[] fragmentsAtOffsets(int[] offsets) {
+        int[] adjustedOffsets = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            adjustedOffsets[i] = adjustedOffset(offsets[i]);
         }
 
-        // Adjust the offset to always be in the range of the document
-        // text. This way we alays find a fragment for that adjustedOffset,
-        // maybe the first/last for offsets out of bounds.
-        int adjustedOffset = min(max(0, offset), length - 1);
-        @Nullable
-        Fragment result = findFirstFragmentMatching(
-                f -> f.containsOffset(adjustedOffset));
-        return Objects.requireNonNull(result);
+        // Find the fragments for the sorted offsets in one pass, each
+        // search starting at the fragment found for the previous offset.
+        int[] sortedOffsets = adjustedOffsets.clone();
+        Arrays.sort(sortedOffsets);
+        Fragment[] fragmentsOfSortedOffsets = new Fragment[sortedOffsets.length];
+        int index = -1;
+        for (int i = 0; i < sortedOffsets.length; i++) {
+            index = indexOfLastFragmentStartingAtOrBefore(index, sortedOffsets[i]);
+            fragmentsOfSortedOffsets[i] = fragments.get(index);
+        }
+
+        // return the fragments in the order of the offsets
+        Fragment[] result = new Fragment[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            result[i] = fragmentsOfSortedOffsets[
+                    Arrays.binarySearch(sortedOffsets, adjustedOffsets[i])];
+        }
+        return result;
     }
 
     @Override
-    public Fragment fragmentAtLocation(int line, int column) {
-        if (line < 1) {
-            throw new YAMLSourceMapException("line must be >= 1");
+    public Fragment[] fragmentsAtLocations(int[] lines, int[] columns) {
+        if (lines.length != columns.length) {
+            throw new YAMLSourceMapException(String.format(
+                    "lines and columns must have the same length. Got %d and %d",
+                    lines.length, columns.length));
         }
-        if (column < 1) {
-            throw new YAMLSourceMapException("column must be >= 1");
+
+        // Combine line and column into one long, so locations can be
+        // sorted as numbers
+        long[] locations = new long[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            checkLocation(lines[i], columns[i]);
+            locations[i] = ((long) lines[i] << 32) | columns[i];
         }
 
-        @Nullable
-        Fragment result = findFirstFragmentMatching(
-                f -> f.containsLocation(line, column));
+        // Find the fragments for the sorted locations in one pass, each
+        // search starting at the fragment found for the previous location.
+        long[] sortedLocations = locations.clone();
+        Arrays.sort(sortedLocations);
+        Fragment[] fragmentsOfSortedLocations = new Fragment[sortedLocations.length];
+        int index = -1;
+        for (int i = 0; i < sortedLocations.length; i++) {
+            int line = (int) (sortedLocations[i] >>> 32);
+            int column = (int) sortedLocations[i];
+            index = indexOfLastFragmentStartingAtOrBefore(index, line, column);
+            fragmentsOfSortedLocations[i] = fragmentAtLocation(index, line, column);
+        }
 
-        if (result != null)
-            return result;
+        // return the fragments in the order of the locations
+        Fragment[] result = new Fragment[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            result[i] = fragmentsOfSortedLocations[
+                    Arrays.binarySearch(sortedLocations, locations[i])];
+        }
+        return result;
+    }
 
-        throw new YAMLSourceMapException(
-                String.format("Invalid location. Got line=%d, column=%d",
-                        line, column));
+    @Override
+    public List<Fragment> fragmentsInRange(int startOffset, int endOffset) {
+        if (endOffset < startOffset) {
+            throw new YAMLSourceMapException(String.format(
+                    "endOffset must be >= startOffset. Got startOffset=%d, endOffset=%d",
+                    startOffset, endOffset));
+        }
+        if (startOffset == endOffset) {
+            return new ArrayList<>();
+        }
+
+        // The fragments before the range are the ones ending at or before
+        // the range's start, except for empty fragments at the start.
+        int first = indexOfLastFragment(-1,
+                i -> startOffsetOfFragment(i) < startOffset
+                        && endOffsetOfFragment(i) <= startOffset) + 1;
+        int last = indexOfLastFragment(first - 1,
+                i -> startOffsetOfFragment(i) < endOffset);
+        ScannedFragments.add(last + 1 - first);
+        return new ArrayList<>(fragments.subList(first, last + 1));
+    }
+
+    @Override
+    public List<Fragment> fragmentsInLines(int firstLine, int lastLine) {
+        if (firstLine < 1) {
+            throw new YAMLSourceMapException("firstLine must be >= 1");
+        }
+        if (lastLine < firstLine) {
+            throw new YAMLSourceMapException(String.format(
+                    "lastLine must be >= firstLine. Got firstLine=%d, lastLine=%d",
+                    firstLine, lastLine));
+        }
+
+        // Like fragmentsInRange, with the range starting at
+        // (firstLine:1) and ending before (lastLine + 1:1). The fragments
+        // are sorted by their (line:column) locations, just like by their
+        // offsets.
+        int first = indexOfLastFragment(-1, i -> {
+            int endLine = endLineOfFragment(i);
+            return startLineOfFragment(i) < firstLine
+                    && (endLine < firstLine
+                    || (endLine == firstLine && endColumnOfFragment(i) == 1));
+        }) + 1;
+        int last = indexOfLastFragment(first - 1,
+                i -> startLineOfFragment(i) <= lastLine);
+        ScannedFragments.add(last + 1 - first);
+        return new ArrayList<>(fragments.subList(first, last + 1));
     }
 
     @Override
     public List<Fragment> allFragmentsOfJsonPointer(
             String jsonPointer) {
-        return allFragmentsMatching(
-                f -> f.getJSONPointer().equals(jsonPointer));
+        @Nullable
+        Object event = FlightRecorderEvents.beginQuery();
+
+        int[] indexes = fragmentIndexesOfJsonPointer(jsonPointer);
+        List<Fragment> result = fragmentsAtIndexes(indexes);
+
+        endQuery(event,
+                "allFragmentsOfJsonPointer", jsonPointer, indexes.length);
+        return result;
     }
 
     @Override
     public List<Fragment> allFragmentsOfChildrenOfJsonPointer(String jsonPointer) {
-        return allFragmentsMatching(f ->
-                f.getJSONPointer().startsWith(jsonPointer) &&
-                        !f.getJSONPointer().equals(jsonPointer));
+        @Nullable
+        Object event = FlightRecorderEvents.beginQuery();
+
+        int[] indexes = fragmentIndexesOfDescendantsOf(jsonPointer);
+        List<Fragment> result = fragmentsAtIndexes(indexes);
+
+        endQuery(event,
+                "allFragmentsOfChildrenOfJsonPointer", jsonPointer, indexes.length);
+        return result;
     }
 
     @Override
     @Nullable
     public Fragment valueFragmentOfJsonPointer(String jsonPointer) {
-        return findFirstFragmentMatching(
-                f -> f.getJSONPointer().equals(jsonPointer) &&
-                        isValueFragment(f));
+        @Nullable
+        Object event = FlightRecorderEvents.beginQuery();
+
+        int[] indexes = fragmentIndexesOfJsonPointer(jsonPointer);
+        int i = positionOfFirstValueFragment(indexes);
+
+        endQuery(event, "valueFragmentOfJsonPointer",
+                jsonPointer, i >= 0 ? i + 1 : indexes.length);
+        return i >= 0 ? fragments.get(indexes[i]) : null;
+    }
+
+    private NodeTree nodeTree() {
+        @Nullable
+        NodeTree result = nodeTree;
+        if (result == null) {
+            throw new YAMLSourceMapException(spilledFragments != null
+                    ? "No node tree available. The node tree is not built when spilling fragments"
+                    : "No node tree available. The source map was not created from a YAML text");
+        }
+        return result;
+    }
+
+    private AliasResolver aliasResolver() {
+        @Nullable
+        AliasResolver result = aliasResolver;
+        if (result == null) {
+            result = new AliasResolver(
+                    nodeTree(), anchorTable(), maxAliasExpansions);
+            aliasResolver = result;
+        }
+        return result;
+    }
+
+    private ScalarValues scalarValues() {
+        @Nullable
+        ScalarValues result = scalarValues;
+        if (result == null) {
+            throw new YAMLSourceMapException(
+                    "No scalar values available. Use `retainScalarValues(true)` when building the source map");
+        }
+        return result;
+    }
+
+    private AnchorTable anchorTable() {
+        @Nullable
+        AnchorTable result = anchorTable;
+        if (result == null) {
+            throw new YAMLSourceMapException(
+                    "No anchors available. The source map was not created from a YAML text");
+        }
+        return result;
+    }
+
+    @Override
+    @Nullable
+    public Node rootNode() {
+        NodeTree tree = nodeTree();
+        return NodeDefault.nodeOrNull(tree, tree.size() > 0 ? 0 : -1);
+    }
+
+    @Override
+    @Nullable
+    public Node nodeOfJsonPointer(String jsonPointer) {
+        NodeTree tree = nodeTree();
+        return NodeDefault.nodeOrNull(tree, tree.nodeOfJsonPointer(jsonPointer));
+    }
+
+    @Override
+    @Nullable
+    public Node resolvedNodeOfJsonPointer(String jsonPointer) {
+        NodeTree tree = nodeTree();
+        return NodeDefault.nodeOrNull(tree,
+                aliasResolver().nodeOfJsonPointer(jsonPointer));
+    }
+
+    @Override
+    public OptionalLong subtreeHash(String jsonPointer) {
+        NodeTree tree = nodeTree();
+        int node = tree.nodeOfJsonPointer(jsonPointer);
+        return node >= 0 ? OptionalLong.of(tree.hash(node)) : OptionalLong.empty();
+    }
+
+    @Override
+    public YAMLRange definitionRangeOfAlias(int offset) {
+        AnchorTable table = anchorTable();
+        int alias = table.aliasAtOffset(offset);
+        int anchor = alias >= 0 ? table.anchorOfAlias(alias) : -1;
+        return anchor >= 0
+                ? YAMLRangeDefault.createYAMLRangeDefault(
+                table.anchorStart(anchor), table.anchorEnd(anchor))
+                : YAMLRangeDefault.createYAMLRangeDefault(0, 0);
+    }
+
+    @Override
+    public List<YAMLRange> aliasesOfAnchor(String anchorName) {
+        AnchorTable table = anchorTable();
+        int[] aliases = table.aliasesOfAnchorName(anchorName);
+        List<YAMLRange> result = new ArrayList<>(aliases.length);
+        for (int alias : aliases) {
+            result.add(YAMLRangeDefault.createYAMLRangeDefault(
+                    table.aliasStart(alias), table.aliasEnd(alias)));
+        }
+        return result;
+    }
+
+    @Override
+    @Nullable
+    public String scalarValueOfJsonPointer(String jsonPointer) {
+        ScalarValues values = scalarValues();
+        int node = nodeTree().nodeOfJsonPointer(jsonPointer);
+        return node >= 0 ? values.valueOfNode(node) : null;
+    }
+
+    @Override
+    @Nullable
+    public String scalarValueAtOffset(int offset) {
+        return scalarValues().valueAtOffset(nodeTree(), offset);
     }
 
 }
@@ -25,15 +25,45 @@
 package org.abego.yaml.sourcemap;
 
 import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+import org.abego.yaml.sourcemap.FragmentsAPI.FragmentCursor;
+import org.abego.yaml.sourcemap.NodesAPI.Node;
+import org.abego.yaml.sourcemap.testdata.YAMLDocumentGenerator;
+import org.abego.yaml.sourcemap.testdata.YAMLDocumentGenerator.Shape;
+import org.eclipse.jdt.annotation.Nullable;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
 
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class YAMLSourceMapAPITest {
 
@@ -84,6 +114,547 @@ class YAMLSourceMapAPITest {
                 "", result);
     }
 
+    @Test
+    void load() {
+        String yaml = "" +
+                "base: &base {port: 80, on: yes}\n" +
+                "service:\n" +
+                "  <<: *base\n" +
+                "  host: !!str 123\n" +
+                "list: [1, 2.5, null, *base]\n";
+
+        YAMLLoadResult result = YAMLSourceMapAPI.load(yaml);
+
+        assertEquals(new Yaml(new SafeConstructor()).load(yaml),
+                result.getData());
+        assertEquals(toTSV(YAMLSourceMapAPI.createYAMLSourceMap(yaml)),
+                toTSV(result.getSourceMap()));
+        Node node = result.getSourceMap().nodeOfJsonPointer("/service/host");
+        assertNotNull(node);
+        assertEquals("!!str 123", node.getValueRange().getRangeText(yaml));
+    }
+
+    @Test
+    void load_largeDocument() {
+        // the document has far more parser events than the pipe between the
+        // source map and the data construction holds. (Without aliases, as
+        // SnakeYAML limits the aliases of collections.)
+        String yaml = YAMLDocumentGenerator.builder()
+                .size(1024 * 1024)
+                .aliasRate(0)
+                .build()
+                .generate();
+
+        YAMLLoadResult result = YAMLSourceMapAPI.load(yaml);
+
+        assertEquals(new Yaml(new SafeConstructor()).load(yaml),
+                result.getData());
+        assertEquals(toTSV(YAMLSourceMapAPI.createYAMLSourceMap(yaml)),
+                toTSV(result.getSourceMap()));
+    }
+
+    @Test
+    void load_dataConstructionFailsEarly() {
+        // composing the data fails at the start of a large document (the
+        // alias is undefined), while the source map is still created
+        String yaml = "unknown: *nowhere\n" + YAMLDocumentGenerator.builder()
+                .shape(Shape.FLAT)
+                .size(1024 * 1024)
+                .build()
+                .generate();
+
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                () -> YAMLSourceMapAPI.load(yaml));
+        assertTrue(e.getMessage().contains("found undefined alias nowhere"),
+                e.getMessage());
+    }
+
+    @Test
+    void load_emptyDocument() {
+        YAMLLoadResult result = YAMLSourceMapAPI.load(new StringReader(""));
+
+        assertNull(result.getData());
+        assertEquals(toTSV(YAMLSourceMapAPI.createYAMLSourceMap("")),
+                toTSV(result.getSourceMap()));
+    }
+
+    @Test
+    void load_invalidYAML() {
+        assertThrows(YAMLSourceMapException.class,
+                () -> YAMLSourceMapAPI.load("a: [1"));
+    }
+
+    @Test
+    void yamlSourceMapBuilder() {
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                .build("A");
+
+        assertEquals("" +
+                FRAGMENTS_TSV_HEADER +
+                "0\t1\t1\t1\t1\t2\tSCALAR_VALUE\t\n" +
+                "", toTSV(sourceMap));
+    }
+
+    @Test
+    void yamlSourceMapBuilder_buildListener() {
+        String yaml = "{a: {b: c}}";
+        List<SourceMapBuildListener.BuildStatistics> allStatistics = new ArrayList<>();
+
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                .buildListener(allStatistics::add)
+                .build(new StringReader(yaml));
+
+        assertEquals(1, allStatistics.size());
+        SourceMapBuildListener.BuildStatistics statistics = allStatistics.get(0);
+        // StreamStart, DocumentStart, MappingStart, 'a', MappingStart,
+        // 'b', 'c', MappingEnd, MappingEnd, DocumentEnd
+        assertEquals(10, statistics.getEventCount());
+        assertEquals(sourceMap.allFragments().size(),
+                statistics.getFragmentsCreatedCount());
+        // ": " and "{" of the value of "a" are merged into one fragment
+        assertEquals(1, statistics.getFragmentsMergedCount());
+        assertEquals(2, statistics.getJsonPointerReassignmentCount());
+        assertEquals(2, statistics.getMaxDepth());
+        assertEquals(yaml.length(), statistics.getInputLength());
+        assertTrue(statistics.getEventProductionNanos() > 0);
+        assertTrue(statistics.getFragmentConstructionNanos() > 0);
+    }
+
+    @Test
+    void yamlSourceMapBuilder_maxAliasExpansions() {
+        // every step into "c" expands two aliases
+        String yaml = "a: &a [x, y]\nb: &b [*a, *a]\nc: [*b, *b]\n";
+
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                .maxAliasExpansions(2)
+                .build(yaml);
+
+        Node node = sourceMap.resolvedNodeOfJsonPointer("/c/0/1/1");
+        assertNotNull(node);
+        assertEquals("/a/1", node.getJSONPointer());
+
+        YAMLSourceMap limitedSourceMap = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                .maxAliasExpansions(1)
+                .build(yaml);
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                () -> limitedSourceMap.resolvedNodeOfJsonPointer("/c/0/1/1"));
+        assertEquals(
+                "Too many alias expansions when resolving JSON pointer '/c/0/1/1' (limit: 1)",
+                e.getMessage());
+
+        e = assertThrows(YAMLSourceMapException.class,
+                () -> YAMLSourceMapAPI.yamlSourceMapBuilder().maxAliasExpansions(-1));
+        assertEquals("maxAliasExpansions must be >= 0. Got -1", e.getMessage());
+    }
+
+    @Test
+    void yamlSourceMapBuilder_spillFragments(@TempDir File directory) {
+        String yaml = YAMLDocumentGenerator.builder()
+                .shape(Shape.MIXED)
+                .size(1024 * 1024)
+                .build()
+                .generate();
+
+        YAMLSourceMap expected = YAMLSourceMapAPI.createYAMLSourceMap(yaml);
+        YAMLSourceMap spilled = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                .spillFragments(directory)
+                .build(yaml);
+
+        assertSameFragmentQueries(expected, spilled, 997);
+
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                spilled::rootNode);
+        assertEquals(
+                "No node tree available. The node tree is not built when spilling fragments",
+                e.getMessage());
+
+        assertEquals(toTSV(expected.allFragments()),
+                toTSV(spilled.allFragments()));
+        assertThrows(UnsupportedOperationException.class,
+                () -> spilled.allFragments().clear());
+
+        spilled.close();
+        e = assertThrows(YAMLSourceMapException.class,
+                () -> spilled.fragmentAtOffset(0));
+        assertEquals("The source map is closed", e.getMessage());
+        assertArrayEquals(new String[0], directory.list());
+
+        // no file is left when the YAML text is invalid
+        assertThrows(YAMLSourceMapException.class,
+                () -> YAMLSourceMapAPI.yamlSourceMapBuilder()
+                        .spillFragments(directory)
+                        .build(yaml + "\nb: [1"));
+        assertArrayEquals(new String[0], directory.list());
+
+        e = assertThrows(YAMLSourceMapException.class,
+                () -> YAMLSourceMapAPI.yamlSourceMapBuilder()
+                        .spillFragments(directory)
+                        .retainScalarValues(true)
+                        .build(yaml));
+        assertEquals("Scalar values cannot be retained when spilling fragments",
+                e.getMessage());
+    }
+
+    @Test
+    void yamlSourceMapBuilder_offHeap() {
+        for (Shape shape : Shape.values()) {
+            String yaml = YAMLDocumentGenerator.builder()
+                    .shape(shape)
+                    .size(64 * 1024)
+                    .build()
+                    .generate();
+
+            YAMLSourceMap expected = YAMLSourceMapAPI.createYAMLSourceMap(yaml);
+            try (YAMLSourceMap offHeap = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                    .offHeap(true)
+                    .build(yaml)) {
+                assertSameFragmentQueries(expected, offHeap, 7);
+                FragmentsAPI.FragmentCursor expectedCursor = expected.fragmentCursor();
+                FragmentsAPI.FragmentCursor cursor = offHeap.fragmentCursor();
+                while (expectedCursor.next()) {
+                    assertTrue(cursor.next());
+                    assertEquals(expectedCursor.pointerId(), cursor.pointerId());
+                }
+                Node expectedRoot = expected.rootNode();
+                Node root = offHeap.rootNode();
+                assertNotNull(expectedRoot);
+                assertNotNull(root);
+                assertEquals(expectedRoot.getSubtreeHash(), root.getSubtreeHash());
+            }
+        }
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool :
+                ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        throw new IllegalStateException("No direct buffer pool");
+    }
+
+    @Test
+    void yamlSourceMapBuilder_offHeap_close() {
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                .offHeap(true)
+                .build("a: [b, c]");
+        assertEquals("/a/1", sourceMap.jsonPointerAtOffset(7));
+        FragmentCursor cursor = sourceMap.fragmentCursor();
+        assertTrue(cursor.seek(7));
+        assertEquals(7, cursor.startOffset());
+        assertEquals(8, cursor.endOffset());
+        assertEquals(Kind.SEQUENCE_ITEM, cursor.kind());
+
+        sourceMap.close();
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                () -> sourceMap.jsonPointerAtOffset(7));
+        assertEquals("The source map is closed", e.getMessage());
+        e = assertThrows(YAMLSourceMapException.class, cursor::startOffset);
+        assertEquals("The source map is closed", e.getMessage());
+        // closing again has no effect
+        sourceMap.close();
+
+        // closing frees the buffers immediately (from Java 9 on)
+        if (!System.getProperty("java.specification.version").startsWith("1.")) {
+            String yaml = YAMLDocumentGenerator.builder()
+                    .size(1024 * 1024)
+                    .build()
+                    .generate();
+            YAMLSourceMap largeSourceMap = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                    .offHeap(true)
+                    .build(yaml);
+            long usedBeforeClose = directMemoryUsed();
+            largeSourceMap.close();
+            assertTrue(directMemoryUsed() < usedBeforeClose);
+        }
+
+        e = assertThrows(YAMLSourceMapException.class,
+                () -> YAMLSourceMapAPI.yamlSourceMapBuilder()
+                        .offHeap(true)
+                        .spillFragments(new File("."))
+                        .build("a"));
+        assertEquals("Fragments cannot be both spilled and stored off-heap",
+                e.getMessage());
+    }
+
+    /**
+     * Checks {@code actual} answers the fragment queries for every
+     * {@code step}-th fragment like {@code expected}.
+     */
+    private static void assertSameFragmentQueries(
+            YAMLSourceMap expected, YAMLSourceMap actual, int step) {
+        assertEquals(toTSV(expected), toTSV(actual));
+        assertEquals(expected.documentLength(), actual.documentLength());
+        List<Fragment> fragments = expected.allFragments();
+        for (int i = 0; i < fragments.size(); i += step) {
+            Fragment f = fragments.get(i);
+            String jsonPointer = f.getJSONPointer();
+            int offset = f.getStartOffset();
+            assertEquals(toTSV(singletonList(expected.fragmentAtOffset(offset))),
+                    toTSV(singletonList(actual.fragmentAtOffset(offset))));
+            assertEquals(
+                    toTSV(singletonList(expected.fragmentAtLocation(
+                            f.getStartLine(), f.getStartColumn()))),
+                    toTSV(singletonList(actual.fragmentAtLocation(
+                            f.getStartLine(), f.getStartColumn()))));
+            assertEquals(toTSV(expected.allFragmentsOfJsonPointer(jsonPointer)),
+                    toTSV(actual.allFragmentsOfJsonPointer(jsonPointer)));
+            assertEquals(
+                    toTSV(expected.allFragmentsOfChildrenOfJsonPointer(jsonPointer)),
+                    toTSV(actual.allFragmentsOfChildrenOfJsonPointer(jsonPointer)));
+            assertEquals(expected.sourceRangeOfValueOfJsonPointer(jsonPointer),
+                    actual.sourceRangeOfValueOfJsonPointer(jsonPointer));
+            assertEquals(expected.sourceRangeOfJsonPointer(jsonPointer),
+                    actual.sourceRangeOfJsonPointer(jsonPointer));
+            assertEquals(toTSV(expected.fragmentsInRange(offset, offset + 200)),
+                    toTSV(actual.fragmentsInRange(offset, offset + 200)));
+        }
+        for (Kind kind : Kind.values()) {
+            assertEquals(toTSV(expected.fragmentsOfKind(kind)),
+                    toTSV(actual.fragmentsOfKind(kind)));
+        }
+        assertEquals(0, actual.allFragmentsOfJsonPointer("/noSuchKey").size());
+    }
+
+    /**
+     * A YAMLSourceMap only implementing the abstract methods, delegating to
+     * another source map, i.e. using the default implementations of all
+     * other methods.
+     */
+    private static final class MinimalYAMLSourceMap implements YAMLSourceMap {
+        private final YAMLSourceMap sourceMap;
+
+        private MinimalYAMLSourceMap(YAMLSourceMap sourceMap) {
+            this.sourceMap = sourceMap;
+        }
+
+        @Override
+        public String jsonPointerAtOffset(int offset) {
+            return sourceMap.jsonPointerAtOffset(offset);
+        }
+
+        @Override
+        public String jsonPointerAtLocation(int line, int column) {
+            return sourceMap.jsonPointerAtLocation(line, column);
+        }
+
+        @Override
+        public YAMLRange sourceRangeOfJsonPointer(String jsonPointer) {
+            return sourceMap.sourceRangeOfJsonPointer(jsonPointer);
+        }
+
+        @Override
+        public YAMLRange sourceRangeOfValueOfJsonPointer(String jsonPointer) {
+            return sourceMap.sourceRangeOfValueOfJsonPointer(jsonPointer);
+        }
+
+        @Override
+        public int documentLength() {
+            return sourceMap.documentLength();
+        }
+
+        @Override
+        public List<Fragment> allFragments() {
+            return sourceMap.allFragments();
+        }
+
+        @Override
+        public List<Fragment> allFragmentsMatching(Predicate<Fragment> test) {
+            return sourceMap.allFragmentsMatching(test);
+        }
+
+        @Override
+        @Nullable
+        public Fragment findFirstFragmentMatching(Predicate<Fragment> test) {
+            return sourceMap.findFirstFragmentMatching(test);
+        }
+
+        @Override
+        public Fragment fragmentAtOffset(int offset) {
+            return sourceMap.fragmentAtOffset(offset);
+        }
+
+        @Override
+        public Fragment fragmentAtLocation(int line, int column) {
+            return sourceMap.fragmentAtLocation(line, column);
+        }
+
+        @Override
+        public List<Fragment> allFragmentsOfJsonPointer(String jsonPointer) {
+            return sourceMap.allFragmentsOfJsonPointer(jsonPointer);
+        }
+
+        @Override
+        public List<Fragment> allFragmentsOfChildrenOfJsonPointer(String jsonPointer) {
+            return sourceMap.allFragmentsOfChildrenOfJsonPointer(jsonPointer);
+        }
+
+        @Override
+        public Fragment valueFragmentOfJsonPointer(String jsonPointer) {
+            return sourceMap.valueFragmentOfJsonPointer(jsonPointer);
+        }
+    }
+
+    @Test
+    void yamlSourceMap_defaultMethods() {
+        String yaml = YAMLDocumentGenerator.builder()
+                .shape(Shape.MIXED)
+                .size(16 * 1024)
+                .build()
+                .generate();
+        YAMLSourceMap expected = YAMLSourceMapAPI.createYAMLSourceMap(yaml);
+        YAMLSourceMap actual = new MinimalYAMLSourceMap(expected);
+
+        assertSameFragmentQueries(expected, actual, 7);
+
+        List<Fragment> fragments = expected.allFragments();
+        int[] offsets = new int[fragments.size()];
+        int[] lines = new int[fragments.size()];
+        int[] columns = new int[fragments.size()];
+        List<String> jsonPointers = new ArrayList<>();
+        for (int i = 0; i < fragments.size(); i++) {
+            Fragment f = fragments.get(i);
+            offsets[i] = f.getStartOffset() + 1;
+            lines[i] = f.getStartLine();
+            columns[i] = f.getStartColumn();
+            jsonPointers.add(f.getJSONPointer());
+        }
+        assertArrayEquals(expected.fragmentsAtOffsets(offsets),
+                actual.fragmentsAtOffsets(offsets));
+        assertArrayEquals(expected.fragmentsAtLocations(lines, columns),
+                actual.fragmentsAtLocations(lines, columns));
+        assertArrayEquals(expected.jsonPointersAtOffsets(offsets),
+                actual.jsonPointersAtOffsets(offsets));
+        assertArrayEquals(expected.jsonPointersAtLocations(lines, columns),
+                actual.jsonPointersAtLocations(lines, columns));
+        assertArrayEquals(
+                expected.sourceRangesOfValuesOfJsonPointers(jsonPointers),
+                actual.sourceRangesOfValuesOfJsonPointers(jsonPointers));
+        int lineCount = fragments.get(fragments.size() - 1).getEndLine();
+        for (int line = 1; line <= lineCount; line += 3) {
+            assertEquals(expected.fragmentsInLines(line, line + 2),
+                    actual.fragmentsInLines(line, line + 2));
+        }
+        assertEquals(expected.fragmentsInRange(5, 5), actual.fragmentsInRange(5, 5));
+
+        FragmentsAPI.FragmentCursor expectedCursor = expected.fragmentCursor();
+        FragmentsAPI.FragmentCursor cursor = actual.fragmentCursor();
+        while (expectedCursor.next()) {
+            assertTrue(cursor.next());
+            assertEquals(expectedCursor.fragment(), cursor.fragment());
+            assertEquals(expectedCursor.pointerId(), cursor.pointerId());
+            assertEquals(expectedCursor.startLine(), cursor.startLine());
+            assertEquals(expectedCursor.startColumn(), cursor.startColumn());
+            assertEquals(expectedCursor.endLine(), cursor.endLine());
+            assertEquals(expectedCursor.endColumn(), cursor.endColumn());
+            assertEquals(expectedCursor.jsonPointer(), cursor.jsonPointer());
+        }
+        assertFalse(cursor.next());
+        for (int offset = -1; offset <= yaml.length(); offset += 97) {
+            assertEquals(expectedCursor.seek(offset), cursor.seek(offset));
+            assertEquals(expectedCursor.fragment(), cursor.fragment());
+        }
+
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                actual::rootNode);
+        assertEquals("No node tree available", e.getMessage());
+        assertThrows(YAMLSourceMapException.class,
+                () -> actual.subtreeHash(""));
+        assertThrows(YAMLSourceMapException.class,
+                () -> actual.definitionRangeOfAlias(0));
+        assertThrows(YAMLSourceMapException.class,
+                () -> actual.scalarValueAtOffset(0));
+        actual.close();
+    }
+
+    @Test
+    void nodesAPI_defaultMethods() {
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.createYAMLSourceMap(
+                "a: {b: [1, {c: 2}], bc: 3}\na: 4\n");
+        NodesAPI nodes = new NodesAPI() {
+            @Override
+            @Nullable
+            public Node rootNode() {
+                return sourceMap.rootNode();
+            }
+        };
+
+        for (String jsonPointer : Arrays.asList(
+                "", "/a", "/a/b/1/c", "/a/bc", "/a/b/2", "/x", "a")) {
+            assertEquals(sourceMap.nodeOfJsonPointer(jsonPointer),
+                    nodes.nodeOfJsonPointer(jsonPointer), jsonPointer);
+            assertEquals(sourceMap.subtreeHash(jsonPointer),
+                    nodes.subtreeHash(jsonPointer), jsonPointer);
+        }
+        assertThrows(YAMLSourceMapException.class,
+                () -> nodes.resolvedNodeOfJsonPointer("/a"));
+    }
+
+    @Test
+    void instrumentedYAMLSourceMap() {
+        String yaml = "a: 1\nb: [2, 3]\n";
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.createYAMLSourceMap(yaml);
+
+        InstrumentedYAMLSourceMap instrumented =
+                YAMLSourceMapAPI.instrumentedYAMLSourceMap(sourceMap);
+
+        // answers like the original source map
+        assertEquals(sourceMap.allFragments(), instrumented.allFragments());
+        assertEquals("/b/1", instrumented.jsonPointerAtOffset(12));
+        assertEquals(sourceMap.sourceRangeOfJsonPointer("/b"),
+                instrumented.sourceRangeOfJsonPointer("/b"));
+        assertEquals(sourceMap.allFragmentsOfJsonPointer("/a"),
+                instrumented.allFragmentsOfJsonPointer("/a"));
+        instrumented.jsonPointerAtOffset(0);
+        instrumented.findFirstFragmentMatching(
+                f -> f.getJSONPointer().equals("/b"));
+        // calls throwing an exception are recorded, too
+        assertThrows(YAMLSourceMapException.class,
+                () -> instrumented.fragmentsInRange(2, 1));
+
+        InstrumentedYAMLSourceMap.MetricsSnapshot snapshot =
+                instrumented.metricsSnapshot();
+        InstrumentedYAMLSourceMap.OperationMetrics jsonPointerAtOffset =
+                snapshot.getOperationMetrics(
+                        InstrumentedYAMLSourceMap.Operation.JSON_POINTER_AT_OFFSET);
+        assertEquals(2, jsonPointerAtOffset.getCallCount());
+        // the searches probe some fragments, but not all
+        assertTrue(jsonPointerAtOffset.getFragmentCount() >= 2);
+        assertTrue(jsonPointerAtOffset.getFragmentCount()
+                < 2 * sourceMap.allFragments().size());
+        assertTrue(jsonPointerAtOffset.getTotalNanos() >= jsonPointerAtOffset.getMaxNanos());
+        assertTrue(jsonPointerAtOffset.getNanosAtPercentile(99) <= jsonPointerAtOffset.getMaxNanos());
+        assertEquals(sourceMap.allFragmentsOfJsonPointer("/a").size(),
+                snapshot.getOperationMetrics(
+                        InstrumentedYAMLSourceMap.Operation.ALL_FRAGMENTS_OF_JSON_POINTER)
+                        .getFragmentCount());
+        // the fragments of "/b" were scanned for its range
+        assertEquals(sourceMap.allFragmentsOfJsonPointer("/b").size(),
+                snapshot.getOperationMetrics(
+                        InstrumentedYAMLSourceMap.Operation.SOURCE_RANGE_OF_JSON_POINTER)
+                        .getFragmentCount());
+        // the predicate was tested until the first fragment of "/b" was found
+        assertEquals(sourceMap.allFragments().indexOf(
+                sourceMap.allFragmentsOfJsonPointer("/b").get(0)) + 1,
+                snapshot.getOperationMetrics(
+                        InstrumentedYAMLSourceMap.Operation.FIND_FIRST_FRAGMENT_MATCHING)
+                        .getFragmentCount());
+        assertEquals(0, snapshot.getOperationMetrics(
+                InstrumentedYAMLSourceMap.Operation.FRAGMENT_AT_LOCATION)
+                .getCallCount());
+        assertEquals(1, snapshot.getOperationMetrics(
+                InstrumentedYAMLSourceMap.Operation.FRAGMENTS_IN_RANGE)
+                .getCallCount());
+
+        instrumented.resetMetrics();
+        assertEquals(0, instrumented.metricsSnapshot().getOperationMetrics(
+                InstrumentedYAMLSourceMap.Operation.JSON_POINTER_AT_OFFSET)
+                .getCallCount());
+        // the snapshot is not affected by the reset
+        assertEquals(2, jsonPointerAtOffset.getCallCount());
+    }
+
     @Test
     void writeTSV() {
         YAMLSourceMap sourceMap = YAMLSourceMapAPI.createYAMLSourceMap("A");
@@ -113,5 +684,364 @@ class YAMLSourceMapAPITest {
                 "", result);
     }
 
+    @Test
+    void readTSV() {
+        String yaml = "" +
+                "a: &x [1, {b: 2}]\n" +
+                "\"c\\t\\\\d\": *x # comment\n" +
+                "e:\n" +
+                "  - |\n" +
+                "    text\n";
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.createYAMLSourceMap(yaml);
+        String tsv = toTSV(sourceMap);
+
+        YAMLSourceMap result = YAMLSourceMapAPI.readTSV(new StringReader(tsv));
+
+        assertEquals(tsv, toTSV(result));
+        assertEquals(sourceMap.documentLength(), result.documentLength());
+        assertEquals("/c\t\\d", result.jsonPointerAtOffset(21));
+        assertEquals(sourceMap.sourceRangeOfJsonPointer("/a/1"),
+                result.sourceRangeOfJsonPointer("/a/1"));
+
+        // the TSV text has no node tree
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                result::rootNode);
+        assertEquals(
+                "No node tree available. The source map was not created from a YAML text",
+                e.getMessage());
+        e = assertThrows(YAMLSourceMapException.class,
+                () -> result.aliasesOfAnchor("x"));
+        assertEquals(
+                "No anchors available. The source map was not created from a YAML text",
+                e.getMessage());
+    }
+
+    @Test
+    void diff() {
+        String before = "" +
+                "a: {b: 1, c: 2}\n" +
+                "d: [1, 2, 3]\n" +
+                "e: x\n" +
+                "f: {g: 1}\n";
+        String after = "" +
+                "# a comment\n" +
+                "a:\n" +
+                "  c: 2\n" +
+                "  b: 10\n" +
+                "d: [1, 2]\n" +
+                "f: [1]\n" +
+                "h: new\n";
+
+        List<JSONPointerChange> changes = YAMLSourceMapAPI.diff(
+                YAMLSourceMapAPI.createYAMLSourceMap(before),
+                YAMLSourceMapAPI.createYAMLSourceMap(after));
+
+        assertEquals(5, changes.size());
+        assertChange(JSONPointerChange.Kind.CHANGED, "/a/b",
+                "b: 1", "b: 10", changes.get(0), before, after);
+        assertChange(JSONPointerChange.Kind.REMOVED, "/d/2",
+                "3", null, changes.get(1), before, after);
+        assertChange(JSONPointerChange.Kind.REMOVED, "/e",
+                "e: x", null, changes.get(2), before, after);
+        assertChange(JSONPointerChange.Kind.CHANGED, "/f",
+                "f: {g: 1}", "f: [1]", changes.get(3), before, after);
+        assertChange(JSONPointerChange.Kind.ADDED, "/h",
+                null, "h: new", changes.get(4), before, after);
+    }
+
+    @Test
+    void diff_largeDocument() {
+        String before = YAMLDocumentGenerator.builder()
+                .shape(Shape.FLAT)
+                .size(256 * 1024)
+                .build()
+                .generate();
+        YAMLSourceMap beforeMap = YAMLSourceMapAPI.createYAMLSourceMap(before);
+        Node root = beforeMap.rootNode();
+        assertNotNull(root);
+        List<Node> entries = root.getChildren();
+        Node node = entries.get(entries.size() / 2);
+        assertEquals(Node.Kind.SCALAR, node.getKind());
+        YAMLRange range = node.getValueRange();
+        // (offsets count code points)
+        String after = before.substring(0,
+                before.offsetByCodePoints(0, range.getStartOffset())) +
+                "changed\n" +
+                before.substring(
+                        before.offsetByCodePoints(0, range.getEndOffset()));
+
+        List<JSONPointerChange> changes = YAMLSourceMapAPI.diff(
+                beforeMap, YAMLSourceMapAPI.createYAMLSourceMap(after));
+
+        assertEquals(1, changes.size());
+        assertEquals(JSONPointerChange.Kind.CHANGED, changes.get(0).getKind());
+        assertEquals(node.getJSONPointer(), changes.get(0).getJSONPointer());
+        assertTrue(YAMLSourceMapAPI.diff(beforeMap, beforeMap).isEmpty());
+    }
+
+    private static void assertChange(
+            JSONPointerChange.Kind expectedKind,
+            String expectedJsonPointer,
+            @Nullable String expectedTextBefore,
+            @Nullable String expectedTextAfter,
+            JSONPointerChange change,
+            String before,
+            String after) {
+        assertEquals(expectedKind, change.getKind());
+        assertEquals(expectedJsonPointer, change.getJSONPointer());
+        @Nullable
+        YAMLRange rangeBefore = change.getRangeBefore();
+        @Nullable
+        YAMLRange rangeAfter = change.getRangeAfter();
+        assertEquals(expectedTextBefore,
+                rangeBefore != null ? rangeBefore.getRangeText(before) : null);
+        assertEquals(expectedTextAfter,
+                rangeAfter != null ? rangeAfter.getRangeText(after) : null);
+    }
+
+    @Test
+    void writeParserEvents() {
+        for (Shape shape : Shape.values()) {
+            String yaml = YAMLDocumentGenerator.builder()
+                    .shape(shape)
+                    .size(8 * 1024)
+                    .build()
+                    .generate() + "# comment\n";
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            YAMLSourceMapAPI.writeParserEvents(new StringReader(yaml), output);
+            YAMLSourceMap replayed = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                    .retainScalarValues(true)
+                    .buildFromParserEvents(
+                            new ByteArrayInputStream(output.toByteArray()));
+
+            YAMLSourceMap expected = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                    .retainScalarValues(true)
+                    .build(yaml);
+            assertEquals(toTSV(expected), toTSV(replayed), shape.name());
+            Node expectedRoot = expected.rootNode();
+            Node root = replayed.rootNode();
+            assertNotNull(expectedRoot);
+            assertNotNull(root);
+            assertEquals(expectedRoot.getValueRange(), root.getValueRange());
+            for (int offset = 0; offset < yaml.length(); offset += 97) {
+                assertEquals(expected.scalarValueAtOffset(offset),
+                        replayed.scalarValueAtOffset(offset));
+            }
+        }
+    }
+
+    @Test
+    void buildFromParserEvents_invalidInput() {
+        YAMLSourceMapBuilder builder = YAMLSourceMapAPI.yamlSourceMapBuilder();
+
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                () -> builder.buildFromParserEvents(new ByteArrayInputStream(
+                        "a: 1".getBytes(StandardCharsets.UTF_8))));
+        assertEquals("Not a recording of parser events", e.getMessage());
+
+        e = assertThrows(YAMLSourceMapException.class,
+                () -> builder.buildFromParserEvents(
+                        new ByteArrayInputStream(new byte[0])));
+        assertEquals("Not a recording of parser events", e.getMessage());
+    }
+
+    @Test
+    void readTSV_emptyDocument() {
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.createYAMLSourceMap("");
+
+        YAMLSourceMap result = YAMLSourceMapAPI.readTSV(
+                new StringReader(toTSV(sourceMap)));
+
+        assertEquals(0, result.documentLength());
+    }
+
+    @Test
+    void readTSV_invalidHeader() {
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                () -> YAMLSourceMapAPI.readTSV(new StringReader("foo\n")));
+        assertEquals("Invalid TSV header", e.getMessage());
+    }
+
+    @Test
+    void readTSV_invalidLines() {
+        assertReadTSVFails("Invalid TSV in line 2: expected 8 fields",
+                "0\t1\t1\t1\t1\t2\tSCALAR_VALUE\n");
+        assertReadTSVFails("Invalid TSV in line 2: expected 8 fields",
+                "0\t1\t1\t1\t1\t2\tSCALAR_VALUE\t\t\n");
+        assertReadTSVFails("Invalid TSV in line 2: field 4 is not a valid number",
+                "0\t1\t1\tx\t1\t2\tSCALAR_VALUE\t\n");
+        assertReadTSVFails("Invalid TSV in line 2: field 1 is empty",
+                "\t1\t1\t1\t1\t2\tSCALAR_VALUE\t\n");
+        assertReadTSVFails("Invalid TSV in line 2: field 7 is not a valid kind",
+                "0\t1\t1\t1\t1\t2\tFOO\t\n");
+        assertReadTSVFails("" +
+                        "Fragments must be contiguous. Expected fragment starting at 1, got " +
+                        "FragmentDefault{startOffset=2, startLine=1, startColumn=3, " +
+                        "endOffset=3, endLine=1, endColumn=4, " +
+                        "kind=SCALAR_VALUE, jsonPointer=}",
+                "0\t1\t1\t1\t1\t2\tSCALAR\t\n" +
+                        "2\t1\t3\t3\t1\t4\tSCALAR_VALUE\t\n");
+    }
+
+    @Test
+    void readTSV_largestNumbers() {
+        YAMLSourceMap result = YAMLSourceMapAPI.readTSV(new StringReader(
+                FRAGMENTS_TSV_HEADER +
+                        "0\t1\t1\t2147483647\t2147483640\t1\tSCALAR_VALUE\t\n"));
+
+        assertEquals(Integer.MAX_VALUE, result.documentLength());
+        assertEquals(2147483640, result.allFragments().get(0).getEndLine());
 
-}
\ No newline at end of file
+        assertReadTSVFails("Invalid TSV in line 2: field 4 is not a valid number",
+                "0\t1\t1\t2147483648\t2\t1\tSCALAR_VALUE\t\n");
+        assertReadTSVFails("Invalid TSV in line 2: field 4 is not a valid number",
+                "0\t1\t1\t21474836470\t2\t1\tSCALAR_VALUE\t\n");
+    }
+
+    private static void assertReadTSVFails(String expectedMessage, String lines) {
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                () -> YAMLSourceMapAPI.readTSV(
+                        new StringReader(FRAGMENTS_TSV_HEADER + lines)));
+        assertEquals(expectedMessage, e.getMessage());
+    }
+
+    @Test
+    void writeNDJSON() {
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.createYAMLSourceMap("- A\n- b\n");
+        StringWriter writer = new StringWriter();
+
+        YAMLSourceMapAPI.writeNDJSON(sourceMap, writer);
+
+        assertEquals("" +
+                "{\"startOffset\":0,\"startLine\":1,\"startColumn\":1,\"endOffset\":2,\"endLine\":1,\"endColumn\":3,\"kind\":\"SEQUENCE\",\"jsonPointer\":\"/0\"}\n" +
+                "{\"startOffset\":2,\"startLine\":1,\"startColumn\":3,\"endOffset\":3,\"endLine\":1,\"endColumn\":4,\"kind\":\"SEQUENCE_ITEM\",\"jsonPointer\":\"/0\"}\n" +
+                "{\"startOffset\":3,\"startLine\":1,\"startColumn\":4,\"endOffset\":6,\"endLine\":2,\"endColumn\":3,\"kind\":\"SEQUENCE\",\"jsonPointer\":\"/1\"}\n" +
+                "{\"startOffset\":6,\"startLine\":2,\"startColumn\":3,\"endOffset\":7,\"endLine\":2,\"endColumn\":4,\"kind\":\"SEQUENCE_ITEM\",\"jsonPointer\":\"/1\"}\n" +
+                "{\"startOffset\":7,\"startLine\":2,\"startColumn\":4,\"endOffset\":8,\"endLine\":3,\"endColumn\":1,\"kind\":\"SEQUENCE\",\"jsonPointer\":\"\"}\n" +
+                "", writer.toString());
+    }
+
+    @Test
+    void writeNDJSON_withEscapes() {
+        String yaml = "{\"A\\n\\\"\\u0001\\\\/\u00e4\":2}";
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.createYAMLSourceMap(yaml);
+        StringWriter writer = new StringWriter();
+
+        YAMLSourceMapAPI.writeNDJSON(
+                sourceMap.allFragmentsMatching(f -> f.getKind() == Kind.MAP_KEY),
+                writer);
+
+        assertEquals("" +
+                "{\"startOffset\":1,\"startLine\":1,\"startColumn\":2,\"endOffset\":18,\"endLine\":1,\"endColumn\":19,\"kind\":\"MAP_KEY\",\"jsonPointer\":\"/A\\n\\\"\\u0001\\\\~1\u00e4\"}\n" +
+                "", writer.toString());
+    }
+
+    @Test
+    void writeNDJSON_gzip() throws IOException {
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.createYAMLSourceMap("a: \u00e4\n");
+        StringWriter expected = new StringWriter();
+        YAMLSourceMapAPI.writeNDJSON(sourceMap, expected);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        YAMLSourceMapAPI.writeNDJSON(sourceMap.allFragments(), output, true);
+
+        assertEquals(expected.toString(), gunzip(output.toByteArray()));
+    }
+
+    @Test
+    void writePointerRanges() {
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.createYAMLSourceMap("a: 1\nb: [x, y]\n");
+        StringWriter writer = new StringWriter();
+
+        YAMLSourceMapAPI.writePointerRanges(sourceMap, writer);
+
+        assertEquals("" +
+                "{\"jsonPointer\":\"/a\",\"range\":{\"startOffset\":0,\"endOffset\":4},\"valueRange\":{\"startOffset\":3,\"endOffset\":4}}\n" +
+                "{\"jsonPointer\":\"/b/0\",\"range\":{\"startOffset\":9,\"endOffset\":10},\"valueRange\":{\"startOffset\":9,\"endOffset\":10}}\n" +
+                "{\"jsonPointer\":\"/b/1\",\"range\":{\"startOffset\":10,\"endOffset\":13},\"valueRange\":{\"startOffset\":12,\"endOffset\":13}}\n" +
+                "{\"jsonPointer\":\"/b\",\"range\":{\"startOffset\":4,\"endOffset\":14},\"valueRange\":{\"startOffset\":9,\"endOffset\":13}}\n" +
+                "{\"jsonPointer\":\"\",\"range\":{\"startOffset\":14,\"endOffset\":15},\"valueRange\":{\"startOffset\":0,\"endOffset\":14}}\n" +
+                "", writer.toString());
+    }
+
+    @Test
+    void writePointerRanges_sameAsSourceRanges() {
+        String yaml = "" +
+                "a: &x [1, {b: 2}]\n" +
+                "c: *x # comment\n" +
+                "d:\n" +
+                "  - - e\n" +
+                "    - {f: [], g: {}}\n" +
+                "  - |\n" +
+                "    text\n" +
+                "h: \"/~\"\n";
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.createYAMLSourceMap(yaml);
+
+        assertPointerRangesSameAsSourceRanges(sourceMap);
+    }
+
+    @Test
+    void writePointerRanges_duplicateKeys() {
+        String yaml = "" +
+                "a:\n" +
+                "  x: 1\n" +
+                "b: 2\n" +
+                "a:\n" +
+                "  y: [3]\n" +
+                "  x: 4\n";
+        YAMLSourceMap sourceMap = YAMLSourceMapAPI.createYAMLSourceMap(yaml);
+        StringWriter writer = new StringWriter();
+
+        YAMLSourceMapAPI.writePointerRanges(sourceMap, writer);
+
+        // one object per JSON pointer, children before their parent
+        List<String> pointers = new ArrayList<>();
+        for (String line : writer.toString().split("\n")) {
+            pointers.add(line.substring(
+                    line.indexOf(":\"") + 2, line.indexOf("\",\"range")));
+        }
+        assertEquals(Arrays.asList("/b", "/a/y/0", "/a/y", "/a/x", "/a"),
+                pointers);
+        assertPointerRangesSameAsSourceRanges(sourceMap);
+    }
+
+    private static void assertPointerRangesSameAsSourceRanges(
+            YAMLSourceMap sourceMap) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        YAMLSourceMapAPI.writePointerRanges(sourceMap, output, false);
+
+        String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8)
+                .split("\n");
+        Set<String> pointers = new HashSet<>();
+        for (Fragment f : sourceMap.allFragments()) {
+            pointers.add(f.getJSONPointer());
+        }
+        assertEquals(pointers.size(), lines.length);
+        for (String line : lines) {
+            String pointer = line.substring(
+                    line.indexOf(":\"") + 2, line.indexOf("\",\"range"));
+            YAMLRange range = sourceMap.sourceRangeOfJsonPointer(pointer);
+            YAMLRange valueRange = sourceMap.sourceRangeOfValueOfJsonPointer(pointer);
+            assertEquals(String.format("" +
+                            "{\"jsonPointer\":\"%s\",\"range\":{\"startOffset\":%d,\"endOffset\":%d}," +
+                            "\"valueRange\":{\"startOffset\":%d,\"endOffset\":%d}}",
+                    pointer, range.getStartOffset(), range.getEndOffset(),
+                    valueRange.getStartOffset(), valueRange.getEndOffset()),
+                    line);
+        }
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(
+                new ByteArrayInputStream(bytes)), StandardCharsets.UTF_8)) {
+            StringBuilder result = new StringBuilder();
+            int c;
+            while ((c = reader.read()) >= 0) {
+                result.append((char) c);
+            }
+            return result.toString();
+        }
+    }
+}
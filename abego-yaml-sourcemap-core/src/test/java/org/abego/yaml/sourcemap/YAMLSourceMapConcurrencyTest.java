@@ -0,0 +1,271 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.abego.yaml.sourcemap;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+import org.abego.yaml.sourcemap.FragmentsAPI.FragmentCursor;
+import org.abego.yaml.sourcemap.testdata.YAMLDocumentGenerator;
+import org.abego.yaml.sourcemap.testdata.YAMLDocumentGenerator.Shape;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.abego.yaml.sourcemap.YAMLSourceMapAPI.createYAMLSourceMap;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Queries a {@link YAMLSourceMap} from many threads concurrently, without
+ * any locking, and checks the results are the same as when queried from a
+ * single thread.
+ */
+class YAMLSourceMapConcurrencyTest {
+    private static final int THREAD_COUNT = 8;
+    private static final int ROUNDS = 3;
+    private static final int QUERIES_PER_METHOD = 50;
+
+    /**
+     * Returns a text describing the {@code result} of a query, to compare
+     * results of different source maps for the same document.
+     */
+    private static String describe(Object result) {
+        if (result instanceof YAMLRange) {
+            YAMLRange range = (YAMLRange) result;
+            return range.getStartOffset() + "-" + range.getEndOffset();
+        }
+        if (result instanceof Object[]) {
+            StringBuilder sb = new StringBuilder("[");
+            for (Object item : (Object[]) result) {
+                sb.append(describe(item)).append(", ");
+            }
+            return sb.append("]").toString();
+        }
+        return String.valueOf(result);
+    }
+
+    /**
+     * Returns the text of the fragments visited when seeking to
+     * {@code offset} and then moving backward and forward a few steps.
+     */
+    private static String walkCursor(YAMLSourceMap srcMap, int offset) {
+        StringBuilder sb = new StringBuilder();
+        FragmentCursor cursor = srcMap.fragmentCursor();
+        if (cursor.seek(offset)) {
+            for (int i = 0; i < 3 && cursor.previous(); i++) {
+                sb.append(cursor.pointerId()).append(cursor.jsonPointer());
+            }
+            for (int i = 0; i < 6 && cursor.next(); i++) {
+                sb.append(cursor.startOffset()).append(cursor.kind())
+                        .append(cursor.pointerId());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns queries covering all query methods of {@link YAMLSourceMap}, with
+     * arguments picked randomly for the {@code fragments} of a document.
+     */
+    private static List<Function<YAMLSourceMap, Object>> queries(
+            List<Fragment> fragments, Random random) {
+        List<Function<YAMLSourceMap, Object>> result = new ArrayList<>();
+        Kind[] kinds = Kind.values();
+        result.add(YAMLSourceMap::documentLength);
+        result.add(YAMLSourceMap::allFragments);
+        result.add(YAMLSourceMap::rootNode);
+        for (int i = 0; i < QUERIES_PER_METHOD; i++) {
+            Fragment f = fragments.get(random.nextInt(fragments.size()));
+            Fragment g = fragments.get(random.nextInt(fragments.size()));
+            int offset = f.getStartOffset();
+            int line = f.getStartLine();
+            int column = f.getStartColumn();
+            String jsonPointer = f.getJSONPointer();
+            Kind kind = kinds[random.nextInt(kinds.length)];
+            int[] offsets = {offset, g.getStartOffset(), offset + 1};
+            int[] lines = {line, g.getStartLine()};
+            int[] columns = {column, g.getStartColumn()};
+            List<String> jsonPointers =
+                    Arrays.asList(jsonPointer, g.getJSONPointer());
+
+            result.add(m -> walkCursor(m, offset));
+            result.add(m -> m.allFragmentsMatching(x -> x.getKind() == kind));
+            result.add(m -> m.fragmentsOfKind(kind, f.getKind()));
+            result.add(m -> m.findFirstFragmentMatching(
+                    x -> x.getJSONPointer().equals(jsonPointer)));
+            result.add(m -> m.fragmentAtOffset(offset));
+            result.add(m -> m.fragmentAtLocation(line, column));
+            result.add(m -> m.fragmentsAtOffsets(offsets));
+            result.add(m -> m.fragmentsAtLocations(lines, columns));
+            result.add(m -> m.fragmentsInRange(offset, offset + 40));
+            result.add(m -> m.fragmentsInLines(line, line + 2));
+            result.add(m -> m.allFragmentsOfJsonPointer(jsonPointer));
+            result.add(m -> m.allFragmentsOfChildrenOfJsonPointer(jsonPointer));
+            result.add(m -> m.valueFragmentOfJsonPointer(jsonPointer));
+            result.add(m -> m.jsonPointerAtOffset(offset));
+            result.add(m -> m.jsonPointerAtLocation(line, column));
+            result.add(m -> m.jsonPointersAtOffsets(offsets));
+            result.add(m -> m.jsonPointersAtLocations(lines, columns));
+            result.add(m -> m.sourceRangeOfJsonPointer(jsonPointer));
+            result.add(m -> m.sourceRangeOfValueOfJsonPointer(jsonPointer));
+            result.add(m -> m.sourceRangesOfValuesOfJsonPointers(jsonPointers));
+            result.add(m -> m.nodeOfJsonPointer(jsonPointer));
+            result.add(m -> m.definitionRangeOfAlias(offset));
+            result.add(m -> m.resolvedNodeOfJsonPointer(jsonPointer));
+            result.add(m -> m.subtreeHash(jsonPointer));
+        }
+        return result;
+    }
+
+    @Test
+    void concurrentQueries() throws Exception {
+        String yamlText = YAMLDocumentGenerator.builder()
+                .shape(Shape.MIXED)
+                .size(64 * 1024)
+                .build()
+                .generate();
+
+        // the expected results, queried from a single thread
+        YAMLSourceMap referenceMap = createYAMLSourceMap(yamlText);
+        List<Function<YAMLSourceMap, Object>> queries =
+                queries(referenceMap.allFragments(), new Random(42));
+        List<String> expected = new ArrayList<>();
+        for (Function<YAMLSourceMap, Object> query : queries) {
+            expected.add(describe(query.apply(referenceMap)));
+        }
+
+        // Query a new source map (without any indexes created yet) from
+        // many threads, every thread running the queries in its own order.
+        YAMLSourceMap srcMap = createYAMLSourceMap(yamlText);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < THREAD_COUNT; t++) {
+                long seed = t;
+                futures.add(executor.submit(() -> {
+                    List<Integer> order = new ArrayList<>();
+                    for (int i = 0; i < queries.size(); i++) {
+                        order.add(i);
+                    }
+                    start.await();
+                    List<String> mismatches = new ArrayList<>();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        Collections.shuffle(order, new Random(seed + round));
+                        for (int i : order) {
+                            String actual = describe(queries.get(i).apply(srcMap));
+                            if (!actual.equals(expected.get(i))) {
+                                mismatches.add(String.format(
+                                        "query %d: expected %s, got %s",
+                                        i, expected.get(i), actual));
+                            }
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            start.countDown();
+
+            for (Future<List<String>> future : futures) {
+                List<String> mismatches = future.get(2, TimeUnit.MINUTES);
+                assertTrue(mismatches.isEmpty(), () -> mismatches.get(0));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void closeWhileQuerying() throws Exception {
+        String yamlText = YAMLDocumentGenerator.builder()
+                .shape(Shape.MIXED)
+                .size(64 * 1024)
+                .build()
+                .generate();
+
+        YAMLSourceMap referenceMap = createYAMLSourceMap(yamlText);
+        List<Function<YAMLSourceMap, Object>> queries =
+                queries(referenceMap.allFragments(), new Random(42));
+        List<String> expected = new ArrayList<>();
+        for (Function<YAMLSourceMap, Object> query : queries) {
+            expected.add(describe(query.apply(referenceMap)));
+        }
+
+        // Close an off-heap source map while many threads query it. Every
+        // query must either return the right result or throw, and the
+        // buffers must not be freed while a query still reads them.
+        YAMLSourceMap srcMap = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                .offHeap(true)
+                .build(yamlText);
+        CountDownLatch started = new CountDownLatch(THREAD_COUNT);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < THREAD_COUNT; t++) {
+                futures.add(executor.submit(() -> {
+                    List<String> mismatches = new ArrayList<>();
+                    started.countDown();
+                    boolean closed = false;
+                    while (!closed) {
+                        for (int i = 0; i < queries.size(); i++) {
+                            try {
+                                String actual = describe(queries.get(i).apply(srcMap));
+                                if (!actual.equals(expected.get(i))) {
+                                    mismatches.add(String.format(
+                                            "query %d: expected %s, got %s",
+                                            i, expected.get(i), actual));
+                                }
+                            } catch (YAMLSourceMapException e) {
+                                closed = true;
+                            }
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            started.await();
+            Thread.sleep(50);
+            srcMap.close();
+
+            for (Future<List<String>> future : futures) {
+                List<String> mismatches = future.get(2, TimeUnit.MINUTES);
+                assertTrue(mismatches.isEmpty(), () -> mismatches.get(0));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThrows(YAMLSourceMapException.class,
+                () -> srcMap.fragmentAtOffset(0));
+    }
+}
@@ -26,11 +26,17 @@ package org.abego.yaml.sourcemap;
 
 import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
 import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+import org.abego.yaml.sourcemap.FragmentsAPI.FragmentCursor;
+import org.abego.yaml.sourcemap.NodesAPI.Node;
 import org.eclipse.jdt.annotation.Nullable;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind.DOCUMENT_END;
@@ -38,8 +44,11 @@ import static org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind.DOCUMENT_START
 import static org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind.SCALAR_VALUE;
 import static org.abego.yaml.sourcemap.YAMLSourceMapAPI.createYAMLSourceMap;
 import static org.abego.yaml.sourcemap.YAMLSourceMapAPITest.toTSV;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -281,7 +290,7 @@ class YAMLSourceMapTest {
 
         Fragment frag = srcMap.fragmentAtOffset(9);
         assertEquals("" +
-                "YAMLFragment{" +
+                "FragmentDefault{" +
                 "startOffset=9, startLine=3, startColumn=4, " +
                 "endOffset=10, endLine=3, endColumn=5, " +
                 "kind=MAP_VALUE, jsonPointer=/C}" +
@@ -375,6 +384,536 @@ class YAMLSourceMapTest {
                 e.getMessage());
     }
 
+    @Test
+    void fragmentsAtOffsets() {
+        String yaml = "- A\n- b\n";
+        // offsets-----0123-4567-8901234567890123456789
+        // ------------0000-0000-0011111111112222222222
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        // offsets in any order, with duplicates and out of bounds
+        int[] offsets = {7, 2, -1, 6, 2, 100, 0};
+        Fragment[] fragments = srcMap.fragmentsAtOffsets(offsets);
+
+        assertEquals(offsets.length, fragments.length);
+        for (int i = 0; i < offsets.length; i++) {
+            assertEquals(srcMap.fragmentAtOffset(offsets[i]), fragments[i]);
+        }
+        assertFragmentEquals(7, 2, 4, 8, 3, 1, Kind.SEQUENCE, "",
+                fragments[0]);
+        assertFragmentEquals(2, 1, 3, 3, 1, 4, Kind.SEQUENCE_ITEM, "/0",
+                fragments[1]);
+
+        assertEquals(0, srcMap.fragmentsAtOffsets(new int[0]).length);
+    }
+
+    @Test
+    void fragmentsAtOffsets_emptyDoc() {
+        YAMLSourceMap srcMap = createYAMLSourceMap("");
+
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                () -> srcMap.fragmentsAtOffsets(new int[]{0}));
+        assertEquals("Document is empty", e.getMessage());
+    }
+
+    @Test
+    void fragmentsAtLocations() {
+        String yaml = "- A\n- b\n";
+        // offsets-----0123-4567-8901234567890123456789
+        // ------------0000-0000-0011111111112222222222
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        int[] lines = {2, 1, 2, 1, 1};
+        int[] columns = {4, 3, 1, 1, 3};
+        Fragment[] fragments = srcMap.fragmentsAtLocations(lines, columns);
+
+        assertEquals(lines.length, fragments.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(srcMap.fragmentAtLocation(lines[i], columns[i]),
+                    fragments[i]);
+        }
+        assertFragmentEquals(7, 2, 4, 8, 3, 1, Kind.SEQUENCE, "",
+                fragments[0]);
+        assertFragmentEquals(3, 1, 4, 6, 2, 3, Kind.SEQUENCE, "/1",
+                fragments[2]);
+
+        // Exceptions
+        YAMLSourceMapException e;
+        e = assertThrows(YAMLSourceMapException.class,
+                () -> srcMap.fragmentsAtLocations(new int[]{1, 0}, new int[]{1, 1}));
+        assertEquals("line must be >= 1", e.getMessage());
+
+        e = assertThrows(YAMLSourceMapException.class,
+                () -> srcMap.fragmentsAtLocations(new int[]{1, 3}, new int[]{1, 1}));
+        assertEquals(
+                "Invalid location. Got line=3, column=1",
+                e.getMessage());
+
+        e = assertThrows(YAMLSourceMapException.class,
+                () -> srcMap.fragmentsAtLocations(new int[]{1, 2}, new int[]{1}));
+        assertEquals(
+                "lines and columns must have the same length. Got 2 and 1",
+                e.getMessage());
+    }
+
+    private static int[] startOffsets(List<Fragment> fragments) {
+        return fragments.stream().mapToInt(Fragment::getStartOffset).toArray();
+    }
+
+    @Test
+    void fragmentsInRange() {
+        String yaml = "a: 1\nb: 2\nc: 3\n";
+        // offsets-----01234-56789-01234
+        // ------------00000-00000-11111
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        assertArrayEquals(new int[]{4, 5, 6, 8},
+                startOffsets(srcMap.fragmentsInRange(4, 9)));
+        assertArrayEquals(new int[]{6},
+                startOffsets(srcMap.fragmentsInRange(7, 8)));
+        assertArrayEquals(new int[]{0, 1, 3, 4, 5, 6, 8, 9, 10, 11, 13, 14},
+                startOffsets(srcMap.fragmentsInRange(-5, 100)));
+        assertTrue(srcMap.fragmentsInRange(3, 3).isEmpty());
+        assertTrue(srcMap.fragmentsInRange(15, 20).isEmpty());
+
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                () -> srcMap.fragmentsInRange(5, 4));
+        assertEquals("endOffset must be >= startOffset. Got startOffset=5, endOffset=4",
+                e.getMessage());
+    }
+
+    @Test
+    void fragmentsInLines() {
+        String yaml = "a: 1\nb: 2\nc: 3\n";
+        // offsets-----01234-56789-01234
+        // ------------00000-00000-11111
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        // the "\n" ending line 1 is not included, the one ending line 2 is
+        assertArrayEquals(new int[]{5, 6, 8, 9},
+                startOffsets(srcMap.fragmentsInLines(2, 2)));
+        assertArrayEquals(new int[]{5, 6, 8, 9, 10, 11, 13, 14},
+                startOffsets(srcMap.fragmentsInLines(2, 3)));
+        assertEquals(srcMap.allFragments(), srcMap.fragmentsInLines(1, 100));
+        assertTrue(srcMap.fragmentsInLines(5, 6).isEmpty());
+
+        YAMLSourceMapException e;
+        e = assertThrows(YAMLSourceMapException.class,
+                () -> srcMap.fragmentsInLines(0, 1));
+        assertEquals("firstLine must be >= 1", e.getMessage());
+
+        e = assertThrows(YAMLSourceMapException.class,
+                () -> srcMap.fragmentsInLines(2, 1));
+        assertEquals("lastLine must be >= firstLine. Got firstLine=2, lastLine=1",
+                e.getMessage());
+    }
+
+    @Test
+    void fragmentCursor() {
+        String yaml = "a: 1\nb: [2, 3]\na2: 4\n";
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+        List<Fragment> fragments = srcMap.allFragments();
+
+        // forward
+        FragmentCursor cursor = srcMap.fragmentCursor();
+        for (Fragment f : fragments) {
+            assertTrue(cursor.next());
+            assertEquals(f, cursor.fragment());
+            assertEquals(f.getStartOffset(), cursor.startOffset());
+            assertEquals(f.getStartLine(), cursor.startLine());
+            assertEquals(f.getStartColumn(), cursor.startColumn());
+            assertEquals(f.getEndOffset(), cursor.endOffset());
+            assertEquals(f.getEndLine(), cursor.endLine());
+            assertEquals(f.getEndColumn(), cursor.endColumn());
+            assertEquals(f.getKind(), cursor.kind());
+            assertEquals(f.getJSONPointer(), cursor.jsonPointer());
+        }
+        assertFalse(cursor.next());
+        assertFalse(cursor.next());
+
+        // backward
+        for (int i = fragments.size() - 1; i >= 0; i--) {
+            assertTrue(cursor.previous());
+            assertEquals(fragments.get(i), cursor.fragment());
+        }
+        assertFalse(cursor.previous());
+
+        // seek
+        assertTrue(cursor.seek(6));
+        assertEquals(srcMap.fragmentAtOffset(6), cursor.fragment());
+        assertTrue(cursor.next());
+        assertEquals(fragments.get(fragments.indexOf(
+                srcMap.fragmentAtOffset(6)) + 1), cursor.fragment());
+        assertTrue(cursor.seek(1000));
+        assertEquals(fragments.get(fragments.size() - 1), cursor.fragment());
+
+        // pointer ids are equal for equal JSON pointers and ordered like them
+        cursor = srcMap.fragmentCursor();
+        while (cursor.next()) {
+            FragmentCursor other = srcMap.fragmentCursor();
+            while (other.next()) {
+                int c = cursor.jsonPointer().compareTo(other.jsonPointer());
+                assertEquals(Integer.signum(c),
+                        Integer.signum(cursor.pointerId() - other.pointerId()));
+            }
+        }
+
+        // not positioned on a fragment
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                cursor::startOffset);
+        assertEquals("Cursor is not positioned on a fragment", e.getMessage());
+
+        assertFalse(createYAMLSourceMap("").fragmentCursor().seek(0));
+    }
+
+    @Test
+    void rootNode() {
+        String yaml = "a:\n  b: 1\n  c: [2, 3]\nd: ~\n";
+        // offsets-----012-3456789-012345678901-23456
+        // ------------000-0000000-111111111122-22222
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        Node root = srcMap.rootNode();
+        assertNotNull(root);
+        assertEquals(Node.Kind.MAP, root.getKind());
+        assertEquals("", root.getKey());
+        assertEquals("", root.getJSONPointer());
+        assertNull(root.getParent());
+        assertNull(root.getNextSibling());
+
+        Node a = root.getFirstChild();
+        assertNotNull(a);
+        assertEquals(Node.Kind.MAP, a.getKind());
+        assertEquals("a", a.getKey());
+        assertEquals("/a", a.getJSONPointer());
+        assertEquals(root, a.getParent());
+        assertRangeEquals(0, 21, a.getRange());
+        assertRangeEquals(5, 21, a.getValueRange());
+
+        List<Node> children = a.getChildren();
+        assertEquals(2, children.size());
+        Node b = children.get(0);
+        Node c = children.get(1);
+        assertEquals(Node.Kind.SCALAR, b.getKind());
+        assertRangeEquals(5, 9, b.getRange());
+        assertRangeEquals(8, 9, b.getValueRange());
+        assertEquals(c, b.getNextSibling());
+        assertNull(c.getNextSibling());
+        assertEquals(Node.Kind.SEQUENCE, c.getKind());
+        assertEquals("[2, 3]", c.getValueRange().getRangeText(yaml));
+        Node item = c.getChildren().get(1);
+        assertEquals("1", item.getKey());
+        assertEquals("/a/c/1", item.getJSONPointer());
+        assertEquals("3", item.getValueRange().getRangeText(yaml));
+
+        Node d = a.getNextSibling();
+        assertNotNull(d);
+        assertEquals("/d", d.getJSONPointer());
+        assertNull(d.getFirstChild());
+        assertTrue(d.getChildren().isEmpty());
+    }
+
+    @Test
+    void rootNode_alias() {
+        String yaml = "a: &x 1\nb: *x\n";
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        Node b = srcMap.nodeOfJsonPointer("/b");
+        assertNotNull(b);
+        assertEquals(Node.Kind.ALIAS, b.getKind());
+        assertEquals("*x", b.getValueRange().getRangeText(yaml));
+        assertEquals("b: *x", b.getRange().getRangeText(yaml));
+    }
+
+    @Test
+    void rootNode_emptyDocument() {
+        assertNull(createYAMLSourceMap("").rootNode());
+    }
+
+    @Test
+    void nodeOfJsonPointer() {
+        String yaml = "a: {x/y: [1, {~z: 2}]}\nb: 3\nb: 4\n";
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        Node node = srcMap.nodeOfJsonPointer("/a/x~1y/1/~0z");
+        assertNotNull(node);
+        assertEquals("~z", node.getKey());
+        assertEquals("/a/x~1y/1/~0z", node.getJSONPointer());
+        assertEquals("2", node.getValueRange().getRangeText(yaml));
+
+        assertEquals(srcMap.rootNode(), srcMap.nodeOfJsonPointer(""));
+
+        // duplicate keys: the first node is returned, but the tree
+        // contains both
+        node = srcMap.nodeOfJsonPointer("/b");
+        assertNotNull(node);
+        assertEquals("3", node.getValueRange().getRangeText(yaml));
+        Node next = node.getNextSibling();
+        assertNotNull(next);
+        assertEquals("/b", next.getJSONPointer());
+        assertEquals("4", next.getValueRange().getRangeText(yaml));
+
+        assertNull(srcMap.nodeOfJsonPointer("/a/x~1y/2"));
+        assertNull(srcMap.nodeOfJsonPointer("/c"));
+        assertNull(srcMap.nodeOfJsonPointer("c"));
+    }
+
+    @Test
+    void resolvedNodeOfJsonPointer() {
+        String yaml = "" +
+                "base: &base {port: 80, host: a}\n" +
+                "extra: &extra {host: b, tls: true}\n" +
+                "service:\n" +
+                "  <<: [*base, *extra]\n" +
+                "  host: c\n" +
+                "alias: *base\n" +
+                "list: &l [1, {x: *base}]\n" +
+                "ref: *l\n";
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        // merged entries
+        assertResolvedNode("/base/port", "port: 80",
+                srcMap, "/service/port", yaml);
+        assertResolvedNode("/extra/tls", "tls: true",
+                srcMap, "/service/tls", yaml);
+        // the map's own entries take precedence over merged ones
+        assertResolvedNode("/service/host", "host: c",
+                srcMap, "/service/host", yaml);
+        // aliases, also nested ones
+        assertResolvedNode("/base/port", "port: 80",
+                srcMap, "/alias/port", yaml);
+        assertResolvedNode("/base/host", "host: a",
+                srcMap, "/ref/1/x/host", yaml);
+        // pointers with nodes of their own are not resolved further
+        assertResolvedNode("/alias", "alias: *base",
+                srcMap, "/alias", yaml);
+
+        assertNull(srcMap.nodeOfJsonPointer("/service/port"));
+        assertNull(srcMap.resolvedNodeOfJsonPointer("/service/nope"));
+        assertNull(srcMap.resolvedNodeOfJsonPointer("/alias/port/x"));
+        assertNull(srcMap.resolvedNodeOfJsonPointer("alias"));
+    }
+
+    @Test
+    void resolvedNodeOfJsonPointer_recursiveMerge() {
+        String yaml = "rec: &r {a: 1, <<: *r}\n";
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        assertResolvedNode("/rec/a", "a: 1", srcMap, "/rec/a", yaml);
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                () -> srcMap.resolvedNodeOfJsonPointer("/rec/b"));
+        assertEquals(
+                "Too many alias expansions when resolving JSON pointer '/rec/b' (limit: 1000)",
+                e.getMessage());
+    }
+
+    private static void assertResolvedNode(
+            String expectedJsonPointer,
+            String expectedRangeText,
+            YAMLSourceMap srcMap,
+            String jsonPointer,
+            String yaml) {
+        Node node = srcMap.resolvedNodeOfJsonPointer(jsonPointer);
+        assertNotNull(node);
+        assertEquals(expectedJsonPointer, node.getJSONPointer());
+        assertEquals(expectedRangeText, node.getRange().getRangeText(yaml));
+    }
+
+    @Test
+    void scalarValueOfJsonPointer() {
+        String yaml = "" +
+                "a: \"x\\ty\"\n" +
+                "b: [007, 'it''s', x]\n" +
+                "c: &c x\n" +
+                "d: *c\n" +
+                "e: >\n" +
+                "  folded\n" +
+                "  text with more than thirty-two characters\n" +
+                "f:\n";
+
+        YAMLSourceMap srcMap = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                .retainScalarValues(true)
+                .build(yaml);
+
+        assertEquals("x\ty", srcMap.scalarValueOfJsonPointer("/a"));
+        assertEquals("007", srcMap.scalarValueOfJsonPointer("/b/0"));
+        assertEquals("it's", srcMap.scalarValueOfJsonPointer("/b/1"));
+        assertEquals("x", srcMap.scalarValueOfJsonPointer("/b/2"));
+        assertEquals("x", srcMap.scalarValueOfJsonPointer("/c"));
+        assertEquals("folded text with more than thirty-two characters\n",
+                srcMap.scalarValueOfJsonPointer("/e"));
+        assertEquals("", srcMap.scalarValueOfJsonPointer("/f"));
+
+        // no scalars
+        assertNull(srcMap.scalarValueOfJsonPointer(""));
+        assertNull(srcMap.scalarValueOfJsonPointer("/b"));
+        assertNull(srcMap.scalarValueOfJsonPointer("/d"));
+        assertNull(srcMap.scalarValueOfJsonPointer("/g"));
+    }
+
+    @Test
+    void scalarValueAtOffset() {
+        String yaml = "a: 'x'\nb: [1, yz]\nc: &x 2\n";
+
+        YAMLSourceMap srcMap = YAMLSourceMapAPI.yamlSourceMapBuilder()
+                .retainScalarValues(true)
+                .build(yaml);
+
+        assertNull(srcMap.scalarValueAtOffset(0));
+        assertNull(srcMap.scalarValueAtOffset(2));
+        assertEquals("x", srcMap.scalarValueAtOffset(3));
+        assertEquals("x", srcMap.scalarValueAtOffset(5));
+        assertNull(srcMap.scalarValueAtOffset(6));
+        assertEquals("1", srcMap.scalarValueAtOffset(11));
+        assertNull(srcMap.scalarValueAtOffset(12));
+        assertEquals("yz", srcMap.scalarValueAtOffset(14));
+        assertEquals("yz", srcMap.scalarValueAtOffset(15));
+        assertNull(srcMap.scalarValueAtOffset(16));
+        // the anchor is part of the scalar's text
+        assertEquals("2", srcMap.scalarValueAtOffset(21));
+        assertEquals("2", srcMap.scalarValueAtOffset(24));
+        assertNull(srcMap.scalarValueAtOffset(100));
+
+        YAMLSourceMap withoutValues = createYAMLSourceMap(yaml);
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                () -> withoutValues.scalarValueAtOffset(3));
+        assertEquals(
+                "No scalar values available. Use `retainScalarValues(true)` when building the source map",
+                e.getMessage());
+    }
+
+    @Test
+    void subtreeHash() {
+        YAMLSourceMap block = createYAMLSourceMap("" +
+                "# comment\n" +
+                "a:\n" +
+                "  b: 1\n" +
+                "  c: [x, \"y\"]\n" +
+                "d: text\n");
+        YAMLSourceMap flow = createYAMLSourceMap(
+                "{a: {b: 1, c: [x, \"y\"]}, d: text}");
+        YAMLSourceMap changed = createYAMLSourceMap(
+                "{a: {b: 2, c: [x, \"y\"]}, d: text}");
+
+        // the formatting does not matter
+        for (String pointer : Arrays.asList("", "/a", "/a/b", "/a/c", "/d")) {
+            assertEquals(block.subtreeHash(pointer), flow.subtreeHash(pointer));
+        }
+        // a change affects the node and its ancestors only
+        assertNotEquals(flow.subtreeHash(""), changed.subtreeHash(""));
+        assertNotEquals(flow.subtreeHash("/a"), changed.subtreeHash("/a"));
+        assertNotEquals(flow.subtreeHash("/a/b"), changed.subtreeHash("/a/b"));
+        assertEquals(flow.subtreeHash("/a/c"), changed.subtreeHash("/a/c"));
+        assertEquals(flow.subtreeHash("/d"), changed.subtreeHash("/d"));
+
+        // scalars are hashed with their resolved tags: quotes only matter
+        // when they change the tag
+        assertEquals(createYAMLSourceMap("a: foo").subtreeHash(""),
+                createYAMLSourceMap("a: \"foo\"").subtreeHash(""));
+        assertEquals(createYAMLSourceMap("a: foo").subtreeHash(""),
+                createYAMLSourceMap("a: !!str foo").subtreeHash(""));
+        assertNotEquals(createYAMLSourceMap("a: 1").subtreeHash(""),
+                createYAMLSourceMap("a: '1'").subtreeHash(""));
+        assertEquals(createYAMLSourceMap("a: '1'").subtreeHash(""),
+                createYAMLSourceMap("a: !!str 1").subtreeHash(""));
+        YAMLSourceMap scalars = createYAMLSourceMap("[1, 1, x, 'x']");
+        // (the key, here the sequence index, is part of the hash)
+        assertNotEquals(scalars.subtreeHash("/0"), scalars.subtreeHash("/1"));
+        assertEquals(scalars.nodeOfJsonPointer("/3").getSubtreeHash(),
+                scalars.subtreeHash("/3").getAsLong());
+
+        assertFalse(flow.subtreeHash("/x").isPresent());
+    }
+
+    @Test
+    void subtreeHash_alias() {
+        YAMLSourceMap before = createYAMLSourceMap("a: &x {b: 1}\nc: *x\nd: 3\n");
+        YAMLSourceMap after = createYAMLSourceMap("a: &x {b: 2}\nc: *x\nd: 3\n");
+
+        // the hash of an alias includes the aliased node's data
+        assertNotEquals(before.subtreeHash("/c"), after.subtreeHash("/c"));
+        assertEquals(before.subtreeHash("/d"), after.subtreeHash("/d"));
+
+        // recursive structures
+        YAMLSourceMap recursive = createYAMLSourceMap("a: &x [1, *x]\n");
+        assertTrue(recursive.subtreeHash("/a/1").isPresent());
+    }
+
+    @Test
+    void definitionRangeOfAlias() {
+        String yaml = "base: &b {x: 1}\nc: *b\n&k key: 2\nd: *k\nbase2: &b 3\ne: *b\nf: *zz\ng: &e\nh: *e\n";
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        assertEquals("&b {x: 1}",
+                srcMap.definitionRangeOfAlias(19).getRangeText(yaml));
+        assertEquals("&b {x: 1}",
+                srcMap.definitionRangeOfAlias(20).getRangeText(yaml));
+        // anchor on a key
+        assertEquals("&k key",
+                srcMap.definitionRangeOfAlias(35).getRangeText(yaml));
+        // a redefined anchor: the alias refers to the latest definition
+        assertEquals("&b 3",
+                srcMap.definitionRangeOfAlias(53).getRangeText(yaml));
+        // anchor on an empty node
+        assertEquals("&e",
+                srcMap.definitionRangeOfAlias(72).getRangeText(yaml));
+
+        // no alias at offset, or undefined anchor
+        assertTrue(srcMap.definitionRangeOfAlias(0).isEmpty());
+        assertTrue(srcMap.definitionRangeOfAlias(21).isEmpty());
+        assertTrue(srcMap.definitionRangeOfAlias(60).isEmpty());
+    }
+
+    @Test
+    void aliasesOfAnchor() {
+        String yaml = "base: &b {x: 1}\nc: *b\nbase2: &b 3\ne: [*b, *b]\n";
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        List<YAMLRange> aliases = srcMap.aliasesOfAnchor("b");
+        assertEquals(3, aliases.size());
+        for (YAMLRange alias : aliases) {
+            assertEquals("*b", alias.getRangeText(yaml));
+        }
+        assertEquals(19, aliases.get(0).getStartOffset());
+        assertEquals(38, aliases.get(1).getStartOffset());
+        assertEquals(42, aliases.get(2).getStartOffset());
+
+        assertTrue(srcMap.aliasesOfAnchor("none").isEmpty());
+    }
+
+    @Test
+    void fragmentsOfKind() {
+        String yaml = "a: &x 1\nb: [2, *x]\nc: 3\n";
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        assertArrayEquals(new int[]{0, 8, 19},
+                startOffsets(srcMap.fragmentsOfKind(Kind.MAP_KEY)));
+        for (Kind kind : Kind.values()) {
+            assertEquals(
+                    srcMap.allFragmentsMatching(f -> f.getKind() == kind),
+                    srcMap.fragmentsOfKind(kind));
+        }
+        assertEquals(
+                srcMap.allFragmentsMatching(f -> f.getKind() == Kind.MAP_KEY
+                        || f.getKind() == Kind.SEQUENCE_ITEM),
+                srcMap.fragmentsOfKind(
+                        Kind.SEQUENCE_ITEM, Kind.MAP_KEY, Kind.SEQUENCE_ITEM));
+        assertTrue(srcMap.fragmentsOfKind().isEmpty());
+    }
+
     @Test
     void allFragmentsOfJsonPointer() {
         String yaml = "\nA: B\nC: D\n";
@@ -523,6 +1062,77 @@ class YAMLSourceMapTest {
         assertTrue(range.isEmpty());
     }
 
+    /**
+     * Regression test: the JSON pointers of a map's entries must not be
+     * treated as children of a sibling entry whose key is a prefix of their
+     * key (e.g. "/AB" and "/A0" are no children of "/A"), for all kinds of
+     * fragment storage.
+     */
+    @Test
+    void jsonPointerQueries_siblingWithSamePrefix(@TempDir File directory) {
+        String yaml = "A: {B: 1}\nAB: 2\nA0: 3\nA/: 4\n";
+
+        List<YAMLSourceMap> srcMaps = Arrays.asList(
+                createYAMLSourceMap(yaml),
+                YAMLSourceMapAPI.yamlSourceMapBuilder().offHeap(true).build(yaml),
+                YAMLSourceMapAPI.yamlSourceMapBuilder()
+                        .spillFragments(directory).build(yaml));
+        for (YAMLSourceMap srcMap : srcMaps) {
+            List<Fragment> children =
+                    srcMap.allFragmentsOfChildrenOfJsonPointer("/A");
+            assertFalse(children.isEmpty());
+            assertTrue(children.stream()
+                    .allMatch(f -> f.getJSONPointer().equals("/A/B")));
+
+            assertEquals("B: 1",
+                    srcMap.sourceRangeOfValueOfJsonPointer("/A").getRangeText(yaml));
+            assertEquals("B: 1",
+                    srcMap.sourceRangesOfValuesOfJsonPointers(
+                            Collections.singletonList("/A"))[0].getRangeText(yaml));
+            srcMap.close();
+        }
+    }
+
+    @Test
+    void sourceRangesOfValuesOfJsonPointers() {
+        String yaml = "\nA:\n  B:\n    C: 9\n    D: 8\nE: 8\n";
+        // offsets-----0-123-45678-901234567-89012345-67890
+        // ------------0-000-00000-011111111-11222222-22223
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        List<String> jsonPointers = Arrays.asList(
+                "/A/B", "/A/B/C", "/foo", "/E", "", "/A/B");
+        YAMLRange[] ranges =
+                srcMap.sourceRangesOfValuesOfJsonPointers(jsonPointers);
+
+        assertEquals(jsonPointers.size(), ranges.length);
+        for (int i = 0; i < ranges.length; i++) {
+            assertEquals(
+                    srcMap.sourceRangeOfValueOfJsonPointer(jsonPointers.get(i)),
+                    ranges[i]);
+        }
+        assertRangeEquals(13, 26, ranges[0]);
+        assertRangeEquals(16, 17, ranges[1]);
+        assertTrue(ranges[2].isEmpty());
+        assertRangeEquals(13, 26, ranges[5]);
+    }
+
+    @Test
+    void sourceRangesOfValuesOfJsonPointers_duplicateKeys() {
+        String yaml = "A: 1\nB: 2\nA: 3\n";
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        YAMLRange[] ranges = srcMap.sourceRangesOfValuesOfJsonPointers(
+                Arrays.asList("/A", "/B", ""));
+
+        assertEquals(srcMap.sourceRangeOfValueOfJsonPointer("/A"), ranges[0]);
+        assertEquals("1", ranges[0].getRangeText(yaml));
+        assertEquals(srcMap.sourceRangeOfValueOfJsonPointer("/B"), ranges[1]);
+        assertEquals(srcMap.sourceRangeOfValueOfJsonPointer(""), ranges[2]);
+    }
+
 
     @Test
     void valueFragmentOfJsonPointer_string_map() {
@@ -661,6 +1271,32 @@ class YAMLSourceMapTest {
     }
 
 
+    @Test
+    void jsonPointersAtOffsets() {
+        String yaml = "\nA: B\nC: D\n";
+        // offsets-----0-12345-67890-1234567890123456789
+        // ------------0-00000-00001-1111111112222222222
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        assertArrayEquals(new String[]{"/C", "", "/A", "/C", "/A"},
+                srcMap.jsonPointersAtOffsets(new int[]{9, 10, 4, 5, 1}));
+    }
+
+    @Test
+    void jsonPointersAtLocations() {
+        String yaml = "\nA: B\nC: D\n";
+        // offsets-----0-12345-67890-1234567890123456789
+        // ------------0-00000-00001-1111111112222222222
+
+        YAMLSourceMap srcMap = createYAMLSourceMap(yaml);
+
+        assertArrayEquals(new String[]{"", "/C", "/A", "", "/C"},
+                srcMap.jsonPointersAtLocations(
+                        new int[]{3, 3, 2, 1, 2},
+                        new int[]{5, 1, 4, 1, 5}));
+    }
+
     @Test
     void scalar() {
         String yaml = "   foo   ";
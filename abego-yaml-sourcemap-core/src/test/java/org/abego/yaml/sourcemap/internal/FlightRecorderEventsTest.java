@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.abego.yaml.sourcemap.YAMLSourceMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FlightRecorderEventsTest {
+
+    private static List<RecordedEvent> recordedEvents(Recording recording)
+            throws IOException {
+        Path file = Files.createTempFile("yaml-sourcemap", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<RecordedEvent> eventsNamed(
+            List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void constructor() {
+        assertThrows(IllegalStateException.class, FlightRecorderEvents::new);
+    }
+
+    @Test
+    void events() throws IOException {
+        assumeTrue(FlightRecorderEvents.isAvailable());
+
+        List<RecordedEvent> events;
+        YAMLSourceMap sourceMap;
+        try (Recording recording = new Recording()) {
+            recording.enable("org.abego.yaml.sourcemap.Creation");
+            recording.enable("org.abego.yaml.sourcemap.Query")
+                    .withThreshold(Duration.ZERO);
+            recording.start();
+
+            sourceMap = YAMLSourceMapDefault.of("a: [1, 2]\n");
+            sourceMap.sourceRangeOfJsonPointer("/a");
+            sourceMap.fragmentAtOffset(0); // no event: not "expensive"
+
+            recording.stop();
+            events = recordedEvents(recording);
+        }
+
+        List<RecordedEvent> creationEvents =
+                eventsNamed(events, "org.abego.yaml.sourcemap.Creation");
+        assertEquals(1, creationEvents.size());
+        assertEquals(10, creationEvents.get(0).getInt("inputLength"));
+        assertEquals(sourceMap.allFragments().size(),
+                creationEvents.get(0).getInt("fragmentCount"));
+
+        List<RecordedEvent> queryEvents =
+                eventsNamed(events, "org.abego.yaml.sourcemap.Query");
+        assertEquals(1, queryEvents.size());
+        RecordedEvent queryEvent = queryEvents.get(0);
+        assertEquals("sourceRangeOfJsonPointer",
+                queryEvent.getString("operation"));
+        assertEquals("/a", queryEvent.getString("jsonPointer"));
+        assertEquals(sourceMap.allFragmentsOfJsonPointer("/a").size(),
+                queryEvent.getInt("fragmentsScanned"));
+    }
+}
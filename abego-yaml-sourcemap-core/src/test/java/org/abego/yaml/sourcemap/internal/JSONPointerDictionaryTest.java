@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.abego.yaml.sourcemap.internal.JSONPointerDictionary.BLOCK_SIZE;
+import static org.abego.yaml.sourcemap.internal.JSONPointerDictionary.createJSONPointerDictionary;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JSONPointerDictionaryTest {
+
+    private static List<String> sampleJsonPointers() {
+        List<String> result = new ArrayList<>();
+        result.add("");
+        result.add("/a");
+        result.add("/a!");
+        result.add("/a0");
+        result.add("/a/b");
+        result.add("/a/b/c");
+        result.add("/x/y/z");
+        result.add("/äöü");
+        result.add("/😀/~0~1");
+        for (int i = 0; i < 3 * BLOCK_SIZE; i++) {
+            result.add("/spec/containers/" + i + "/name");
+        }
+        return result;
+    }
+
+    @Test
+    void idOfAndJsonPointer() {
+        List<String> jsonPointers = sampleJsonPointers();
+        List<String> sorted = new ArrayList<>(jsonPointers);
+        Collections.sort(sorted);
+
+        // duplicates are ignored
+        jsonPointers.add("/a/b");
+        JSONPointerDictionary dictionary =
+                createJSONPointerDictionary(jsonPointers);
+
+        assertEquals(sorted.size(), dictionary.size());
+        for (int id = 0; id < sorted.size(); id++) {
+            assertEquals(sorted.get(id), dictionary.jsonPointer(id));
+            assertEquals(id, dictionary.idOf(sorted.get(id)));
+        }
+        assertEquals(-1, dictionary.idOf("/a/"));
+        assertEquals(-1, dictionary.idOf("/zzz"));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> dictionary.jsonPointer(sorted.size()));
+    }
+
+    @Test
+    void lowerBound() {
+        JSONPointerDictionary dictionary =
+                createJSONPointerDictionary(sampleJsonPointers());
+
+        assertEquals(0, dictionary.lowerBound(""));
+        assertEquals(dictionary.idOf("/a/b"), dictionary.lowerBound("/a/"));
+        assertEquals(dictionary.idOf("/a/b"), dictionary.lowerBound("/a/b"));
+        assertEquals(dictionary.size(), dictionary.lowerBound("\uffff"));
+    }
+
+    @Test
+    void descendantIds() {
+        JSONPointerDictionary dictionary =
+                createJSONPointerDictionary(sampleJsonPointers());
+
+        // "/a!" and "/a0" are sorted around the descendants of "/a" but are
+        // no descendants
+        assertEquals(dictionary.idOf("/a/b"), dictionary.firstDescendantId("/a"));
+        assertEquals(dictionary.idOf("/a/b/c") + 1,
+                dictionary.endOfDescendantIds("/a"));
+
+        assertEquals(1, dictionary.firstDescendantId(""));
+        assertEquals(dictionary.size(), dictionary.endOfDescendantIds(""));
+
+        int first = dictionary.firstDescendantId("/spec/containers");
+        int end = dictionary.endOfDescendantIds("/spec/containers");
+        assertEquals(3 * BLOCK_SIZE, end - first);
+
+        assertEquals(dictionary.firstDescendantId("/a/b/c"),
+                dictionary.endOfDescendantIds("/a/b/c"));
+    }
+
+    @Test
+    void lowerBound_random() {
+        // short pointers of few characters, to get many shared prefixes
+        Random random = new Random(42);
+        List<String> jsonPointers = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            jsonPointers.add(randomText(random));
+        }
+        JSONPointerDictionary dictionary =
+                createJSONPointerDictionary(jsonPointers);
+        List<String> sorted = new ArrayList<>(new TreeSet<>(jsonPointers));
+
+        for (int i = 0; i < 2000; i++) {
+            String text = randomText(random);
+            int expected = Collections.binarySearch(sorted, text);
+            assertEquals(expected >= 0 ? expected : -expected - 1,
+                    dictionary.lowerBound(text), text);
+            assertEquals(expected >= 0 ? expected : -1,
+                    dictionary.idOf(text), text);
+        }
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder result = new StringBuilder();
+        int length = random.nextInt(8);
+        for (int i = 0; i < length; i++) {
+            result.append("/a!b0".charAt(random.nextInt(5)));
+        }
+        return result.toString();
+    }
+
+    @Test
+    void parentId() {
+        JSONPointerDictionary dictionary =
+                createJSONPointerDictionary(sampleJsonPointers());
+        int root = dictionary.idOf("");
+        int a = dictionary.idOf("/a");
+        int ab = dictionary.idOf("/a/b");
+        int abc = dictionary.idOf("/a/b/c");
+        int xyz = dictionary.idOf("/x/y/z");
+
+        assertEquals(-1, dictionary.parentId(root));
+        assertEquals(root, dictionary.parentId(a));
+        // "/a!" is sorted between "/a" and "/a/b"
+        assertEquals(a, dictionary.parentId(ab));
+        assertEquals(ab, dictionary.parentId(abc));
+        assertEquals(root, dictionary.parentId(dictionary.idOf("/a!")));
+        // "/x/y" and "/x" are missing, so "" is the nearest ancestor
+        assertEquals(root, dictionary.parentId(xyz));
+
+        assertTrue(dictionary.isDescendant(abc, a));
+        assertTrue(dictionary.isDescendant(abc, root));
+        assertFalse(dictionary.isDescendant(a, abc));
+        assertFalse(dictionary.isDescendant(a, a));
+        assertFalse(dictionary.isDescendant(dictionary.idOf("/a!"), a));
+    }
+
+    @Test
+    void empty() {
+        JSONPointerDictionary dictionary =
+                createJSONPointerDictionary(Collections.emptyList());
+
+        assertEquals(0, dictionary.size());
+        assertEquals(-1, dictionary.idOf(""));
+        assertEquals(0, dictionary.lowerBound("/a"));
+        assertEquals(0, dictionary.firstDescendantId(""));
+        assertEquals(0, dictionary.endOfDescendantIds(""));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.YAMLSourceMapException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketIndex() {
+        assertEquals(0, LatencyHistogram.bucketIndex(-1));
+        assertEquals(0, LatencyHistogram.bucketIndex(0));
+        assertEquals(31, LatencyHistogram.bucketIndex(31));
+        assertEquals(32, LatencyHistogram.bucketIndex(32));
+        assertEquals(32, LatencyHistogram.bucketIndex(33));
+        assertEquals(47, LatencyHistogram.bucketIndex(63));
+        assertEquals(48, LatencyHistogram.bucketIndex(64));
+        assertEquals(959, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    void highestValueInBucket() {
+        assertEquals(31, LatencyHistogram.highestValueInBucket(31));
+        assertEquals(33, LatencyHistogram.highestValueInBucket(32));
+        assertEquals(67, LatencyHistogram.highestValueInBucket(48));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueInBucket(959));
+
+        // every value is in the bucket it is mapped to, with a precision
+        // of about 3%
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            long highest = LatencyHistogram.highestValueInBucket(
+                    LatencyHistogram.bucketIndex(value));
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 16, "value " + value);
+        }
+    }
+
+    @Test
+    void snapshot() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.getTotalCount());
+        assertEquals(1000, snapshot.getMaxValue());
+        assertEquals(1, snapshot.getValueAtPercentile(0));
+        assertEquals(1000, snapshot.getValueAtPercentile(100));
+        assertTrue(Math.abs(snapshot.getValueAtPercentile(50) - 500) <= 500 / 16);
+        assertTrue(Math.abs(snapshot.getValueAtPercentile(99) - 990) <= 990 / 16);
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getTotalCount());
+        assertEquals(0, histogram.snapshot().getValueAtPercentile(99));
+    }
+
+    @Test
+    void getValueAtPercentile_invalidPercentile() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        YAMLSourceMapException e = assertThrows(YAMLSourceMapException.class,
+                () -> snapshot.getValueAtPercentile(101));
+        assertEquals("percentile must be between 0 and 100, got 101.0",
+                e.getMessage());
+    }
+}
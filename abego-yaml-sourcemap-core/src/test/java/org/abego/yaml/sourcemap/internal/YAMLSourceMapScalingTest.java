@@ -0,0 +1,274 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.internal;
+
+import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.YAMLSourceMap;
+import org.abego.yaml.sourcemap.testdata.YAMLDocumentGenerator;
+import org.abego.yaml.sourcemap.testdata.YAMLDocumentGenerator.Shape;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the queries of {@link YAMLSourceMapDefault} that are expected to
+ * use an index do not get linearly more expensive for larger documents.
+ *
+ * <p>The cost of a query is the number of fragment accesses it performs,
+ * counted by wrapping every fragment into a {@link CountingFragment}. For
+ * queries of the node tree it is the number of nodes visited, as counted by
+ * {@link ScannedFragments}.</p>
+ */
+class YAMLSourceMapScalingTest {
+    private static final int SMALL_SIZE = 16 * 1024;
+    private static final int SIZE_FACTOR = 16;
+    /**
+     * The maximal factor the cost of a query may grow when the document
+     * gets {@link #SIZE_FACTOR} times larger.
+     *
+     * <p>A logarithmic cost grows by far less, a linear cost by about
+     * {@link #SIZE_FACTOR}.</p>
+     */
+    private static final double MAX_COST_FACTOR = 4;
+    private static final int QUERY_COUNT = 1000;
+
+    private static class Counter {
+        long count;
+    }
+
+    private static class CountingFragment implements Fragment {
+        private final Fragment fragment;
+        private final Counter counter;
+
+        CountingFragment(Fragment fragment, Counter counter) {
+            this.fragment = fragment;
+            this.counter = counter;
+        }
+
+        @Override
+        public int getStartOffset() {
+            counter.count++;
+            return fragment.getStartOffset();
+        }
+
+        @Override
+        public int getStartLine() {
+            counter.count++;
+            return fragment.getStartLine();
+        }
+
+        @Override
+        public int getStartColumn() {
+            counter.count++;
+            return fragment.getStartColumn();
+        }
+
+        @Override
+        public int getEndOffset() {
+            counter.count++;
+            return fragment.getEndOffset();
+        }
+
+        @Override
+        public int getEndLine() {
+            counter.count++;
+            return fragment.getEndLine();
+        }
+
+        @Override
+        public int getEndColumn() {
+            counter.count++;
+            return fragment.getEndColumn();
+        }
+
+        @Override
+        public Kind getKind() {
+            counter.count++;
+            return fragment.getKind();
+        }
+
+        @Override
+        public String getJSONPointer() {
+            counter.count++;
+            return fragment.getJSONPointer();
+        }
+    }
+
+    /**
+     * Returns the fragment wrapped by the {@link CountingFragment}
+     * {@code fragment}, to access it without counting.
+     */
+    private static Fragment uncounted(Fragment fragment) {
+        return ((CountingFragment) fragment).fragment;
+    }
+
+    /**
+     * Returns the average number of fragment accesses of {@code query} when
+     * called with fragments randomly picked from a document of the given
+     * {@code shape} and {@code size}.
+     */
+    private static double averageCost(
+            Shape shape, int size, BiConsumer<YAMLSourceMap, Fragment> query) {
+        String yamlText = YAMLDocumentGenerator.builder()
+                .shape(shape)
+                .size(size)
+                .build()
+                .generate();
+        Counter counter = new Counter();
+        List<Fragment> fragments = new ArrayList<>();
+        for (Fragment f : YAMLSourceMapDefault.of(yamlText).allFragments()) {
+            fragments.add(new CountingFragment(f, counter));
+        }
+        YAMLSourceMap sourceMap = YAMLSourceMapDefault.ofFragments(fragments);
+
+        // Run the query once, so indexes created on demand exist.
+        query.accept(sourceMap, fragments.get(0));
+
+        Random random = new Random(size);
+        List<Fragment> arguments = new ArrayList<>();
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            arguments.add(fragments.get(random.nextInt(fragments.size())));
+        }
+        counter.count = 0;
+        for (Fragment argument : arguments) {
+            query.accept(sourceMap, argument);
+        }
+        return (double) counter.count / QUERY_COUNT;
+    }
+
+    /**
+     * Returns the average number of fragments scanned by {@code query} (as
+     * counted by {@link ScannedFragments}) when called with fragments
+     * randomly picked from a document of the given {@code shape} and
+     * {@code size}.
+     *
+     * <p>Unlike {@link #averageCost(Shape, int, BiConsumer)} the source map
+     * is created from the YAML text, so it has a node tree.</p>
+     */
+    private static double averageScannedFragments(
+            Shape shape, int size, BiConsumer<YAMLSourceMap, Fragment> query) {
+        String yamlText = YAMLDocumentGenerator.builder()
+                .shape(shape)
+                .size(size)
+                .build()
+                .generate();
+        YAMLSourceMap sourceMap = YAMLSourceMapDefault.of(yamlText);
+        List<Fragment> fragments = sourceMap.allFragments();
+        ScannedFragments.enable();
+
+        // Run the query once, so indexes created on demand exist.
+        query.accept(sourceMap, fragments.get(0));
+
+        Random random = new Random(size);
+        List<Fragment> arguments = new ArrayList<>();
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            arguments.add(fragments.get(random.nextInt(fragments.size())));
+        }
+        long start = ScannedFragments.count();
+        for (Fragment argument : arguments) {
+            query.accept(sourceMap, argument);
+        }
+        return (double) (ScannedFragments.count() - start) / QUERY_COUNT;
+    }
+
+    private static void assertCostIsSublinear(
+            Shape shape, BiConsumer<YAMLSourceMap, Fragment> query) {
+        assertCostIsSublinear(shape,
+                averageCost(shape, SMALL_SIZE, query),
+                averageCost(shape, SMALL_SIZE * SIZE_FACTOR, query));
+    }
+
+    private static void assertCostIsSublinear(
+            Shape shape, double smallCost, double largeCost) {
+
+        assertTrue(largeCost <= MAX_COST_FACTOR * Math.max(1, smallCost),
+                String.format(
+                        "Cost grows too fast for %s. Document size x%d, cost %.1f -> %.1f",
+                        shape, SIZE_FACTOR, smallCost, largeCost));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Shape.class)
+    void fragmentAtOffset(Shape shape) {
+        assertCostIsSublinear(shape, (m, f) ->
+                m.fragmentAtOffset(uncounted(f).getStartOffset()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Shape.class)
+    void fragmentAtLocation(Shape shape) {
+        assertCostIsSublinear(shape, (m, f) ->
+                m.fragmentAtLocation(uncounted(f).getStartLine(),
+                        uncounted(f).getStartColumn()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Shape.class)
+    void valueFragmentOfJsonPointer(Shape shape) {
+        assertCostIsSublinear(shape, (m, f) ->
+                m.valueFragmentOfJsonPointer(
+                        uncounted(f).getJSONPointer()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Shape.class)
+    void sourceRangeOfJsonPointer(Shape shape) {
+        assertCostIsSublinear(shape, (m, f) ->
+                m.sourceRangeOfJsonPointer(
+                        uncounted(f).getJSONPointer()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Shape.class)
+    void fragmentsInRange(Shape shape) {
+        assertCostIsSublinear(shape, (m, f) ->
+                m.fragmentsInRange(uncounted(f).getStartOffset(),
+                        uncounted(f).getStartOffset() + 20));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Shape.class)
+    void fragmentsInLines(Shape shape) {
+        assertCostIsSublinear(shape, (m, f) ->
+                m.fragmentsInLines(uncounted(f).getStartLine(),
+                        uncounted(f).getStartLine() + 1));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Shape.class)
+    void nodeOfJsonPointer(Shape shape) {
+        BiConsumer<YAMLSourceMap, Fragment> query = (m, f) ->
+                m.nodeOfJsonPointer(f.getJSONPointer());
+        assertCostIsSublinear(shape,
+                averageScannedFragments(shape, SMALL_SIZE, query),
+                averageScannedFragments(shape, SMALL_SIZE * SIZE_FACTOR, query));
+    }
+}
@@ -24,7 +24,7 @@
 
 package org.abego.yaml.sourcemap.examples.breadcrumbs;
 
-import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
+import org.abego.yaml.sourcemap.NodesAPI.Node;
 import org.abego.yaml.sourcemap.YAMLRange;
 import org.abego.yaml.sourcemap.YAMLSourceMap;
 import org.abego.yaml.sourcemap.YAMLSourceMapAPI;
@@ -62,13 +62,11 @@ final class BreadcrumbsDemoWindow extends JFrame {
             updateHighlighting();
         });
         // When a breadcrumb is selected, move the cursor to the matching
-        // fragment in the yamlView
+        // node in the yamlView
         breadcrumbsBar.addBreadcrumbSelectedListener(jsonPointer -> {
-            @Nullable Fragment fragment =
-                    yamlSourceMap.findFirstFragmentMatching(f ->
-                            f.getJSONPointer().equals(jsonPointer));
-            if (fragment != null) {
-                yamlView.setCaretOffset(fragment.getStartOffset());
+            @Nullable Node node = yamlSourceMap.nodeOfJsonPointer(jsonPointer);
+            if (node != null) {
+                yamlView.setCaretOffset(node.getRange().getStartOffset());
             }
         });
 
@@ -2,6 +2,7 @@ package org.abego.yaml.sourcemap.examples.fragmentkindcolors;
 
 import org.abego.yaml.sourcemap.FragmentsAPI.Fragment;
 import org.abego.yaml.sourcemap.FragmentsAPI.Fragment.Kind;
+import org.abego.yaml.sourcemap.FragmentsAPI.FragmentCursor;
 import org.abego.yaml.sourcemap.YAMLSourceMap;
 import org.abego.yaml.sourcemap.YAMLSourceMapAPI;
 
@@ -32,20 +33,64 @@ final class FragmentKindColorCoding {
                 YAMLSourceMapAPI.createYAMLSourceMap(yamlText);
 
         // construct the text fragment by fragment
-        for (Fragment f : yamlSourceMap.allFragments()) {
-            Color color = colorScheme.getColor(f.getKind());
-            String fragmentText = yamlText.substring(
-                    f.getStartOffset(), f.getEndOffset());
-
-            // We may need to split a fragment's text into its lines, as we
-            // need to tell the TextBuilder explicitly when a new line starts.
-            Utils.forEachLine(fragmentText, (lineText, isFirstLine) -> {
-                if (!isFirstLine) {
+        FragmentCursor cursor = yamlSourceMap.fragmentCursor();
+        while (cursor.next()) {
+            addColorCodedFragment(textBuilder, yamlText,
+                    cursor.kind(), cursor.startOffset(), cursor.endOffset(),
+                    cursor.startLine(), 1, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Adds the lines {@code firstLine} to {@code lastLine} of the
+     * {@code yamlText}, color coded.
+     *
+     * <p>Only the fragments of the given lines are processed, so this also
+     * works fine for (the visible part of) large documents.</p>
+     */
+    public void addColorCodedYamlLines(
+            TextBuilder textBuilder,
+            String yamlText,
+            YAMLSourceMap yamlSourceMap,
+            int firstLine,
+            int lastLine) {
+        for (Fragment f : yamlSourceMap.fragmentsInLines(firstLine, lastLine)) {
+            addColorCodedFragment(textBuilder, yamlText,
+                    f.getKind(), f.getStartOffset(), f.getEndOffset(),
+                    f.getStartLine(), firstLine, lastLine);
+        }
+    }
+
+    /**
+     * Adds the text of a fragment, color coded, skipping the lines outside
+     * of [{@code firstLine}, {@code lastLine}].
+     */
+    private void addColorCodedFragment(
+            TextBuilder textBuilder,
+            String yamlText,
+            Kind kind,
+            int startOffset,
+            int endOffset,
+            int startLine,
+            int firstLine,
+            int lastLine) {
+        Color color = colorScheme.getColor(kind);
+        String fragmentText = yamlText.substring(startOffset, endOffset);
+
+        // We may need to split a fragment's text into its lines, as we
+        // need to tell the TextBuilder explicitly when a new line starts.
+        int[] line = {startLine};
+        Utils.forEachLine(fragmentText, (lineText, isFirstLine) -> {
+            if (!isFirstLine) {
+                line[0]++;
+                if (line[0] > firstLine && line[0] <= lastLine) {
                     textBuilder.newLine();
                 }
+            }
+            if (line[0] >= firstLine && line[0] <= lastLine) {
                 textBuilder.addHighlightedText(lineText, color);
-            });
-        }
+            }
+        });
     }
 
     public void addLegend(TextBuilder textBuilder) {
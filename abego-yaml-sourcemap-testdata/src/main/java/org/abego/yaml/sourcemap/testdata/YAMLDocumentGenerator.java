@@ -0,0 +1,774 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.testdata;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates YAML and JSON documents, e.g. for scale tests and benchmarks.
+ *
+ * <p>The documents are pseudo random but deterministic: two generators with
+ * the same configuration (including the {@link Builder#seed(long) seed})
+ * generate the same document.</p>
+ *
+ * <p>Use {@link #builder()} to configure a generator, e.g.:</p>
+ * <pre>
+ *    String yaml = YAMLDocumentGenerator.builder()
+ *            .shape(Shape.DEEP)
+ *            .size(1024 * 1024)
+ *            .seed(42)
+ *            .build()
+ *            .generate();
+ * </pre>
+ *
+ * <p>Features not available in JSON (block scalars, anchors and aliases,
+ * complex keys, single quoted scalars) are only used for
+ * {@link Format#YAML} documents.</p>
+ */
+public final class YAMLDocumentGenerator {
+
+    /**
+     * The format of the generated document.
+     */
+    public enum Format {
+        YAML,
+        JSON
+    }
+
+    /**
+     * The styles of scalars in a generated YAML document.
+     */
+    public enum ScalarStyle {
+        PLAIN,
+        SINGLE_QUOTED,
+        DOUBLE_QUOTED,
+        /**
+         * Block scalar in literal style ({@code |}).
+         */
+        LITERAL,
+        /**
+         * Block scalar in folded style ({@code >}).
+         */
+        FOLDED
+    }
+
+    /**
+     * Presets for the configuration of a generator.
+     */
+    public enum Shape {
+        /**
+         * A mix of all features, the default.
+         */
+        MIXED,
+        /**
+         * A map with many entries, all with scalar values.
+         */
+        FLAT,
+        /**
+         * Deeply nested maps and sequences.
+         */
+        DEEP,
+        /**
+         * A sequence with many items.
+         */
+        WIDE_SEQUENCE,
+        /**
+         * Many anchors, referenced by aliases and merge keys.
+         */
+        ANCHOR_HEAVY
+    }
+
+    private static final String[] WORDS = {
+            "alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta",
+            "theta", "iota", "kappa", "lambda", "mu", "nu", "xi", "omicron",
+            "pi", "rho", "sigma", "tau", "upsilon", "phi", "chi", "psi", "omega"};
+    private static final String[] NON_BMP_TEXTS = {
+            "😀", // U+1F600 GRINNING FACE
+            "𝄞", // U+1D11E MUSICAL SYMBOL G CLEF
+            "𠀋"}; // U+2000B CJK UNIFIED IDEOGRAPH-2000B
+
+    private final Format format;
+    private final int size;
+    private final int maxDepth;
+    private final int fanOut;
+    private final boolean topLevelSequence;
+    private final double collectionRate;
+    private final double sequenceRate;
+    private final double flowRate;
+    private final double anchorRate;
+    private final double aliasRate;
+    private final double complexKeyRate;
+    private final double nonBMPRate;
+    private final ScalarStyle[] scalarStyles;
+
+    // generation state
+    private final Random random;
+    private final StringBuilder text;
+    private final List<String> mapAnchors = new ArrayList<>();
+    private final List<String> anchors = new ArrayList<>();
+    private int keyCounter;
+    private int anchorCounter;
+
+    private YAMLDocumentGenerator(Builder builder) {
+        this.format = builder.format;
+        this.size = builder.size;
+        this.maxDepth = builder.maxDepth;
+        this.fanOut = builder.fanOut;
+        this.topLevelSequence = builder.topLevelSequence;
+        this.collectionRate = builder.collectionRate;
+        this.sequenceRate = builder.sequenceRate;
+        this.flowRate = builder.flowRate;
+        this.anchorRate = builder.anchorRate;
+        this.aliasRate = builder.aliasRate;
+        this.complexKeyRate = builder.complexKeyRate;
+        this.nonBMPRate = builder.nonBMPRate;
+        this.scalarStyles = builder.scalarStyles.toArray(new ScalarStyle[0]);
+
+        this.random = new Random(builder.seed);
+        this.text = new StringBuilder(size + 1024);
+    }
+
+    /**
+     * Returns a new {@link Builder}, configured for a {@link Shape#MIXED}
+     * YAML document of 1 KB.
+     *
+     * @return a new {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the generated document.
+     *
+     * <p>The document has at least {@link Builder#size(int) size}
+     * characters. Typically it is only slightly larger.</p>
+     *
+     * <p>A generator generates its document only once. Calling this method
+     * again returns the same text.</p>
+     *
+     * @return the generated document
+     */
+    public String generate() {
+        if (text.length() == 0) {
+            if (format == Format.JSON) {
+                appendJSONDocument();
+            } else {
+                appendYAMLDocument();
+            }
+        }
+        return text.toString();
+    }
+
+    // ========================================================================
+    // === YAML ===============================================================
+    // ========================================================================
+
+    private void appendYAMLDocument() {
+        do {
+            if (topLevelSequence) {
+                appendBlockSequenceItem(0, 1);
+            } else {
+                appendBlockMapEntry(0, 1);
+            }
+        } while (!isSizeReached());
+    }
+
+    private void appendBlockMap(int indent, int depth) {
+        int n = childCount();
+        if (!mapAnchors.isEmpty() && chance(aliasRate)) {
+            appendIndent(indent);
+            text.append("<<: *").append(pick(mapAnchors)).append('\n');
+        }
+        for (int i = 0; i < n && (i == 0 || !isSizeReached()); i++) {
+            appendBlockMapEntry(indent, depth);
+        }
+    }
+
+    private void appendBlockMapEntry(int indent, int depth) {
+        appendIndent(indent);
+        if (chance(complexKeyRate)) {
+            text.append("? ");
+            appendComplexKey();
+            text.append('\n');
+            appendIndent(indent);
+            text.append(':');
+        } else {
+            appendKey();
+            text.append(':');
+        }
+        appendBlockValue(indent, depth);
+    }
+
+    private void appendBlockSequence(int indent, int depth) {
+        int n = childCount();
+        for (int i = 0; i < n && (i == 0 || !isSizeReached()); i++) {
+            appendBlockSequenceItem(indent, depth);
+        }
+    }
+
+    private void appendBlockSequenceItem(int indent, int depth) {
+        appendIndent(indent);
+        text.append('-');
+        appendBlockValue(indent, depth);
+    }
+
+    /**
+     * Appends the value of a map entry or sequence item in block style, with
+     * the text already positioned behind the ":" or "-".
+     */
+    private void appendBlockValue(int indent, int depth) {
+        if (!anchors.isEmpty() && chance(aliasRate)) {
+            text.append(" *").append(pick(anchors)).append('\n');
+            return;
+        }
+
+        if (depth < maxDepth && chance(collectionRate)) {
+            boolean isSequence = chance(sequenceRate);
+            if (chance(flowRate)) {
+                text.append(' ');
+                appendFlowCollection(isSequence, depth + 1);
+                text.append('\n');
+                return;
+            }
+            @Nullable
+            String anchor = chance(anchorRate) ? nextAnchor() : null;
+            if (anchor != null) {
+                text.append(" &").append(anchor);
+            }
+            text.append('\n');
+            if (isSequence) {
+                appendBlockSequence(indent + 2, depth + 1);
+            } else {
+                appendBlockMap(indent + 2, depth + 1);
+            }
+            registerAnchor(anchor, !isSequence);
+            return;
+        }
+
+        @Nullable
+        String anchor = chance(anchorRate) ? nextAnchor() : null;
+        if (anchor != null) {
+            text.append(" &").append(anchor);
+        }
+        ScalarStyle style = pick(scalarStyles);
+        if (style == ScalarStyle.LITERAL || style == ScalarStyle.FOLDED) {
+            appendBlockScalar(style, indent + 2);
+        } else {
+            text.append(' ');
+            appendFlowScalar(style);
+            text.append('\n');
+        }
+        registerAnchor(anchor, false);
+    }
+
+    private void appendFlowCollection(boolean isSequence, int depth) {
+        @Nullable
+        String anchor = chance(anchorRate) ? nextAnchor() : null;
+        if (anchor != null) {
+            text.append('&').append(anchor).append(' ');
+        }
+        text.append(isSequence ? '[' : '{');
+        int n = childCount();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            if (!isSequence) {
+                appendKey();
+                text.append(": ");
+            }
+            appendFlowNode(depth);
+        }
+        text.append(isSequence ? ']' : '}');
+        registerAnchor(anchor, !isSequence);
+    }
+
+    private void appendFlowNode(int depth) {
+        if (!anchors.isEmpty() && chance(aliasRate)) {
+            text.append('*').append(pick(anchors));
+        } else if (depth < maxDepth && chance(collectionRate)) {
+            appendFlowCollection(chance(sequenceRate), depth + 1);
+        } else {
+            ScalarStyle style = pick(scalarStyles);
+            appendFlowScalar(style == ScalarStyle.LITERAL || style == ScalarStyle.FOLDED
+                    ? ScalarStyle.DOUBLE_QUOTED : style);
+        }
+    }
+
+    private void appendComplexKey() {
+        if (random.nextBoolean()) {
+            text.append("[key").append(keyCounter++)
+                    .append(", ").append(randomWord()).append(']');
+        } else {
+            text.append("{id: key").append(keyCounter++)
+                    .append(", name: ").append(randomWord()).append('}');
+        }
+    }
+
+    private void appendKey() {
+        int n = keyCounter++;
+        switch (random.nextInt(8)) {
+            case 0:
+                text.append("\"key ").append(n).append('"');
+                break;
+            case 1:
+                text.append("'key-").append(n).append('\'');
+                break;
+            default:
+                text.append("key").append(n);
+                if (chance(nonBMPRate)) {
+                    text.append(pick(NON_BMP_TEXTS));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Appends a scalar in {@link ScalarStyle#PLAIN},
+     * {@link ScalarStyle#SINGLE_QUOTED} or {@link ScalarStyle#DOUBLE_QUOTED}
+     * style.
+     */
+    private void appendFlowScalar(ScalarStyle style) {
+        switch (style) {
+            case SINGLE_QUOTED:
+                text.append('\'');
+                appendWords(1 + random.nextInt(4));
+                if (random.nextInt(4) == 0) {
+                    text.append(" it''s");
+                }
+                text.append('\'');
+                break;
+            case DOUBLE_QUOTED:
+                text.append('"');
+                appendWords(1 + random.nextInt(4));
+                switch (random.nextInt(6)) {
+                    case 0:
+                        text.append("\\t\\\"q\\\"");
+                        break;
+                    case 1:
+                        text.append(" \\u00e9\\n");
+                        break;
+                    case 2:
+                        text.append(" \\U0001F600");
+                        break;
+                    default:
+                        break;
+                }
+                text.append('"');
+                break;
+            default:
+                appendPlainScalar();
+                break;
+        }
+    }
+
+    private void appendPlainScalar() {
+        switch (random.nextInt(6)) {
+            case 0:
+                text.append(random.nextInt(100000));
+                break;
+            case 1:
+                text.append(random.nextInt(1000)).append('.').append(random.nextInt(100));
+                break;
+            case 2:
+                text.append(random.nextBoolean());
+                break;
+            default:
+                appendWords(1 + random.nextInt(4));
+                break;
+        }
+    }
+
+    private void appendBlockScalar(ScalarStyle style, int indent) {
+        text.append(style == ScalarStyle.LITERAL ? " |\n" : " >\n");
+        int lines = 1 + random.nextInt(3);
+        for (int i = 0; i < lines; i++) {
+            appendIndent(indent);
+            appendWords(1 + random.nextInt(6));
+            text.append('\n');
+        }
+    }
+
+    // ========================================================================
+    // === JSON ===============================================================
+    // ========================================================================
+
+    private void appendJSONDocument() {
+        text.append(topLevelSequence ? "[\n" : "{\n");
+        boolean first = true;
+        do {
+            if (!first) {
+                text.append(",\n");
+            }
+            first = false;
+            appendIndent(2);
+            if (!topLevelSequence) {
+                appendJSONKey();
+            }
+            appendJSONValue(2, 1);
+        } while (!isSizeReached());
+        text.append(topLevelSequence ? "\n]\n" : "\n}\n");
+    }
+
+    private void appendJSONValue(int indent, int depth) {
+        if (depth < maxDepth && chance(collectionRate)) {
+            boolean isSequence = chance(sequenceRate);
+            boolean singleLine = chance(flowRate);
+            text.append(isSequence ? '[' : '{');
+            int n = childCount();
+            for (int i = 0; i < n && (i == 0 || !isSizeReached()); i++) {
+                if (i > 0) {
+                    text.append(',');
+                }
+                if (singleLine) {
+                    text.append(i > 0 ? " " : "");
+                } else {
+                    text.append('\n');
+                    appendIndent(indent + 2);
+                }
+                if (!isSequence) {
+                    appendJSONKey();
+                }
+                appendJSONValue(indent + 2, depth + 1);
+            }
+            if (!singleLine) {
+                text.append('\n');
+                appendIndent(indent);
+            }
+            text.append(isSequence ? ']' : '}');
+            return;
+        }
+
+        switch (random.nextInt(6)) {
+            case 0:
+                text.append(random.nextInt(100000));
+                break;
+            case 1:
+                text.append(random.nextInt(1000)).append('.').append(random.nextInt(100));
+                break;
+            case 2:
+                text.append(random.nextBoolean());
+                break;
+            case 3:
+                text.append("null");
+                break;
+            default:
+                text.append('"');
+                appendWords(1 + random.nextInt(4));
+                if (random.nextInt(4) == 0) {
+                    text.append("\\t\\\"q\\\" \\u00e9");
+                }
+                text.append('"');
+                break;
+        }
+    }
+
+    private void appendJSONKey() {
+        text.append("\"key").append(keyCounter++);
+        if (chance(nonBMPRate)) {
+            text.append(pick(NON_BMP_TEXTS));
+        }
+        text.append("\": ");
+    }
+
+    // ========================================================================
+    // === Helpers ============================================================
+    // ========================================================================
+
+    private boolean isSizeReached() {
+        return text.length() >= size;
+    }
+
+    private int childCount() {
+        return 1 + random.nextInt(fanOut);
+    }
+
+    private boolean chance(double rate) {
+        return rate > 0 && random.nextDouble() < rate;
+    }
+
+    private <T> T pick(T[] items) {
+        return items[random.nextInt(items.length)];
+    }
+
+    private <T> T pick(List<T> items) {
+        return items.get(random.nextInt(items.size()));
+    }
+
+    private String randomWord() {
+        return pick(WORDS);
+    }
+
+    private void appendWords(int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(randomWord());
+            if (chance(nonBMPRate)) {
+                text.append(pick(NON_BMP_TEXTS));
+            }
+        }
+    }
+
+    private void appendIndent(int indent) {
+        for (int i = 0; i < indent; i++) {
+            text.append(' ');
+        }
+    }
+
+    private String nextAnchor() {
+        return "a" + anchorCounter++;
+    }
+
+    /**
+     * Makes the {@code anchor} available for aliases, once the anchored node
+     * is completely defined (so no alias refers to an enclosing node).
+     */
+    private void registerAnchor(@Nullable String anchor, boolean isMap) {
+        if (anchor != null) {
+            anchors.add(anchor);
+            if (isMap) {
+                mapAnchors.add(anchor);
+            }
+        }
+    }
+
+    /**
+     * Configures and creates a {@link YAMLDocumentGenerator}.
+     */
+    public static final class Builder {
+        private long seed = 1;
+        private Format format = Format.YAML;
+        private int size = 1024;
+        private int maxDepth;
+        private int fanOut;
+        private boolean topLevelSequence;
+        private double collectionRate;
+        private double sequenceRate;
+        private double flowRate;
+        private double anchorRate;
+        private double aliasRate;
+        private double complexKeyRate;
+        private double nonBMPRate;
+        private Set<ScalarStyle> scalarStyles = EnumSet.allOf(ScalarStyle.class);
+
+        private Builder() {
+            shape(Shape.MIXED);
+        }
+
+        /**
+         * Sets all parameters defining the structure of the document
+         * according to the {@code shape}.
+         *
+         * <p>Call the other setters after this one to refine the
+         * configuration.</p>
+         */
+        public Builder shape(Shape shape) {
+            // the MIXED configuration is the base for all shapes
+            maxDepth = 6;
+            fanOut = 5;
+            topLevelSequence = false;
+            collectionRate = 0.4;
+            sequenceRate = 0.3;
+            flowRate = 0.1;
+            anchorRate = 0.05;
+            aliasRate = 0.05;
+            complexKeyRate = 0.02;
+            nonBMPRate = 0.02;
+            scalarStyles = EnumSet.allOf(ScalarStyle.class);
+
+            switch (shape) {
+                case FLAT:
+                    maxDepth = 1;
+                    anchorRate = 0;
+                    aliasRate = 0;
+                    complexKeyRate = 0;
+                    break;
+                case DEEP:
+                    maxDepth = 32;
+                    fanOut = 2;
+                    collectionRate = 0.95;
+                    flowRate = 0;
+                    break;
+                case WIDE_SEQUENCE:
+                    maxDepth = 2;
+                    fanOut = 3;
+                    topLevelSequence = true;
+                    collectionRate = 0.2;
+                    break;
+                case ANCHOR_HEAVY:
+                    maxDepth = 4;
+                    fanOut = 4;
+                    collectionRate = 0.5;
+                    anchorRate = 0.4;
+                    aliasRate = 0.3;
+                    break;
+                default:
+                    break;
+            }
+            return this;
+        }
+
+        /**
+         * Sets the seed for the pseudo random choices made while generating
+         * the document.
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder format(Format format) {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * Sets the minimal size of the document, in characters.
+         */
+        public Builder size(int size) {
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * Sets the maximal nesting depth of collections, with 1 for a
+         * document with a single (top-level) collection.
+         */
+        public Builder maxDepth(int maxDepth) {
+            if (maxDepth < 1) {
+                throw new IllegalArgumentException("maxDepth must be >= 1");
+            }
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * Sets the maximal number of entries or items in a nested collection.
+         */
+        public Builder fanOut(int fanOut) {
+            if (fanOut < 1) {
+                throw new IllegalArgumentException("fanOut must be >= 1");
+            }
+            this.fanOut = fanOut;
+            return this;
+        }
+
+        /**
+         * Defines if the top-level collection is a sequence (or a map).
+         */
+        public Builder topLevelSequence(boolean topLevelSequence) {
+            this.topLevelSequence = topLevelSequence;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a (non-top-level) value being a collection
+         * (and not a scalar).
+         */
+        public Builder collectionRate(double collectionRate) {
+            this.collectionRate = collectionRate;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a collection being a sequence (and not a
+         * map).
+         */
+        public Builder sequenceRate(double sequenceRate) {
+            this.sequenceRate = sequenceRate;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a collection being written in flow style
+         * (YAML) or on a single line (JSON).
+         */
+        public Builder flowRate(double flowRate) {
+            this.flowRate = flowRate;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a node having an anchor.
+         */
+        public Builder anchorRate(double anchorRate) {
+            this.anchorRate = anchorRate;
+            return this;
+        }
+
+        /**
+         * Sets the probability of using an alias (or a merge key in a map),
+         * when an anchor is available.
+         */
+        public Builder aliasRate(double aliasRate) {
+            this.aliasRate = aliasRate;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a map key being a complex key (a collection).
+         */
+        public Builder complexKeyRate(double complexKeyRate) {
+            this.complexKeyRate = complexKeyRate;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a word in a scalar or key being followed by
+         * a character outside the Basic Multilingual Plane (like an emoji).
+         */
+        public Builder nonBMPRate(double nonBMPRate) {
+            this.nonBMPRate = nonBMPRate;
+            return this;
+        }
+
+        /**
+         * Sets the styles used for scalars.
+         */
+        public Builder scalarStyles(ScalarStyle... scalarStyles) {
+            if (scalarStyles.length == 0) {
+                throw new IllegalArgumentException("scalarStyles must not be empty");
+            }
+            this.scalarStyles = EnumSet.noneOf(ScalarStyle.class);
+            for (ScalarStyle style : scalarStyles) {
+                this.scalarStyles.add(style);
+            }
+            return this;
+        }
+
+        public YAMLDocumentGenerator build() {
+            return new YAMLDocumentGenerator(this);
+        }
+    }
+}
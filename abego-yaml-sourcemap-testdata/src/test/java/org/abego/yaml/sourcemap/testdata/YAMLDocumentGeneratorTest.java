@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Udo Borkowski, (ub@abego.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.abego.yaml.sourcemap.testdata;
+
+import org.abego.yaml.sourcemap.testdata.YAMLDocumentGenerator.Format;
+import org.abego.yaml.sourcemap.testdata.YAMLDocumentGenerator.ScalarStyle;
+import org.abego.yaml.sourcemap.testdata.YAMLDocumentGenerator.Shape;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YAMLDocumentGeneratorTest {
+
+    private static String generate(Shape shape, Format format, long seed, int size) {
+        return YAMLDocumentGenerator.builder()
+                .shape(shape)
+                .format(format)
+                .seed(seed)
+                .size(size)
+                .build()
+                .generate();
+    }
+
+    /**
+     * Returns the data of the YAML {@code text}, loaded by SnakeYaml.
+     */
+    private static Object load(String text) {
+        // Anchor heavy documents use more aliases than SnakeYaml allows by
+        // default
+        LoaderOptions options = new LoaderOptions();
+        options.setMaxAliasesForCollections(Integer.MAX_VALUE);
+        return new Yaml(options).load(text);
+    }
+
+    private static boolean hasNonBMPCharacter(String text) {
+        return text.codePoints().anyMatch(c -> c > 0xFFFF);
+    }
+
+    @Test
+    void deterministic() {
+        String text1 = generate(Shape.MIXED, Format.YAML, 42, 10_000);
+        String text2 = generate(Shape.MIXED, Format.YAML, 42, 10_000);
+        String text3 = generate(Shape.MIXED, Format.YAML, 43, 10_000);
+
+        assertEquals(text1, text2);
+        assertNotEquals(text1, text3);
+    }
+
+    @Test
+    void generate_twice() {
+        YAMLDocumentGenerator generator = YAMLDocumentGenerator.builder().build();
+
+        assertEquals(generator.generate(), generator.generate());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Shape.class)
+    void yaml_isValid(Shape shape) {
+        for (long seed = 0; seed < 20; seed++) {
+            String text = generate(shape, Format.YAML, seed, 20_000);
+
+            assertTrue(text.length() >= 20_000);
+            assertNotNull(load(text), "seed " + seed);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Shape.class)
+    void json_isValid(Shape shape) {
+        for (long seed = 0; seed < 20; seed++) {
+            String text = generate(shape, Format.JSON, seed, 20_000);
+
+            assertTrue(text.length() >= 20_000);
+            assertNotNull(load(text), "seed " + seed);
+            assertFalse(text.contains("&"));
+            assertFalse(text.contains("'"));
+        }
+    }
+
+    @Test
+    void yaml_features() {
+        String text = generate(Shape.MIXED, Format.YAML, 1, 200_000);
+
+        assertTrue(text.contains(": &a"), "anchor");
+        assertTrue(text.contains(" *a"), "alias");
+        assertTrue(text.contains("<<: *a"), "merge key");
+        assertTrue(text.contains("? ["), "complex key");
+        assertTrue(text.contains(": |\n"), "literal block scalar");
+        assertTrue(text.contains(": >\n"), "folded block scalar");
+        assertTrue(text.contains(": '"), "single quoted scalar");
+        assertTrue(text.contains(": \""), "double quoted scalar");
+        assertTrue(text.contains(": {"), "flow map");
+        assertTrue(text.contains(": ["), "flow sequence");
+        assertTrue(hasNonBMPCharacter(text), "non BMP character");
+    }
+
+    @Test
+    void maxDepth() {
+        String text = YAMLDocumentGenerator.builder()
+                .shape(Shape.DEEP)
+                .maxDepth(3)
+                .collectionRate(1)
+                .flowRate(0)
+                .aliasRate(0)
+                .anchorRate(0)
+                .complexKeyRate(0)
+                .scalarStyles(ScalarStyle.PLAIN)
+                .size(10_000)
+                .build()
+                .generate();
+
+        // 2 spaces per nesting level, with 3 levels max. indentation is 4
+        assertTrue(text.contains("\n    "));
+        assertFalse(text.contains("\n      "));
+    }
+
+    @Test
+    void nonBMPRate_zero() {
+        String text = YAMLDocumentGenerator.builder()
+                .nonBMPRate(0)
+                .size(100_000)
+                .build()
+                .generate();
+
+        assertFalse(hasNonBMPCharacter(text));
+    }
+
+    @Test
+    void builder_invalidArguments() {
+        YAMLDocumentGenerator.Builder builder = YAMLDocumentGenerator.builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.maxDepth(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.fanOut(0));
+        assertThrows(IllegalArgumentException.class, builder::scalarStyles);
+    }
+}